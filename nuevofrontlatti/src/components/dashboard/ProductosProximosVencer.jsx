@@ -104,6 +104,7 @@ const ProductosProximosVencer = ({ productos, onCrearVenta, onRecargarDatos }) =
       const ventaData = {
         fecha: getTodayLocalString(),
         descripcion: `DESCARTO - Producto vencido (${productoADescartar.nombreProducto}, Lote: ${productoADescartar.lote})`,
+        descarte: true,
         ventasPorLotes: [{
           productoId: productoADescartar.productoId,
           lote: productoADescartar.lote,
@@ -2,10 +2,14 @@ package com.Latti.stock;
 
 import com.Latti.stock.modules.*;
 import com.Latti.stock.repositories.*;
+import com.Latti.stock.service.ComprasInsumoService;
+import com.Latti.stock.service.LoteProductoService;
+import com.Latti.stock.service.StockLedgerService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.time.LocalDate;
@@ -13,6 +17,7 @@ import java.util.List;
 import java.util.Random;
 
 @SpringBootApplication
+@EnableScheduling
 public class StockApplication {
 
 	public static void main(String[] args) {
@@ -28,12 +33,26 @@ public class StockApplication {
 			RecetaRepository recetaRepository,
 			InsumoRecetaRepository insumoRecetaRepository,
 			ClientRepository clientRepository,
-			PasswordEncoder passwordEncoder
+			PasswordEncoder passwordEncoder,
+			StockLedgerService stockLedgerService,
+			LoteProductoService loteProductoService,
+			ComprasInsumoService comprasInsumoService
 	) {
 		return args -> {
-			
-			
+			// ✅ NUEVO: Inicializar los saldos diarios de insumos a partir del historial existente
+			if (stockLedgerService.estaVacio() && movimientoInsumoLoteRepository.count() > 0) {
+				stockLedgerService.reconstruirSaldos();
+			}
 
+			// ✅ NUEVO: Inicializar los saldos por lote de productos a partir del historial existente
+			if (loteProductoService.estaVacio() && movimientoProductoLoteRepository.count() > 0) {
+				loteProductoService.reconstruirLotes();
+			}
+
+			// ✅ NUEVO: Calcular los agregados de compras de insumos comprados antes de existir las columnas
+			if (comprasInsumoService.faltaInicializar()) {
+				comprasInsumoService.reconstruirCompras();
+			}
 		};
 	}
 }
@@ -0,0 +1,39 @@
+package com.Latti.stock.configurations;
+
+import com.Latti.stock.service.CatalogoCacheService;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /**
+     * Caché de catálogos en memoria (Caffeine) acotado por tamaño y TTL. Las estadísticas
+     * (aciertos, fallos, desalojos) se publican en Actuator como métricas cache.*.
+     * El proxy transaccional difiere las invalidaciones hasta el commit, para que una
+     * lectura concurrente no vuelva a cachear datos que todavía pueden revertirse.
+     */
+    @Bean
+    public CacheManager cacheManager(@Value("${latti.catalogo.cache.maximo:100}") long maximo,
+                                     @Value("${latti.catalogo.cache.ttl-segundos:300}") long ttlSegundos) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(
+                CatalogoCacheService.INSUMOS,
+                CatalogoCacheService.PRODUCTOS,
+                CatalogoCacheService.INSUMOS_COMPUESTOS);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats());
+        cacheManager.setAllowNullValues(false);
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
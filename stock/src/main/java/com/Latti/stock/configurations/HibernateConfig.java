@@ -0,0 +1,32 @@
+package com.Latti.stock.configurations;
+
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class HibernateConfig {
+
+    /**
+     * Agrupa los INSERT/UPDATE en batches JDBC. Requiere ids por secuencia:
+     * con IDENTITY Hibernate inserta fila por fila para conocer el id.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer batchingHibernateCustomizer() {
+        return properties -> {
+            properties.putIfAbsent("hibernate.jdbc.batch_size", 50);
+            properties.putIfAbsent("hibernate.order_inserts", true);
+            properties.putIfAbsent("hibernate.order_updates", true);
+            properties.putIfAbsent("hibernate.jdbc.batch_versioned_data", true);
+        };
+    }
+
+    /**
+     * El esquema lo crean y modifican las migraciones de Flyway (ver spring.flyway.* en application.properties):
+     * Hibernate no lo toca aunque el entorno todavía defina ddl-auto.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer esquemaPorMigracionesCustomizer() {
+        return properties -> properties.put("hibernate.hbm2ddl.auto", "none");
+    }
+}
@@ -0,0 +1,38 @@
+package com.Latti.stock.controllers;
+
+import com.Latti.stock.dtos.CapacidadProduccionDTO;
+import com.Latti.stock.service.CapacidadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/capacidad")
+public class CapacidadController {
+
+    @Autowired
+    private CapacidadService capacidadService;
+
+    /**
+     * Máxima cantidad producible de cada producto y compuesto, con el insumo que la limita.
+     * Sin fecha usa el stock actual; con fecha, el stock al cierre de ese día.
+     */
+    @GetMapping
+    public ResponseEntity<?> obtenerCapacidad(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fecha) {
+        try {
+            CapacidadProduccionDTO capacidad = capacidadService.calcularCapacidad(fecha);
+            return ResponseEntity.ok(capacidad);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("❌ Error al calcular la capacidad de producción: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(500).body(Map.of("error", "Error inesperado al calcular la capacidad de producción"));
+        }
+    }
+}
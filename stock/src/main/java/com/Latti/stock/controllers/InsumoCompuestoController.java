@@ -4,6 +4,7 @@ import com.Latti.stock.dtos.CrearInsumoCompuestoDTO;
 import com.Latti.stock.dtos.EnsamblarInsumoCompuestoDTO;
 import com.Latti.stock.dtos.InsumoCompuestoResponseDTO;
 import com.Latti.stock.service.InsumoCompuestoService;
+import com.Latti.stock.service.ReintentoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +20,9 @@ public class InsumoCompuestoController {
     @Autowired
     private InsumoCompuestoService insumoCompuestoService;
 
+    @Autowired
+    private ReintentoService reintentoService;
+
     /**
      * Crear un nuevo insumo compuesto
      */
@@ -79,7 +83,7 @@ public class InsumoCompuestoController {
             System.out.println("🔍 Ensamblando insumo compuesto ID: " + id);
             System.out.println("📋 Datos recibidos: cantidad=" + dto.cantidad() + ", fecha=" + dto.fecha());
             
-            InsumoCompuestoResponseDTO insumoCompuesto = insumoCompuestoService.ensamblarInsumoCompuesto(id, dto);
+            InsumoCompuestoResponseDTO insumoCompuesto = reintentoService.ejecutar(() -> insumoCompuestoService.ensamblarInsumoCompuesto(id, dto));
             System.out.println("✅ Insumo compuesto ensamblado exitosamente");
             
             return ResponseEntity.ok(insumoCompuesto);
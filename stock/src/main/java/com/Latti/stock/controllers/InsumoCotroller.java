@@ -3,16 +3,17 @@ package com.Latti.stock.controllers;
 
 import com.Latti.stock.dtos.CrearInsumoDTO;
 import com.Latti.stock.dtos.InsumoResponseDTO;
-import com.Latti.stock.dtos.InsumoCompuestoResponseDTO;
 import com.Latti.stock.dtos.InsumoDetalleDTO;
+import com.Latti.stock.dtos.InsumoUnificadoDTO;
 import com.Latti.stock.modules.Insumo;
 import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.service.ComprasInsumoService;
 import com.Latti.stock.service.InsumoService;
-import com.Latti.stock.service.InsumoCompuestoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,10 +24,10 @@ public class InsumoCotroller {
     private InsumoService insumoService;
 
     @Autowired
-    private InsumoCompuestoService insumoCompuestoService;
+    private InsumoRepository insumoRepository;
 
     @Autowired
-    private InsumoRepository insumoRepository;
+    private ComprasInsumoService comprasInsumoService;
 
     @PostMapping
     public ResponseEntity<?> crearInsumoBase(@RequestBody CrearInsumoDTO dto) {
@@ -92,64 +93,9 @@ public class InsumoCotroller {
     @GetMapping("/todos")
     public ResponseEntity<?> obtenerTodosLosInsumos() {
         try {
-            // Obtener insumos base (solo los de tipo BASE)
-            java.util.List<com.Latti.stock.dtos.InsumoListadoDTO> insumosBase = insumoService.obtenerInsumos();
-            java.util.List<com.Latti.stock.dtos.InsumoListadoDTO> insumosBaseFiltrados = 
-                insumosBase.stream()
-                    .filter(insumo -> insumo.tipo().toString().equals("BASE"))
-                    .collect(java.util.stream.Collectors.toList());
-            
-            // Obtener insumos compuestos
-            java.util.List<InsumoCompuestoResponseDTO> insumosCompuestos = 
-                insumoCompuestoService.obtenerInsumosCompuestos();
-            
-            // Crear lista unificada con estructura que el frontend espera
-            java.util.List<Map<String, Object>> todosLosInsumos = new java.util.ArrayList<>();
-            
-            // Agregar insumos base (solo los filtrados)
-            insumosBaseFiltrados.forEach(base -> {
-                Map<String, Object> insumoMap = new java.util.HashMap<>();
-                insumoMap.put("id", base.id());
-                insumoMap.put("nombre", base.nombre());
-                insumoMap.put("unidadMedida", base.unidadMedida().toString());
-                insumoMap.put("tipo", base.tipo().toString());
-                insumoMap.put("stockActual", base.stockActual());
-                insumoMap.put("stockMinimo", base.stockMinimo());
-                insumoMap.put("precioDeCompra", base.precioDeCompra());
-                insumoMap.put("totalInvertido", base.totalInvertido());
-                insumoMap.put("receta", null); // Los insumos base no tienen receta
-                todosLosInsumos.add(insumoMap);
-            });
-            
-            // Agregar insumos compuestos
-            insumosCompuestos.forEach(compuesto -> {
-                Map<String, Object> insumoMap = new java.util.HashMap<>();
-                insumoMap.put("id", compuesto.id());
-                insumoMap.put("nombre", compuesto.nombre());
-                insumoMap.put("unidadMedida", compuesto.unidadMedida().toString());
-                insumoMap.put("tipo", compuesto.tipo().toString());
-                insumoMap.put("stockActual", compuesto.stockActual());
-                insumoMap.put("stockMinimo", compuesto.stockMinimo());
-                insumoMap.put("precioDeCompra", compuesto.precioDeCompra());
-                insumoMap.put("totalInvertido", 0.0); // Los compuestos no tienen total invertido directo
-                // Convertir receta a formato que el frontend espera
-                java.util.List<Map<String, Object>> recetaFormateada = compuesto.receta().stream()
-                    .map(componente -> {
-                        Map<String, Object> componenteMap = new java.util.HashMap<>();
-                        componenteMap.put("id", componente.id());
-                        componenteMap.put("insumoBaseId", componente.insumoBaseId());
-                        componenteMap.put("nombreInsumoBase", componente.nombreInsumoBase());
-                        componenteMap.put("cantidad", componente.cantidad());
-                        componenteMap.put("unidadMedida", componente.unidadMedida().toString());
-                        return componenteMap;
-                    })
-                    .collect(java.util.stream.Collectors.toList());
-                insumoMap.put("receta", recetaFormateada);
-                todosLosInsumos.add(insumoMap);
-            });
-            
+            // ✅ NUEVO: Base y compuestos con su receta en una sola consulta, sin recorrer el historial de movimientos
+            List<InsumoUnificadoDTO> todosLosInsumos = insumoService.obtenerInsumosUnificados();
             System.out.println("📊 Total de insumos devueltos: " + todosLosInsumos.size());
-            System.out.println("📋 Lista de insumos: " + todosLosInsumos);
             return ResponseEntity.ok(todosLosInsumos);
         } catch (Exception e) {
             System.err.println("❌ Error al obtener insumos: " + e.getMessage());
@@ -158,6 +104,22 @@ public class InsumoCotroller {
         }
     }
 
+    /**
+     * Recalcula los agregados de compras (total invertido, cantidad comprada, última compra)
+     * de todos los insumos a partir del historial de movimientos
+     */
+    @PostMapping("/compras/reconstruir")
+    public ResponseEntity<?> reconstruirCompras() {
+        try {
+            comprasInsumoService.reconstruirCompras();
+            return ResponseEntity.ok(Map.of("mensaje", "Agregados de compras reconstruidos correctamente"));
+        } catch (Exception e) {
+            System.err.println("❌ Error al reconstruir compras: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(500).body(Map.of("error", "Error al reconstruir los agregados de compras"));
+        }
+    }
+
     /**
      * Actualizar un insumo base existente
      */
@@ -3,13 +3,26 @@ package com.Latti.stock.controllers;
 
 import com.Latti.stock.dtos.CrearMovimientoDeInsumoDTO;
 import com.Latti.stock.dtos.EditarMovimientoDeInsumoDTO;
+import com.Latti.stock.dtos.PaginaDTO;
+import com.Latti.stock.dtos.ReporteImportacionDTO;
 import com.Latti.stock.dtos.ValidacionEdicionDTO;
 import com.Latti.stock.modules.MovimientoInsumoLote;
+import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.service.ExportacionMovimientosService;
+import com.Latti.stock.service.IdempotenciaService;
+import com.Latti.stock.service.ImportacionMovimientosService;
 import com.Latti.stock.service.MovimientoInsumoLoteService;
+import com.Latti.stock.service.ReintentoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 import com.Latti.stock.dtos.ResponseMovimientosInsumoLoteDTO;
@@ -21,14 +34,30 @@ public class MovimientoInsumoController {
     @Autowired
     private MovimientoInsumoLoteService movimientoInsumoLoteService;
 
+    @Autowired
+    private ExportacionMovimientosService exportacionMovimientosService;
+
+    @Autowired
+    private ImportacionMovimientosService importacionMovimientosService;
+
+    @Autowired
+    private ReintentoService reintentoService;
+
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
 
     @PostMapping
-    public ResponseEntity<?> crearMovimiento(@RequestBody CrearMovimientoDeInsumoDTO dto) {
+    public ResponseEntity<?> crearMovimiento(@RequestBody CrearMovimientoDeInsumoDTO dto,
+                                             @RequestHeader(value = IdempotenciaService.HEADER, required = false) String claveIdempotencia) {
         try {
-            MovimientoInsumoLote movimiento = movimientoInsumoLoteService.crearMovimientoInsumo(dto);
+            // ✅ NUEVO: Un reintento con la misma Idempotency-Key devuelve el movimiento original sin volver a tocar el stock
+            IdempotenciaService.Resultado<Long> resultado = idempotenciaService.ejecutar(claveIdempotencia, "movimiento-insumo", dto,
+                    () -> reintentoService.ejecutar(() -> movimientoInsumoLoteService.crearMovimientoInsumo(dto)).getId());
             return ResponseEntity.ok(Map.of(
                     "mensaje", "Movimiento de insumo registrado correctamente",
-                    "id", movimiento.getId()
+                    "id", resultado.valor(),
+                    "repetido", resultado.repetido()
             ));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -43,6 +72,58 @@ public class MovimientoInsumoController {
         return ResponseEntity.ok(movimientos);
     }
 
+    @GetMapping("/pagina")
+    public ResponseEntity<?> obtenerPaginaMovimientos(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) TipoMovimiento tipo,
+            @RequestParam(required = false) Long insumoId,
+            @RequestParam(required = false) String ensambleId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            PaginaDTO<ResponseMovimientosInsumoLoteDTO> pagina = movimientoInsumoLoteService.obtenerPaginaMovimientos(
+                    desde, hasta, tipo, insumoId, ensambleId, cursor, limite);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Error inesperado al obtener los movimientos de insumo"));
+        }
+    }
+
+    @PostMapping("/importar")
+    public ResponseEntity<?> importarMovimientos(@RequestParam("archivo") MultipartFile archivo) {
+        try {
+            if (archivo == null || archivo.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "El archivo CSV está vacío"));
+            }
+            ReporteImportacionDTO reporte = importacionMovimientosService.importarMovimientosInsumo(archivo.getInputStream());
+            return ResponseEntity.ok(reporte);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Error inesperado al importar los movimientos de insumo"));
+        }
+    }
+
+    @GetMapping("/exportar")
+    public ResponseEntity<?> exportarMovimientos(@RequestParam(defaultValue = "csv") String formato) {
+        try {
+            String formatoValido = exportacionMovimientosService.validarFormato(formato);
+            // Las filas se escriben a medida que se leen, sin cargar el historial en memoria
+            StreamingResponseBody cuerpo = salida ->
+                    exportacionMovimientosService.exportarMovimientosInsumo(formatoValido, salida);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"movimientos-insumo." + formatoValido + "\"")
+                    .contentType(MediaType.parseMediaType("csv".equals(formatoValido)
+                            ? "text/csv; charset=UTF-8" : "application/x-ndjson"))
+                    .body(cuerpo);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> eliminarMovimiento(@PathVariable Long id) {
         try {
@@ -2,13 +2,26 @@ package com.Latti.stock.controllers;
 
 import com.Latti.stock.dtos.CrearMovimientoProductoDTO;
 import com.Latti.stock.dtos.CrearVentaPorLotesDTO;
+import com.Latti.stock.dtos.PaginaDTO;
+import com.Latti.stock.dtos.ReporteImportacionDTO;
 import com.Latti.stock.dtos.ResponseMovimientosProductoLoteDTO;
 import com.Latti.stock.modules.MovimientoProductoLote;
+import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.service.ExportacionMovimientosService;
+import com.Latti.stock.service.IdempotenciaService;
+import com.Latti.stock.service.ImportacionMovimientosService;
 import com.Latti.stock.service.MovimientoProductoLoteService;
+import com.Latti.stock.service.ReintentoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -19,13 +32,29 @@ public class MovimientoProductoController {
     @Autowired
     private MovimientoProductoLoteService movimientoProductoLoteService;
 
+    @Autowired
+    private ExportacionMovimientosService exportacionMovimientosService;
+
+    @Autowired
+    private ImportacionMovimientosService importacionMovimientosService;
+
+    @Autowired
+    private ReintentoService reintentoService;
+
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
     @PostMapping
-    public ResponseEntity<?> crearMovimiento(@RequestBody CrearMovimientoProductoDTO dto) {
+    public ResponseEntity<?> crearMovimiento(@RequestBody CrearMovimientoProductoDTO dto,
+                                             @RequestHeader(value = IdempotenciaService.HEADER, required = false) String claveIdempotencia) {
         try {
-            MovimientoProductoLote nuevo = movimientoProductoLoteService.crearMovimientoProducto(dto);
+            // ✅ NUEVO: Un reintento con la misma Idempotency-Key devuelve el movimiento original sin volver a tocar el stock
+            IdempotenciaService.Resultado<Long> resultado = idempotenciaService.ejecutar(claveIdempotencia, "movimiento-producto", dto,
+                    () -> reintentoService.ejecutar(() -> movimientoProductoLoteService.crearMovimientoProducto(dto)).getId());
             return ResponseEntity.ok(Map.of(
                     "mensaje", "Movimiento de producto registrado correctamente",
-                    "id", nuevo.getId()
+                    "id", resultado.valor(),
+                    "repetido", resultado.repetido()
             ));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -40,6 +69,58 @@ public class MovimientoProductoController {
         return ResponseEntity.ok(movimientos);
     }
 
+    @GetMapping("/pagina")
+    public ResponseEntity<?> obtenerPaginaMovimientos(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) TipoMovimiento tipo,
+            @RequestParam(required = false) Long productoId,
+            @RequestParam(required = false) String lote,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            PaginaDTO<ResponseMovimientosProductoLoteDTO> pagina = movimientoProductoLoteService.obtenerPaginaMovimientos(
+                    desde, hasta, tipo, productoId, lote, cursor, limite);
+            return ResponseEntity.ok(pagina);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Error inesperado al obtener los movimientos de producto"));
+        }
+    }
+
+    @PostMapping("/importar")
+    public ResponseEntity<?> importarMovimientos(@RequestParam("archivo") MultipartFile archivo) {
+        try {
+            if (archivo == null || archivo.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "El archivo CSV está vacío"));
+            }
+            ReporteImportacionDTO reporte = importacionMovimientosService.importarMovimientosProducto(archivo.getInputStream());
+            return ResponseEntity.ok(reporte);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Error inesperado al importar los movimientos de producto"));
+        }
+    }
+
+    @GetMapping("/exportar")
+    public ResponseEntity<?> exportarMovimientos(@RequestParam(defaultValue = "csv") String formato) {
+        try {
+            String formatoValido = exportacionMovimientosService.validarFormato(formato);
+            // Las filas se escriben a medida que se leen, sin cargar el historial en memoria
+            StreamingResponseBody cuerpo = salida ->
+                    exportacionMovimientosService.exportarMovimientosProducto(formatoValido, salida);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"movimientos-producto." + formatoValido + "\"")
+                    .contentType(MediaType.parseMediaType("csv".equals(formatoValido)
+                            ? "text/csv; charset=UTF-8" : "application/x-ndjson"))
+                    .body(cuerpo);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<?> editarMovimiento(@PathVariable Long id, @RequestBody CrearMovimientoProductoDTO dto) {
         try {
@@ -79,12 +160,15 @@ public class MovimientoProductoController {
     }
 
     @PostMapping("/venta-por-lotes")
-    public ResponseEntity<?> crearVentaPorLotes(@RequestBody CrearVentaPorLotesDTO dto) {
+    public ResponseEntity<?> crearVentaPorLotes(@RequestBody CrearVentaPorLotesDTO dto,
+                                                @RequestHeader(value = IdempotenciaService.HEADER, required = false) String claveIdempotencia) {
         try {
-            MovimientoProductoLote nuevo = movimientoProductoLoteService.crearVentaPorLotes(dto);
+            IdempotenciaService.Resultado<Long> resultado = idempotenciaService.ejecutar(claveIdempotencia, "venta-por-lotes", dto,
+                    () -> reintentoService.ejecutar(() -> movimientoProductoLoteService.crearVentaPorLotes(dto)).getId());
             return ResponseEntity.ok(Map.of(
                     "mensaje", "Venta por lotes registrada correctamente",
-                    "id", nuevo.getId()
+                    "id", resultado.valor(),
+                    "repetido", resultado.repetido()
             ));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
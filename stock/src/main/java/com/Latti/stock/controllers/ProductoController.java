@@ -8,21 +8,14 @@ import com.Latti.stock.dtos.ProductoProximoVencerDTO;
 import com.Latti.stock.dtos.ProductoVencidoDTO;
 import com.Latti.stock.dtos.PerdidaDTO;
 import com.Latti.stock.modules.Producto;
-import com.Latti.stock.modules.DetalleMovimientoProducto;
-import com.Latti.stock.modules.MovimientoProductoLote;
-import com.Latti.stock.modules.TipoMovimiento;
-import com.Latti.stock.repositories.ProductoRepository;
-import com.Latti.stock.repositories.MovimientoProductoLoteRepository;
+import com.Latti.stock.service.LoteProductoService;
 import com.Latti.stock.service.ProductoService;
 import com.Latti.stock.service.MovimientoProductoLoteService;
+import com.Latti.stock.service.PerdidaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -33,15 +26,15 @@ public class ProductoController {
 
     private final ProductoService productoService;
     private final MovimientoProductoLoteService movimientoProductoLoteService;
-    private final ProductoRepository productoRepository;
-    private final MovimientoProductoLoteRepository movimientoProductoLoteRepository;
+    private final LoteProductoService loteProductoService;
+    private final PerdidaService perdidaService;
 
     @Autowired
-    public ProductoController(ProductoService productoService, MovimientoProductoLoteService movimientoProductoLoteService, ProductoRepository productoRepository, MovimientoProductoLoteRepository movimientoProductoLoteRepository) {
+    public ProductoController(ProductoService productoService, MovimientoProductoLoteService movimientoProductoLoteService, LoteProductoService loteProductoService, PerdidaService perdidaService) {
         this.productoService = productoService;
         this.movimientoProductoLoteService = movimientoProductoLoteService;
-        this.productoRepository = productoRepository;
-        this.movimientoProductoLoteRepository = movimientoProductoLoteRepository;
+        this.loteProductoService = loteProductoService;
+        this.perdidaService = perdidaService;
     }
 
     @PostMapping
@@ -118,40 +111,8 @@ public class ProductoController {
     public ResponseEntity<?> obtenerProductosProximosAVencer(
             @RequestParam(defaultValue = "7") int diasAnticipacion) {
         try {
-            LocalDate fechaLimite = LocalDate.now().plusDays(diasAnticipacion);
-            LocalDate hoy = LocalDate.now();
-            
-            List<Producto> productos = productoRepository.findAll();
-            List<ProductoProximoVencerDTO> resultado = new ArrayList<>();
-            
-            for (Producto producto : productos) {
-                List<StockPorLoteDTO> lotes = movimientoProductoLoteService.obtenerStockPorLotes(producto.getId());
-                
-                for (StockPorLoteDTO lote : lotes) {
-                    if (lote.fechaVencimiento() != null && 
-                        !lote.fechaVencimiento().isAfter(fechaLimite) &&
-                        lote.cantidadDisponible() > 0) {
-                        
-                        long diasHastaVencimiento = ChronoUnit.DAYS.between(hoy, lote.fechaVencimiento());
-                        
-                        // Solo incluir si no está vencido (días >= 0) o si está vencido pero dentro del rango
-                        if (diasHastaVencimiento >= 0 || (diasHastaVencimiento < 0 && Math.abs(diasHastaVencimiento) <= diasAnticipacion)) {
-                            resultado.add(new ProductoProximoVencerDTO(
-                                producto.getId(),
-                                producto.getNombre(),
-                                lote.lote(),
-                                lote.cantidadDisponible(),
-                                lote.fechaVencimiento(),
-                                (int) diasHastaVencimiento,
-                                producto.getPrecioInversion() * lote.cantidadDisponible()
-                            ));
-                        }
-                    }
-                }
-            }
-            
-            // Ordenar por días hasta vencimiento (más urgentes primero)
-            resultado.sort(Comparator.comparing(ProductoProximoVencerDTO::diasHastaVencimiento));
+            // Una sola consulta sobre la tabla de lotes, ya ordenada por urgencia
+            List<ProductoProximoVencerDTO> resultado = loteProductoService.obtenerLotesProximosAVencer(diasAnticipacion);
             
             return ResponseEntity.ok(resultado);
         } catch (Exception e) {
@@ -166,36 +127,8 @@ public class ProductoController {
     @GetMapping("/vencidos")
     public ResponseEntity<?> obtenerProductosVencidos() {
         try {
-            LocalDate hoy = LocalDate.now();
-            
-            List<Producto> productos = productoRepository.findAll();
-            List<ProductoVencidoDTO> resultado = new ArrayList<>();
-            
-            for (Producto producto : productos) {
-                List<StockPorLoteDTO> lotes = movimientoProductoLoteService.obtenerStockPorLotes(producto.getId());
-                
-                for (StockPorLoteDTO lote : lotes) {
-                    if (lote.fechaVencimiento() != null && 
-                        lote.fechaVencimiento().isBefore(hoy) &&
-                        lote.cantidadDisponible() > 0) {
-                        
-                        long diasVencidos = ChronoUnit.DAYS.between(lote.fechaVencimiento(), hoy);
-                        
-                        resultado.add(new ProductoVencidoDTO(
-                            producto.getId(),
-                            producto.getNombre(),
-                            lote.lote(),
-                            lote.cantidadDisponible(),
-                            lote.fechaVencimiento(),
-                            (int) diasVencidos,
-                            producto.getPrecioInversion() * lote.cantidadDisponible()
-                        ));
-                    }
-                }
-            }
-            
-            // Ordenar por días vencidos (más vencidos primero)
-            resultado.sort(Comparator.comparing(ProductoVencidoDTO::diasVencidos).reversed());
+            // Una sola consulta sobre la tabla de lotes, ya ordenada del más vencido al menos vencido
+            List<ProductoVencidoDTO> resultado = loteProductoService.obtenerLotesVencidos();
             
             return ResponseEntity.ok(resultado);
         } catch (Exception e) {
@@ -205,58 +138,43 @@ public class ProductoController {
     }
 
     /**
-     * Obtiene el historial de pérdidas (movimientos de SALIDA con descripción que contiene "DESCARTO")
+     * Obtiene el historial de pérdidas (movimientos de SALIDA marcados como descarte).
+     * Con pagina/tamanio devuelve solo esa página e informa el total en X-Total-Count.
      */
     @GetMapping("/perdidas")
-    public ResponseEntity<?> obtenerPerdidas() {
+    public ResponseEntity<?> obtenerPerdidas(
+            @RequestParam(required = false) Integer pagina,
+            @RequestParam(required = false) Integer tamanio) {
         try {
-            List<MovimientoProductoLote> movimientos = movimientoProductoLoteRepository.findAll();
-            List<PerdidaDTO> perdidas = new ArrayList<>();
-            
-            for (MovimientoProductoLote movimiento : movimientos) {
-                if (movimiento.getTipoMovimiento() == TipoMovimiento.SALIDA) {
-                    for (DetalleMovimientoProducto detalle : movimiento.getDetalles()) {
-                        // Verificar si la descripción contiene "DESCARTO" (indica que es un descarte)
-                        if (movimiento.getDescripcion() != null && 
-                            movimiento.getDescripcion().toUpperCase().contains("DESCARTO")) {
-                            
-                            Producto producto = detalle.getProducto();
-                            
-                            // Calcular días vencidos desde la fecha de vencimiento del lote hasta la fecha del descarte
-                            int diasVencidos = 0;
-                            if (detalle.getFechaVencimiento() != null && 
-                                detalle.getFechaVencimiento().isBefore(movimiento.getFecha())) {
-                                diasVencidos = (int) ChronoUnit.DAYS.between(detalle.getFechaVencimiento(), movimiento.getFecha());
-                            }
-                            
-                            // Calcular valor perdido (precio de inversión * cantidad)
-                            // El precio de inversión es el costo de producir el producto
-                            double valorPerdido = producto.getPrecioInversion() * detalle.getCantidad();
-                            
-                            perdidas.add(new PerdidaDTO(
-                                movimiento.getId(),
-                                movimiento.getFecha(),
-                                movimiento.getDescripcion(),
-                                producto.getId(),
-                                producto.getNombre(),
-                                detalle.getLote() != null ? detalle.getLote() : "N/A",
-                                detalle.getCantidad(),
-                                valorPerdido,
-                                diasVencidos
-                            ));
-                        }
-                    }
-                }
+            List<PerdidaDTO> perdidas = perdidaService.obtenerPerdidas(pagina, tamanio);
+            if (pagina == null) {
+                return ResponseEntity.ok(perdidas);
             }
-            
-            // Ordenar por fecha (más recientes primero)
-            perdidas.sort(Comparator.comparing(PerdidaDTO::fecha).reversed());
-            
-            return ResponseEntity.ok(perdidas);
+            return ResponseEntity.ok()
+                    .header("X-Total-Count", String.valueOf(perdidaService.contarPerdidas()))
+                    .body(perdidas);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             e.printStackTrace();
             return ResponseEntity.status(500).body(Map.of("error", "Error inesperado al obtener pérdidas: " + e.getMessage()));
         }
     }
 
+    /**
+     * Totales de pérdidas calculados en la base: por mes y por producto
+     */
+    @GetMapping("/perdidas/resumen")
+    public ResponseEntity<?> obtenerResumenPerdidas() {
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "porMes", perdidaService.resumirPorMes(),
+                    "porProducto", perdidaService.resumirPorProducto()
+            ));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(500).body(Map.of("error", "Error inesperado al obtener el resumen de pérdidas: " + e.getMessage()));
+        }
+    }
+
 }
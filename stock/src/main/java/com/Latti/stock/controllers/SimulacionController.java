@@ -0,0 +1,35 @@
+package com.Latti.stock.controllers;
+
+import com.Latti.stock.dtos.ResultadoSimulacionDTO;
+import com.Latti.stock.dtos.SimulacionDTO;
+import com.Latti.stock.service.SimulacionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/simulaciones")
+public class SimulacionController {
+
+    @Autowired
+    private SimulacionService simulacionService;
+
+    /**
+     * Simula un plan de producciones, ensambles y ventas sin registrar ningún movimiento
+     */
+    @PostMapping
+    public ResponseEntity<?> simular(@RequestBody SimulacionDTO dto) {
+        try {
+            ResultadoSimulacionDTO resultado = simulacionService.simular(dto);
+            return ResponseEntity.ok(resultado);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("❌ Error al simular el plan: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(500).body(Map.of("error", "Error inesperado al simular el plan"));
+        }
+    }
+}
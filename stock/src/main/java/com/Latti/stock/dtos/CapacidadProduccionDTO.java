@@ -0,0 +1,28 @@
+package com.Latti.stock.dtos;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Máxima cantidad producible de cada producto y ensamblable de cada insumo compuesto
+ * con el stock a la fecha indicada (null = stock actual)
+ */
+public record CapacidadProduccionDTO(
+        LocalDate fecha,
+        List<CapacidadItemDTO> productos,
+        List<CapacidadItemDTO> compuestos
+) {
+
+    /**
+     * maximoProducible es null si no tiene receta (no hay insumo que lo limite)
+     */
+    public record CapacidadItemDTO(
+            Long id,
+            String nombre,
+            Double maximoProducible,
+            Long insumoLimitanteId,
+            String insumoLimitanteNombre,
+            Double stockInsumoLimitante,
+            Double cantidadPorUnidadLimitante
+    ) {}
+}
@@ -6,5 +6,15 @@ import com.Latti.stock.modules.TipoMovimiento;
 import java.time.LocalDate;
 import java.util.List;
 
-public record CrearMovimientoProductoDTO(LocalDate fecha, String descripcion, TipoMovimiento tipoMovimiento, List<DetalleMovimientoProductoDTO> detalles) {
+/**
+ * descarte marca una SALIDA como pérdida (producto descartado). Es opcional: al crear, null equivale a
+ * false; al editar, null conserva la marca actual.
+ */
+public record CrearMovimientoProductoDTO(LocalDate fecha, String descripcion, TipoMovimiento tipoMovimiento,
+                                         List<DetalleMovimientoProductoDTO> detalles, Boolean descarte) {
+
+    public CrearMovimientoProductoDTO(LocalDate fecha, String descripcion, TipoMovimiento tipoMovimiento,
+                                      List<DetalleMovimientoProductoDTO> detalles) {
+        this(fecha, descripcion, tipoMovimiento, detalles, null);
+    }
 }
@@ -3,8 +3,17 @@ package com.Latti.stock.dtos;
 import java.time.LocalDate;
 import java.util.List;
 
+/**
+ * descarte marca la salida como pérdida (producto descartado); null equivale a false
+ */
 public record CrearVentaPorLotesDTO(
     LocalDate fecha,
     String descripcion,
-    List<VentaPorLoteDTO> ventasPorLotes
-) {} 
\ No newline at end of file
+    List<VentaPorLoteDTO> ventasPorLotes,
+    Boolean descarte
+) {
+
+    public CrearVentaPorLotesDTO(LocalDate fecha, String descripcion, List<VentaPorLoteDTO> ventasPorLotes) {
+        this(fecha, descripcion, ventasPorLotes, null);
+    }
+} 
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.Latti.stock.dtos;
+
+import com.Latti.stock.modules.TipoInsumo;
+import com.Latti.stock.modules.UnidadMedida;
+
+/**
+ * Fila plana del listado unificado de insumos: una por componente de receta
+ * (o una sola con componente null para los insumos sin receta).
+ */
+public record FilaInsumoUnificadoDTO(
+        Long id,
+        String nombre,
+        UnidadMedida unidadMedida,
+        TipoInsumo tipo,
+        double stockActual,
+        double stockMinimo,
+        double precioDeCompra,
+        double totalInvertido,
+        Long componenteId,
+        Long insumoBaseId,
+        String nombreInsumoBase,
+        Double cantidad,
+        UnidadMedida unidadMedidaBase
+) {}
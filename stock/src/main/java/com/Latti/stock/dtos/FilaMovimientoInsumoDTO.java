@@ -0,0 +1,24 @@
+package com.Latti.stock.dtos;
+
+import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.modules.UnidadMedida;
+
+import java.time.LocalDate;
+
+/**
+ * Fila plana movimiento + detalle obtenida por proyección JPQL.
+ * Los campos del detalle son null cuando el movimiento no tiene detalles.
+ */
+public record FilaMovimientoInsumoDTO(
+    Long movimientoId,
+    LocalDate fecha,
+    String descripcion,
+    TipoMovimiento tipoMovimiento,
+    Long insumoId,
+    String nombre,
+    Double cantidad,
+    UnidadMedida unidadMedida,
+    Double precioDeCompra,
+    Double precioTotal,
+    String ensambleId
+) {}
@@ -0,0 +1,23 @@
+package com.Latti.stock.dtos;
+
+import com.Latti.stock.modules.TipoMovimiento;
+
+import java.time.LocalDate;
+
+/**
+ * Fila plana movimiento + detalle obtenida por proyección JPQL.
+ * Los campos del detalle son null cuando el movimiento no tiene detalles.
+ */
+public record FilaMovimientoProductoDTO(
+    Long movimientoId,
+    LocalDate fecha,
+    String descripcion,
+    TipoMovimiento tipoMovimiento,
+    Long productoId,
+    String nombre,
+    Double cantidad,
+    Double precioInversion,
+    Double precioVenta,
+    LocalDate fechaVencimiento,
+    String lote
+) {}
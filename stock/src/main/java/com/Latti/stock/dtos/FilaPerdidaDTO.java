@@ -0,0 +1,18 @@
+package com.Latti.stock.dtos;
+
+import java.time.LocalDate;
+
+/**
+ * Fila plana de un detalle de descarte obtenida por proyección JPQL
+ */
+public record FilaPerdidaDTO(
+    Long movimientoId,
+    LocalDate fecha,
+    String descripcion,
+    Long productoId,
+    String nombreProducto,
+    String lote,
+    Double cantidad,
+    Double precioInversion,
+    LocalDate fechaVencimiento
+) {}
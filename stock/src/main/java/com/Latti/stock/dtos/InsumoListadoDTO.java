@@ -3,6 +3,8 @@ package com.Latti.stock.dtos;
 import com.Latti.stock.modules.UnidadMedida;
 import com.Latti.stock.modules.TipoInsumo;
 
+import java.time.LocalDate;
+
 public record InsumoListadoDTO(
     Long id,
     String nombre,
@@ -11,5 +13,9 @@ public record InsumoListadoDTO(
     double stockActual,
     double stockMinimo,
     double precioDeCompra,
-    double totalInvertido
+    double totalInvertido,
+    double cantidadComprada,
+    double costoPromedio,
+    Double ultimoPrecioCompra,
+    LocalDate fechaUltimaCompra
 ) {} 
\ No newline at end of file
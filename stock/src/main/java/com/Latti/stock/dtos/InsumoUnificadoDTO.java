@@ -11,6 +11,7 @@ public record InsumoUnificadoDTO(
     UnidadMedida unidadMedida,
     TipoInsumo tipo,
     double stockActual,
+    double stockMinimo,
     double precioDeCompra,
     double totalInvertido,
     List<InsumoCompuestoResponseDTO.ComponenteRecetaResponseDTO> receta // Solo para insumos compuestos, null para base
@@ -23,6 +24,7 @@ public record InsumoUnificadoDTO(
             base.unidadMedida(),
             base.tipo(),
             base.stockActual(),
+            base.stockMinimo(),
             base.precioDeCompra(),
             base.totalInvertido(),
             null
@@ -37,6 +39,7 @@ public record InsumoUnificadoDTO(
             compuesto.unidadMedida(),
             compuesto.tipo(),
             compuesto.stockActual(),
+            compuesto.stockMinimo(),
             compuesto.precioDeCompra(),
             0.0, // Los compuestos no tienen total invertido
             compuesto.receta()
@@ -0,0 +1,12 @@
+package com.Latti.stock.dtos;
+
+import java.util.List;
+
+/**
+ * Página de resultados con paginación por cursor.
+ * siguienteCursor es null cuando no hay más resultados.
+ */
+public record PaginaDTO<T>(
+    List<T> items,
+    String siguienteCursor
+) {}
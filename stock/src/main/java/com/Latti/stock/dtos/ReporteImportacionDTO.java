@@ -0,0 +1,11 @@
+package com.Latti.stock.dtos;
+
+import java.util.List;
+
+public record ReporteImportacionDTO(
+        int filasLeidas,
+        int filasImportadas,
+        int filasRechazadas,
+        int movimientosCreados,
+        List<ResultadoFilaImportacionDTO> filas
+) {}
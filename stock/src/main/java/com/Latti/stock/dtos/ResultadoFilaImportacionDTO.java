@@ -0,0 +1,19 @@
+package com.Latti.stock.dtos;
+
+/**
+ * Resultado de una fila del CSV importado. La fila 1 es la cabecera.
+ */
+public record ResultadoFilaImportacionDTO(
+        int fila,
+        boolean importada,
+        Long movimientoId,
+        String error
+) {
+    public static ResultadoFilaImportacionDTO importada(int fila, Long movimientoId) {
+        return new ResultadoFilaImportacionDTO(fila, true, movimientoId, null);
+    }
+
+    public static ResultadoFilaImportacionDTO rechazada(int fila, String error) {
+        return new ResultadoFilaImportacionDTO(fila, false, null, error);
+    }
+}
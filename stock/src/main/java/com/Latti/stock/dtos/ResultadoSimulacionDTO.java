@@ -0,0 +1,52 @@
+package com.Latti.stock.dtos;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de una simulación: qué pasos se pudieron aplicar, faltantes, costos e ingresos,
+ * y el stock resultante de los insumos y productos que el plan modificó
+ */
+public record ResultadoSimulacionDTO(
+        int pasosAplicados,
+        int pasosRechazados,
+        double costoTotal,
+        double ingresoTotal,
+        List<ResultadoPasoDTO> pasos,
+        List<FaltanteDTO> faltantes,
+        List<StockSimuladoDTO> insumos,
+        List<StockSimuladoDTO> productos
+) {
+
+    /**
+     * lotes: lote → cantidad consumida (ventas) o producida (producción)
+     */
+    public record ResultadoPasoDTO(
+            int paso,
+            SimulacionDTO.TipoPaso tipo,
+            boolean aplicado,
+            double costo,
+            double ingreso,
+            Map<String, Double> lotes,
+            String error
+    ) {}
+
+    /**
+     * recurso: INSUMO, PRODUCTO o LOTE
+     */
+    public record FaltanteDTO(
+            int paso,
+            String recurso,
+            Long id,
+            String nombre,
+            double necesario,
+            double disponible
+    ) {}
+
+    public record StockSimuladoDTO(
+            Long id,
+            String nombre,
+            double stockInicial,
+            double stockFinal
+    ) {}
+}
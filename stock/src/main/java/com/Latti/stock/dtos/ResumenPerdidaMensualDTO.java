@@ -0,0 +1,8 @@
+package com.Latti.stock.dtos;
+
+public record ResumenPerdidaMensualDTO(
+    Integer anio,
+    Integer mes,
+    Double cantidad,
+    Double valorPerdido
+) {}
@@ -0,0 +1,8 @@
+package com.Latti.stock.dtos;
+
+public record ResumenPerdidaProductoDTO(
+    Long productoId,
+    String nombreProducto,
+    Double cantidad,
+    Double valorPerdido
+) {}
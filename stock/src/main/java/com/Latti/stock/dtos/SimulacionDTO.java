@@ -0,0 +1,32 @@
+package com.Latti.stock.dtos;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Plan a simular sobre una copia en memoria del stock. Los pasos se aplican en orden.
+ */
+public record SimulacionDTO(
+        List<PasoSimulacionDTO> pasos
+) {
+
+    public enum TipoPaso {
+        PRODUCCION,
+        ENSAMBLE,
+        VENTA
+    }
+
+    /**
+     * id es el producto (PRODUCCION, VENTA) o el insumo compuesto (ENSAMBLE).
+     * lote y precioVenta aplican a VENTA (sin lote se asigna por FEFO); fechaVencimiento a PRODUCCION.
+     */
+    public record PasoSimulacionDTO(
+            TipoPaso tipo,
+            Long id,
+            double cantidad,
+            LocalDate fecha,
+            String lote,
+            Double precioVenta,
+            LocalDate fechaVencimiento
+    ) {}
+}
@@ -7,21 +7,21 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
-    @Autowired
-    private UserDetailsService userDetailsService;
-
     @Autowired
     private JwtUtilsService jwtUtilService;
 
@@ -30,18 +30,24 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             final String authorizationHeader = request.getHeader("Authorization");
-            String userName = null;
-            String jwt = null;
 
-            if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-                jwt = authorizationHeader.substring(7);
-                userName = jwtUtilService.extractUserName(jwt);
-            }
+            if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                String jwt = authorizationHeader.substring(7);
+
+                // ✅ NUEVO: la autenticación sale de los claims verificados, sin consultar el usuario en la base
+                JwtUtilsService.TokenVerificado token = jwtUtilService.verificar(jwt);
 
-            if (userName != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userName);
+                if (token.usuario() != null) {
+                    List<GrantedAuthority> authorities = token.roles().stream()
+                            .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                            .toList();
+                    UserDetails userDetails = User
+                            .withUsername(token.usuario())
+                            .password("")
+                            .authorities(authorities)
+                            .build();
 
-                if (!jwtUtilService.isTokenExpired(jwt)) {
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities()
                     );
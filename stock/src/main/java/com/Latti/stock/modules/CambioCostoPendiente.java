@@ -0,0 +1,34 @@
+package com.Latti.stock.modules;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Cola de propagación de costos: registra que el precio de un insumo cambió y que
+ * los precios de inversión que dependen de él deben recalcularse en segundo plano.
+ */
+@Entity
+@Table(name = "cambio_costo_pendiente")
+public class CambioCostoPendiente {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Sin clave foránea: el insumo puede eliminarse antes de que se procese el cambio
+    @Column(nullable = false)
+    private Long insumoId;
+
+    @Column(nullable = false)
+    private LocalDateTime fechaRegistro;
+
+    public CambioCostoPendiente() {}
+
+    public CambioCostoPendiente(Long insumoId) {
+        this.insumoId = insumoId;
+        this.fechaRegistro = LocalDateTime.now();
+    }
+
+    public Long getId() { return id; }
+    public Long getInsumoId() { return insumoId; }
+    public LocalDateTime getFechaRegistro() { return fechaRegistro; }
+}
@@ -4,15 +4,22 @@ import jakarta.persistence.*;
 import java.util.UUID;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_det_insumo_insumo_mov", columnList = "insumo_id, movimiento_id"),
+        @Index(name = "idx_det_insumo_ensamble", columnList = "ensamble_id")
+})
 public class DetalleMovimientoInsumo {
+    // ✅ NUEVO: Secuencia con optimizador pooled (de a 50) para permitir inserts en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalle_movimiento_insumo_gen")
+    @SequenceGenerator(name = "detalle_movimiento_insumo_gen", sequenceName = "detalle_movimiento_insumo_seq", allocationSize = 50)
     private Long id;
 
     private double cantidad;
     private double precioTotal;
 
     // Campo para rastrear si este movimiento es parte de un ensamble
+    @Column(name = "ensamble_id")
     private String ensambleId; // UUID del ensamble al que pertenece este movimiento
 
     @ManyToOne
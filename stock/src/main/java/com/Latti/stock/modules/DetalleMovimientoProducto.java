@@ -4,9 +4,15 @@ import jakarta.persistence.*;
 import java.time.LocalDate;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_det_producto_producto_mov", columnList = "producto_id, movimiento_id"),
+        @Index(name = "idx_det_producto_lote", columnList = "lote")
+})
 public class DetalleMovimientoProducto {
+    // ✅ NUEVO: Secuencia con optimizador pooled (de a 50) para permitir inserts en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalle_movimiento_producto_gen")
+    @SequenceGenerator(name = "detalle_movimiento_producto_gen", sequenceName = "detalle_movimiento_producto_seq", allocationSize = 50)
     private Long id;
 
     private double cantidad;
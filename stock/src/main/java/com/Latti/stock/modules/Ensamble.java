@@ -0,0 +1,91 @@
+package com.Latti.stock.modules;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ensamble de un insumo compuesto: la ENTRADA del compuesto y las SALIDAS que consumieron
+ * los componentes, unidas por clave foránea. Los ensambles nuevos tienen una sola salida;
+ * los anteriores pueden tener una por componente. El código es el UUID que también llevan
+ * los detalles (ensamble_id) para listados y exportaciones.
+ */
+@Entity
+@Table(name = "ensamble",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_ensamble_codigo", columnNames = "codigo"),
+                @UniqueConstraint(name = "uk_ensamble_movimiento_entrada", columnNames = "movimiento_entrada_id")
+        },
+        indexes = @Index(name = "idx_ensamble_insumo_compuesto", columnList = "insumo_compuesto_id"))
+public class Ensamble {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ensamble_gen")
+    @SequenceGenerator(name = "ensamble_gen", sequenceName = "ensamble_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 36)
+    private String codigo;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "insumo_compuesto_id", nullable = false)
+    private Insumo insumoCompuesto;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "movimiento_entrada_id", nullable = false)
+    private MovimientoInsumoLote movimientoEntrada;
+
+    // Puede estar vacía en ensambles antiguos de un compuesto sin componentes
+    @ManyToMany(fetch = FetchType.LAZY)
+    @JoinTable(name = "ensamble_movimiento_salida",
+            joinColumns = @JoinColumn(name = "ensamble_id"),
+            inverseJoinColumns = @JoinColumn(name = "movimiento_id"),
+            uniqueConstraints = @UniqueConstraint(name = "uk_ensamble_salida_movimiento", columnNames = "movimiento_id"))
+    @OrderBy("id")
+    private List<MovimientoInsumoLote> movimientosSalida = new ArrayList<>();
+
+    private LocalDate fecha;
+
+    // Unidades del compuesto ensambladas
+    private double cantidad;
+
+    // Cantidad de componentes consumidos (detalles de la salida)
+    private int cantidadComponentes;
+
+    // Costo total de los componentes, igual al precioTotal de la entrada
+    private double costoTotal;
+
+    public Ensamble() {}
+
+    public Ensamble(String codigo, Insumo insumoCompuesto, MovimientoInsumoLote movimientoEntrada,
+                    Collection<MovimientoInsumoLote> movimientosSalida, LocalDate fecha, double cantidad,
+                    int cantidadComponentes, double costoTotal) {
+        this.codigo = codigo;
+        this.insumoCompuesto = insumoCompuesto;
+        this.movimientoEntrada = movimientoEntrada;
+        this.movimientosSalida.addAll(movimientosSalida);
+        this.fecha = fecha;
+        this.cantidad = cantidad;
+        this.cantidadComponentes = cantidadComponentes;
+        this.costoTotal = costoTotal;
+    }
+
+    public Long getId() { return id; }
+    public String getCodigo() { return codigo; }
+    public Insumo getInsumoCompuesto() { return insumoCompuesto; }
+    public MovimientoInsumoLote getMovimientoEntrada() { return movimientoEntrada; }
+    public List<MovimientoInsumoLote> getMovimientosSalida() { return movimientosSalida; }
+    public LocalDate getFecha() { return fecha; }
+    public void setFecha(LocalDate fecha) { this.fecha = fecha; }
+    public double getCantidad() { return cantidad; }
+    public void setCantidad(double cantidad) { this.cantidad = cantidad; }
+    public int getCantidadComponentes() { return cantidadComponentes; }
+    public void setCantidadComponentes(int cantidadComponentes) { this.cantidadComponentes = cantidadComponentes; }
+    public double getCostoTotal() { return costoTotal; }
+    public void setCostoTotal(double costoTotal) { this.costoTotal = costoTotal; }
+
+    public boolean esEntrada(Long movimientoId) {
+        return movimientoEntrada.getId().equals(movimientoId);
+    }
+}
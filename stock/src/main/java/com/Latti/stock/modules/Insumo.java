@@ -1,6 +1,7 @@
 package com.Latti.stock.modules;
 
 import jakarta.persistence.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,6 +11,11 @@ public class Insumo {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // ✅ NUEVO: Control de concurrencia optimista para las modificaciones de stock
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version = 0L;
+
     private String nombre;
     
     // ✅ CAMBIADO: Usar ENUM en lugar de String
@@ -20,12 +26,29 @@ public class Insumo {
     @Enumerated(EnumType.STRING)
     private TipoInsumo tipo = TipoInsumo.BASE;
     
+    // ✅ NUEVO: Solo se modifica con UPDATE atómicos (StockService); los flush de la entidad no lo pisan
+    @Column(updatable = false)
     private double stockActual = 0;
     private double precioDeCompra = 0;
     
     // ✅ NUEVO: Stock mínimo para alertas de stock bajo
     private double stockMinimo = 0;
 
+    // ✅ NUEVO: Agregados de compras (movimientos de ENTRADA) mantenidos incrementalmente por ComprasInsumoService.
+    // Igual que stockActual, solo se escriben con UPDATE atómicos. El DEFAULT 0 lo define la migración.
+    @Column(updatable = false)
+    private double totalInvertido = 0;
+
+    @Column(updatable = false)
+    private double cantidadComprada = 0;
+
+    // Precio por unidad de la compra más reciente
+    @Column(updatable = false)
+    private Double ultimoPrecioCompra;
+
+    @Column(updatable = false)
+    private LocalDate fechaUltimaCompra;
+
     @OneToMany(mappedBy = "insumo")
     private List<InsumoReceta> detalles = new ArrayList<>();
 
@@ -55,6 +78,7 @@ public class Insumo {
     }
 
     public Long getId() { return id; }
+    public Long getVersion() { return version; }
     public String getNombre() { return nombre; }
     public void setNombre(String nombre) { this.nombre = nombre; }
     
@@ -88,6 +112,20 @@ public class Insumo {
         this.stockMinimo = stockMinimo;
     }
 
+    public double getTotalInvertido() { return totalInvertido; }
+    public void setTotalInvertido(double totalInvertido) { this.totalInvertido = totalInvertido; }
+    public double getCantidadComprada() { return cantidadComprada; }
+    public void setCantidadComprada(double cantidadComprada) { this.cantidadComprada = cantidadComprada; }
+    public Double getUltimoPrecioCompra() { return ultimoPrecioCompra; }
+    public void setUltimoPrecioCompra(Double ultimoPrecioCompra) { this.ultimoPrecioCompra = ultimoPrecioCompra; }
+    public LocalDate getFechaUltimaCompra() { return fechaUltimaCompra; }
+    public void setFechaUltimaCompra(LocalDate fechaUltimaCompra) { this.fechaUltimaCompra = fechaUltimaCompra; }
+
+    // ✅ NUEVO: Costo promedio ponderado por cantidad de todas las compras
+    public double getCostoPromedio() {
+        return cantidadComprada > 0 ? totalInvertido / cantidadComprada : 0.0;
+    }
+
     // ✅ NUEVO: Método para verificar si el stock está bajo
     public boolean tieneStockBajo() {
         return stockActual <= stockMinimo;
@@ -0,0 +1,60 @@
+package com.Latti.stock.modules;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Saldo de un lote de producto: cantidad producida, cantidad vendida (o descartada)
+ * y sus fechas. Se mantiene desde los movimientos de producto para consultar el
+ * stock de un lote sin recorrer todos los movimientos del producto.
+ */
+@Entity
+@Table(name = "lote_producto",
+        uniqueConstraints = @UniqueConstraint(name = "uk_lote_producto_codigo", columnNames = {"producto_id", "codigo"}),
+        indexes = @Index(name = "idx_lote_producto_vencimiento", columnList = "fecha_vencimiento, producto_id"))
+public class LoteProducto {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String codigo;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "producto_id", nullable = false)
+    private Producto producto;
+
+    private double cantidadProducida = 0;
+    private double cantidadVendida = 0;
+
+    @Column(name = "fecha_vencimiento")
+    private LocalDate fechaVencimiento;
+    private LocalDate fechaProduccion;
+
+    public LoteProducto() {}
+
+    public LoteProducto(String codigo, Producto producto, LocalDate fechaProduccion, LocalDate fechaVencimiento) {
+        this.codigo = codigo;
+        this.producto = producto;
+        this.fechaProduccion = fechaProduccion;
+        this.fechaVencimiento = fechaVencimiento;
+    }
+
+    public Long getId() { return id; }
+    public String getCodigo() { return codigo; }
+    public void setCodigo(String codigo) { this.codigo = codigo; }
+    public Producto getProducto() { return producto; }
+    public void setProducto(Producto producto) { this.producto = producto; }
+    public double getCantidadProducida() { return cantidadProducida; }
+    public void setCantidadProducida(double cantidadProducida) { this.cantidadProducida = cantidadProducida; }
+    public double getCantidadVendida() { return cantidadVendida; }
+    public void setCantidadVendida(double cantidadVendida) { this.cantidadVendida = cantidadVendida; }
+    public LocalDate getFechaVencimiento() { return fechaVencimiento; }
+    public void setFechaVencimiento(LocalDate fechaVencimiento) { this.fechaVencimiento = fechaVencimiento; }
+    public LocalDate getFechaProduccion() { return fechaProduccion; }
+    public void setFechaProduccion(LocalDate fechaProduccion) { this.fechaProduccion = fechaProduccion; }
+
+    public double getCantidadDisponible() {
+        return cantidadProducida - cantidadVendida;
+    }
+}
@@ -6,9 +6,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_mov_insumo_fecha_id", columnList = "fecha, id"))
 public class MovimientoInsumoLote {
+    // ✅ NUEVO: Secuencia con optimizador pooled (de a 50) para permitir inserts en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimiento_insumo_lote_gen")
+    @SequenceGenerator(name = "movimiento_insumo_lote_gen", sequenceName = "movimiento_insumo_lote_seq", allocationSize = 50)
     private Long id;
 
     private LocalDate fecha;
@@ -6,9 +6,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_mov_producto_fecha_id", columnList = "fecha, id"),
+        @Index(name = "idx_mov_producto_descarte_fecha", columnList = "descarte, fecha")
+})
 public class MovimientoProductoLote {
+    // ✅ NUEVO: Secuencia con optimizador pooled (de a 50) para permitir inserts en batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimiento_producto_lote_gen")
+    @SequenceGenerator(name = "movimiento_producto_lote_gen", sequenceName = "movimiento_producto_lote_seq", allocationSize = 50)
     private Long id;
 
     private LocalDate fecha;
@@ -17,15 +23,24 @@ public class MovimientoProductoLote {
     @Enumerated(EnumType.STRING)
     private TipoMovimiento tipoMovimiento;
 
+    // ✅ NUEVO: Marca de descarte/pérdida indicada por quien registra la salida; se consulta por índice
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean descarte = false;
+
     @OneToMany(mappedBy = "movimiento", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<DetalleMovimientoProducto> detalles = new ArrayList<>();
 
     public MovimientoProductoLote() {}
 
     public MovimientoProductoLote(LocalDate fecha, String descripcion, TipoMovimiento tipoMovimiento) {
+        this(fecha, descripcion, tipoMovimiento, false);
+    }
+
+    public MovimientoProductoLote(LocalDate fecha, String descripcion, TipoMovimiento tipoMovimiento, boolean descarte) {
         this.fecha = fecha;
         this.descripcion = descripcion;
         this.tipoMovimiento = tipoMovimiento;
+        setDescarte(descarte);
     }
 
     public Long getId() { return id; }
@@ -33,6 +48,17 @@ public class MovimientoProductoLote {
     public void setFecha(LocalDate fecha) { this.fecha = fecha; }
     public String getDescripcion() { return descripcion; }
     public void setDescripcion(String descripcion) { this.descripcion = descripcion; }
+    public boolean isDescarte() { return descarte; }
+
+    /**
+     * Solo una SALIDA puede ser un descarte
+     */
+    public void setDescarte(boolean descarte) {
+        if (descarte && tipoMovimiento != TipoMovimiento.SALIDA) {
+            throw new IllegalArgumentException("Solo un movimiento de SALIDA puede marcarse como descarte");
+        }
+        this.descarte = descarte;
+    }
     public List<DetalleMovimientoProducto> getDetalles() { return detalles; }
     public void setDetalles(List<DetalleMovimientoProducto> detalles) { this.detalles = detalles; }
 
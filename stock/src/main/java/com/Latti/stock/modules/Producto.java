@@ -10,8 +10,15 @@ public class Producto {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // ✅ NUEVO: Control de concurrencia optimista para las modificaciones de stock
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version = 0L;
+
     private String nombre;
 
+    // ✅ NUEVO: Solo se modifica con UPDATE atómicos (StockService); los flush de la entidad no lo pisan
+    @Column(updatable = false)
     private double stockActual = 0;
     
     // ✅ NUEVO: Stock mínimo para alertas de stock bajo
@@ -34,6 +41,7 @@ public class Producto {
     }
 
     public Long getId() { return id; }
+    public Long getVersion() { return version; }
     public String getNombre() { return nombre; }
     public void setNombre(String nombre) { this.nombre = nombre; }
 
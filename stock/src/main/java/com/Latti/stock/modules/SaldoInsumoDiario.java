@@ -0,0 +1,53 @@
+package com.Latti.stock.modules;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Saldo diario de un insumo: entradas y salidas del día y el saldo acumulado al cierre.
+ * Se mantiene incrementalmente desde los movimientos de insumo, de modo que el stock
+ * de un insumo en una fecha se obtiene con una búsqueda indexada en lugar de recorrer
+ * todo su historial.
+ */
+@Entity
+@Table(name = "saldo_insumo_diario",
+        uniqueConstraints = @UniqueConstraint(name = "uk_saldo_insumo_fecha", columnNames = {"insumo_id", "fecha"}),
+        indexes = @Index(name = "idx_saldo_insumo_fecha", columnList = "insumo_id, fecha"))
+public class SaldoInsumoDiario {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "insumo_id", nullable = false)
+    private Insumo insumo;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    private double entradas = 0;
+    private double salidas = 0;
+
+    // Saldo acumulado al cierre del día (incluye todos los días anteriores)
+    private double saldo = 0;
+
+    public SaldoInsumoDiario() {}
+
+    public SaldoInsumoDiario(Insumo insumo, LocalDate fecha, double saldoAnterior) {
+        this.insumo = insumo;
+        this.fecha = fecha;
+        this.saldo = saldoAnterior;
+    }
+
+    public Long getId() { return id; }
+    public Insumo getInsumo() { return insumo; }
+    public void setInsumo(Insumo insumo) { this.insumo = insumo; }
+    public LocalDate getFecha() { return fecha; }
+    public void setFecha(LocalDate fecha) { this.fecha = fecha; }
+    public double getEntradas() { return entradas; }
+    public void setEntradas(double entradas) { this.entradas = entradas; }
+    public double getSalidas() { return salidas; }
+    public void setSalidas(double salidas) { this.salidas = salidas; }
+    public double getSaldo() { return saldo; }
+    public void setSaldo(double saldo) { this.saldo = saldo; }
+}
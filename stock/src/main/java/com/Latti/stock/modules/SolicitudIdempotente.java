@@ -0,0 +1,54 @@
+package com.Latti.stock.modules;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Clave Idempotency-Key ya recibida. La restricción única sobre la clave hace que, entre todas
+ * las instancias del backend, una sola solicitud la reclame y ejecute la operación.
+ * Mientras el resultado es null, la primera solicitud todavía está en curso; si no lo registra
+ * antes de reclamadaHasta se la da por abandonada y otra solicitud puede volver a reclamar la clave.
+ */
+@Entity
+@Table(name = "solicitud_idempotente",
+        uniqueConstraints = @UniqueConstraint(name = "uk_solicitud_idempotente_clave", columnNames = "clave"),
+        indexes = @Index(name = "idx_solicitud_idempotente_creada", columnList = "creada"))
+public class SolicitudIdempotente {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Operación y valor del header, "operacion:clave"
+    @Column(nullable = false, length = 320)
+    private String clave;
+
+    // SHA-256 del cuerpo serializado, en hexadecimal
+    @Column(nullable = false, length = 64)
+    private String huella;
+
+    // Id creado por la primera solicitud
+    private Long resultado;
+
+    @Column(nullable = false)
+    private LocalDateTime creada;
+
+    // Fin de la concesión de la solicitud que reclamó la clave, solo cuenta mientras resultado es null
+    @Column(name = "reclamada_hasta", nullable = false)
+    private LocalDateTime reclamadaHasta;
+
+    public SolicitudIdempotente() {}
+
+    public SolicitudIdempotente(String clave, String huella, long concesionMs) {
+        this.clave = clave;
+        this.huella = huella;
+        this.creada = LocalDateTime.now();
+        this.reclamadaHasta = creada.plusNanos(concesionMs * 1_000_000L);
+    }
+
+    public Long getId() { return id; }
+    public String getClave() { return clave; }
+    public String getHuella() { return huella; }
+    public Long getResultado() { return resultado; }
+    public LocalDateTime getCreada() { return creada; }
+    public LocalDateTime getReclamadaHasta() { return reclamadaHasta; }
+}
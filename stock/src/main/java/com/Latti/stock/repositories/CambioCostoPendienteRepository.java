@@ -0,0 +1,41 @@
+package com.Latti.stock.repositories;
+
+import com.Latti.stock.modules.CambioCostoPendiente;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CambioCostoPendienteRepository extends JpaRepository<CambioCostoPendiente, Long> {
+
+    /**
+     * Reclama cambios pendientes en orden de llegada (paginado para procesar por lotes).
+     * Quedan bloqueados hasta el fin de la transacción y las filas que ya bloqueó otra
+     * instancia se saltean (FOR UPDATE SKIP LOCKED; lock.timeout -2 es SKIP LOCKED en Hibernate).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT c FROM CambioCostoPendiente c ORDER BY c.id")
+    List<CambioCostoPendiente> reclamarPendientes(Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM CambioCostoPendiente c WHERE c.id IN :ids")
+    int eliminarPorIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Fecha del cambio pendiente más antiguo (null si la cola está vacía)
+     */
+    @Query("SELECT MIN(c.fechaRegistro) FROM CambioCostoPendiente c")
+    LocalDateTime findFechaMasAntigua();
+}
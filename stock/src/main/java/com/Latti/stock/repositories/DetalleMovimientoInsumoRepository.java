@@ -3,6 +3,7 @@ package com.Latti.stock.repositories;
 import com.Latti.stock.modules.DetalleMovimientoInsumo;
 import com.Latti.stock.modules.Insumo;
 import com.Latti.stock.modules.TipoMovimiento;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -14,12 +15,16 @@ import java.util.List;
 @Repository
 public interface DetalleMovimientoInsumoRepository extends JpaRepository<DetalleMovimientoInsumo, Long> {
     List<DetalleMovimientoInsumo> findByInsumoAndMovimiento_TipoMovimiento(Insumo insumo, TipoMovimiento tipoMovimiento);
+
+    /**
+     * Compras (ENTRADAS) de un insumo de la más reciente a la más antigua, con su movimiento
+     */
+    @Query("SELECT d FROM DetalleMovimientoInsumo d JOIN FETCH d.movimiento m " +
+           "WHERE d.insumo.id = :insumoId AND m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA " +
+           "ORDER BY m.fecha DESC, m.id DESC, d.id DESC")
+    List<DetalleMovimientoInsumo> findUltimasCompras(@Param("insumoId") Long insumoId, Pageable pageable);
     
     @Modifying
     @Query("DELETE FROM DetalleMovimientoInsumo d WHERE d.movimiento.id = :movimientoId")
     void deleteByMovimientoId(@Param("movimientoId") Long movimientoId);
-    
-    // ✅ NUEVO: Encontrar todos los movimientos relacionados por ensambleId
-    @Query("SELECT d FROM DetalleMovimientoInsumo d WHERE d.ensambleId = :ensambleId")
-    List<DetalleMovimientoInsumo> findByEnsambleId(@Param("ensambleId") String ensambleId);
 }
@@ -8,10 +8,17 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+
 @Repository
 public interface DetalleMovimientoProductoRepository extends JpaRepository<DetalleMovimientoProducto, Long> {
     // ✅ NUEVO: Método para eliminar detalles por movimientoId
     @Modifying
     @Query("DELETE FROM DetalleMovimientoProducto d WHERE d.movimiento.id = :movimientoId")
     void deleteByMovimientoId(@Param("movimientoId") Long movimientoId);
+
+    // ✅ NUEVO: Fecha de la primera producción (ENTRADA) de un producto
+    @Query("SELECT MIN(m.fecha) FROM DetalleMovimientoProducto d JOIN d.movimiento m " +
+           "WHERE d.producto.id = :productoId AND m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA")
+    LocalDate findFechaPrimeraProduccion(@Param("productoId") Long productoId);
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.Latti.stock.repositories;
+
+import com.Latti.stock.modules.Ensamble;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface EnsambleRepository extends JpaRepository<Ensamble, Long> {
+
+    /**
+     * Ensamble al que pertenece un movimiento, sea una salida de componentes o la entrada del compuesto.
+     * La entrada y el movimiento de la tabla de salidas tienen índice único.
+     */
+    @Query("SELECT DISTINCT e FROM Ensamble e LEFT JOIN e.movimientosSalida s " +
+           "WHERE e.movimientoEntrada.id = :movimientoId OR s.id = :movimientoId")
+    Optional<Ensamble> findByMovimientoId(@Param("movimientoId") Long movimientoId);
+
+    @Query("SELECT COUNT(e) > 0 FROM Ensamble e LEFT JOIN e.movimientosSalida s " +
+           "WHERE e.movimientoEntrada.id = :movimientoId OR s.id = :movimientoId")
+    boolean existsByMovimientoId(@Param("movimientoId") Long movimientoId);
+
+    /**
+     * Si el insumo fue consumido como componente en algún ensamble desde la fecha indicada (inclusive)
+     */
+    @Query("SELECT COUNT(d) > 0 FROM Ensamble e JOIN e.movimientosSalida m JOIN m.detalles d " +
+           "WHERE d.insumo.id = :insumoId AND m.fecha >= :desde")
+    boolean existsConsumoDeInsumoDesde(@Param("insumoId") Long insumoId, @Param("desde") LocalDate desde);
+
+    /**
+     * Borrado derivado: carga los ensambles y los elimina uno a uno para limpiar también sus salidas
+     */
+    void deleteByInsumoCompuestoId(Long insumoCompuestoId);
+}
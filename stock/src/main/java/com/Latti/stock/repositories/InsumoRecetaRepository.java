@@ -1,7 +1,60 @@
 package com.Latti.stock.repositories;
 
 import com.Latti.stock.modules.InsumoReceta;
+import com.Latti.stock.modules.Producto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 
 public interface InsumoRecetaRepository extends JpaRepository<InsumoReceta, Long> {
+
+    /**
+     * Verificar si un insumo forma parte de alguna receta de producto.
+     * Compara la FK directamente: la consulta derivada hace LEFT JOIN con insumo y filtra por
+     * la tabla unida, lo que impide usar idx_insumo_receta_insumo.
+     */
+    @Query("SELECT COUNT(ir) > 0 FROM InsumoReceta ir WHERE ir.insumo.id = :insumoId")
+    boolean existsByInsumoId(@Param("insumoId") Long insumoId);
+
+    /**
+     * Índice inverso insumo → recetas → productos. Devuelve cada producto una sola vez,
+     * con su receta e insumos ya cargados para recalcular el precio de inversión.
+     */
+    @Query("SELECT DISTINCT p FROM Producto p JOIN FETCH p.receta r JOIN FETCH r.detalles d JOIN FETCH d.insumo " +
+           "WHERE r.id IN (SELECT ir.receta.id FROM InsumoReceta ir WHERE ir.insumo.id IN :insumoIds)")
+    List<Producto> findProductosQueUsanInsumos(@Param("insumoIds") Collection<Long> insumoIds);
+
+    /**
+     * Verificar si hay producción (ENTRADA) de algún producto cuya receta usa el insumo
+     */
+    @Query("SELECT COUNT(dm) > 0 FROM InsumoReceta ir, Producto p JOIN p.movimientos dm JOIN dm.movimiento m " +
+           "WHERE p.receta = ir.receta AND ir.insumo.id = :insumoId " +
+           "AND m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA")
+    boolean existsProduccionConInsumo(@Param("insumoId") Long insumoId);
+
+    /**
+     * Verificar si hay producción con el insumo en la fecha indicada o después
+     */
+    @Query("SELECT COUNT(dm) > 0 FROM InsumoReceta ir, Producto p JOIN p.movimientos dm JOIN dm.movimiento m " +
+           "WHERE p.receta = ir.receta AND ir.insumo.id = :insumoId " +
+           "AND m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA AND m.fecha >= :fecha")
+    boolean existsProduccionConInsumoDesde(@Param("insumoId") Long insumoId, @Param("fecha") LocalDate fecha);
+
+    /**
+     * Verificar si hay producción con el insumo estrictamente antes de la fecha indicada
+     */
+    @Query("SELECT COUNT(dm) > 0 FROM InsumoReceta ir, Producto p JOIN p.movimientos dm JOIN dm.movimiento m " +
+           "WHERE p.receta = ir.receta AND ir.insumo.id = :insumoId " +
+           "AND m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA AND m.fecha < :fecha")
+    boolean existsProduccionConInsumoAntesDe(@Param("insumoId") Long insumoId, @Param("fecha") LocalDate fecha);
+
+    /**
+     * Todas las recetas de producto en forma plana. Cada fila: [productoId, insumoId, cantidad por unidad]
+     */
+    @Query("SELECT p.id, ir.insumo.id, ir.cantidad FROM Producto p JOIN p.receta r JOIN r.detalles ir")
+    List<Object[]> findCantidadesPorProducto();
 }
@@ -1,10 +1,15 @@
 package com.Latti.stock.repositories;
 
+import com.Latti.stock.dtos.FilaInsumoUnificadoDTO;
 import com.Latti.stock.modules.Insumo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.util.List;
+
 public interface InsumoRepository extends JpaRepository<Insumo, Long> {
     boolean existsByNombreIgnoreCase(String nombre);
     
@@ -15,4 +20,102 @@ public interface InsumoRepository extends JpaRepository<Insumo, Long> {
 
     @Query("SELECT COUNT(m) > 0 FROM Insumo i JOIN i.movimientos m WHERE i.id = :insumoId")
     boolean existsInMovimientos(@Param("insumoId") Long insumoId);
+
+    /**
+     * Suma un delta (positivo o negativo) al stock en una sola sentencia, sin leer la entidad
+     */
+    @Modifying
+    @Query("UPDATE Insumo i SET i.stockActual = i.stockActual + :delta WHERE i.id = :insumoId")
+    int sumarStock(@Param("insumoId") Long insumoId, @Param("delta") double delta);
+
+    /**
+     * Descuenta stock solo si alcanza. Devuelve 0 si el insumo no existe o el stock es insuficiente.
+     */
+    @Modifying
+    @Query("UPDATE Insumo i SET i.stockActual = i.stockActual - :cantidad " +
+           "WHERE i.id = :insumoId AND i.stockActual - :cantidad >= :minimo")
+    int descontarStock(@Param("insumoId") Long insumoId,
+                       @Param("cantidad") double cantidad,
+                       @Param("minimo") double minimo);
+
+    /**
+     * Descuenta en una sola sentencia lo que consumen los detalles de un movimiento ya guardado,
+     * solo en los insumos a los que les alcanza el stock. Devuelve la cantidad de insumos descontados:
+     * si es menor que la cantidad de insumos del movimiento, a alguno no le alcanzó.
+     */
+    @Modifying
+    @Query(value = "UPDATE insumo SET stock_actual = stock_actual - " + CONSUMO_DE_MOVIMIENTO + " " +
+           "WHERE id IN (SELECT d.insumo_id FROM detalle_movimiento_insumo d WHERE d.movimiento_id = :movimientoId) " +
+           "AND stock_actual - " + CONSUMO_DE_MOVIMIENTO + " >= :minimo",
+           nativeQuery = true)
+    int descontarStockDeMovimiento(@Param("movimientoId") Long movimientoId,
+                                   @Param("minimo") double minimo);
+
+    // Cantidad total del insumo de la fila en los detalles del movimiento
+    String CONSUMO_DE_MOVIMIENTO = "(SELECT SUM(d.cantidad) FROM detalle_movimiento_insumo d " +
+            "WHERE d.movimiento_id = :movimientoId AND d.insumo_id = insumo.id)";
+
+    /**
+     * Acumula una compra (o la revierte con valores negativos) en los totales del insumo
+     */
+    @Modifying
+    @Query("UPDATE Insumo i SET i.totalInvertido = i.totalInvertido + :precioTotal, " +
+           "i.cantidadComprada = i.cantidadComprada + :cantidad WHERE i.id = :insumoId")
+    int acumularCompra(@Param("insumoId") Long insumoId,
+                       @Param("cantidad") double cantidad,
+                       @Param("precioTotal") double precioTotal);
+
+    /**
+     * Registra la compra como última solo si no hay otra con fecha posterior
+     */
+    @Modifying
+    @Query("UPDATE Insumo i SET i.ultimoPrecioCompra = :precioUnidad, i.fechaUltimaCompra = :fecha " +
+           "WHERE i.id = :insumoId AND (i.fechaUltimaCompra IS NULL OR i.fechaUltimaCompra <= :fecha)")
+    int registrarUltimaCompraSiPosterior(@Param("insumoId") Long insumoId,
+                                         @Param("fecha") LocalDate fecha,
+                                         @Param("precioUnidad") double precioUnidad);
+
+    @Modifying
+    @Query("UPDATE Insumo i SET i.ultimoPrecioCompra = :precioUnidad, i.fechaUltimaCompra = :fecha WHERE i.id = :insumoId")
+    int establecerUltimaCompra(@Param("insumoId") Long insumoId,
+                               @Param("fecha") LocalDate fecha,
+                               @Param("precioUnidad") Double precioUnidad);
+
+    /**
+     * Recalcula los totales de compras de todos los insumos a partir del historial de ENTRADAS
+     */
+    @Modifying
+    @Query("UPDATE Insumo i SET " +
+           "i.totalInvertido = COALESCE((SELECT SUM(d.precioTotal) FROM DetalleMovimientoInsumo d JOIN d.movimiento m " +
+           "  WHERE d.insumo = i AND m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA), 0.0), " +
+           "i.cantidadComprada = COALESCE((SELECT SUM(d.cantidad) FROM DetalleMovimientoInsumo d JOIN d.movimiento m " +
+           "  WHERE d.insumo = i AND m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA), 0.0)")
+    int reconstruirTotalesCompras();
+
+    /**
+     * Insumos con compras registradas pero sin agregados (historial previo a las columnas)
+     */
+    @Query("SELECT i.id FROM Insumo i WHERE i.fechaUltimaCompra IS NULL AND EXISTS (" +
+           "SELECT d.id FROM DetalleMovimientoInsumo d JOIN d.movimiento m " +
+           "WHERE d.insumo = i AND m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA)")
+    List<Long> findIdsSinAgregadosCompras();
+
+    /**
+     * Resumen liviano para validar importaciones, calcular capacidad y simular en memoria.
+     * Cada fila: [id, nombre, stockActual, precioDeCompra], ordenadas por id.
+     */
+    @Query("SELECT i.id, i.nombre, i.stockActual, i.precioDeCompra FROM Insumo i ORDER BY i.id")
+    List<Object[]> findResumenesStock();
+
+    /**
+     * Listado unificado en una sola consulta: datos del insumo (con el total invertido ya agregado)
+     * y componentes de receta de los compuestos.
+     * Base primero y después compuestos, como espera el frontend.
+     */
+    @Query("SELECT new com.Latti.stock.dtos.FilaInsumoUnificadoDTO(i.id, i.nombre, i.unidadMedida, i.tipo, " +
+           "i.stockActual, i.stockMinimo, i.precioDeCompra, i.totalInvertido, " +
+           "r.id, b.id, b.nombre, r.cantidad, b.unidadMedida) " +
+           "FROM Insumo i LEFT JOIN i.receta r LEFT JOIN r.insumoBase b " +
+           "ORDER BY i.tipo, i.id, r.id")
+    List<FilaInsumoUnificadoDTO> findFilasUnificadas();
 }
@@ -0,0 +1,135 @@
+package com.Latti.stock.repositories;
+
+import com.Latti.stock.modules.LoteProducto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LoteProductoRepository extends JpaRepository<LoteProducto, Long> {
+
+    Optional<LoteProducto> findByProductoIdAndCodigo(Long productoId, String codigo);
+
+    boolean existsByProductoIdAndCodigo(Long productoId, String codigo);
+
+    /**
+     * Suma producción a un lote existente en una sola sentencia. La fecha de producción queda en la
+     * más antigua y el vencimiento se completa solo si faltaba. Devuelve 0 si el lote no existe.
+     */
+    @Modifying
+    @Query("UPDATE LoteProducto l SET l.cantidadProducida = l.cantidadProducida + :cantidad, " +
+           "l.fechaProduccion = CASE WHEN l.fechaProduccion IS NULL OR l.fechaProduccion > :fechaProduccion " +
+           "THEN :fechaProduccion ELSE l.fechaProduccion END, " +
+           "l.fechaVencimiento = COALESCE(l.fechaVencimiento, :fechaVencimiento) " +
+           "WHERE l.producto.id = :productoId AND l.codigo = :codigo")
+    int sumarProduccion(@Param("productoId") Long productoId,
+                        @Param("codigo") String codigo,
+                        @Param("cantidad") double cantidad,
+                        @Param("fechaProduccion") LocalDate fechaProduccion,
+                        @Param("fechaVencimiento") LocalDate fechaVencimiento);
+
+    /**
+     * Suma un delta (positivo o negativo) a la producción del lote, sin leer la entidad
+     */
+    @Modifying
+    @Query("UPDATE LoteProducto l SET l.cantidadProducida = l.cantidadProducida + :delta " +
+           "WHERE l.producto.id = :productoId AND l.codigo = :codigo")
+    int sumarProducida(@Param("productoId") Long productoId,
+                       @Param("codigo") String codigo,
+                       @Param("delta") double delta);
+
+    /**
+     * Suma un delta (positivo o negativo) a lo vendido del lote, sin leer la entidad
+     */
+    @Modifying
+    @Query("UPDATE LoteProducto l SET l.cantidadVendida = l.cantidadVendida + :delta " +
+           "WHERE l.producto.id = :productoId AND l.codigo = :codigo")
+    int sumarVendida(@Param("productoId") Long productoId,
+                     @Param("codigo") String codigo,
+                     @Param("delta") double delta);
+
+    /**
+     * Registra una venta solo si el lote tiene unidades suficientes.
+     * Devuelve 0 si el lote no existe o no alcanza.
+     */
+    @Modifying
+    @Query("UPDATE LoteProducto l SET l.cantidadVendida = l.cantidadVendida + :cantidad " +
+           "WHERE l.producto.id = :productoId AND l.codigo = :codigo " +
+           "AND l.cantidadProducida - l.cantidadVendida - :cantidad >= :minimo")
+    int descontarDisponible(@Param("productoId") Long productoId,
+                            @Param("codigo") String codigo,
+                            @Param("cantidad") double cantidad,
+                            @Param("minimo") double minimo);
+
+    /**
+     * Elimina el lote si quedó sin producción ni ventas
+     */
+    @Modifying
+    @Query("DELETE FROM LoteProducto l WHERE l.producto.id = :productoId AND l.codigo = :codigo " +
+           "AND ABS(l.cantidadProducida) < :tolerancia AND ABS(l.cantidadVendida) < :tolerancia")
+    int eliminarSiVacio(@Param("productoId") Long productoId,
+                        @Param("codigo") String codigo,
+                        @Param("tolerancia") double tolerancia);
+
+    /**
+     * Lotes de un producto que todavía tienen unidades disponibles, ordenados por vencimiento
+     */
+    @Query("SELECT l FROM LoteProducto l WHERE l.producto.id = :productoId " +
+           "AND l.cantidadProducida - l.cantidadVendida > 0 ORDER BY l.fechaVencimiento")
+    List<LoteProducto> findConStockByProductoId(@Param("productoId") Long productoId);
+
+    /**
+     * Lotes con unidades disponibles cuyo vencimiento cae en el rango indicado (inclusive),
+     * con su producto ya cargado. Ordenados del vencimiento más antiguo al más lejano.
+     */
+    @Query("SELECT l FROM LoteProducto l JOIN FETCH l.producto " +
+           "WHERE l.fechaVencimiento BETWEEN :desde AND :hasta " +
+           "AND l.cantidadProducida - l.cantidadVendida > 0 ORDER BY l.fechaVencimiento, l.id")
+    List<LoteProducto> findConStockVenciendoEntre(@Param("desde") LocalDate desde,
+                                                  @Param("hasta") LocalDate hasta);
+
+    /**
+     * Lotes con unidades disponibles vencidos antes de la fecha indicada, con su producto ya cargado
+     */
+    @Query("SELECT l FROM LoteProducto l JOIN FETCH l.producto " +
+           "WHERE l.fechaVencimiento < :fecha " +
+           "AND l.cantidadProducida - l.cantidadVendida > 0 ORDER BY l.fechaVencimiento, l.id")
+    List<LoteProducto> findConStockVencidosAntesDe(@Param("fecha") LocalDate fecha);
+
+    /**
+     * Lotes con unidades disponibles en forma plana.
+     * Cada fila: [productoId, codigo, fechaProduccion, fechaVencimiento, disponible]
+     */
+    @Query("SELECT l.producto.id, l.codigo, l.fechaProduccion, l.fechaVencimiento, l.cantidadProducida - l.cantidadVendida " +
+           "FROM LoteProducto l WHERE l.cantidadProducida - l.cantidadVendida > 0 ORDER BY l.producto.id, l.id")
+    List<Object[]> findResumenesConStock();
+
+    /**
+     * Fecha de la primera producción de cada producto. Cada fila: [productoId, fecha]
+     */
+    @Query("SELECT l.producto.id, MIN(l.fechaProduccion) FROM LoteProducto l GROUP BY l.producto.id")
+    List<Object[]> findPrimerasProducciones();
+
+    @Modifying
+    @Query("DELETE FROM LoteProducto l")
+    void eliminarTodos();
+
+    /**
+     * Producción y ventas agrupadas por producto y lote a partir del historial de movimientos.
+     * Cada fila: [productoId, lote, fechaProduccion, producida, vendida, fechaVencimiento].
+     */
+    @Query("SELECT d.producto.id, d.lote, " +
+           "MIN(CASE WHEN m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA THEN m.fecha END), " +
+           "SUM(CASE WHEN m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA THEN d.cantidad ELSE 0 END), " +
+           "SUM(CASE WHEN m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.SALIDA THEN d.cantidad ELSE 0 END), " +
+           "MIN(CASE WHEN m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA THEN d.fechaVencimiento END) " +
+           "FROM DetalleMovimientoProducto d JOIN d.movimiento m " +
+           "WHERE d.lote IS NOT NULL GROUP BY d.producto.id, d.lote")
+    List<Object[]> sumarMovimientosPorLote();
+}
@@ -1,8 +1,55 @@
 package com.Latti.stock.repositories;
 
 
+import com.Latti.stock.dtos.FilaMovimientoInsumoDTO;
 import com.Latti.stock.modules.MovimientoInsumoLote;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface MovimientoInsumoLoteRepository extends JpaRepository<MovimientoInsumoLote, Long> {
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface MovimientoInsumoLoteRepository extends JpaRepository<MovimientoInsumoLote, Long>, MovimientoInsumoLoteRepositoryCustom {
+
+    /**
+     * Listado completo de movimientos con sus detalles en una sola consulta, sin hidratar entidades.
+     * Las filas vienen ordenadas por movimiento y detalle para poder agruparlas en una pasada.
+     */
+    @Query("SELECT new com.Latti.stock.dtos.FilaMovimientoInsumoDTO(" +
+           "m.id, m.fecha, m.descripcion, m.tipoMovimiento, " +
+           "i.id, i.nombre, d.cantidad, i.unidadMedida, i.precioDeCompra, d.precioTotal, d.ensambleId) " +
+           "FROM MovimientoInsumoLote m LEFT JOIN m.detalles d LEFT JOIN d.insumo i " +
+           "ORDER BY m.id, d.id")
+    List<FilaMovimientoInsumoDTO> findFilasMovimientos();
+
+    /**
+     * Mismas filas que findFilasMovimientos, en orden cronológico y leídas de a bloques desde un cursor.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT new com.Latti.stock.dtos.FilaMovimientoInsumoDTO(" +
+           "m.id, m.fecha, m.descripcion, m.tipoMovimiento, " +
+           "i.id, i.nombre, d.cantidad, i.unidadMedida, i.precioDeCompra, d.precioTotal, d.ensambleId) " +
+           "FROM MovimientoInsumoLote m LEFT JOIN m.detalles d LEFT JOIN d.insumo i " +
+           "ORDER BY m.fecha, m.id, d.id")
+    Stream<FilaMovimientoInsumoDTO> streamFilasMovimientos();
+
+    /**
+     * Filas planas de los movimientos indicados, en el mismo orden que la paginación
+     */
+    @Query("SELECT new com.Latti.stock.dtos.FilaMovimientoInsumoDTO(" +
+           "m.id, m.fecha, m.descripcion, m.tipoMovimiento, " +
+           "i.id, i.nombre, d.cantidad, i.unidadMedida, i.precioDeCompra, d.precioTotal, d.ensambleId) " +
+           "FROM MovimientoInsumoLote m LEFT JOIN m.detalles d LEFT JOIN d.insumo i " +
+           "WHERE m.id IN :ids " +
+           "ORDER BY m.fecha DESC, m.id DESC, d.id")
+    List<FilaMovimientoInsumoDTO> findFilasMovimientosPorIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,55 @@
+package com.Latti.stock.repositories;
+
+import com.Latti.stock.modules.TipoMovimiento;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class MovimientoInsumoLoteRepositoryCustomImpl implements MovimientoInsumoLoteRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findIdsPagina(LocalDate desde, LocalDate hasta, TipoMovimiento tipo, Long insumoId,
+                                    String ensambleId, LocalDate cursorFecha, Long cursorId, int limite) {
+        StringBuilder jpql = new StringBuilder("SELECT m.id FROM MovimientoInsumoLote m WHERE 1 = 1");
+        Map<String, Object> parametros = new HashMap<>();
+
+        if (desde != null) {
+            jpql.append(" AND m.fecha >= :desde");
+            parametros.put("desde", desde);
+        }
+        if (hasta != null) {
+            jpql.append(" AND m.fecha <= :hasta");
+            parametros.put("hasta", hasta);
+        }
+        if (tipo != null) {
+            jpql.append(" AND m.tipoMovimiento = :tipo");
+            parametros.put("tipo", tipo);
+        }
+        if (insumoId != null) {
+            jpql.append(" AND EXISTS (SELECT 1 FROM DetalleMovimientoInsumo d WHERE d.movimiento = m AND d.insumo.id = :insumoId)");
+            parametros.put("insumoId", insumoId);
+        }
+        if (ensambleId != null) {
+            jpql.append(" AND EXISTS (SELECT 1 FROM DetalleMovimientoInsumo d WHERE d.movimiento = m AND d.ensambleId = :ensambleId)");
+            parametros.put("ensambleId", ensambleId);
+        }
+        if (cursorFecha != null && cursorId != null) {
+            jpql.append(" AND (m.fecha, m.id) < (:cursorFecha, :cursorId)");
+            parametros.put("cursorFecha", cursorFecha);
+            parametros.put("cursorId", cursorId);
+        }
+        jpql.append(" ORDER BY m.fecha DESC, m.id DESC");
+
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        parametros.forEach(query::setParameter);
+        return query.setMaxResults(limite).getResultList();
+    }
+}
@@ -1,7 +1,97 @@
 package com.Latti.stock.repositories;
 
+import com.Latti.stock.dtos.FilaMovimientoProductoDTO;
+import com.Latti.stock.dtos.FilaPerdidaDTO;
+import com.Latti.stock.dtos.ResumenPerdidaMensualDTO;
+import com.Latti.stock.dtos.ResumenPerdidaProductoDTO;
 import com.Latti.stock.modules.MovimientoProductoLote;
+import com.Latti.stock.modules.TipoMovimiento;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface MovimientoProductoLoteRepository extends JpaRepository<MovimientoProductoLote, Long> {
-}
\ No newline at end of file
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface MovimientoProductoLoteRepository extends JpaRepository<MovimientoProductoLote, Long>, MovimientoProductoLoteRepositoryCustom {
+
+    /**
+     * Listado completo de movimientos con sus detalles en una sola consulta, sin hidratar entidades.
+     * El precio de venta histórico del detalle tiene prioridad sobre el precio actual del producto.
+     */
+    @Query("SELECT new com.Latti.stock.dtos.FilaMovimientoProductoDTO(" +
+           "m.id, m.fecha, m.descripcion, m.tipoMovimiento, " +
+           "p.id, p.nombre, d.cantidad, p.precioInversion, COALESCE(d.precioVenta, p.precioVenta), " +
+           "d.fechaVencimiento, d.lote) " +
+           "FROM MovimientoProductoLote m LEFT JOIN m.detalles d LEFT JOIN d.producto p " +
+           "ORDER BY m.id, d.id")
+    List<FilaMovimientoProductoDTO> findFilasMovimientos();
+
+    /**
+     * Mismas filas que findFilasMovimientos, en orden cronológico y leídas de a bloques desde un cursor.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT new com.Latti.stock.dtos.FilaMovimientoProductoDTO(" +
+           "m.id, m.fecha, m.descripcion, m.tipoMovimiento, " +
+           "p.id, p.nombre, d.cantidad, p.precioInversion, COALESCE(d.precioVenta, p.precioVenta), " +
+           "d.fechaVencimiento, d.lote) " +
+           "FROM MovimientoProductoLote m LEFT JOIN m.detalles d LEFT JOIN d.producto p " +
+           "ORDER BY m.fecha, m.id, d.id")
+    Stream<FilaMovimientoProductoDTO> streamFilasMovimientos();
+
+    /**
+     * Filas planas de los movimientos indicados, en el mismo orden que la paginación
+     */
+    @Query("SELECT new com.Latti.stock.dtos.FilaMovimientoProductoDTO(" +
+           "m.id, m.fecha, m.descripcion, m.tipoMovimiento, " +
+           "p.id, p.nombre, d.cantidad, p.precioInversion, COALESCE(d.precioVenta, p.precioVenta), " +
+           "d.fechaVencimiento, d.lote) " +
+           "FROM MovimientoProductoLote m LEFT JOIN m.detalles d LEFT JOIN d.producto p " +
+           "WHERE m.id IN :ids " +
+           "ORDER BY m.fecha DESC, m.id DESC, d.id")
+    List<FilaMovimientoProductoDTO> findFilasMovimientosPorIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Detalles de descartes (pérdidas), más recientes primero, usando el índice (descarte, fecha)
+     */
+    @Query("SELECT new com.Latti.stock.dtos.FilaPerdidaDTO(" +
+           "m.id, m.fecha, m.descripcion, p.id, p.nombre, d.lote, d.cantidad, p.precioInversion, d.fechaVencimiento) " +
+           "FROM DetalleMovimientoProducto d JOIN d.movimiento m JOIN d.producto p " +
+           "WHERE m.descarte = true " +
+           "ORDER BY m.fecha DESC, m.id DESC, d.id")
+    List<FilaPerdidaDTO> findFilasPerdidas(Pageable pageable);
+
+    @Query("SELECT COUNT(d) FROM DetalleMovimientoProducto d JOIN d.movimiento m WHERE m.descarte = true")
+    long contarDetallesPerdidas();
+
+    /**
+     * Totales de pérdidas agrupados por mes, del más reciente al más antiguo
+     */
+    @Query("SELECT new com.Latti.stock.dtos.ResumenPerdidaMensualDTO(" +
+           "YEAR(m.fecha), MONTH(m.fecha), SUM(d.cantidad), SUM(d.cantidad * p.precioInversion)) " +
+           "FROM DetalleMovimientoProducto d JOIN d.movimiento m JOIN d.producto p " +
+           "WHERE m.descarte = true " +
+           "GROUP BY YEAR(m.fecha), MONTH(m.fecha) " +
+           "ORDER BY YEAR(m.fecha) DESC, MONTH(m.fecha) DESC")
+    List<ResumenPerdidaMensualDTO> resumirPerdidasPorMes();
+
+    /**
+     * Totales de pérdidas agrupados por producto, de mayor a menor valor perdido
+     */
+    @Query("SELECT new com.Latti.stock.dtos.ResumenPerdidaProductoDTO(" +
+           "p.id, p.nombre, SUM(d.cantidad), SUM(d.cantidad * p.precioInversion)) " +
+           "FROM DetalleMovimientoProducto d JOIN d.movimiento m JOIN d.producto p " +
+           "WHERE m.descarte = true " +
+           "GROUP BY p.id, p.nombre " +
+           "ORDER BY SUM(d.cantidad * p.precioInversion) DESC")
+    List<ResumenPerdidaProductoDTO> resumirPerdidasPorProducto();
+}
@@ -0,0 +1,24 @@
+package com.Latti.stock.repositories;
+
+import com.Latti.stock.modules.TipoMovimiento;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface MovimientoProductoLoteRepositoryCustom {
+
+    /**
+     * Ids de una página del historial (más reciente primero) usando paginación por clave (fecha, id).
+     * Los filtros nulos no se aplican; cursorFecha/cursorId son la clave del último elemento de la página anterior.
+     * La consulta se arma solo con los filtros presentes, así cada combinación tiene su propio plan y el
+     * corte por (fecha, id) puede resolverse con el índice idx_mov_producto_fecha_id.
+     */
+    List<Long> findIdsPagina(LocalDate desde,
+                             LocalDate hasta,
+                             TipoMovimiento tipo,
+                             Long productoId,
+                             String lote,
+                             LocalDate cursorFecha,
+                             Long cursorId,
+                             int limite);
+}
@@ -0,0 +1,55 @@
+package com.Latti.stock.repositories;
+
+import com.Latti.stock.modules.TipoMovimiento;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class MovimientoProductoLoteRepositoryCustomImpl implements MovimientoProductoLoteRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findIdsPagina(LocalDate desde, LocalDate hasta, TipoMovimiento tipo, Long productoId,
+                                    String lote, LocalDate cursorFecha, Long cursorId, int limite) {
+        StringBuilder jpql = new StringBuilder("SELECT m.id FROM MovimientoProductoLote m WHERE 1 = 1");
+        Map<String, Object> parametros = new HashMap<>();
+
+        if (desde != null) {
+            jpql.append(" AND m.fecha >= :desde");
+            parametros.put("desde", desde);
+        }
+        if (hasta != null) {
+            jpql.append(" AND m.fecha <= :hasta");
+            parametros.put("hasta", hasta);
+        }
+        if (tipo != null) {
+            jpql.append(" AND m.tipoMovimiento = :tipo");
+            parametros.put("tipo", tipo);
+        }
+        if (productoId != null) {
+            jpql.append(" AND EXISTS (SELECT 1 FROM DetalleMovimientoProducto d WHERE d.movimiento = m AND d.producto.id = :productoId)");
+            parametros.put("productoId", productoId);
+        }
+        if (lote != null) {
+            jpql.append(" AND EXISTS (SELECT 1 FROM DetalleMovimientoProducto d WHERE d.movimiento = m AND d.lote = :lote)");
+            parametros.put("lote", lote);
+        }
+        if (cursorFecha != null && cursorId != null) {
+            jpql.append(" AND (m.fecha, m.id) < (:cursorFecha, :cursorId)");
+            parametros.put("cursorFecha", cursorFecha);
+            parametros.put("cursorId", cursorId);
+        }
+        jpql.append(" ORDER BY m.fecha DESC, m.id DESC");
+
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        parametros.forEach(query::setParameter);
+        return query.setMaxResults(limite).getResultList();
+    }
+}
@@ -3,12 +3,42 @@ package com.Latti.stock.repositories;
 
 import com.Latti.stock.modules.Producto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
 public interface ProductoRepository extends JpaRepository<Producto, Long> {
     boolean existsByNombreIgnoreCase(String nombre);
 
     @Query("SELECT COUNT(m) > 0 FROM Producto p JOIN p.movimientos m WHERE p.id = :productoId")
     boolean existsInMovimientos(@Param("productoId") Long productoId);
-}
\ No newline at end of file
+
+    /**
+     * Suma un delta (positivo o negativo) al stock en una sola sentencia, sin leer la entidad
+     */
+    @Modifying
+    @Query("UPDATE Producto p SET p.stockActual = p.stockActual + :delta WHERE p.id = :productoId")
+    int sumarStock(@Param("productoId") Long productoId, @Param("delta") double delta);
+
+    /**
+     * Descuenta stock solo si alcanza. Devuelve 0 si el producto no existe o el stock es insuficiente.
+     */
+    @Modifying
+    @Query("UPDATE Producto p SET p.stockActual = p.stockActual - :cantidad " +
+           "WHERE p.id = :productoId AND p.stockActual - :cantidad >= :minimo")
+    int descontarStock(@Param("productoId") Long productoId,
+                       @Param("cantidad") double cantidad,
+                       @Param("minimo") double minimo);
+
+    @Modifying
+    @Query("UPDATE Producto p SET p.stockActual = :stock WHERE p.id = :productoId")
+    int establecerStock(@Param("productoId") Long productoId, @Param("stock") double stock);
+
+    /**
+     * Resumen liviano para validar importaciones en memoria. Cada fila: [id, nombre, stockActual]
+     */
+    @Query("SELECT p.id, p.nombre, p.stockActual FROM Producto p")
+    List<Object[]> findResumenesStock();
+}
@@ -3,8 +3,11 @@ package com.Latti.stock.repositories;
 import com.Latti.stock.modules.Insumo;
 import com.Latti.stock.modules.RecetaInsumo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -29,4 +32,18 @@ public interface RecetaInsumoRepository extends JpaRepository<RecetaInsumo, Long
      * Eliminar todos los componentes de un insumo compuesto
      */
     void deleteByInsumoCompuesto(Insumo insumoCompuesto);
+
+    /**
+     * Insumos compuestos que usan alguno de los insumos base indicados,
+     * con su receta y componentes ya cargados
+     */
+    @Query("SELECT DISTINCT c FROM Insumo c JOIN FETCH c.receta ri JOIN FETCH ri.insumoBase " +
+           "WHERE c.id IN (SELECT r.insumoCompuesto.id FROM RecetaInsumo r WHERE r.insumoBase.id IN :insumoBaseIds)")
+    List<Insumo> findCompuestosQueUsanInsumos(@Param("insumoBaseIds") Collection<Long> insumoBaseIds);
+
+    /**
+     * Todas las recetas de compuestos en forma plana. Cada fila: [compuestoId, insumoBaseId, cantidad por unidad]
+     */
+    @Query("SELECT r.insumoCompuesto.id, r.insumoBase.id, r.cantidad FROM RecetaInsumo r")
+    List<Object[]> findCantidadesPorCompuesto();
 }
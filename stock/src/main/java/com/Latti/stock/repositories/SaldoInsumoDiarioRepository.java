@@ -0,0 +1,160 @@
+package com.Latti.stock.repositories;
+
+import com.Latti.stock.modules.SaldoInsumoDiario;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Las operaciones de escritura son consultas masivas y las lecturas son escalares,
+ * así el saldo nunca se calcula sobre entidades potencialmente desactualizadas en
+ * el contexto de persistencia.
+ */
+@Repository
+public interface SaldoInsumoDiarioRepository extends JpaRepository<SaldoInsumoDiario, Long> {
+
+    /**
+     * Saldos acumulados hasta la fecha indicada (inclusive), del más reciente al más antiguo
+     */
+    @Query("SELECT s.saldo FROM SaldoInsumoDiario s WHERE s.insumo.id = :insumoId AND s.fecha <= :fecha ORDER BY s.fecha DESC")
+    List<Double> findSaldosHastaFecha(@Param("insumoId") Long insumoId,
+                                      @Param("fecha") LocalDate fecha,
+                                      Pageable pageable);
+
+    /**
+     * Último saldo de cada insumo hasta la fecha indicada (inclusive). Cada fila: [insumoId, saldo]
+     */
+    @Query("SELECT s.insumo.id, s.saldo FROM SaldoInsumoDiario s WHERE s.fecha = " +
+           "(SELECT MAX(s2.fecha) FROM SaldoInsumoDiario s2 WHERE s2.insumo = s.insumo AND s2.fecha <= :fecha)")
+    List<Object[]> findUltimosSaldosHastaFecha(@Param("fecha") LocalDate fecha);
+
+    /**
+     * Último saldo hasta la fecha indicada (inclusive) solo de los insumos pedidos. Cada fila: [insumoId, saldo]
+     */
+    @Query("SELECT s.insumo.id, s.saldo FROM SaldoInsumoDiario s WHERE s.insumo.id IN :insumoIds AND s.fecha = " +
+           "(SELECT MAX(s2.fecha) FROM SaldoInsumoDiario s2 WHERE s2.insumo = s.insumo AND s2.fecha <= :fecha)")
+    List<Object[]> findUltimosSaldosHastaFecha(@Param("fecha") LocalDate fecha,
+                                               @Param("insumoIds") Collection<Long> insumoIds);
+
+    /**
+     * Saldos de todos los insumos desde la fecha indicada (inclusive).
+     * Cada fila: [insumoId, fecha, saldo], ordenadas por insumo y fecha.
+     */
+    @Query("SELECT s.insumo.id, s.fecha, s.saldo FROM SaldoInsumoDiario s WHERE s.fecha >= :desde ORDER BY s.insumo.id, s.fecha")
+    List<Object[]> findSaldosDesde(@Param("desde") LocalDate desde);
+
+    /**
+     * Saldos acumulados estrictamente anteriores a la fecha indicada, del más reciente al más antiguo
+     */
+    @Query("SELECT s.saldo FROM SaldoInsumoDiario s WHERE s.insumo.id = :insumoId AND s.fecha < :fecha ORDER BY s.fecha DESC")
+    List<Double> findSaldosAnterioresA(@Param("insumoId") Long insumoId,
+                                       @Param("fecha") LocalDate fecha,
+                                       Pageable pageable);
+
+    /**
+     * Acumula entradas/salidas en el día indicado. Devuelve 0 si ese día todavía no tiene fila.
+     */
+    @Modifying
+    @Query("UPDATE SaldoInsumoDiario s SET s.entradas = s.entradas + :entradas, s.salidas = s.salidas + :salidas, " +
+           "s.saldo = s.saldo + :entradas - :salidas WHERE s.insumo.id = :insumoId AND s.fecha = :fecha")
+    int acumularEnDia(@Param("insumoId") Long insumoId,
+                      @Param("fecha") LocalDate fecha,
+                      @Param("entradas") double entradas,
+                      @Param("salidas") double salidas);
+
+    /**
+     * Desplaza el saldo acumulado de todos los días posteriores a la fecha indicada
+     */
+    @Modifying
+    @Query("UPDATE SaldoInsumoDiario s SET s.saldo = s.saldo + :delta WHERE s.insumo.id = :insumoId AND s.fecha > :fecha")
+    int desplazarSaldosPosteriores(@Param("insumoId") Long insumoId,
+                                   @Param("fecha") LocalDate fecha,
+                                   @Param("delta") double delta);
+
+    /**
+     * Elimina el día si ya no le quedan movimientos (entradas y salidas en cero)
+     */
+    @Modifying
+    @Query("DELETE FROM SaldoInsumoDiario s WHERE s.insumo.id = :insumoId AND s.fecha = :fecha " +
+           "AND ABS(s.entradas) < :tolerancia AND ABS(s.salidas) < :tolerancia")
+    int eliminarDiaSinMovimientos(@Param("insumoId") Long insumoId,
+                                  @Param("fecha") LocalDate fecha,
+                                  @Param("tolerancia") double tolerancia);
+
+    /*
+     * Variantes de varias filas para las salidas de un movimiento ya guardado: cada insumo toma su
+     * cantidad de los detalles del movimiento, así la cantidad de sentencias no depende de cuántos sean.
+     * Son SQL nativo porque el parser de JPQL no admite INSERT ... SELECT con subconsultas correlacionadas.
+     */
+
+    // Cantidad total del insumo de la fila en los detalles del movimiento
+    String SALIDA_DE_MOVIMIENTO = "(SELECT SUM(d.cantidad) FROM detalle_movimiento_insumo d " +
+            "WHERE d.movimiento_id = :movimientoId AND d.insumo_id = saldo_insumo_diario.insumo_id)";
+
+    String INSUMOS_DE_MOVIMIENTO = "(SELECT d.insumo_id FROM detalle_movimiento_insumo d WHERE d.movimiento_id = :movimientoId)";
+
+    /**
+     * Acumula las salidas del movimiento en el día indicado, en los insumos que ya tienen fila ese día
+     */
+    @Modifying
+    @Query(value = "UPDATE saldo_insumo_diario SET salidas = salidas + " + SALIDA_DE_MOVIMIENTO + ", " +
+           "saldo = saldo - " + SALIDA_DE_MOVIMIENTO + " " +
+           "WHERE fecha = :fecha AND insumo_id IN " + INSUMOS_DE_MOVIMIENTO,
+           nativeQuery = true)
+    int acumularSalidasDeMovimientoEnDia(@Param("movimientoId") Long movimientoId,
+                                         @Param("fecha") LocalDate fecha);
+
+    /**
+     * Crea el día para los insumos del movimiento que todavía no tienen fila, con el saldo partiendo
+     * del último día anterior
+     */
+    @Modifying
+    @Query(value = "INSERT INTO saldo_insumo_diario (insumo_id, fecha, entradas, salidas, saldo) " +
+           "SELECT d.insumo_id, :fecha, 0, SUM(d.cantidad), " +
+           "COALESCE((SELECT s.saldo FROM saldo_insumo_diario s WHERE s.insumo_id = d.insumo_id AND s.fecha = " +
+           "(SELECT MAX(s2.fecha) FROM saldo_insumo_diario s2 WHERE s2.insumo_id = d.insumo_id AND s2.fecha < :fecha)), 0) " +
+           "- SUM(d.cantidad) " +
+           "FROM detalle_movimiento_insumo d " +
+           "WHERE d.movimiento_id = :movimientoId " +
+           "AND NOT EXISTS (SELECT 1 FROM saldo_insumo_diario s WHERE s.insumo_id = d.insumo_id AND s.fecha = :fecha) " +
+           "GROUP BY d.insumo_id",
+           nativeQuery = true)
+    int insertarDiasDeSalidasDeMovimiento(@Param("movimientoId") Long movimientoId,
+                                          @Param("fecha") LocalDate fecha);
+
+    /**
+     * Desplaza el saldo de los días posteriores de los insumos del movimiento
+     */
+    @Modifying
+    @Query(value = "UPDATE saldo_insumo_diario SET saldo = saldo - " + SALIDA_DE_MOVIMIENTO + " " +
+           "WHERE fecha > :fecha AND insumo_id IN " + INSUMOS_DE_MOVIMIENTO,
+           nativeQuery = true)
+    int desplazarSaldosPosterioresDeMovimiento(@Param("movimientoId") Long movimientoId,
+                                               @Param("fecha") LocalDate fecha);
+
+    @Modifying
+    @Query("DELETE FROM SaldoInsumoDiario s WHERE s.insumo.id = :insumoId")
+    void deleteByInsumoId(@Param("insumoId") Long insumoId);
+
+    @Modifying
+    @Query("DELETE FROM SaldoInsumoDiario s")
+    void eliminarTodos();
+
+    /**
+     * Entradas y salidas agrupadas por insumo y día a partir del historial de movimientos.
+     * Cada fila: [insumoId, fecha, entradas, salidas], ordenadas por insumo y fecha.
+     */
+    @Query("SELECT d.insumo.id, m.fecha, " +
+           "SUM(CASE WHEN m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.ENTRADA THEN d.cantidad ELSE 0 END), " +
+           "SUM(CASE WHEN m.tipoMovimiento = com.Latti.stock.modules.TipoMovimiento.SALIDA THEN d.cantidad ELSE 0 END) " +
+           "FROM DetalleMovimientoInsumo d JOIN d.movimiento m " +
+           "GROUP BY d.insumo.id, m.fecha ORDER BY d.insumo.id, m.fecha")
+    List<Object[]> sumarMovimientosPorInsumoYFecha();
+}
@@ -0,0 +1,39 @@
+package com.Latti.stock.repositories;
+
+import com.Latti.stock.modules.SolicitudIdempotente;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface SolicitudIdempotenteRepository extends JpaRepository<SolicitudIdempotente, Long> {
+
+    Optional<SolicitudIdempotente> findByClave(String clave);
+
+    @Modifying
+    @Query("UPDATE SolicitudIdempotente s SET s.resultado = :resultado WHERE s.id = :id")
+    int registrarResultado(@Param("id") Long id, @Param("resultado") Long resultado);
+
+    @Modifying
+    @Query("DELETE FROM SolicitudIdempotente s WHERE s.id = :id")
+    int eliminar(@Param("id") Long id);
+
+    /**
+     * Libera una clave vencida, o abandonada sin resultado al terminar su concesión, para que pueda volver a usarse
+     */
+    @Modifying
+    @Query("DELETE FROM SolicitudIdempotente s WHERE s.clave = :clave " +
+           "AND (s.creada < :limite OR (s.resultado IS NULL AND s.reclamadaHasta < :ahora))")
+    int eliminarVencida(@Param("clave") String clave, @Param("limite") LocalDateTime limite,
+                        @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query("DELETE FROM SolicitudIdempotente s " +
+           "WHERE s.creada < :limite OR (s.resultado IS NULL AND s.reclamadaHasta < :ahora)")
+    int eliminarVencidas(@Param("limite") LocalDateTime limite, @Param("ahora") LocalDateTime ahora);
+}
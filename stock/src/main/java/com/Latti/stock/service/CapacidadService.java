@@ -0,0 +1,18 @@
+package com.Latti.stock.service;
+
+import com.Latti.stock.dtos.CapacidadProduccionDTO;
+
+import java.time.LocalDate;
+
+/**
+ * Capacidad de producción: cuánto se puede producir de cada producto y ensamblar de cada
+ * insumo compuesto con el stock disponible, y qué insumo lo limita.
+ */
+public interface CapacidadService {
+
+    /**
+     * Calcula la capacidad de todos los productos y compuestos en una sola pasada.
+     * Con fecha null usa el stock actual; con fecha usa el saldo de cada insumo al cierre de ese día.
+     */
+    CapacidadProduccionDTO calcularCapacidad(LocalDate fecha);
+}
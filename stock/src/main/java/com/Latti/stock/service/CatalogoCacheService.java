@@ -0,0 +1,23 @@
+package com.Latti.stock.service;
+
+/**
+ * Invalidación del caché en memoria de los catálogos (listados de insumos, productos e insumos compuestos).
+ * Las altas, ediciones y bajas usan @CacheEvict; los cambios de stock y de costos que ocurren
+ * dentro de los movimientos invalidan por acá. Dentro de una transacción el borrado se aplica al commit.
+ */
+public interface CatalogoCacheService {
+
+    String INSUMOS = "catalogoInsumos";
+    String PRODUCTOS = "catalogoProductos";
+    String INSUMOS_COMPUESTOS = "catalogoInsumosCompuestos";
+
+    /**
+     * Invalida los listados que muestran stock o precio de insumos (simples y compuestos)
+     */
+    void invalidarInsumos();
+
+    /**
+     * Invalida el listado de productos
+     */
+    void invalidarProductos();
+}
@@ -0,0 +1,39 @@
+package com.Latti.stock.service;
+
+import com.Latti.stock.modules.Insumo;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Agregados de compras por insumo (total invertido, cantidad comprada y última compra).
+ * Se mantienen con UPDATE atómicos dentro de la misma transacción que crea, edita o
+ * elimina el movimiento de ENTRADA, para que los listados no tengan que sumar el historial.
+ */
+public interface ComprasInsumoService {
+
+    /**
+     * Acumula una compra y la marca como última si no hay otra con fecha posterior
+     */
+    void registrarCompra(Insumo insumo, LocalDate fecha, double cantidad, double precioTotal);
+
+    /**
+     * Descuenta una compra de los totales. La última compra se corrige con actualizarUltimaCompra.
+     */
+    void revertirCompra(Insumo insumo, double cantidad, double precioTotal);
+
+    /**
+     * Recalcula precio y fecha de la última compra desde el historial (tras eliminar o editar ENTRADAS)
+     */
+    void actualizarUltimaCompra(Collection<Long> insumoIds);
+
+    /**
+     * Recalcula todos los agregados a partir del historial de movimientos
+     */
+    void reconstruirCompras();
+
+    /**
+     * true si hay insumos con compras en el historial que todavía no tienen agregados
+     */
+    boolean faltaInicializar();
+}
@@ -0,0 +1,19 @@
+package com.Latti.stock.service;
+
+import java.io.OutputStream;
+
+/**
+ * Exportación del historial completo de movimientos en CSV o NDJSON.
+ * Las filas se escriben a medida que se leen de la base, sin armar la lista completa en memoria.
+ */
+public interface ExportacionMovimientosService {
+
+    /**
+     * Valida y normaliza el formato pedido ("csv" o "ndjson")
+     */
+    String validarFormato(String formato);
+
+    void exportarMovimientosInsumo(String formato, OutputStream salida);
+
+    void exportarMovimientosProducto(String formato, OutputStream salida);
+}
@@ -0,0 +1,32 @@
+package com.Latti.stock.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Deduplica solicitudes de creación reintentadas por el cliente mediante el header Idempotency-Key.
+ * La primera solicitud con una clave ejecuta la operación; las siguientes (dentro del TTL) reciben
+ * el mismo id sin volver a tocar el stock, aunque lleguen a otra instancia del backend.
+ * Si la primera todavía está en curso, esperan a que termine hasta un tiempo máximo; si quedó
+ * abandonada (sin resultado al vencer su concesión), la clave se vuelve a reclamar.
+ */
+public interface IdempotenciaService {
+
+    String HEADER = "Idempotency-Key";
+
+    /**
+     * @param clave     valor del header; si es null la operación se ejecuta siempre
+     * @param operacion nombre de la operación, para que la misma clave no choque entre endpoints
+     * @param solicitud cuerpo recibido; reutilizar una clave con otro cuerpo es un error
+     * @param accion    creación a ejecutar; devuelve el id creado, que es lo que se guarda para los reintentos
+     */
+    Resultado<Long> ejecutar(String clave, String operacion, Object solicitud, Supplier<Long> accion);
+
+    /**
+     * Elimina las claves con más antigüedad que el TTL y las abandonadas con la concesión vencida
+     *
+     * @return cantidad de claves eliminadas
+     */
+    int purgarVencidas();
+
+    record Resultado<T>(T valor, boolean repetido) {}
+}
@@ -0,0 +1,24 @@
+package com.Latti.stock.service;
+
+import com.Latti.stock.dtos.ReporteImportacionDTO;
+
+import java.io.InputStream;
+
+/**
+ * Importación masiva de movimientos desde un CSV (facturas de proveedores, planes de producción).
+ * Las filas consecutivas con la misma fecha, descripción y tipo forman un único movimiento; si una
+ * de ellas es inválida, el movimiento se rechaza completo.
+ * El archivo se lee en forma secuencial y se persiste por lotes; cada fila recibe su resultado en el reporte.
+ */
+public interface ImportacionMovimientosService {
+
+    /**
+     * Columnas: fecha, descripcion, tipoMovimiento, insumoId, cantidad, precio
+     */
+    ReporteImportacionDTO importarMovimientosInsumo(InputStream csv);
+
+    /**
+     * Columnas: fecha, descripcion, tipoMovimiento, productoId, cantidad, precioVenta, fechaVencimiento, lote
+     */
+    ReporteImportacionDTO importarMovimientosProducto(InputStream csv);
+}
@@ -3,6 +3,7 @@ package com.Latti.stock.service;
 import com.Latti.stock.dtos.CrearInsumoDTO;
 import com.Latti.stock.dtos.InsumoResponseDTO;
 import com.Latti.stock.dtos.InsumoListadoDTO;
+import com.Latti.stock.dtos.InsumoUnificadoDTO;
 import com.Latti.stock.modules.Insumo;
 import com.Latti.stock.modules.InsumoReceta;
 
@@ -13,6 +14,11 @@ public interface InsumoService {
 
     List<InsumoListadoDTO> obtenerInsumos();
 
+    /**
+     * Insumos base y compuestos (con su receta) en un único listado, resuelto con una sola consulta
+     */
+    List<InsumoUnificadoDTO> obtenerInsumosUnificados();
+
     Insumo obtenerInsumoPorId(Long id);
 
     Insumo actualizarInsumo(Long id, CrearInsumoDTO actualizarInsumoDTO);
@@ -0,0 +1,97 @@
+package com.Latti.stock.service;
+
+import java.util.Map;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Lista de materiales (BOM) precompilada de productos e insumos compuestos.
+ * Cada receta se compila una sola vez a un vector de requerimientos por unidad
+ * (ids de insumo y cantidades en arreglos primitivos) y queda en memoria hasta
+ * que se edita alguna receta. Costos, validaciones de stock y cálculos de
+ * capacidad trabajan sobre estos vectores sin recorrer el grafo de recetas.
+ */
+public interface ListaMaterialesService {
+
+    /**
+     * Lo que se descuenta del stock al producir una unidad del producto.
+     * Los insumos compuestos se consumen ya ensamblados, no se explotan.
+     */
+    Requerimientos directosProducto(Long productoId);
+
+    /**
+     * Componentes que se consumen al ensamblar una unidad del insumo compuesto
+     */
+    Requerimientos directosCompuesto(Long compuestoId);
+
+    /**
+     * Requerimientos de una unidad del producto explotados hasta insumos base
+     */
+    Requerimientos explotadoProducto(Long productoId);
+
+    /**
+     * Requerimientos de una unidad del compuesto explotados hasta insumos base
+     */
+    Requerimientos explotadoCompuesto(Long compuestoId);
+
+    /**
+     * Requerimientos directos de todos los productos con receta, por id de producto
+     */
+    Map<Long, Requerimientos> recetasProductos();
+
+    /**
+     * Requerimientos directos de todos los insumos compuestos, por id de compuesto
+     */
+    Map<Long, Requerimientos> recetasCompuestos();
+
+    /**
+     * Descarta la compilación al confirmar la transacción actual (o enseguida si no hay transacción).
+     * Debe llamarse en cada alta, edición o baja de una receta.
+     */
+    void invalidar();
+
+    /**
+     * Vector disperso de requerimientos por unidad. Los arreglos no se modifican después de compilados.
+     */
+    record Requerimientos(long[] insumoIds, double[] cantidades) {
+
+        public static final Requerimientos VACIO = new Requerimientos(new long[0], new double[0]);
+
+        public int tamanio() {
+            return insumoIds.length;
+        }
+
+        public boolean estaVacio() {
+            return insumoIds.length == 0;
+        }
+
+        /**
+         * Costo de una unidad con los precios indicados por insumo
+         */
+        public double costo(LongToDoubleFunction precioPorInsumo) {
+            double total = 0;
+            for (int i = 0; i < insumoIds.length; i++) {
+                total += cantidades[i] * precioPorInsumo.applyAsDouble(insumoIds[i]);
+            }
+            return total;
+        }
+
+        /**
+         * Máxima cantidad producible con el stock indicado y el insumo que la limita
+         * (null si no hay receta, en cuyo caso no hay límite)
+         */
+        public Capacidad capacidad(LongToDoubleFunction stockPorInsumo) {
+            double maximo = Double.POSITIVE_INFINITY;
+            Long limitante = null;
+            for (int i = 0; i < insumoIds.length; i++) {
+                double posible = Math.max(0.0, stockPorInsumo.applyAsDouble(insumoIds[i])) / cantidades[i];
+                if (posible < maximo) {
+                    maximo = posible;
+                    limitante = insumoIds[i];
+                }
+            }
+            return new Capacidad(maximo, limitante);
+        }
+    }
+
+    record Capacidad(double maximo, Long insumoLimitanteId) {}
+}
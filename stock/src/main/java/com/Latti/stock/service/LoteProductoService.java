@@ -0,0 +1,50 @@
+package com.Latti.stock.service;
+
+import com.Latti.stock.dtos.ProductoProximoVencerDTO;
+import com.Latti.stock.dtos.ProductoVencidoDTO;
+import com.Latti.stock.dtos.StockPorLoteDTO;
+import com.Latti.stock.modules.LoteProducto;
+import com.Latti.stock.modules.Producto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Saldos por lote de productos. Se actualiza en la misma transacción que los
+ * movimientos de producto (producción, ventas, ediciones y eliminaciones).
+ */
+public interface LoteProductoService {
+
+    void registrarProduccion(Producto producto, String codigo, double cantidad, LocalDate fechaProduccion, LocalDate fechaVencimiento);
+
+    void revertirProduccion(Long productoId, String codigo, double cantidad);
+
+    void registrarVenta(Long productoId, String codigo, double cantidad);
+
+    void revertirVenta(Long productoId, String codigo, double cantidad);
+
+    Optional<LoteProducto> obtenerLote(Long productoId, String codigo);
+
+    double obtenerStockDisponible(Long productoId, String codigo);
+
+    List<StockPorLoteDTO> obtenerStockPorLotes(Long productoId);
+
+    /**
+     * Lotes con stock que vencen dentro de los próximos N días (o vencieron hace a lo sumo N días),
+     * del más urgente al menos urgente
+     */
+    List<ProductoProximoVencerDTO> obtenerLotesProximosAVencer(int diasAnticipacion);
+
+    /**
+     * Lotes con stock cuya fecha de vencimiento ya pasó, del más vencido al menos vencido
+     */
+    List<ProductoVencidoDTO> obtenerLotesVencidos();
+
+    /**
+     * Reconstruye todos los lotes a partir del historial de movimientos
+     */
+    void reconstruirLotes();
+
+    boolean estaVacio();
+}
@@ -2,15 +2,25 @@ package com.Latti.stock.service;
 
 import com.Latti.stock.dtos.CrearMovimientoDeInsumoDTO;
 import com.Latti.stock.dtos.EditarMovimientoDeInsumoDTO;
+import com.Latti.stock.dtos.PaginaDTO;
 import com.Latti.stock.dtos.ResponseMovimientosInsumoLoteDTO;
 import com.Latti.stock.dtos.ValidacionEdicionDTO;
+import com.Latti.stock.modules.Insumo;
 import com.Latti.stock.modules.MovimientoInsumoLote;
+import com.Latti.stock.modules.TipoMovimiento;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 public interface MovimientoInsumoLoteService {
     MovimientoInsumoLote crearMovimientoInsumo(CrearMovimientoDeInsumoDTO crearMovimientoDeInsumoDTO);
     List<ResponseMovimientosInsumoLoteDTO> obtenerMovimientosDTO();
+
+    // ✅ NUEVO: Historial paginado por cursor (fecha, id), del más reciente al más antiguo
+    PaginaDTO<ResponseMovimientosInsumoLoteDTO> obtenerPaginaMovimientos(LocalDate desde, LocalDate hasta,
+                                                                         TipoMovimiento tipo, Long insumoId,
+                                                                         String ensambleId, String cursor, Integer limite);
     MovimientoInsumoLote eliminarMovimientoInsumo(Long id);
     
     // Nuevos métodos para edición
@@ -24,9 +34,9 @@ public interface MovimientoInsumoLoteService {
     void crearMovimientoEntrada(Long insumoId, double cantidad, double precioTotal, java.time.LocalDate fecha, String descripcion);
     void crearMovimientoSalida(Long insumoId, double cantidad, java.time.LocalDate fecha, String descripcion);
     
-    // ✅ NUEVO: Métodos para ensambles con tracking
-    void crearMovimientoEntradaConEnsamble(Long insumoId, double cantidad, double precioTotal, java.time.LocalDate fecha, String descripcion, String ensambleId);
-    void crearMovimientoSalidaConEnsamble(Long insumoId, double cantidad, java.time.LocalDate fecha, String descripcion, String ensambleId);
+    // ✅ NUEVO: Ensamble completo: una SALIDA con un detalle por componente y la ENTRADA del compuesto
+    void crearMovimientosEnsamble(Insumo insumoCompuesto, Map<Insumo, Double> consumos, double cantidad, double precioTotal,
+                                  LocalDate fecha, String descripcion, String ensambleId);
     
     // ✅ NUEVO: Método para validar si un movimiento es parte de un ensamble
     boolean esMovimientoDeEnsamble(Long movimientoId);
@@ -3,10 +3,13 @@ package com.Latti.stock.service;
 import com.Latti.stock.dtos.CrearMovimientoDeInsumoDTO;
 import com.Latti.stock.dtos.CrearMovimientoProductoDTO;
 import com.Latti.stock.dtos.CrearVentaPorLotesDTO;
+import com.Latti.stock.dtos.PaginaDTO;
 import com.Latti.stock.dtos.ResponseMovimientosProductoLoteDTO;
 import com.Latti.stock.dtos.StockPorLoteDTO;
 import com.Latti.stock.modules.MovimientoProductoLote;
+import com.Latti.stock.modules.TipoMovimiento;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public interface MovimientoProductoLoteService {
@@ -14,6 +17,11 @@ public interface MovimientoProductoLoteService {
 
     List<ResponseMovimientosProductoLoteDTO> obtenerMovimientosDTO();
 
+    // ✅ NUEVO: Historial paginado por cursor (fecha, id), del más reciente al más antiguo
+    PaginaDTO<ResponseMovimientosProductoLoteDTO> obtenerPaginaMovimientos(LocalDate desde, LocalDate hasta,
+                                                                           TipoMovimiento tipo, Long productoId,
+                                                                           String lote, String cursor, Integer limite);
+
     MovimientoProductoLote eliminarMovimientoProducto(Long id);
     
     MovimientoProductoLote editarMovimientoProducto(Long id, CrearMovimientoProductoDTO dto);
@@ -0,0 +1,24 @@
+package com.Latti.stock.service;
+
+import com.Latti.stock.dtos.PerdidaDTO;
+import com.Latti.stock.dtos.ResumenPerdidaMensualDTO;
+import com.Latti.stock.dtos.ResumenPerdidaProductoDTO;
+
+import java.util.List;
+
+/**
+ * Consultas sobre descartes de productos (movimientos de salida marcados como descarte)
+ */
+public interface PerdidaService {
+
+    /**
+     * Pérdidas más recientes primero. Si pagina es null se devuelven todas.
+     */
+    List<PerdidaDTO> obtenerPerdidas(Integer pagina, Integer tamanio);
+
+    long contarPerdidas();
+
+    List<ResumenPerdidaMensualDTO> resumirPorMes();
+
+    List<ResumenPerdidaProductoDTO> resumirPorProducto();
+}
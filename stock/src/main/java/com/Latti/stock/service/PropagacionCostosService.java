@@ -0,0 +1,27 @@
+package com.Latti.stock.service;
+
+import java.util.Collection;
+
+/**
+ * Propagación asíncrona de costos: las transacciones de movimientos solo registran
+ * qué insumos cambiaron de precio y un proceso en segundo plano recalcula los
+ * insumos compuestos y los precios de inversión de los productos afectados.
+ */
+public interface PropagacionCostosService {
+
+    /**
+     * Registra en la transacción actual que cambió el precio de los insumos indicados
+     */
+    void registrarCambiosPrecio(Collection<Long> insumoIds);
+
+    /**
+     * Procesa un lote de cambios pendientes agrupando por producto.
+     * Devuelve la cantidad de cambios consumidos de la cola.
+     */
+    int procesarPendientes();
+
+    /**
+     * Actualiza las métricas de profundidad y antigüedad de la cola
+     */
+    void actualizarMetricas();
+}
@@ -0,0 +1,13 @@
+package com.Latti.stock.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta operaciones transaccionales reintentándolas cuando fallan por un conflicto
+ * de concurrencia (versión desactualizada, deadlock o dos inserciones paralelas de la misma fila de saldo o lote).
+ * Debe invocarse por fuera de la transacción para que cada intento sea una transacción nueva.
+ */
+public interface ReintentoService {
+
+    <T> T ejecutar(Supplier<T> operacion);
+}
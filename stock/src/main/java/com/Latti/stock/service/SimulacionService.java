@@ -0,0 +1,13 @@
+package com.Latti.stock.service;
+
+import com.Latti.stock.dtos.ResultadoSimulacionDTO;
+import com.Latti.stock.dtos.SimulacionDTO;
+
+/**
+ * Simulación de planes de producción sobre una copia en memoria del stock actual.
+ * Aplica las mismas reglas que los movimientos reales y no escribe nada en la base.
+ */
+public interface SimulacionService {
+
+    ResultadoSimulacionDTO simular(SimulacionDTO dto);
+}
@@ -0,0 +1,62 @@
+package com.Latti.stock.service;
+
+import com.Latti.stock.modules.TipoMovimiento;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Libro de saldos diarios de insumos. Es la única fuente para consultar
+ * "stock del insumo X en la fecha D" y debe actualizarse desde todos los
+ * caminos que crean, editan o eliminan detalles de movimientos de insumo.
+ */
+public interface StockLedgerService {
+
+    /**
+     * Stock del insumo al cierre de la fecha indicada (incluye los movimientos de ese día)
+     */
+    double obtenerStockEnFecha(Long insumoId, LocalDate fecha);
+
+    /**
+     * Stock de todos los insumos con movimientos al cierre de la fecha indicada, en una sola consulta.
+     * Los insumos sin movimientos hasta esa fecha no aparecen (stock 0).
+     */
+    Map<Long, Double> obtenerStocksEnFecha(LocalDate fecha);
+
+    /**
+     * Igual que obtenerStocksEnFecha(fecha), pero solo consulta los insumos indicados
+     */
+    Map<Long, Double> obtenerStocksEnFecha(LocalDate fecha, Collection<Long> insumoIds);
+
+    /**
+     * Registra el efecto de un detalle de movimiento sobre el saldo del insumo
+     */
+    void registrarMovimiento(Long insumoId, LocalDate fecha, TipoMovimiento tipo, double cantidad);
+
+    /**
+     * Registra todos los detalles de un movimiento de SALIDA ya guardado con tres sentencias,
+     * sin importar cuántos insumos tenga
+     */
+    void registrarSalidasDeMovimiento(Long movimientoId, LocalDate fecha);
+
+    /**
+     * Revierte el efecto de un detalle de movimiento previamente registrado
+     */
+    void revertirMovimiento(Long insumoId, LocalDate fecha, TipoMovimiento tipo, double cantidad);
+
+    /**
+     * Elimina todos los saldos de un insumo (usado al eliminar el insumo)
+     */
+    void eliminarSaldos(Long insumoId);
+
+    /**
+     * Reconstruye todos los saldos a partir del historial de movimientos
+     */
+    void reconstruirSaldos();
+
+    /**
+     * Indica si el libro de saldos aún no fue inicializado
+     */
+    boolean estaVacio();
+}
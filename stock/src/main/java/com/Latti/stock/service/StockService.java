@@ -0,0 +1,38 @@
+package com.Latti.stock.service;
+
+import com.Latti.stock.modules.Insumo;
+import com.Latti.stock.modules.MovimientoInsumoLote;
+import com.Latti.stock.modules.Producto;
+
+/**
+ * Modificaciones de stockActual mediante UPDATE atómicos en la base.
+ * El stock nunca se escribe desde la entidad: el valor en memoria solo se
+ * actualiza para que las lecturas posteriores de la misma transacción sean coherentes.
+ */
+public interface StockService {
+
+    /**
+     * Suma un delta (positivo o negativo) sin validar el resultado. Usado para entradas y reversiones.
+     */
+    void ajustarInsumo(Insumo insumo, double delta);
+
+    /**
+     * Descuenta stock solo si alcanza; lanza IllegalArgumentException si es insuficiente
+     */
+    void descontarInsumo(Insumo insumo, double cantidad);
+
+    /**
+     * Descuenta con una sola sentencia lo que consumen los detalles de un movimiento ya guardado.
+     * Lanza IllegalArgumentException si a alguno de sus insumos no le alcanza el stock.
+     */
+    void descontarInsumosDeMovimiento(MovimientoInsumoLote movimiento);
+
+    void ajustarProducto(Producto producto, double delta);
+
+    void descontarProducto(Producto producto, double cantidad);
+
+    /**
+     * Fija el stock del producto (edición manual)
+     */
+    void establecerStockProducto(Producto producto, double stock);
+}
@@ -0,0 +1,105 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.dtos.CapacidadProduccionDTO;
+import com.Latti.stock.dtos.CapacidadProduccionDTO.CapacidadItemDTO;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.repositories.ProductoRepository;
+import com.Latti.stock.service.CapacidadService;
+import com.Latti.stock.service.ListaMaterialesService;
+import com.Latti.stock.service.ListaMaterialesService.Capacidad;
+import com.Latti.stock.service.ListaMaterialesService.Requerimientos;
+import com.Latti.stock.service.StockLedgerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongToDoubleFunction;
+
+@Service
+public class CapacidadServiceImplements implements CapacidadService {
+
+    @Autowired
+    private InsumoRepository insumoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private ListaMaterialesService listaMaterialesService;
+
+    @Override
+    @Transactional(readOnly = true)
+    public CapacidadProduccionDTO calcularCapacidad(LocalDate fecha) {
+        // Foto del stock en arreglos paralelos ordenados por id: una consulta para todos los insumos
+        List<Object[]> resumenes = insumoRepository.findResumenesStock();
+        int cantidad = resumenes.size();
+        long[] ids = new long[cantidad];
+        String[] nombres = new String[cantidad];
+        double[] stock = new double[cantidad];
+
+        Map<Long, Double> saldosEnFecha = fecha == null ? null : stockLedgerService.obtenerStocksEnFecha(fecha);
+        for (int i = 0; i < cantidad; i++) {
+            Object[] fila = resumenes.get(i);
+            ids[i] = (Long) fila[0];
+            nombres[i] = (String) fila[1];
+            stock[i] = saldosEnFecha == null
+                    ? ((Number) fila[2]).doubleValue()
+                    : saldosEnFecha.getOrDefault(ids[i], 0.0);
+        }
+
+        LongToDoubleFunction stockDe = insumoId -> {
+            int posicion = Arrays.binarySearch(ids, insumoId);
+            return posicion < 0 ? 0.0 : stock[posicion];
+        };
+
+        // Productos: los compuestos de su receta se consumen ya ensamblados
+        Map<Long, Requerimientos> recetasProductos = listaMaterialesService.recetasProductos();
+        List<CapacidadItemDTO> productos = new ArrayList<>();
+        for (Object[] fila : productoRepository.findResumenesStock()) {
+            Long productoId = (Long) fila[0];
+            Requerimientos receta = recetasProductos.getOrDefault(productoId, Requerimientos.VACIO);
+            productos.add(aItem(productoId, (String) fila[1], receta, stockDe, ids, nombres));
+        }
+
+        // Compuestos: sus componentes directos
+        Map<Long, Requerimientos> recetasCompuestos = listaMaterialesService.recetasCompuestos();
+        List<CapacidadItemDTO> compuestos = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            Requerimientos receta = recetasCompuestos.get(ids[i]);
+            if (receta != null) {
+                compuestos.add(aItem(ids[i], nombres[i], receta, stockDe, ids, nombres));
+            }
+        }
+
+        return new CapacidadProduccionDTO(fecha, productos, compuestos);
+    }
+
+    private CapacidadItemDTO aItem(Long id, String nombre, Requerimientos receta, LongToDoubleFunction stockDe,
+                                   long[] ids, String[] nombres) {
+        if (receta.estaVacio()) {
+            return new CapacidadItemDTO(id, nombre, null, null, null, null, null);
+        }
+
+        Capacidad capacidad = receta.capacidad(stockDe);
+        long limitanteId = capacidad.insumoLimitanteId();
+        int posicionReceta = Arrays.binarySearch(receta.insumoIds(), limitanteId);
+        int posicionInsumo = Arrays.binarySearch(ids, limitanteId);
+        return new CapacidadItemDTO(
+                id,
+                nombre,
+                capacidad.maximo(),
+                limitanteId,
+                posicionInsumo < 0 ? null : nombres[posicionInsumo],
+                stockDe.applyAsDouble(limitanteId),
+                receta.cantidades()[posicionReceta]
+        );
+    }
+}
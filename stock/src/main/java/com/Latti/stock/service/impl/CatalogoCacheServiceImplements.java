@@ -0,0 +1,32 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.service.CatalogoCacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CatalogoCacheServiceImplements implements CatalogoCacheService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Override
+    public void invalidarInsumos() {
+        limpiar(INSUMOS);
+        limpiar(INSUMOS_COMPUESTOS);
+    }
+
+    @Override
+    public void invalidarProductos() {
+        limpiar(PRODUCTOS);
+    }
+
+    private void limpiar(String nombre) {
+        Cache cache = cacheManager.getCache(nombre);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.modules.DetalleMovimientoInsumo;
+import com.Latti.stock.modules.Insumo;
+import com.Latti.stock.repositories.DetalleMovimientoInsumoRepository;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.service.CatalogoCacheService;
+import com.Latti.stock.service.ComprasInsumoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Service
+public class ComprasInsumoServiceImplements implements ComprasInsumoService {
+
+    @Autowired
+    private InsumoRepository insumoRepository;
+
+    @Autowired
+    private DetalleMovimientoInsumoRepository detalleRepository;
+
+    @Autowired
+    private CatalogoCacheService catalogoCacheService;
+
+    @Override
+    @Transactional
+    public void registrarCompra(Insumo insumo, LocalDate fecha, double cantidad, double precioTotal) {
+        if (insumoRepository.acumularCompra(insumo.getId(), cantidad, precioTotal) == 0) {
+            throw new IllegalArgumentException("Insumo no encontrado: " + insumo.getId());
+        }
+        insumo.setTotalInvertido(insumo.getTotalInvertido() + precioTotal);
+        insumo.setCantidadComprada(insumo.getCantidadComprada() + cantidad);
+
+        if (cantidad > 0) {
+            double precioUnidad = precioTotal / cantidad;
+            if (insumoRepository.registrarUltimaCompraSiPosterior(insumo.getId(), fecha, precioUnidad) > 0) {
+                insumo.setUltimoPrecioCompra(precioUnidad);
+                insumo.setFechaUltimaCompra(fecha);
+            }
+        }
+        catalogoCacheService.invalidarInsumos();
+    }
+
+    @Override
+    @Transactional
+    public void revertirCompra(Insumo insumo, double cantidad, double precioTotal) {
+        insumoRepository.acumularCompra(insumo.getId(), -cantidad, -precioTotal);
+        insumo.setTotalInvertido(insumo.getTotalInvertido() - precioTotal);
+        insumo.setCantidadComprada(insumo.getCantidadComprada() - cantidad);
+        catalogoCacheService.invalidarInsumos();
+    }
+
+    @Override
+    @Transactional
+    public void actualizarUltimaCompra(Collection<Long> insumoIds) {
+        for (Long insumoId : insumoIds) {
+            // Solo se lee la compra más reciente, no todo el historial
+            List<DetalleMovimientoInsumo> ultimas = detalleRepository.findUltimasCompras(insumoId, PageRequest.of(0, 1));
+            if (ultimas.isEmpty()) {
+                insumoRepository.establecerUltimaCompra(insumoId, null, null);
+            } else {
+                DetalleMovimientoInsumo ultima = ultimas.get(0);
+                Double precioUnidad = ultima.getCantidad() > 0 ? ultima.getPrecioTotal() / ultima.getCantidad() : null;
+                insumoRepository.establecerUltimaCompra(insumoId, ultima.getMovimiento().getFecha(), precioUnidad);
+            }
+        }
+        catalogoCacheService.invalidarInsumos();
+    }
+
+    @Override
+    @Transactional
+    public void reconstruirCompras() {
+        int actualizados = insumoRepository.reconstruirTotalesCompras();
+        actualizarUltimaCompra(insumoRepository.findAll().stream().map(Insumo::getId).toList());
+        System.out.println("🧾 Agregados de compras reconstruidos para " + actualizados + " insumos");
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean faltaInicializar() {
+        return !insumoRepository.findIdsSinAgregadosCompras().isEmpty();
+    }
+}
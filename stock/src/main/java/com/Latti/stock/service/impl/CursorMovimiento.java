@@ -0,0 +1,43 @@
+package com.Latti.stock.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Cursor opaco para la paginación por clave (fecha, id) del historial de movimientos.
+ * Se codifica como "fecha|id" en base64 URL-safe.
+ */
+record CursorMovimiento(LocalDate fecha, Long id) {
+
+    static final int LIMITE_POR_DEFECTO = 50;
+    static final int LIMITE_MAXIMO = 500;
+
+    String codificar() {
+        String valor = fecha + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static CursorMovimiento decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = valor.split("\\|");
+            return new CursorMovimiento(LocalDate.parse(partes[0]), Long.parseLong(partes[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido");
+        }
+    }
+
+    static int normalizarLimite(Integer limite) {
+        if (limite == null) {
+            return LIMITE_POR_DEFECTO;
+        }
+        if (limite <= 0) {
+            throw new IllegalArgumentException("El límite debe ser mayor a 0");
+        }
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+}
@@ -0,0 +1,160 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.dtos.FilaMovimientoInsumoDTO;
+import com.Latti.stock.dtos.FilaMovimientoProductoDTO;
+import com.Latti.stock.repositories.MovimientoInsumoLoteRepository;
+import com.Latti.stock.repositories.MovimientoProductoLoteRepository;
+import com.Latti.stock.service.ExportacionMovimientosService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+@Service
+public class ExportacionMovimientosServiceImplements implements ExportacionMovimientosService {
+
+    private static final String CSV = "csv";
+    private static final String NDJSON = "ndjson";
+
+    private static final String CABECERA_INSUMOS =
+            "movimientoId,fecha,tipoMovimiento,descripcion,insumoId,insumo,cantidad,unidadMedida,precioDeCompra,precioTotal,ensambleId";
+    private static final String CABECERA_PRODUCTOS =
+            "movimientoId,fecha,tipoMovimiento,descripcion,productoId,producto,cantidad,precioInversion,precioVenta,lote,fechaVencimiento";
+
+    @Autowired
+    private MovimientoInsumoLoteRepository movimientoInsumoLoteRepository;
+
+    @Autowired
+    private MovimientoProductoLoteRepository movimientoProductoLoteRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public String validarFormato(String formato) {
+        String normalizado = formato == null ? CSV : formato.trim().toLowerCase();
+        if (!CSV.equals(normalizado) && !NDJSON.equals(normalizado)) {
+            throw new IllegalArgumentException("Formato de exportación no soportado: " + formato + " (usar csv o ndjson)");
+        }
+        return normalizado;
+    }
+
+    @Override
+    public void exportarMovimientosInsumo(String formato, OutputStream salida) {
+        String formatoValido = validarFormato(formato);
+        // El cursor de la base solo se mantiene abierto dentro de una transacción
+        lecturaEnTransaccion().executeWithoutResult(status -> {
+            try (Stream<FilaMovimientoInsumoDTO> filas = movimientoInsumoLoteRepository.streamFilasMovimientos()) {
+                Writer writer = crearWriter(salida);
+                if (CSV.equals(formatoValido)) {
+                    escribirLinea(writer, CABECERA_INSUMOS);
+                }
+                filas.forEach(fila -> escribirLinea(writer, CSV.equals(formatoValido) ? aCsv(fila) : aJson(fila)));
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void exportarMovimientosProducto(String formato, OutputStream salida) {
+        String formatoValido = validarFormato(formato);
+        lecturaEnTransaccion().executeWithoutResult(status -> {
+            try (Stream<FilaMovimientoProductoDTO> filas = movimientoProductoLoteRepository.streamFilasMovimientos()) {
+                Writer writer = crearWriter(salida);
+                if (CSV.equals(formatoValido)) {
+                    escribirLinea(writer, CABECERA_PRODUCTOS);
+                }
+                filas.forEach(fila -> escribirLinea(writer, CSV.equals(formatoValido) ? aCsv(fila) : aJson(fila)));
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private TransactionTemplate lecturaEnTransaccion() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private Writer crearWriter(OutputStream salida) {
+        return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+    }
+
+    private void escribirLinea(Writer writer, String linea) {
+        try {
+            writer.write(linea);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String aJson(Object fila) {
+        try {
+            return objectMapper.writeValueAsString(fila);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String aCsv(FilaMovimientoInsumoDTO fila) {
+        return String.join(",",
+                valorCsv(fila.movimientoId()),
+                valorCsv(fila.fecha()),
+                valorCsv(fila.tipoMovimiento()),
+                valorCsv(fila.descripcion()),
+                valorCsv(fila.insumoId()),
+                valorCsv(fila.nombre()),
+                valorCsv(fila.cantidad()),
+                valorCsv(fila.unidadMedida()),
+                valorCsv(fila.precioDeCompra()),
+                valorCsv(fila.precioTotal()),
+                valorCsv(fila.ensambleId()));
+    }
+
+    private String aCsv(FilaMovimientoProductoDTO fila) {
+        return String.join(",",
+                valorCsv(fila.movimientoId()),
+                valorCsv(fila.fecha()),
+                valorCsv(fila.tipoMovimiento()),
+                valorCsv(fila.descripcion()),
+                valorCsv(fila.productoId()),
+                valorCsv(fila.nombre()),
+                valorCsv(fila.cantidad()),
+                valorCsv(fila.precioInversion()),
+                valorCsv(fila.precioVenta()),
+                valorCsv(fila.lote()),
+                valorCsv(fila.fechaVencimiento()));
+    }
+
+    /**
+     * Escapa un valor según RFC 4180: entre comillas si contiene separadores, comillas o saltos de línea
+     */
+    private String valorCsv(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto = valor.toString();
+        if (texto.contains(",") || texto.contains("\"") || texto.contains("\n") || texto.contains("\r")) {
+            return "\"" + texto.replace("\"", "\"\"") + "\"";
+        }
+        return texto;
+    }
+}
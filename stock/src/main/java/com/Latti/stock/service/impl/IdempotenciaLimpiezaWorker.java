@@ -0,0 +1,29 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.service.IdempotenciaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Elimina periódicamente las claves Idempotency-Key vencidas.
+ * Puede correr en todas las instancias a la vez: el borrado es por fecha y no depende de quién lo haga.
+ */
+@Component
+public class IdempotenciaLimpiezaWorker {
+
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+
+    @Scheduled(fixedDelayString = "${latti.idempotencia.limpieza-ms:600000}")
+    public void limpiar() {
+        try {
+            int eliminadas = idempotenciaService.purgarVencidas();
+            if (eliminadas > 0) {
+                System.out.println("🧹 Claves de idempotencia vencidas eliminadas: " + eliminadas);
+            }
+        } catch (Exception e) {
+            System.err.println("Error al limpiar claves de idempotencia: " + e.getMessage());
+        }
+    }
+}
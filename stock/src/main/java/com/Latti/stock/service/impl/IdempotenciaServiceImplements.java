@@ -0,0 +1,162 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.modules.SolicitudIdempotente;
+import com.Latti.stock.repositories.SolicitudIdempotenteRepository;
+import com.Latti.stock.service.IdempotenciaService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Claves guardadas en la tabla solicitud_idempotente: la restricción única decide qué solicitud
+ * ejecuta la operación aunque los reintentos lleguen a distintas instancias.
+ * Reclamar, registrar el resultado y liberar la clave se confirman cada uno en su propia
+ * transacción, por fuera de la operación (que se reintenta con transacciones nuevas).
+ */
+@Service
+public class IdempotenciaServiceImplements implements IdempotenciaService {
+
+    private static final int LARGO_MAXIMO_CLAVE = 255;
+
+    @Autowired
+    private SolicitudIdempotenteRepository solicitudRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${latti.idempotencia.ttl-minutos:1440}")
+    private long ttlMinutos;
+
+    // Cuánto espera un reintento a que termine la primera solicitud antes de rendirse
+    @Value("${latti.idempotencia.espera-maxima-ms:30000}")
+    private long esperaMaximaMs;
+
+    @Value("${latti.idempotencia.intervalo-espera-ms:100}")
+    private long intervaloEsperaMs;
+
+    // Plazo para registrar el resultado; pasado ese tiempo la clave sin resultado se da por abandonada
+    // (la instancia murió a mitad de la operación). Debe superar la duración de la operación más lenta.
+    @Value("${latti.idempotencia.concesion-ms:120000}")
+    private long concesionMs;
+
+    @Override
+    public Resultado<Long> ejecutar(String clave, String operacion, Object solicitud, Supplier<Long> accion) {
+        if (clave == null || clave.isBlank()) {
+            return new Resultado<>(accion.get(), false);
+        }
+        if (clave.length() > LARGO_MAXIMO_CLAVE) {
+            throw new IllegalArgumentException("El header " + HEADER + " no puede superar " + LARGO_MAXIMO_CLAVE + " caracteres");
+        }
+
+        String claveCompleta = operacion + ":" + clave.trim();
+        String huella = huella(solicitud);
+        long limiteEspera = System.currentTimeMillis() + esperaMaximaMs;
+
+        while (true) {
+            Long reclamada = reclamar(claveCompleta, huella);
+            if (reclamada != null) {
+                return new Resultado<>(ejecutarReclamada(reclamada, accion), false);
+            }
+
+            Optional<SolicitudIdempotente> existente = solicitudRepository.findByClave(claveCompleta);
+            if (existente.isPresent()) {
+                SolicitudIdempotente original = existente.get();
+                if (!original.getHuella().equals(huella)) {
+                    throw new IllegalArgumentException("La clave " + HEADER + " ya se usó con una solicitud distinta");
+                }
+                if (original.getResultado() != null) {
+                    System.out.println("♻️ Solicitud repetida con " + HEADER + " " + clave + ": se devuelve el resultado original");
+                    return new Resultado<>(original.getResultado(), true);
+                }
+                // Si la concesión venció, la próxima vuelta la libera en reclamar() y la vuelve a reclamar
+                if (System.currentTimeMillis() >= limiteEspera) {
+                    throw new IllegalArgumentException("La solicitud original con " + HEADER + " " + clave +
+                            " todavía está en curso. Reintente más tarde");
+                }
+                esperar();
+            }
+            // Si la clave ya no está, la primera solicitud falló y la liberó: se vuelve a reclamar
+        }
+    }
+
+    /**
+     * Inserta la clave. Devuelve su id, o null si otra solicitud ya la tenía (restricción única).
+     */
+    private Long reclamar(String clave, String huella) {
+        try {
+            return enTransaccionNueva().execute(status -> {
+                LocalDateTime ahora = LocalDateTime.now();
+                solicitudRepository.eliminarVencida(clave, ahora.minusMinutes(ttlMinutos), ahora);
+                return solicitudRepository.saveAndFlush(new SolicitudIdempotente(clave, huella, concesionMs)).getId();
+            });
+        } catch (DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    private Long ejecutarReclamada(Long id, Supplier<Long> accion) {
+        Long valor;
+        try {
+            valor = accion.get();
+        } catch (RuntimeException e) {
+            // Si falló, la clave se libera para que el cliente pueda reintentar
+            enTransaccionNueva().executeWithoutResult(status -> solicitudRepository.eliminar(id));
+            throw e;
+        }
+        int registradas = enTransaccionNueva().execute(status -> solicitudRepository.registrarResultado(id, valor));
+        if (registradas == 0) {
+            System.out.println("⚠️ La concesión de la solicitud idempotente " + id + " venció antes de registrar el resultado");
+        }
+        return valor;
+    }
+
+    @Override
+    public int purgarVencidas() {
+        LocalDateTime ahora = LocalDateTime.now();
+        return enTransaccionNueva().execute(status -> solicitudRepository.eliminarVencidas(ahora.minusMinutes(ttlMinutos), ahora));
+    }
+
+    /**
+     * SHA-256 del cuerpo serializado: dos cuerpos iguales dan la misma huella en cualquier instancia
+     */
+    private String huella(Object solicitud) {
+        try {
+            byte[] cuerpo = objectMapper.writeValueAsString(solicitud).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(cuerpo));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular la huella de la solicitud", e);
+        }
+    }
+
+    private TransactionTemplate enTransaccionNueva() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private void esperar() {
+        try {
+            Thread.sleep(intervaloEsperaMs);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Espera de solicitud idempotente interrumpida", ie);
+        }
+    }
+}
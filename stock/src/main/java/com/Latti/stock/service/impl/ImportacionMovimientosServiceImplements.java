@@ -0,0 +1,548 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.dtos.CrearMovimientoDeInsumoDTO;
+import com.Latti.stock.dtos.CrearMovimientoProductoDTO;
+import com.Latti.stock.dtos.DetalleMovimientoInsumoDTO;
+import com.Latti.stock.dtos.DetalleMovimientoProductoDTO;
+import com.Latti.stock.dtos.ReporteImportacionDTO;
+import com.Latti.stock.dtos.ResultadoFilaImportacionDTO;
+import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.repositories.InsumoRecetaRepository;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.repositories.ProductoRepository;
+import com.Latti.stock.service.ImportacionMovimientosService;
+import com.Latti.stock.service.MovimientoInsumoLoteService;
+import com.Latti.stock.service.MovimientoProductoLoteService;
+import com.Latti.stock.service.ReintentoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class ImportacionMovimientosServiceImplements implements ImportacionMovimientosService {
+
+    private static final List<String> COLUMNAS_INSUMOS =
+            List.of("fecha", "descripcion", "tipoMovimiento", "insumoId", "cantidad", "precio");
+    private static final List<String> COLUMNAS_PRODUCTOS =
+            List.of("fecha", "descripcion", "tipoMovimiento", "productoId", "cantidad", "precioVenta", "fechaVencimiento", "lote");
+
+    // Mismo tope que aplica crearMovimientoInsumo
+    private static final double PRECIO_MAXIMO = 1000000;
+
+    // Cantidad aproximada de filas que se persisten en cada transacción
+    @Value("${latti.importacion.tamanio-lote:200}")
+    private int tamanioLote;
+
+    @Autowired
+    private InsumoRepository insumoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private InsumoRecetaRepository insumoRecetaRepository;
+
+    @Autowired
+    private MovimientoInsumoLoteService movimientoInsumoLoteService;
+
+    @Autowired
+    private MovimientoProductoLoteService movimientoProductoLoteService;
+
+    @Autowired
+    private ReintentoService reintentoService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    public ReporteImportacionDTO importarMovimientosInsumo(InputStream csv) {
+        return importar(csv, COLUMNAS_INSUMOS, new ImportadorInsumos(cargarSnapshot()));
+    }
+
+    @Override
+    public ReporteImportacionDTO importarMovimientosProducto(InputStream csv) {
+        return importar(csv, COLUMNAS_PRODUCTOS, new ImportadorProductos(cargarSnapshot()));
+    }
+
+    private SnapshotImportacion cargarSnapshot() {
+        return new SnapshotImportacion(
+                insumoRepository.findResumenesStock(),
+                productoRepository.findResumenesStock(),
+                insumoRecetaRepository.findCantidadesPorProducto());
+    }
+
+    private <D> ReporteImportacionDTO importar(InputStream csv, List<String> columnas, Importador<D> importador) {
+        List<ResultadoFilaImportacionDTO> resultados = new ArrayList<>();
+        int movimientosCreados = 0;
+
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            String cabecera = lector.readLine();
+            if (cabecera == null || cabecera.isBlank()) {
+                throw new IllegalArgumentException("El archivo CSV está vacío");
+            }
+            char separador = detectarSeparador(cabecera);
+            Map<String, Integer> indices = leerCabecera(cabecera, separador, columnas);
+
+            List<MovimientoImportado<D>> lote = new ArrayList<>();
+            int filasEnLote = 0;
+            MovimientoImportado<D> actual = null;
+            int numeroFila = 1;
+            String linea;
+
+            while ((linea = lector.readLine()) != null) {
+                numeroFila++;
+                if (linea.isBlank()) {
+                    continue;
+                }
+                FilaCsv fila;
+                LocalDate fecha;
+                String descripcion;
+                TipoMovimiento tipo;
+                try {
+                    fila = new FilaCsv(separarCampos(linea, separador), indices);
+                    fecha = fila.fecha("fecha");
+                    if (fecha == null) {
+                        throw new IllegalArgumentException("La fecha es obligatoria");
+                    }
+                    descripcion = fila.texto("descripcion");
+                    tipo = fila.tipo("tipoMovimiento");
+                } catch (IllegalArgumentException e) {
+                    // Sin fecha o tipo la fila no se puede asignar a ningún movimiento: se rechaza sola
+                    resultados.add(ResultadoFilaImportacionDTO.rechazada(numeroFila, e.getMessage()));
+                    continue;
+                }
+
+                if (actual == null || !actual.agrupa(fecha, descripcion, tipo)) {
+                    if (actual != null) {
+                        filasEnLote += cerrarMovimiento(actual, lote, importador, resultados);
+                    }
+                    if (filasEnLote >= tamanioLote) {
+                        movimientosCreados += persistirLote(lote, importador, resultados);
+                        lote.clear();
+                        filasEnLote = 0;
+                    }
+                    actual = new MovimientoImportado<>(fecha, descripcion, tipo);
+                }
+                try {
+                    actual.agregar(numeroFila, importador.validar(fila, tipo));
+                } catch (IllegalArgumentException e) {
+                    actual.rechazar(numeroFila, e.getMessage());
+                }
+            }
+
+            if (actual != null) {
+                cerrarMovimiento(actual, lote, importador, resultados);
+            }
+            if (!lote.isEmpty()) {
+                movimientosCreados += persistirLote(lote, importador, resultados);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al leer el archivo CSV", e);
+        }
+
+        resultados.sort(Comparator.comparingInt(ResultadoFilaImportacionDTO::fila));
+        int importadas = (int) resultados.stream().filter(ResultadoFilaImportacionDTO::importada).count();
+        System.out.println("📥 Importación finalizada: " + importadas + " filas importadas, " +
+                (resultados.size() - importadas) + " rechazadas, " + movimientosCreados + " movimientos creados");
+        return new ReporteImportacionDTO(resultados.size(), importadas, resultados.size() - importadas,
+                movimientosCreados, resultados);
+    }
+
+    /**
+     * Agrega el movimiento al lote si todas sus filas son válidas. Si alguna no lo es, el movimiento
+     * completo se rechaza (no se registra un movimiento parcial): se libera el stock reservado y
+     * cada fila se informa como rechazada.
+     *
+     * @return cantidad de filas agregadas al lote
+     */
+    private <D> int cerrarMovimiento(MovimientoImportado<D> movimiento, List<MovimientoImportado<D>> lote,
+                                     Importador<D> importador, List<ResultadoFilaImportacionDTO> resultados) {
+        if (movimiento.errores.isEmpty()) {
+            lote.add(movimiento);
+            return movimiento.filas.size();
+        }
+        importador.liberar(movimiento);
+        movimiento.errores.forEach((fila, error) -> resultados.add(ResultadoFilaImportacionDTO.rechazada(fila, error)));
+        String error = "Movimiento rechazado completo: hay errores en las filas " +
+                movimiento.errores.keySet().stream().map(String::valueOf).collect(Collectors.joining(", "));
+        for (Integer fila : movimiento.filas) {
+            resultados.add(ResultadoFilaImportacionDTO.rechazada(fila, error));
+        }
+        return 0;
+    }
+
+    /**
+     * Persiste los movimientos del lote en una sola transacción. Si alguno es rechazado por una
+     * regla que depende de la base (stock histórico, lotes, fechas), el lote completo se revierte
+     * y se reintenta de a un movimiento para aislar solo las filas con error.
+     *
+     * @return cantidad de movimientos creados
+     */
+    private <D> int persistirLote(List<MovimientoImportado<D>> lote, Importador<D> importador,
+                                  List<ResultadoFilaImportacionDTO> resultados) {
+        TransactionTemplate escritura = new TransactionTemplate(transactionManager);
+        try {
+            List<Long> ids = reintentoService.ejecutar(() -> escritura.execute(status -> {
+                // Con las entidades ya en el contexto de persistencia, los findById del servicio no consultan la base
+                importador.precargar(lote);
+                List<Long> creados = new ArrayList<>();
+                for (MovimientoImportado<D> movimiento : lote) {
+                    creados.add(importador.persistir(movimiento));
+                }
+                return creados;
+            }));
+            for (int i = 0; i < lote.size(); i++) {
+                marcarImportadas(lote.get(i), ids.get(i), resultados);
+            }
+            return lote.size();
+        } catch (RuntimeException e) {
+            System.out.println("⚠️ Lote de importación rechazado, se reintenta movimiento por movimiento: " + e.getMessage());
+        }
+
+        int creados = 0;
+        for (MovimientoImportado<D> movimiento : lote) {
+            try {
+                Long id = reintentoService.ejecutar(() -> importador.persistir(movimiento));
+                marcarImportadas(movimiento, id, resultados);
+                creados++;
+            } catch (RuntimeException e) {
+                importador.liberar(movimiento);
+                String error = e instanceof IllegalArgumentException
+                        ? e.getMessage()
+                        : "Error inesperado al registrar el movimiento: " + e.getMessage();
+                for (Integer fila : movimiento.filas) {
+                    resultados.add(ResultadoFilaImportacionDTO.rechazada(fila, error));
+                }
+            }
+        }
+        return creados;
+    }
+
+    private void marcarImportadas(MovimientoImportado<?> movimiento, Long id, List<ResultadoFilaImportacionDTO> resultados) {
+        for (Integer fila : movimiento.filas) {
+            resultados.add(ResultadoFilaImportacionDTO.importada(fila, id));
+        }
+    }
+
+    private char detectarSeparador(String cabecera) {
+        // Las planillas en español suelen exportar CSV con punto y coma
+        return cabecera.indexOf(';') >= 0 && cabecera.indexOf(',') < 0 ? ';' : ',';
+    }
+
+    private Map<String, Integer> leerCabecera(String cabecera, char separador, List<String> columnas) {
+        List<String> nombres = separarCampos(cabecera.replace("\uFEFF", ""), separador);
+        Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < nombres.size(); i++) {
+            indices.put(nombres.get(i).trim().toLowerCase(), i);
+        }
+        List<String> faltantes = columnas.stream()
+                .filter(c -> !indices.containsKey(c.toLowerCase()))
+                .toList();
+        if (!faltantes.isEmpty()) {
+            throw new IllegalArgumentException("Faltan columnas en el CSV: " + String.join(", ", faltantes));
+        }
+        return indices;
+    }
+
+    /**
+     * Separa una línea respetando comillas dobles (RFC 4180). No admite saltos de línea dentro de un campo.
+     */
+    private List<String> separarCampos(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar en la fila");
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    /**
+     * Fila del CSV con acceso a los campos por nombre de columna
+     */
+    private static class FilaCsv {
+        private final List<String> campos;
+        private final Map<String, Integer> indices;
+
+        FilaCsv(List<String> campos, Map<String, Integer> indices) {
+            this.campos = campos;
+            this.indices = indices;
+        }
+
+        String texto(String columna) {
+            Integer indice = indices.get(columna.toLowerCase());
+            if (indice == null || indice >= campos.size()) {
+                return null;
+            }
+            String valor = campos.get(indice).trim();
+            return valor.isEmpty() ? null : valor;
+        }
+
+        Long id(String columna) {
+            String valor = texto(columna);
+            if (valor == null) {
+                throw new IllegalArgumentException("La columna " + columna + " es obligatoria");
+            }
+            try {
+                return Long.parseLong(valor);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor inválido en " + columna + ": " + valor);
+            }
+        }
+
+        double numero(String columna, double porDefecto) {
+            String valor = texto(columna);
+            if (valor == null) {
+                return porDefecto;
+            }
+            try {
+                return Double.parseDouble(valor.replace(',', '.'));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valor inválido en " + columna + ": " + valor);
+            }
+        }
+
+        LocalDate fecha(String columna) {
+            String valor = texto(columna);
+            if (valor == null) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(valor);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Fecha inválida en " + columna + " (usar AAAA-MM-DD): " + valor);
+            }
+        }
+
+        TipoMovimiento tipo(String columna) {
+            String valor = texto(columna);
+            try {
+                return TipoMovimiento.valueOf(Objects.requireNonNull(valor).toUpperCase());
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Tipo de movimiento inválido: " + valor + " (usar ENTRADA o SALIDA)");
+            }
+        }
+    }
+
+    /**
+     * Filas consecutivas del CSV que forman un mismo movimiento. Las filas inválidas quedan en
+     * errores y hacen que se rechace el movimiento completo.
+     */
+    private static class MovimientoImportado<D> {
+        private final LocalDate fecha;
+        private final String descripcion;
+        private final TipoMovimiento tipo;
+        private final List<D> detalles = new ArrayList<>();
+        private final List<Integer> filas = new ArrayList<>();
+        private final Map<Integer, String> errores = new LinkedHashMap<>();
+
+        MovimientoImportado(LocalDate fecha, String descripcion, TipoMovimiento tipo) {
+            this.fecha = fecha;
+            this.descripcion = descripcion;
+            this.tipo = tipo;
+        }
+
+        boolean agrupa(LocalDate fecha, String descripcion, TipoMovimiento tipo) {
+            return this.fecha.equals(fecha) && Objects.equals(this.descripcion, descripcion) && this.tipo == tipo;
+        }
+
+        void agregar(int fila, D detalle) {
+            filas.add(fila);
+            detalles.add(detalle);
+        }
+
+        void rechazar(int fila, String error) {
+            errores.put(fila, error);
+        }
+    }
+
+    /**
+     * Reglas de cada tipo de importación: validación contra el snapshot, precarga y persistencia
+     */
+    private interface Importador<D> {
+
+        /**
+         * Valida la fila en memoria y reserva su efecto sobre el stock del snapshot
+         */
+        D validar(FilaCsv fila, TipoMovimiento tipo);
+
+        /**
+         * Devuelve al snapshot el stock reservado por un movimiento que no se pudo persistir
+         */
+        void liberar(MovimientoImportado<D> movimiento);
+
+        /**
+         * Carga en una sola consulta las entidades que usará el lote dentro de la transacción
+         */
+        void precargar(List<MovimientoImportado<D>> lote);
+
+        Long persistir(MovimientoImportado<D> movimiento);
+    }
+
+    private class ImportadorInsumos implements Importador<DetalleMovimientoInsumoDTO> {
+        private final SnapshotImportacion snapshot;
+
+        ImportadorInsumos(SnapshotImportacion snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public DetalleMovimientoInsumoDTO validar(FilaCsv fila, TipoMovimiento tipo) {
+            Long insumoId = fila.id("insumoId");
+            String nombre = snapshot.nombreInsumo(insumoId);
+            double cantidad = fila.numero("cantidad", 0);
+            double precio = fila.numero("precio", 0);
+
+            if (cantidad <= 0) {
+                throw new IllegalArgumentException("La cantidad debe ser mayor a 0 para el insumo: " + nombre);
+            }
+            if (tipo == TipoMovimiento.ENTRADA) {
+                if (precio <= 0) {
+                    throw new IllegalArgumentException("El precio debe ser mayor a 0 para el insumo: " + nombre);
+                }
+                if (precio > PRECIO_MAXIMO) {
+                    throw new IllegalArgumentException("El precio parece ser demasiado alto para el insumo: " + nombre);
+                }
+                snapshot.sumarInsumo(insumoId, cantidad);
+            } else {
+                snapshot.reservarInsumo(insumoId, cantidad);
+            }
+            return new DetalleMovimientoInsumoDTO(insumoId, cantidad, precio);
+        }
+
+        @Override
+        public void liberar(MovimientoImportado<DetalleMovimientoInsumoDTO> movimiento) {
+            double signo = movimiento.tipo == TipoMovimiento.ENTRADA ? -1 : 1;
+            for (DetalleMovimientoInsumoDTO d : movimiento.detalles) {
+                snapshot.sumarInsumo(d.insumoId(), signo * d.cantidad());
+            }
+        }
+
+        @Override
+        public void precargar(List<MovimientoImportado<DetalleMovimientoInsumoDTO>> lote) {
+            Set<Long> ids = new HashSet<>();
+            lote.forEach(m -> m.detalles.forEach(d -> ids.add(d.insumoId())));
+            insumoRepository.findAllById(ids);
+        }
+
+        @Override
+        public Long persistir(MovimientoImportado<DetalleMovimientoInsumoDTO> movimiento) {
+            return movimientoInsumoLoteService.crearMovimientoInsumo(new CrearMovimientoDeInsumoDTO(
+                    movimiento.fecha, movimiento.descripcion, movimiento.tipo, movimiento.detalles)).getId();
+        }
+    }
+
+    private class ImportadorProductos implements Importador<DetalleMovimientoProductoDTO> {
+        private final SnapshotImportacion snapshot;
+
+        ImportadorProductos(SnapshotImportacion snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public DetalleMovimientoProductoDTO validar(FilaCsv fila, TipoMovimiento tipo) {
+            Long productoId = fila.id("productoId");
+            String nombre = snapshot.nombreProducto(productoId);
+            double cantidad = fila.numero("cantidad", 0);
+            double precioVenta = fila.numero("precioVenta", 0);
+            LocalDate fechaVencimiento = fila.fecha("fechaVencimiento");
+            String lote = fila.texto("lote");
+
+            if (cantidad <= 0) {
+                throw new IllegalArgumentException("La cantidad debe ser mayor a 0 para el producto: " + nombre);
+            }
+            if (tipo == TipoMovimiento.ENTRADA) {
+                if (fechaVencimiento != null && fechaVencimiento.isBefore(LocalDate.now())) {
+                    throw new IllegalArgumentException("La fecha de vencimiento debe ser futura para el producto: " + nombre);
+                }
+                // La producción consume los insumos de la receta
+                snapshot.reservarReceta(productoId, cantidad);
+                snapshot.sumarProducto(productoId, cantidad);
+            } else {
+                if (precioVenta < 0) {
+                    throw new IllegalArgumentException("El precio de venta no puede ser negativo para el producto: " + nombre);
+                }
+                snapshot.reservarProducto(productoId, cantidad);
+            }
+            return new DetalleMovimientoProductoDTO(productoId, cantidad, precioVenta, fechaVencimiento, lote);
+        }
+
+        @Override
+        public void liberar(MovimientoImportado<DetalleMovimientoProductoDTO> movimiento) {
+            for (DetalleMovimientoProductoDTO d : movimiento.detalles) {
+                if (movimiento.tipo == TipoMovimiento.ENTRADA) {
+                    snapshot.liberarReceta(d.id(), d.cantidad());
+                    snapshot.sumarProducto(d.id(), -d.cantidad());
+                } else {
+                    snapshot.sumarProducto(d.id(), d.cantidad());
+                }
+            }
+        }
+
+        @Override
+        public void precargar(List<MovimientoImportado<DetalleMovimientoProductoDTO>> lote) {
+            Set<Long> productoIds = new HashSet<>();
+            Set<Long> insumoIds = new HashSet<>();
+            for (MovimientoImportado<DetalleMovimientoProductoDTO> movimiento : lote) {
+                for (DetalleMovimientoProductoDTO d : movimiento.detalles) {
+                    productoIds.add(d.id());
+                    if (movimiento.tipo == TipoMovimiento.ENTRADA) {
+                        insumoIds.addAll(snapshot.receta(d.id()).keySet());
+                    }
+                }
+            }
+            productoRepository.findAllById(productoIds);
+            if (!insumoIds.isEmpty()) {
+                insumoRepository.findAllById(insumoIds);
+            }
+        }
+
+        @Override
+        public Long persistir(MovimientoImportado<DetalleMovimientoProductoDTO> movimiento) {
+            return movimientoProductoLoteService.crearMovimientoProducto(new CrearMovimientoProductoDTO(
+                    movimiento.fecha, movimiento.descripcion, movimiento.tipo, movimiento.detalles)).getId();
+        }
+    }
+}
@@ -4,15 +4,27 @@ import com.Latti.stock.dtos.CrearInsumoCompuestoDTO;
 import com.Latti.stock.dtos.EnsamblarInsumoCompuestoDTO;
 import com.Latti.stock.dtos.InsumoCompuestoResponseDTO;
 import com.Latti.stock.modules.*;
+import com.Latti.stock.repositories.EnsambleRepository;
 import com.Latti.stock.repositories.InsumoRepository;
 import com.Latti.stock.repositories.RecetaInsumoRepository;
+import com.Latti.stock.service.CatalogoCacheService;
 import com.Latti.stock.service.InsumoCompuestoService;
+import com.Latti.stock.service.ListaMaterialesService;
 import com.Latti.stock.service.MovimientoInsumoLoteService;
+import com.Latti.stock.service.PropagacionCostosService;
+import com.Latti.stock.service.StockLedgerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -25,11 +37,27 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
     @Autowired
     private RecetaInsumoRepository recetaInsumoRepository;
 
+    @Autowired
+    private EnsambleRepository ensambleRepository;
+
     @Autowired
     private MovimientoInsumoLoteService movimientoInsumoLoteService;
 
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private PropagacionCostosService propagacionCostosService;
+
+    @Autowired
+    private ListaMaterialesService listaMaterialesService;
+
     @Override
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS, allEntries = true),
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS_COMPUESTOS, allEntries = true)
+    })
     public InsumoCompuestoResponseDTO crearInsumoCompuesto(CrearInsumoCompuestoDTO dto) {
         // Validaciones
         validarCrearInsumoCompuestoDTO(dto);
@@ -70,10 +98,12 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
         }
 
         insumoCompuesto = insumoRepository.save(insumoCompuesto);
+        listaMaterialesService.invalidar();
         return convertirAInsumoCompuestoResponseDTO(insumoCompuesto);
     }
 
     @Override
+    @Cacheable(CatalogoCacheService.INSUMOS_COMPUESTOS)
     public List<InsumoCompuestoResponseDTO> obtenerInsumosCompuestos() {
         return insumoRepository.findAll().stream()
                 .filter(Insumo::esCompuesto)
@@ -103,49 +133,43 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
             throw new IllegalArgumentException("El insumo no es de tipo compuesto: " + insumoCompuestoId);
         }
 
+        // Una sola foto de los componentes: se validan y se descuentan sin volver a consultarlos
+        ListaMaterialesService.Requerimientos componentes = listaMaterialesService.directosCompuesto(insumoCompuestoId);
+        Map<Long, Insumo> insumos = cargarInsumos(componentes);
+
         // ✅ NUEVA VALIDACIÓN: Verificar que los insumos existían en la fecha del ensamble
-        validarStockHistoricoParaEnsamblar(insumoCompuestoId, dto.cantidad(), dto.fecha());
+        validarStockHistoricoParaEnsamblar(componentes, insumos, dto.cantidad(), dto.fecha());
 
         // Validar stock suficiente ACTUAL (backup)
-        validarStockSuficienteParaEnsamblar(insumoCompuestoId, dto.cantidad());
+        validarStockActualParaEnsamblar(componentes, insumos, dto.cantidad());
 
         // Generar UUID único para este ensamble
         String ensambleId = UUID.randomUUID().toString();
         System.out.println("🔧 Ensamble ID generado: " + ensambleId);
 
-        // Crear movimientos de salida para cada componente
-        for (RecetaInsumo componente : insumoCompuesto.getReceta()) {
-            Insumo insumoBase = componente.getInsumoBase();
-            double cantidadNecesaria = componente.getCantidad() * dto.cantidad();
-
-            // Crear movimiento de salida para el componente con ensambleId
-            movimientoInsumoLoteService.crearMovimientoSalidaConEnsamble(
-                    insumoBase.getId(),
-                    cantidadNecesaria,
-                    dto.fecha(),
-                    dto.descripcion() + " (componente: " + insumoBase.getNombre() + ")",
-                    ensambleId
-            );
+        Map<Insumo, Double> consumos = new LinkedHashMap<>();
+        for (int i = 0; i < componentes.tamanio(); i++) {
+            consumos.put(insumos.get(componentes.insumoIds()[i]), componentes.cantidades()[i] * dto.cantidad());
         }
 
-        // Crear movimiento de entrada para el insumo compuesto
-        // El precio se calcula sumando el costo de todos los componentes
-        double precioTotalComponentes = calcularPrecioTotalComponentes(insumoCompuesto, dto.cantidad());
-        
-        movimientoInsumoLoteService.crearMovimientoEntradaConEnsamble(
-                insumoCompuestoId,
+        // ✅ CORREGIDO: El precio del insumo compuesto debe ser el precio POR UNIDAD, no el total
+        // Se calcula antes de escribir: las salidas no cambian el precio de los componentes
+        double precioPorUnidadCompuesto = calcularPrecioPorUnidadCompuesto(insumoCompuesto);
+
+        // Una SALIDA con todos los componentes y la ENTRADA del compuesto, en una sola escritura
+        movimientoInsumoLoteService.crearMovimientosEnsamble(
+                insumoCompuesto,
+                consumos,
                 dto.cantidad(),
-                precioTotalComponentes,
+                precioPorUnidadCompuesto * dto.cantidad(),
                 dto.fecha(),
                 dto.descripcion(),
                 ensambleId
         );
 
-        // ✅ CORREGIDO: El precio del insumo compuesto debe ser el precio POR UNIDAD, no el total
-        // El precio por unidad se calcula sumando el costo de todos los componentes por unidad
-        double precioPorUnidadCompuesto = calcularPrecioPorUnidadCompuesto(insumoCompuesto);
         insumoCompuesto.setPrecioDeCompra(precioPorUnidadCompuesto);
         insumoCompuesto = insumoRepository.save(insumoCompuesto);
+        propagacionCostosService.registrarCambiosPrecio(List.of(insumoCompuestoId));
         
         System.out.println("💰 Precio por unidad del insumo compuesto '" + insumoCompuesto.getNombre() + "': $" + precioPorUnidadCompuesto);
 
@@ -154,6 +178,11 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
 
     @Override
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS, allEntries = true),
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS_COMPUESTOS, allEntries = true),
+            @CacheEvict(cacheNames = CatalogoCacheService.PRODUCTOS, allEntries = true)
+    })
     public InsumoCompuestoResponseDTO actualizarInsumoCompuesto(Long id, CrearInsumoCompuestoDTO dto) {
         // Validaciones
         validarCrearInsumoCompuestoDTO(dto);
@@ -198,11 +227,16 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
             recetaInsumoRepository.save(recetaInsumo);
         }
 
+        listaMaterialesService.invalidar();
         return convertirAInsumoCompuestoResponseDTO(insumoCompuesto);
     }
 
     @Override
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS, allEntries = true),
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS_COMPUESTOS, allEntries = true)
+    })
     public void eliminarInsumoCompuesto(Long id) {
         Insumo insumo = insumoRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Insumo no encontrado: " + id));
@@ -223,19 +257,32 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
 
         // Eliminar la receta primero
         recetaInsumoRepository.deleteByInsumoCompuesto(insumo);
+
+        // Eliminar sus ensambles y saldos diarios (los movimientos se eliminan en cascada con el insumo)
+        ensambleRepository.deleteByInsumoCompuestoId(insumo.getId());
+        stockLedgerService.eliminarSaldos(insumo.getId());
         
         // Eliminar el insumo
         insumoRepository.delete(insumo);
+        listaMaterialesService.invalidar();
     }
 
     @Override
     public void validarStockSuficienteParaEnsamblar(Long insumoCompuestoId, double cantidad) {
-        Insumo insumoCompuesto = insumoRepository.findById(insumoCompuestoId)
-                .orElseThrow(() -> new IllegalArgumentException("Insumo compuesto no encontrado: " + insumoCompuestoId));
+        if (!insumoRepository.existsById(insumoCompuestoId)) {
+            throw new IllegalArgumentException("Insumo compuesto no encontrado: " + insumoCompuestoId);
+        }
+
+        // Componentes precompilados y su stock en una sola consulta
+        ListaMaterialesService.Requerimientos componentes = listaMaterialesService.directosCompuesto(insumoCompuestoId);
+        validarStockActualParaEnsamblar(componentes, cargarInsumos(componentes), cantidad);
+    }
 
-        for (RecetaInsumo componente : insumoCompuesto.getReceta()) {
-            Insumo insumoBase = componente.getInsumoBase();
-            double cantidadNecesaria = componente.getCantidad() * cantidad;
+    private void validarStockActualParaEnsamblar(ListaMaterialesService.Requerimientos componentes,
+                                                 Map<Long, Insumo> insumos, double cantidad) {
+        for (int i = 0; i < componentes.tamanio(); i++) {
+            Insumo insumoBase = insumos.get(componentes.insumoIds()[i]);
+            double cantidadNecesaria = componentes.cantidades()[i] * cantidad;
 
             if (insumoBase.getStockActual() < cantidadNecesaria) {
                 throw new IllegalArgumentException(
@@ -251,18 +298,19 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
     /**
      * ✅ NUEVA VALIDACIÓN: Verifica que en la fecha del ensamble ya existían los insumos con stock suficiente
      */
-    private void validarStockHistoricoParaEnsamblar(Long insumoCompuestoId, double cantidad, java.time.LocalDate fechaEnsamble) {
-        Insumo insumoCompuesto = insumoRepository.findById(insumoCompuestoId)
-                .orElseThrow(() -> new IllegalArgumentException("Insumo compuesto no encontrado: " + insumoCompuestoId));
-
+    private void validarStockHistoricoParaEnsamblar(ListaMaterialesService.Requerimientos componentes, Map<Long, Insumo> insumos,
+                                                    double cantidad, java.time.LocalDate fechaEnsamble) {
         System.out.println("🕐 Validando stock histórico para ensamble en fecha: " + fechaEnsamble);
 
-        for (RecetaInsumo componente : insumoCompuesto.getReceta()) {
-            Insumo insumoBase = componente.getInsumoBase();
-            double cantidadNecesaria = componente.getCantidad() * cantidad;
+        // Saldos de los componentes en la fecha con una sola consulta al ledger, limitada a sus ids
+        Map<Long, Double> saldosEnFecha = stockLedgerService.obtenerStocksEnFecha(fechaEnsamble,
+                Arrays.stream(componentes.insumoIds()).boxed().toList());
+        for (int i = 0; i < componentes.tamanio(); i++) {
+            Insumo insumoBase = insumos.get(componentes.insumoIds()[i]);
+            double cantidadNecesaria = componentes.cantidades()[i] * cantidad;
 
             // Calcular el stock que había en la fecha del ensamble
-            double stockEnFecha = calcularStockEnFecha(insumoBase, fechaEnsamble);
+            double stockEnFecha = saldosEnFecha.getOrDefault(insumoBase.getId(), 0.0);
 
             System.out.println(String.format("  📦 Insumo '%s': Stock en %s = %.2f, Necesario: %.2f",
                     insumoBase.getNombre(), fechaEnsamble, stockEnFecha, cantidadNecesaria));
@@ -286,32 +334,6 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
         System.out.println("✅ Validación de stock histórico exitosa");
     }
 
-    /**
-     * Calcula el stock que tenía un insumo en una fecha específica
-     * sumando/restando todos los movimientos hasta esa fecha
-     */
-    private double calcularStockEnFecha(Insumo insumo, java.time.LocalDate fecha) {
-        double stock = 0;
-
-        // Recorrer todos los movimientos del insumo hasta la fecha indicada
-        for (DetalleMovimientoInsumo detalle : insumo.getMovimientos()) {
-            java.time.LocalDate fechaMovimiento = detalle.getMovimiento().getFecha();
-            
-            // Solo considerar movimientos ANTES O EN la fecha del ensamble
-            if (fechaMovimiento.isBefore(fecha) || fechaMovimiento.isEqual(fecha)) {
-                TipoMovimiento tipo = detalle.getMovimiento().getTipoMovimiento();
-                
-                if (tipo == TipoMovimiento.ENTRADA) {
-                    stock += detalle.getCantidad();
-                } else if (tipo == TipoMovimiento.SALIDA) {
-                    stock -= detalle.getCantidad();
-                }
-            }
-        }
-
-        return stock;
-    }
-
     private void validarCrearInsumoCompuestoDTO(CrearInsumoCompuestoDTO dto) {
         if (dto.nombre() == null || dto.nombre().trim().isEmpty()) {
             throw new IllegalArgumentException("El nombre del insumo compuesto es obligatorio");
@@ -343,38 +365,32 @@ public class InsumoCompuestoServiceImplements implements InsumoCompuestoService
         }
     }
 
-    private double calcularPrecioTotalComponentes(Insumo insumoCompuesto, double cantidad) {
-        double precioTotal = 0;
-
-        for (RecetaInsumo componente : insumoCompuesto.getReceta()) {
-            Insumo insumoBase = componente.getInsumoBase();
-            double cantidadNecesaria = componente.getCantidad() * cantidad;
-            double precioUnitario = insumoBase.getPrecioDeCompra();
-            precioTotal += cantidadNecesaria * precioUnitario;
+    /**
+     * Calcula el precio por unidad de un insumo compuesto a partir del vector explotado hasta insumos base
+     */
+    private double calcularPrecioPorUnidadCompuesto(Insumo insumoCompuesto) {
+        ListaMaterialesService.Requerimientos bases = listaMaterialesService.explotadoCompuesto(insumoCompuesto.getId());
+        Map<Long, Insumo> insumos = cargarInsumos(bases);
+
+        for (int i = 0; i < bases.tamanio(); i++) {
+            Insumo insumoBase = insumos.get(bases.insumoIds()[i]);
+            double cantidadPorUnidad = bases.cantidades()[i]; // Cantidad necesaria para 1 unidad del compuesto
+            System.out.println("  - Componente: " + insumoBase.getNombre() +
+                             " (cantidad: " + cantidadPorUnidad +
+                             ", precio unitario: $" + insumoBase.getPrecioDeCompra() +
+                             ", costo: $" + (cantidadPorUnidad * insumoBase.getPrecioDeCompra()) + ")");
         }
 
-        return precioTotal;
+        return bases.costo(insumoId -> insumos.get(insumoId).getPrecioDeCompra());
     }
 
     /**
-     * Calcula el precio por unidad de un insumo compuesto basado en el costo de sus componentes
+     * Insumos de un vector de requerimientos indexados por id, en una sola consulta
      */
-    private double calcularPrecioPorUnidadCompuesto(Insumo insumoCompuesto) {
-        double precioPorUnidad = 0;
-
-        for (RecetaInsumo componente : insumoCompuesto.getReceta()) {
-            Insumo insumoBase = componente.getInsumoBase();
-            double cantidadPorUnidad = componente.getCantidad(); // Cantidad necesaria para 1 unidad del compuesto
-            double precioUnitarioComponente = insumoBase.getPrecioDeCompra();
-            precioPorUnidad += cantidadPorUnidad * precioUnitarioComponente;
-            
-            System.out.println("  - Componente: " + insumoBase.getNombre() + 
-                             " (cantidad: " + cantidadPorUnidad + 
-                             ", precio unitario: $" + precioUnitarioComponente + 
-                             ", costo: $" + (cantidadPorUnidad * precioUnitarioComponente) + ")");
-        }
-
-        return precioPorUnidad;
+    private Map<Long, Insumo> cargarInsumos(ListaMaterialesService.Requerimientos requerimientos) {
+        List<Long> ids = Arrays.stream(requerimientos.insumoIds()).boxed().toList();
+        return insumoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Insumo::getId, Function.identity()));
     }
 
     private InsumoCompuestoResponseDTO convertirAInsumoCompuestoResponseDTO(Insumo insumo) {
@@ -2,16 +2,25 @@ package com.Latti.stock.service.impl;
 
 import com.Latti.stock.dtos.CrearInsumoDTO;
 import com.Latti.stock.dtos.InsumoResponseDTO;
+import com.Latti.stock.dtos.FilaInsumoUnificadoDTO;
+import com.Latti.stock.dtos.InsumoCompuestoResponseDTO;
 import com.Latti.stock.dtos.InsumoListadoDTO;
+import com.Latti.stock.dtos.InsumoUnificadoDTO;
 import com.Latti.stock.modules.Insumo;
-import com.Latti.stock.modules.DetalleMovimientoInsumo;
+import com.Latti.stock.modules.TipoInsumo;
 import com.Latti.stock.modules.UnidadMedida;
 import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.service.CatalogoCacheService;
 import com.Latti.stock.service.InsumoService;
+import com.Latti.stock.service.StockLedgerService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -20,8 +29,12 @@ public class InsumoServiceImplements implements InsumoService {
     @Autowired
     private InsumoRepository insumoRepository;
 
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS, allEntries = true)
     public Insumo crearInsumo(CrearInsumoDTO dto) {
         validarCrearInsumoDTO(dto);
 
@@ -43,48 +56,79 @@ public class InsumoServiceImplements implements InsumoService {
     }
 
     @Override
+    @Cacheable(CatalogoCacheService.INSUMOS)
     public List<InsumoListadoDTO> obtenerInsumos() {
+        // Los agregados de compras ya están en la fila del insumo: no se recorre el historial
         return insumoRepository.findAll().stream()
-                .map(insumo -> {
-                    // Calcular el total invertido basado en el historial de movimientos
-                    double totalInvertido = calcularTotalInvertido(insumo);
-                    
-                    return new InsumoListadoDTO(
-                            insumo.getId(),
-                            insumo.getNombre(),
-                            insumo.getUnidadMedida(),
-                            insumo.getTipo(),
-                            insumo.getStockActual(),
-                            insumo.getStockMinimo(),
-                            insumo.getPrecioDeCompra(),
-                            totalInvertido
-                    );
-                })
+                .map(insumo -> new InsumoListadoDTO(
+                        insumo.getId(),
+                        insumo.getNombre(),
+                        insumo.getUnidadMedida(),
+                        insumo.getTipo(),
+                        insumo.getStockActual(),
+                        insumo.getStockMinimo(),
+                        insumo.getPrecioDeCompra(),
+                        insumo.getTotalInvertido(),
+                        insumo.getCantidadComprada(),
+                        insumo.getCostoPromedio(),
+                        insumo.getUltimoPrecioCompra(),
+                        insumo.getFechaUltimaCompra()
+                ))
                 .toList();
     }
 
     @Override
-    public Insumo obtenerInsumoPorId(Long id) {
-        return insumoRepository.findById(id).orElse(null);
+    @Transactional(readOnly = true)
+    // Comparte el caché del catálogo de insumos (con otra clave), así se invalida junto con él
+    @Cacheable(cacheNames = CatalogoCacheService.INSUMOS, key = "'unificado'")
+    public List<InsumoUnificadoDTO> obtenerInsumosUnificados() {
+        List<InsumoUnificadoDTO> insumos = new ArrayList<>();
+        InsumoUnificadoDTO actual = null;
+
+        // Las filas vienen ordenadas por insumo: las de un mismo compuesto son consecutivas
+        for (FilaInsumoUnificadoDTO fila : insumoRepository.findFilasUnificadas()) {
+            if (actual == null || !actual.id().equals(fila.id())) {
+                boolean compuesto = fila.tipo() == TipoInsumo.COMPUESTO;
+                actual = new InsumoUnificadoDTO(
+                        fila.id(),
+                        fila.nombre(),
+                        fila.unidadMedida(),
+                        fila.tipo(),
+                        fila.stockActual(),
+                        fila.stockMinimo(),
+                        fila.precioDeCompra(),
+                        // Los compuestos no tienen total invertido directo
+                        compuesto ? 0.0 : fila.totalInvertido(),
+                        compuesto ? new ArrayList<>() : null
+                );
+                insumos.add(actual);
+            }
+            if (fila.componenteId() != null && actual.receta() != null) {
+                actual.receta().add(new InsumoCompuestoResponseDTO.ComponenteRecetaResponseDTO(
+                        fila.componenteId(),
+                        fila.insumoBaseId(),
+                        fila.nombreInsumoBase(),
+                        fila.cantidad(),
+                        fila.unidadMedidaBase()
+                ));
+            }
+        }
+        return insumos;
     }
 
-    /**
-     * Calcula el total invertido en un insumo basado en el historial de movimientos de entrada
-     */
-    private double calcularTotalInvertido(Insumo insumo) {
-        return insumo.getMovimientos().stream()
-                .filter(movimiento -> "ENTRADA".equals(movimiento.getMovimiento().getTipoMovimiento().toString()))
-                .mapToDouble(movimiento -> {
-                    // Para movimientos de entrada, el precioTotal es el costo de compra
-                    double cantidad = movimiento.getCantidad();
-                    double precioTotal = movimiento.getPrecioTotal();
-                    return precioTotal;
-                })
-                .sum();
+    @Override
+    public Insumo obtenerInsumoPorId(Long id) {
+        return insumoRepository.findById(id).orElse(null);
     }
 
     @Override
     @Transactional
+    // Nombre y unidad también se muestran en las recetas de productos y compuestos
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS, allEntries = true),
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS_COMPUESTOS, allEntries = true),
+            @CacheEvict(cacheNames = CatalogoCacheService.PRODUCTOS, allEntries = true)
+    })
     public Insumo actualizarInsumo(Long id, CrearInsumoDTO dto) {
         validarCrearInsumoDTO(dto);
 
@@ -137,6 +181,10 @@ public class InsumoServiceImplements implements InsumoService {
 
     @Override
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS, allEntries = true),
+            @CacheEvict(cacheNames = CatalogoCacheService.INSUMOS_COMPUESTOS, allEntries = true)
+    })
     public void eliminarInsumo(Long id) {
         Insumo insumo = insumoRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Insumo no encontrado con ID: " + id));
@@ -144,6 +192,7 @@ public class InsumoServiceImplements implements InsumoService {
         if (insumoRepository.existsInRecetas(id) || insumoRepository.existsInMovimientos(id)) {
             throw new IllegalArgumentException("No se puede eliminar el insumo porque está en uso en recetas o movimientos.");
         }
+        stockLedgerService.eliminarSaldos(id);
         insumoRepository.delete(insumo);
     }
 
@@ -0,0 +1,204 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.repositories.InsumoRecetaRepository;
+import com.Latti.stock.repositories.RecetaInsumoRepository;
+import com.Latti.stock.service.ListaMaterialesService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+public class ListaMaterialesServiceImplements implements ListaMaterialesService {
+
+    @Autowired
+    private InsumoRecetaRepository insumoRecetaRepository;
+
+    @Autowired
+    private RecetaInsumoRepository recetaInsumoRepository;
+
+    // Se incrementa en cada invalidación: una compilación que empezó antes no se publica
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Compilacion compilacion;
+
+    /**
+     * Vectores de todas las recetas, inmutables una vez construidos
+     */
+    private record Compilacion(Map<Long, Requerimientos> directosProducto,
+                               Map<Long, Requerimientos> directosCompuesto,
+                               Map<Long, Requerimientos> explotadoProducto,
+                               Map<Long, Requerimientos> explotadoCompuesto) {}
+
+    @Override
+    public Requerimientos directosProducto(Long productoId) {
+        return compilacion().directosProducto().getOrDefault(productoId, Requerimientos.VACIO);
+    }
+
+    @Override
+    public Requerimientos directosCompuesto(Long compuestoId) {
+        return compilacion().directosCompuesto().getOrDefault(compuestoId, Requerimientos.VACIO);
+    }
+
+    @Override
+    public Requerimientos explotadoProducto(Long productoId) {
+        return compilacion().explotadoProducto().getOrDefault(productoId, Requerimientos.VACIO);
+    }
+
+    @Override
+    public Requerimientos explotadoCompuesto(Long compuestoId) {
+        return compilacion().explotadoCompuesto().getOrDefault(compuestoId, Requerimientos.VACIO);
+    }
+
+    @Override
+    public Map<Long, Requerimientos> recetasProductos() {
+        return compilacion().directosProducto();
+    }
+
+    @Override
+    public Map<Long, Requerimientos> recetasCompuestos() {
+        return compilacion().directosCompuesto();
+    }
+
+    @Override
+    public void invalidar() {
+        descartar();
+        // Se descarta también al terminar la transacción: lo compilado mientras tanto
+        // (con la receta sin confirmar, o la anterior desde otro hilo) no debe sobrevivir
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    descartar();
+                }
+            });
+        }
+    }
+
+    private void descartar() {
+        version.incrementAndGet();
+        compilacion = null;
+    }
+
+    private Compilacion compilacion() {
+        Compilacion actual = compilacion;
+        if (actual != null) {
+            return actual;
+        }
+        synchronized (this) {
+            if (compilacion != null) {
+                return compilacion;
+            }
+            long versionInicial = version.get();
+            Compilacion nueva = compilar();
+            if (version.get() == versionInicial) {
+                compilacion = nueva;
+            }
+            return nueva;
+        }
+    }
+
+    /**
+     * Dos consultas planas y una pasada en memoria: no se recorre el grafo por cada llamada
+     */
+    private Compilacion compilar() {
+        Map<Long, Map<Long, Double>> componentesCompuesto = agrupar(recetaInsumoRepository.findCantidadesPorCompuesto());
+        Map<Long, Map<Long, Double>> componentesProducto = agrupar(insumoRecetaRepository.findCantidadesPorProducto());
+
+        Map<Long, Map<Long, Double>> explotadosCompuesto = new HashMap<>();
+        for (Long compuestoId : componentesCompuesto.keySet()) {
+            explotar(compuestoId, componentesCompuesto, explotadosCompuesto, new LinkedHashSet<>());
+        }
+
+        Map<Long, Map<Long, Double>> explotadosProducto = new HashMap<>();
+        componentesProducto.forEach((productoId, insumos) -> {
+            Map<Long, Double> bases = new HashMap<>();
+            insumos.forEach((insumoId, cantidad) -> acumularExplotado(insumoId, cantidad, explotadosCompuesto, bases));
+            explotadosProducto.put(productoId, bases);
+        });
+
+        System.out.println("🧩 Lista de materiales compilada: " + componentesProducto.size() + " producto(s), " +
+                componentesCompuesto.size() + " compuesto(s)");
+        return new Compilacion(
+                aVectores(componentesProducto),
+                aVectores(componentesCompuesto),
+                aVectores(explotadosProducto),
+                aVectores(explotadosCompuesto)
+        );
+    }
+
+    /**
+     * Explosión en profundidad con memoización. El camino actual detecta recetas circulares.
+     */
+    private Map<Long, Double> explotar(Long compuestoId,
+                                       Map<Long, Map<Long, Double>> componentes,
+                                       Map<Long, Map<Long, Double>> explotados,
+                                       LinkedHashSet<Long> camino) {
+        Map<Long, Double> hecho = explotados.get(compuestoId);
+        if (hecho != null) {
+            return hecho;
+        }
+        if (!camino.add(compuestoId)) {
+            String ciclo = camino.stream().map(String::valueOf).collect(Collectors.joining(" → "));
+            throw new IllegalArgumentException("Receta circular entre insumos compuestos: " + ciclo + " → " + compuestoId);
+        }
+
+        Map<Long, Double> bases = new HashMap<>();
+        componentes.get(compuestoId).forEach((insumoId, cantidad) -> {
+            if (componentes.containsKey(insumoId)) {
+                explotar(insumoId, componentes, explotados, camino);
+            }
+            acumularExplotado(insumoId, cantidad, explotados, bases);
+        });
+
+        camino.remove(compuestoId);
+        explotados.put(compuestoId, bases);
+        return bases;
+    }
+
+    private void acumularExplotado(Long insumoId, double cantidad,
+                                   Map<Long, Map<Long, Double>> explotadosCompuesto,
+                                   Map<Long, Double> destino) {
+        Map<Long, Double> explotado = explotadosCompuesto.get(insumoId);
+        if (explotado == null) {
+            destino.merge(insumoId, cantidad, Double::sum);
+        } else {
+            explotado.forEach((baseId, porUnidad) -> destino.merge(baseId, porUnidad * cantidad, Double::sum));
+        }
+    }
+
+    /**
+     * Filas [dueñoId, insumoId, cantidad] → dueño → (insumo → cantidad). Las líneas repetidas se suman.
+     */
+    private static Map<Long, Map<Long, Double>> agrupar(Iterable<Object[]> filas) {
+        Map<Long, Map<Long, Double>> resultado = new HashMap<>();
+        for (Object[] fila : filas) {
+            resultado.computeIfAbsent((Long) fila[0], k -> new HashMap<>())
+                    .merge((Long) fila[1], ((Number) fila[2]).doubleValue(), Double::sum);
+        }
+        return resultado;
+    }
+
+    private static Map<Long, Requerimientos> aVectores(Map<Long, Map<Long, Double>> mapas) {
+        Map<Long, Requerimientos> vectores = new HashMap<>(mapas.size() * 2);
+        mapas.forEach((id, cantidades) -> vectores.put(id, aVector(cantidades)));
+        return Map.copyOf(vectores);
+    }
+
+    private static Requerimientos aVector(Map<Long, Double> cantidades) {
+        long[] ids = cantidades.keySet().stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(ids);
+        double[] valores = new double[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            valores[i] = cantidades.get(ids[i]);
+        }
+        return new Requerimientos(ids, valores);
+    }
+}
@@ -0,0 +1,179 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.dtos.ProductoProximoVencerDTO;
+import com.Latti.stock.dtos.ProductoVencidoDTO;
+import com.Latti.stock.dtos.StockPorLoteDTO;
+import com.Latti.stock.modules.LoteProducto;
+import com.Latti.stock.modules.Producto;
+import com.Latti.stock.repositories.LoteProductoRepository;
+import com.Latti.stock.repositories.ProductoRepository;
+import com.Latti.stock.service.LoteProductoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class LoteProductoServiceImplements implements LoteProductoService {
+
+    // Tolerancia para considerar que un lote quedó vacío (errores de redondeo de double)
+    private static final double TOLERANCIA = 1e-9;
+
+    @Autowired
+    private LoteProductoRepository loteProductoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    /**
+     * ✅ NUEVO: Producción y ventas se aplican con UPDATE atómicos sobre el lote (producto_id, codigo),
+     * como el stock de insumos y productos: dos movimientos simultáneos del mismo lote no pisan sus cantidades.
+     */
+    @Override
+    @Transactional
+    public void registrarProduccion(Producto producto, String codigo, double cantidad, LocalDate fechaProduccion, LocalDate fechaVencimiento) {
+        if (loteProductoRepository.sumarProduccion(producto.getId(), codigo, cantidad, fechaProduccion, fechaVencimiento) > 0) {
+            return;
+        }
+
+        // Lote nuevo. Si otra transacción lo crea a la vez, la restricción única rechaza este insert y se reintenta
+        LoteProducto lote = new LoteProducto(codigo, producto, fechaProduccion, fechaVencimiento);
+        lote.setCantidadProducida(cantidad);
+        loteProductoRepository.save(lote);
+    }
+
+    @Override
+    @Transactional
+    public void revertirProduccion(Long productoId, String codigo, double cantidad) {
+        if (loteProductoRepository.sumarProducida(productoId, codigo, -cantidad) == 0) {
+            System.err.println("⚠️ Lote '" + codigo + "' no encontrado para el producto " + productoId);
+            return;
+        }
+        loteProductoRepository.eliminarSiVacio(productoId, codigo, TOLERANCIA);
+    }
+
+    @Override
+    @Transactional
+    public void registrarVenta(Long productoId, String codigo, double cantidad) {
+        if (loteProductoRepository.descontarDisponible(productoId, codigo, cantidad, -TOLERANCIA) == 0) {
+            if (!loteProductoRepository.existsByProductoIdAndCodigo(productoId, codigo)) {
+                throw new IllegalArgumentException("Lote no encontrado: " + codigo);
+            }
+            throw new IllegalArgumentException("Stock insuficiente en el lote '" + codigo + "'. Cantidad solicitada: " + cantidad);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void revertirVenta(Long productoId, String codigo, double cantidad) {
+        if (loteProductoRepository.sumarVendida(productoId, codigo, -cantidad) == 0) {
+            System.err.println("⚠️ Lote '" + codigo + "' no encontrado para el producto " + productoId);
+            return;
+        }
+        loteProductoRepository.eliminarSiVacio(productoId, codigo, TOLERANCIA);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<LoteProducto> obtenerLote(Long productoId, String codigo) {
+        return loteProductoRepository.findByProductoIdAndCodigo(productoId, codigo);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public double obtenerStockDisponible(Long productoId, String codigo) {
+        return loteProductoRepository.findByProductoIdAndCodigo(productoId, codigo)
+                .map(LoteProducto::getCantidadDisponible)
+                .orElse(0.0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StockPorLoteDTO> obtenerStockPorLotes(Long productoId) {
+        if (!productoRepository.existsById(productoId)) {
+            throw new IllegalArgumentException("Producto no encontrado: " + productoId);
+        }
+
+        return loteProductoRepository.findConStockByProductoId(productoId).stream()
+                .map(lote -> new StockPorLoteDTO(lote.getCodigo(), lote.getCantidadDisponible(), lote.getFechaVencimiento()))
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductoProximoVencerDTO> obtenerLotesProximosAVencer(int diasAnticipacion) {
+        LocalDate hoy = LocalDate.now();
+
+        // Incluye lotes que vencen en los próximos N días y los vencidos hace a lo sumo N días
+        return loteProductoRepository.findConStockVenciendoEntre(hoy.minusDays(diasAnticipacion), hoy.plusDays(diasAnticipacion))
+                .stream()
+                .map(lote -> new ProductoProximoVencerDTO(
+                        lote.getProducto().getId(),
+                        lote.getProducto().getNombre(),
+                        lote.getCodigo(),
+                        lote.getCantidadDisponible(),
+                        lote.getFechaVencimiento(),
+                        (int) ChronoUnit.DAYS.between(hoy, lote.getFechaVencimiento()),
+                        lote.getProducto().getPrecioInversion() * lote.getCantidadDisponible()
+                ))
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductoVencidoDTO> obtenerLotesVencidos() {
+        LocalDate hoy = LocalDate.now();
+
+        return loteProductoRepository.findConStockVencidosAntesDe(hoy).stream()
+                .map(lote -> new ProductoVencidoDTO(
+                        lote.getProducto().getId(),
+                        lote.getProducto().getNombre(),
+                        lote.getCodigo(),
+                        lote.getCantidadDisponible(),
+                        lote.getFechaVencimiento(),
+                        (int) ChronoUnit.DAYS.between(lote.getFechaVencimiento(), hoy),
+                        lote.getProducto().getPrecioInversion() * lote.getCantidadDisponible()
+                ))
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public void reconstruirLotes() {
+        loteProductoRepository.eliminarTodos();
+
+        List<LoteProducto> lotes = new ArrayList<>();
+        for (Object[] fila : loteProductoRepository.sumarMovimientosPorLote()) {
+            Long productoId = (Long) fila[0];
+            String codigo = (String) fila[1];
+            LocalDate fechaProduccion = (LocalDate) fila[2];
+            double producida = ((Number) fila[3]).doubleValue();
+            double vendida = ((Number) fila[4]).doubleValue();
+            LocalDate fechaVencimiento = (LocalDate) fila[5];
+
+            // Ventas que referencian un lote sin producción registrada: no hay lote que reconstruir
+            if (fechaProduccion == null) {
+                continue;
+            }
+
+            LoteProducto lote = new LoteProducto(codigo, productoRepository.getReferenceById(productoId), fechaProduccion, fechaVencimiento);
+            lote.setCantidadProducida(producida);
+            lote.setCantidadVendida(vendida);
+            lotes.add(lote);
+        }
+
+        loteProductoRepository.saveAll(lotes);
+        System.out.println("📦 Lotes de productos reconstruidos: " + lotes.size() + " registros");
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean estaVacio() {
+        return loteProductoRepository.count() == 0;
+    }
+}
@@ -3,30 +3,37 @@ package com.Latti.stock.service.impl;
 import com.Latti.stock.dtos.CrearMovimientoDeInsumoDTO;
 import com.Latti.stock.dtos.DetalleMovimientoInsumoDTO;
 import com.Latti.stock.dtos.EditarMovimientoDeInsumoDTO;
+import com.Latti.stock.dtos.FilaMovimientoInsumoDTO;
+import com.Latti.stock.dtos.PaginaDTO;
 import com.Latti.stock.dtos.ResponseDetalleMovimientoInsumoDTO;
 import com.Latti.stock.dtos.ResponseMovimientosInsumoLoteDTO;
 import com.Latti.stock.dtos.ValidacionEdicionDTO;
 import com.Latti.stock.modules.DetalleMovimientoInsumo;
+import com.Latti.stock.modules.Ensamble;
 import com.Latti.stock.modules.Insumo;
-import com.Latti.stock.modules.InsumoReceta;
 import com.Latti.stock.modules.MovimientoInsumoLote;
-import com.Latti.stock.modules.MovimientoProductoLote;
-import com.Latti.stock.modules.Producto;
 import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.repositories.EnsambleRepository;
+import com.Latti.stock.repositories.InsumoRecetaRepository;
 import com.Latti.stock.repositories.InsumoRepository;
 import com.Latti.stock.repositories.MovimientoInsumoLoteRepository;
-import com.Latti.stock.repositories.ProductoRepository;
 import com.Latti.stock.repositories.DetalleMovimientoInsumoRepository;
+import com.Latti.stock.service.ComprasInsumoService;
 import com.Latti.stock.service.MovimientoInsumoLoteService;
+import com.Latti.stock.service.PropagacionCostosService;
+import com.Latti.stock.service.StockLedgerService;
+import com.Latti.stock.service.StockService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.Comparator;
 import java.util.stream.Collectors;
 import java.time.LocalDate;
 
@@ -38,12 +45,28 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
     @Autowired
     private MovimientoInsumoLoteRepository movimientoRepository;
 
-    @Autowired
-    private ProductoRepository productoRepository;
 
     @Autowired
     private DetalleMovimientoInsumoRepository detalleMovimientoInsumoRepository;
 
+    @Autowired
+    private InsumoRecetaRepository insumoRecetaRepository;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private PropagacionCostosService propagacionCostosService;
+
+    @Autowired
+    private ComprasInsumoService comprasInsumoService;
+
+    @Autowired
+    private EnsambleRepository ensambleRepository;
+
     @Override
     @Transactional
     public MovimientoInsumoLote crearMovimientoInsumo(CrearMovimientoDeInsumoDTO dto) {
@@ -57,8 +80,8 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                     dto.tipoMovimiento()
             );
 
-            // Lista para almacenar los insumos que necesitan recalcular precio de inversión
-            List<Long> insumosParaRecalcular = new ArrayList<>();
+            // Insumos que necesitan recalcular precio de inversión (sin repetidos)
+            Set<Long> insumosParaRecalcular = new HashSet<>();
 
             for (DetalleMovimientoInsumoDTO d : dto.detalles()) {
                 // Validar que el insumo existe
@@ -73,7 +96,7 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                 // Validaciones específicas para SALIDA
                 if (dto.tipoMovimiento() == TipoMovimiento.SALIDA) {
                     // Validar stock disponible en la fecha del movimiento
-                    double stockDisponibleEnFecha = calcularStockDisponibleEnFecha(insumo, dto.fecha());
+                    double stockDisponibleEnFecha = stockLedgerService.obtenerStockEnFecha(insumo.getId(), dto.fecha());
                     if (stockDisponibleEnFecha < d.cantidad()) {
                         throw new IllegalArgumentException(
                             "Stock insuficiente para el insumo '" + insumo.getNombre() + 
@@ -98,7 +121,8 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                 }
 
                 if (dto.tipoMovimiento() == TipoMovimiento.ENTRADA) {
-                    insumo.setStockActual(insumo.getStockActual() + d.cantidad());
+                    stockService.ajustarInsumo(insumo, d.cantidad());
+                    comprasInsumoService.registrarCompra(insumo, dto.fecha(), d.cantidad(), d.precio());
                     
                     // ✅ LÓGICA CORREGIDA: Solo actualizar precio si el nuevo es mayor (peor)
                     double precioPorUnidad = d.precio() / d.cantidad();
@@ -119,11 +143,12 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                     // Agregar a la lista para recalcular después
                     insumosParaRecalcular.add(insumo.getId());
                 } else {
-                    insumo.setStockActual(insumo.getStockActual() - d.cantidad());
+                    stockService.descontarInsumo(insumo, d.cantidad());
                 }
 
                 // Guardar el insumo actualizado
                 insumoRepository.save(insumo);
+                stockLedgerService.registrarMovimiento(insumo.getId(), dto.fecha(), dto.tipoMovimiento(), d.cantidad());
 
                 DetalleMovimientoInsumo detalle = new DetalleMovimientoInsumo(d.cantidad());
                 detalle.setInsumo(insumo);
@@ -139,10 +164,8 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             // Guardar el movimiento primero
             MovimientoInsumoLote movimientoGuardado = movimientoRepository.save(movimiento);
 
-            // Recalcular precio de inversión de productos después de guardar todo
-            for (Long insumoId : insumosParaRecalcular) {
-                recalcularPrecioInversionProductos(insumoId);
-            }
+            // ✅ NUEVO: El recálculo de productos se encola y lo procesa el worker de costos
+            propagacionCostosService.registrarCambiosPrecio(insumosParaRecalcular);
 
             return movimientoGuardado;
         } catch (Exception e) {
@@ -154,26 +177,65 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
 
 
     @Override
+    @Transactional(readOnly = true)
     public List<ResponseMovimientosInsumoLoteDTO> obtenerMovimientosDTO() {
-        return movimientoRepository.findAll().stream()
-                .map(mov -> new ResponseMovimientosInsumoLoteDTO(
-                        mov.getId(),
-                        mov.getFecha(),
-                        mov.getDescripcion(),
-                        mov.getTipoMovimiento(),
-                        mov.getDetalles().stream()
-                                .map(det -> new ResponseDetalleMovimientoInsumoDTO(
-                                        det.getInsumo().getId(),
-                                        det.getInsumo().getNombre(),
-                                        det.getCantidad(),
-                                        det.getInsumo().getUnidadMedida(),
-                                        det.getInsumo().getPrecioDeCompra(),
-                                        det.getPrecioTotal(),
-                                        det.getEnsambleId()
-                                ))
-                                .toList()
-                ))
-                .toList();
+        return agruparFilas(movimientoRepository.findFilasMovimientos());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginaDTO<ResponseMovimientosInsumoLoteDTO> obtenerPaginaMovimientos(LocalDate desde, LocalDate hasta,
+                                                                         TipoMovimiento tipo, Long insumoId,
+                                                                         String ensambleId, String cursor, Integer limite) {
+        CursorMovimiento posicion = CursorMovimiento.decodificar(cursor);
+        int tamanio = CursorMovimiento.normalizarLimite(limite);
+        String ensambleIdFiltro = ensambleId == null || ensambleId.isBlank() ? null : ensambleId.trim();
+
+        // Se pide un elemento extra solo para saber si existe una página siguiente
+        List<Long> ids = movimientoRepository.findIdsPagina(desde, hasta, tipo, insumoId, ensambleIdFiltro,
+                posicion == null ? null : posicion.fecha(),
+                posicion == null ? null : posicion.id(),
+                tamanio + 1);
+
+        boolean hayMas = ids.size() > tamanio;
+        if (hayMas) {
+            ids = ids.subList(0, tamanio);
+        }
+        if (ids.isEmpty()) {
+            return new PaginaDTO<>(List.of(), null);
+        }
+
+        List<ResponseMovimientosInsumoLoteDTO> items = agruparFilas(movimientoRepository.findFilasMovimientosPorIds(ids));
+        String siguienteCursor = null;
+        if (hayMas) {
+            ResponseMovimientosInsumoLoteDTO ultimo = items.get(items.size() - 1);
+            siguienteCursor = new CursorMovimiento(ultimo.fecha(), ultimo.id()).codificar();
+        }
+        return new PaginaDTO<>(items, siguienteCursor);
+    }
+
+    /**
+     * Agrupa las filas planas (ordenadas por movimiento) en un DTO por movimiento con sus detalles
+     */
+    private List<ResponseMovimientosInsumoLoteDTO> agruparFilas(List<FilaMovimientoInsumoDTO> filas) {
+        Map<Long, ResponseMovimientosInsumoLoteDTO> movimientos = new LinkedHashMap<>();
+        for (FilaMovimientoInsumoDTO fila : filas) {
+            ResponseMovimientosInsumoLoteDTO mov = movimientos.computeIfAbsent(fila.movimientoId(), id ->
+                    new ResponseMovimientosInsumoLoteDTO(id, fila.fecha(), fila.descripcion(),
+                            fila.tipoMovimiento(), new ArrayList<>()));
+            if (fila.insumoId() != null) {
+                mov.insumos().add(new ResponseDetalleMovimientoInsumoDTO(
+                        fila.insumoId(),
+                        fila.nombre(),
+                        fila.cantidad(),
+                        fila.unidadMedida(),
+                        fila.precioDeCompra(),
+                        fila.precioTotal(),
+                        fila.ensambleId()
+                ));
+            }
+        }
+        return new ArrayList<>(movimientos.values());
     }
 
     @Override
@@ -195,106 +257,53 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             System.out.println("  - Descripción: " + movimiento.getDescripcion());
             System.out.println("  - Cantidad de detalles: " + movimiento.getDetalles().size());
 
-        // ✅ NUEVA VALIDACIÓN: Verificar si es parte de un ensamble
-        if (esMovimientoDeEnsamble(id)) {
-            // Obtener el ensambleId del movimiento
-            String ensambleId = movimiento.getDetalles().stream()
-                    .filter(d -> d.getEnsambleId() != null && !d.getEnsambleId().trim().isEmpty())
-                    .map(DetalleMovimientoInsumo::getEnsambleId)
-                    .findFirst()
-                    .orElse(null);
-            
-            if (ensambleId != null) {
-                // Si es un movimiento de SALIDA con ensambleId (insumo simple usado en ensamble)
-                // NO se puede eliminar directamente (debe eliminarse desde el movimiento de entrada del ensamble)
-                if (movimiento.getTipoMovimiento() == TipoMovimiento.SALIDA) {
-            throw new IllegalArgumentException(
+        // ✅ NUEVA VALIDACIÓN: Verificar si es parte de un ensamble (búsqueda por FK indexada)
+        Ensamble ensamble = ensambleRepository.findByMovimientoId(id).orElse(null);
+        if (ensamble != null) {
+            // Si es el movimiento de SALIDA del ensamble (componentes consumidos)
+            // NO se puede eliminar directamente (debe eliminarse desde el movimiento de entrada del ensamble)
+            if (!ensamble.esEntrada(id)) {
+                throw new IllegalArgumentException(
                         "Este movimiento es parte de un ensamble. " +
                         "Para eliminarlo, debes eliminar el movimiento de ensamble del insumo compuesto relacionado."
-                    );
-                } 
-                // Si es un movimiento de ENTRADA con ensambleId (insumo compuesto ensamblado)
-                // Permitir eliminar SOLO si no se ha usado para crear productos
-                else if (movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA) {
-                    // Verificar si el insumo compuesto se usó para crear productos DESPUÉS de este movimiento
-                    for (DetalleMovimientoInsumo detalle : movimiento.getDetalles()) {
-                        Insumo insumoCompuesto = detalle.getInsumo();
-                        
-                        // Verificar si es un insumo compuesto
-                        if (insumoCompuesto != null && insumoCompuesto.esCompuesto()) {
-                            boolean seUsoEnProduccion = verificarUsoEnProduccionPosterior(insumoCompuesto, movimiento.getFecha());
-                            if (seUsoEnProduccion) {
-                                throw new IllegalArgumentException(
-                                    "Este insumo compuesto ya se ha usado para crear productos después de este ensamble. " +
-                                    "No se puede eliminar porque afectaría el historial de producción."
-                                );
-                            }
-                        }
-                    }
-                    
-                    // ✅ Si se puede eliminar, también eliminar los movimientos de SALIDA relacionados
-                    System.out.println("🔄 Eliminando movimiento de ensamble con ensambleId: " + ensambleId);
-                    System.out.println("🗑️ Buscando movimientos relacionados...");
-                    
-                    List<DetalleMovimientoInsumo> movimientosRelacionados = detalleMovimientoInsumoRepository.findByEnsambleId(ensambleId);
-                    System.out.println("📋 Movimientos relacionados encontrados: " + movimientosRelacionados.size());
-                    
-                    // ✅ CORREGIDO: Primero revertir stocks de los movimientos de SALIDA relacionados (insumos simples)
-                    // IMPORTANTE: Solo revertir el stock, NO eliminar los movimientos aquí
-                    // Los movimientos se eliminarán después cuando se elimine el movimiento principal con cascade
-                    List<MovimientoInsumoLote> movimientosSalidaAEliminar = new ArrayList<>();
-                    
-                    for (DetalleMovimientoInsumo detalleRelacionado : movimientosRelacionados) {
-                        // Solo procesar los movimientos de SALIDA (insumos simples usados en el ensamble)
-                        if (detalleRelacionado.getMovimiento().getTipoMovimiento() == TipoMovimiento.SALIDA) {
-                            Insumo insumoSimple = detalleRelacionado.getInsumo();
-                            
-                            // ✅ IMPORTANTE: Revertir el stock UNA SOLA VEZ aquí
-                            // No volver a revertir en el loop posterior del movimiento principal
-                            insumoSimple.setStockActual(insumoSimple.getStockActual() + detalleRelacionado.getCantidad());
-
-                            // Remover el detalle de la colección del insumo para mantener la consistencia con orphanRemoval
-                            if (insumoSimple.getMovimientos() != null) {
-                                insumoSimple.getMovimientos().remove(detalleRelacionado);
-                            }
-
-                            insumoRepository.save(insumoSimple);
-                            System.out.println("  ✅ Revertido stock de " + insumoSimple.getNombre() + ": +" + detalleRelacionado.getCantidad());
-                            
-                            // Guardar el movimiento para eliminarlo después
-                            MovimientoInsumoLote movimientoSalida = detalleRelacionado.getMovimiento();
-                            // Solo agregar si no es el mismo movimiento que estamos eliminando
-                            if (!movimientoSalida.getId().equals(id)) {
-                                movimientosSalidaAEliminar.add(movimientoSalida);
-                            }
-                        }
-                    }
-                    
-                    // ✅ IMPORTANTE: Marcar que ya se revirtieron los stocks de insumos simples
-                    // para evitar doble reversión en el loop posterior
-                    boolean stocksYaRevertidos = true;
-                    
-                    // Ahora eliminar los movimientos de salida relacionados
-                    // ✅ CORREGIDO: Eliminar primero los detalles, luego el movimiento
-                    for (MovimientoInsumoLote movimientoSalida : movimientosSalidaAEliminar) {
-                        System.out.println("  🗑️ Eliminando movimiento de salida relacionado ID: " + movimientoSalida.getId());
-                        
-                        try {
-                            // ✅ SIMPLIFICADO: Eliminar el movimiento directamente
-                            // JPA con cascade eliminará automáticamente los detalles
-                            movimientoRepository.delete(movimientoSalida);
-                            movimientoRepository.flush();
-                            
-                            System.out.println("    ✅ Movimiento de salida relacionado eliminado correctamente (cascade)");
-                        } catch (Exception e) {
-                            System.err.println("    ❌ Error al eliminar movimiento de salida relacionado: " + e.getMessage());
-                            e.printStackTrace();
-                            throw new RuntimeException("Error al eliminar movimiento de salida relacionado: " + e.getMessage(), e);
-                        }
+                );
+            }
+
+            // Si es el movimiento de ENTRADA del ensamble (insumo compuesto ensamblado)
+            // Permitir eliminar SOLO si no se ha usado para crear productos
+            Insumo insumoCompuesto = ensamble.getInsumoCompuesto();
+            if (verificarUsoEnProduccionPosterior(insumoCompuesto, movimiento.getFecha())) {
+                throw new IllegalArgumentException(
+                    "Este insumo compuesto ya se ha usado para crear productos después de este ensamble. " +
+                    "No se puede eliminar porque afectaría el historial de producción."
+                );
+            }
+
+            // ✅ Si se puede eliminar, revertir y eliminar también la SALIDA de componentes
+            System.out.println("🔄 Eliminando ensamble " + ensamble.getCodigo() + " (" + ensamble.getCantidadComponentes() + " componente(s))");
+            List<MovimientoInsumoLote> movimientosSalida = new ArrayList<>(ensamble.getMovimientosSalida());
+            ensambleRepository.delete(ensamble);
+            ensambleRepository.flush();
+
+            for (MovimientoInsumoLote movimientoSalida : movimientosSalida) {
+                for (DetalleMovimientoInsumo detalleRelacionado : movimientoSalida.getDetalles()) {
+                    Insumo insumoSimple = detalleRelacionado.getInsumo();
+                    stockService.ajustarInsumo(insumoSimple, detalleRelacionado.getCantidad());
+
+                    // Remover el detalle de la colección del insumo para mantener la consistencia con orphanRemoval
+                    if (insumoSimple.getMovimientos() != null) {
+                        insumoSimple.getMovimientos().remove(detalleRelacionado);
                     }
-                    
-                    System.out.println("✅ Movimientos relacionados eliminados: " + movimientosSalidaAEliminar.size());
+
+                    stockLedgerService.revertirMovimiento(insumoSimple.getId(), movimientoSalida.getFecha(),
+                            TipoMovimiento.SALIDA, detalleRelacionado.getCantidad());
+                    System.out.println("  ✅ Revertido stock de " + insumoSimple.getNombre() + ": +" + detalleRelacionado.getCantidad());
                 }
+
+                // JPA con cascade eliminará automáticamente los detalles
+                movimientoRepository.delete(movimientoSalida);
+                movimientoRepository.flush();
+                System.out.println("✅ Movimiento de salida del ensamble eliminado ID: " + movimientoSalida.getId());
             }
         }
 
@@ -302,8 +311,7 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
         Set<Long> insumosParaRecalcular = new HashSet<>();
 
         // ✅ NUEVO: Verificar si es un movimiento de ENTRADA de ensamble
-        boolean esMovimientoEnsambleEntrada = esMovimientoDeEnsamble(id) && 
-                                             movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA;
+        boolean esMovimientoEnsambleEntrada = ensamble != null;
 
         // ✅ CORREGIDO: Si es un movimiento de ensamble, los stocks de insumos simples ya fueron revertidos arriba
         // Solo revertir el stock del insumo compuesto principal
@@ -327,7 +335,8 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                     }
                 }
                 
-                insumo.setStockActual(insumo.getStockActual() - detalle.getCantidad());
+                stockService.ajustarInsumo(insumo, -detalle.getCantidad());
+                comprasInsumoService.revertirCompra(insumo, detalle.getCantidad(), detalle.getPrecioTotal());
                 
                 // Agregar a la lista para recalcular después de eliminar el movimiento
                 insumosParaRecalcular.add(insumo.getId());
@@ -336,10 +345,11 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                 // Para salida: sumar cantidad al stock
                 // NOTA: Si es un movimiento de SALIDA de ensamble (insumo simple), debería haber sido
                 // bloqueado arriba, pero por si acaso, lo procesamos normalmente
-                insumo.setStockActual(insumo.getStockActual() + detalle.getCantidad());
+                stockService.ajustarInsumo(insumo, detalle.getCantidad());
             }
             
             insumoRepository.save(insumo);
+            stockLedgerService.revertirMovimiento(insumo.getId(), movimiento.getFecha(), movimiento.getTipoMovimiento(), detalle.getCantidad());
             System.out.println("  ✅ Stock revertido para " + insumo.getNombre());
         }
         
@@ -362,7 +372,8 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             throw new RuntimeException("Error al eliminar el movimiento: " + e.getMessage(), e);
         }
 
-        // AHORA recalcular precio de compra para movimientos de entrada
+        // AHORA recalcular precio de compra y última compra para movimientos de entrada
+        comprasInsumoService.actualizarUltimaCompra(insumosParaRecalcular);
         for (Long insumoId : insumosParaRecalcular) {
             Insumo insumo = insumoRepository.findById(insumoId).orElse(null);
             if (insumo != null) {
@@ -371,10 +382,8 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             }
         }
 
-        // Recalcular precios de inversión de productos que usan estos insumos
-        for (Long insumoId : insumosParaRecalcular) {
-            recalcularPrecioInversionProductos(insumoId);
-        }
+        // Encolar el recálculo de los productos que usan estos insumos
+        propagacionCostosService.registrarCambiosPrecio(insumosParaRecalcular);
 
         System.out.println("✅ === SERVICIO: ELIMINACIÓN COMPLETADA ===");
         return movimiento;
@@ -393,85 +402,22 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
         }
     }
 
-    /**
-     * Recalcula el precio de inversión de todos los productos que usen el insumo especificado
-     */
-    private void recalcularPrecioInversionProductos(Long insumoId) {
-        try {
-            System.out.println("Recalculando productos para insumo ID: " + insumoId);
-            
-            // Obtener todos los productos que usen este insumo
-            List<Producto> productos = productoRepository.findAll().stream()
-                    .filter(producto -> producto.getReceta() != null && 
-                            producto.getReceta().getDetalles().stream()
-                                    .anyMatch(detalle -> detalle.getInsumo().getId().equals(insumoId)))
-                    .toList();
-
-            System.out.println("Productos encontrados que usan el insumo: " + productos.size());
-
-            for (Producto producto : productos) {
-                double nuevoPrecioInversion = 0.0;
-                
-                // Calcular el nuevo precio de inversión basado en los precios actuales de los insumos
-                for (InsumoReceta detalle : producto.getReceta().getDetalles()) {
-                    Insumo insumo = detalle.getInsumo();
-                    double costoInsumo = insumo.getPrecioDeCompra() * detalle.getCantidad();
-                    nuevoPrecioInversion += costoInsumo;
-                }
-                
-                System.out.println("Producto: " + producto.getNombre() + " - Nuevo precio: " + nuevoPrecioInversion);
-                producto.setPrecioInversion(nuevoPrecioInversion);
-                productoRepository.save(producto);
-            }
-        } catch (Exception e) {
-            System.err.println("Error en recalcularPrecioInversionProductos: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
-        }
-    }
-
     private void recalcularPrecioCompraInsumo(Insumo insumo) {
-        // Obtener todos los movimientos de entrada para este insumo
+        // Solo interesa el último movimiento de entrada, no todo el historial
         List<DetalleMovimientoInsumo> detallesEntrada = detalleMovimientoInsumoRepository
-                .findByInsumoAndMovimiento_TipoMovimiento(insumo, TipoMovimiento.ENTRADA);
+                .findUltimasCompras(insumo.getId(), PageRequest.of(0, 1));
 
         if (detallesEntrada.isEmpty()) {
             // Si no hay movimientos de entrada, resetear precio
             insumo.setPrecioDeCompra(0.0);
         } else {
             // Usar el precio del último movimiento de entrada
-            DetalleMovimientoInsumo ultimoMovimiento = detallesEntrada.get(detallesEntrada.size() - 1);
+            DetalleMovimientoInsumo ultimoMovimiento = detallesEntrada.get(0);
             double precioPorUnidad = ultimoMovimiento.getPrecioTotal() / ultimoMovimiento.getCantidad();
             insumo.setPrecioDeCompra(precioPorUnidad);
         }
     }
 
-    /**
-     * Calcula el stock disponible de un insumo en una fecha específica
-     * Considera todos los movimientos hasta esa fecha
-     */
-    private double calcularStockDisponibleEnFecha(Insumo insumo, LocalDate fecha) {
-        double stockInicial = 0.0;
-        
-        // Obtener todos los movimientos del insumo hasta la fecha especificada
-        List<DetalleMovimientoInsumo> movimientosHastaFecha = insumo.getMovimientos().stream()
-                .filter(detalle -> detalle.getMovimiento().getFecha().isBefore(fecha) || 
-                                 detalle.getMovimiento().getFecha().isEqual(fecha))
-                .sorted(Comparator.comparing(detalle -> detalle.getMovimiento().getFecha()))
-                .collect(Collectors.toList());
-        
-        // Calcular stock acumulado
-        for (DetalleMovimientoInsumo detalle : movimientosHastaFecha) {
-            if (detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA) {
-                stockInicial += detalle.getCantidad();
-            } else if (detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.SALIDA) {
-                stockInicial -= detalle.getCantidad();
-            }
-        }
-        
-        return stockInicial;
-    }
-
     /**
      * Valida si un movimiento de insumo puede ser editado
      * Implementa las reglas de negocio para edición segura
@@ -484,8 +430,8 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                     .orElseThrow(() -> new IllegalArgumentException("Movimiento no encontrado"));
 
             // ✅ NUEVO: Verificar si es un movimiento de ensamble ANTES de aplicar las validaciones generales
-            boolean esMovimientoEnsambleEntrada = esMovimientoDeEnsamble(movimientoId) && 
-                                                 movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA;
+            Ensamble ensamble = ensambleRepository.findByMovimientoId(movimientoId).orElse(null);
+            boolean esMovimientoEnsambleEntrada = ensamble != null && ensamble.esEntrada(movimientoId);
 
             // Condición 1: No hay movimientos posteriores del mismo insumo
             // ⚠️ EXCEPCIÓN: Si es un movimiento de ENTRADA de ensamble, permitir salidas posteriores del insumo compuesto
@@ -561,15 +507,11 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                 for (DetalleMovimientoInsumo detalle : movimiento.getDetalles()) {
                     Insumo insumo = detalle.getInsumo();
                     
-                    // Buscar movimientos de SALIDA con ensambleId (parte de un ensamble) que usaron este insumo
-                    // DESPUÉS de la fecha del movimiento de entrada
-                    List<DetalleMovimientoInsumo> salidasEnsamble = insumo.getMovimientos().stream()
-                            .filter(m -> m.getMovimiento().getFecha().isAfter(movimiento.getFecha()) &&
-                                       m.getMovimiento().getTipoMovimiento() == TipoMovimiento.SALIDA &&
-                                       m.getEnsambleId() != null && !m.getEnsambleId().trim().isEmpty())
-                            .collect(Collectors.toList());
+                    // Buscar ensambles que consumieron este insumo DESPUÉS de la fecha del movimiento de entrada
+                    boolean usadoEnEnsamble = ensambleRepository.existsConsumoDeInsumoDesde(
+                            insumo.getId(), movimiento.getFecha().plusDays(1));
                     
-                    if (!salidasEnsamble.isEmpty()) {
+                    if (usadoEnEnsamble) {
                         detallesValidacion.add("El insumo '" + insumo.getNombre() + 
                             "' fue usado en un ensamble después de este movimiento. " +
                             "No se puede editar porque afectaría el historial de ensambles.");
@@ -578,39 +520,19 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             }
 
             // Condición 4: Validación especial para movimientos de ensamble
-            if (esMovimientoDeEnsamble(movimientoId)) {
-                // Obtener el ensambleId del movimiento
-                String ensambleId = movimiento.getDetalles().stream()
-                        .filter(d -> d.getEnsambleId() != null && !d.getEnsambleId().trim().isEmpty())
-                        .map(DetalleMovimientoInsumo::getEnsambleId)
-                        .findFirst()
-                        .orElse(null);
-                
-                if (ensambleId != null) {
-                    // Si es un movimiento de SALIDA con ensambleId (insumo simple usado en ensamble)
-                    // NO se puede editar directamente (debe editarse desde el ensamble)
-                    if (movimiento.getTipoMovimiento() == TipoMovimiento.SALIDA) {
-                        detallesValidacion.add("Este movimiento es parte de un ensamble. " +
-                                "Para editarlo, debes editar el movimiento de ensamble del insumo compuesto relacionado.");
-                    } 
-                    // Si es un movimiento de ENTRADA con ensambleId (insumo compuesto ensamblado)
-                    // Permitir editar SOLO si no se ha usado para crear productos
-                    else if (movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA) {
-                        // Verificar si el insumo compuesto se usó para crear productos DESPUÉS de este movimiento
-                        for (DetalleMovimientoInsumo detalle : movimiento.getDetalles()) {
-                            Insumo insumoCompuesto = detalle.getInsumo();
-                            
-                            // Verificar si es un insumo compuesto
-                            if (insumoCompuesto != null && insumoCompuesto.esCompuesto()) {
-                                // ✅ CORREGIDO: Verificar si hay producción en CUALQUIER fecha (no solo posterior)
-                                boolean seUsoEnProduccion = verificarSiHayProduccionConInsumo(insumoCompuesto);
-                                if (seUsoEnProduccion) {
-                                    detallesValidacion.add("Este insumo compuesto ya se ha usado para crear productos. " +
-                                            "No se puede editar porque afectaría el historial de producción.");
-                                }
-                            }
-                        }
-                    }
+            if (ensamble != null) {
+                // Si es la SALIDA de componentes del ensamble
+                // NO se puede editar directamente (debe editarse desde el ensamble)
+                if (!esMovimientoEnsambleEntrada) {
+                    detallesValidacion.add("Este movimiento es parte de un ensamble. " +
+                            "Para editarlo, debes editar el movimiento de ensamble del insumo compuesto relacionado.");
+                }
+                // Si es la ENTRADA del insumo compuesto ensamblado
+                // Permitir editar SOLO si no se ha usado para crear productos
+                // ✅ CORREGIDO: Verificar si hay producción en CUALQUIER fecha (no solo posterior)
+                else if (verificarSiHayProduccionConInsumo(ensamble.getInsumoCompuesto())) {
+                    detallesValidacion.add("Este insumo compuesto ya se ha usado para crear productos. " +
+                            "No se puede editar porque afectaría el historial de producción.");
                 }
             }
 
@@ -644,56 +566,31 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             System.out.println("  - Tipo: " + movimiento.getTipoMovimiento());
             System.out.println("  - Fecha: " + movimiento.getFecha());
             System.out.println("  - Descripción: " + movimiento.getDescripcion());
-            System.out.println("  - Es ensamble: " + esMovimientoDeEnsamble(movimientoId));
+            Ensamble ensamble = ensambleRepository.findByMovimientoId(movimientoId).orElse(null);
+            boolean esMovimientoEnsambleEntrada = ensamble != null && ensamble.esEntrada(movimientoId);
+            System.out.println("  - Es ensamble: " + (ensamble != null));
 
             // ✅ Validación especial para movimientos de ensamble
-            if (esMovimientoDeEnsamble(movimientoId)) {
-                // Obtener el ensambleId del movimiento
-                String ensambleId = movimiento.getDetalles().stream()
-                        .filter(d -> d.getEnsambleId() != null && !d.getEnsambleId().trim().isEmpty())
-                        .map(DetalleMovimientoInsumo::getEnsambleId)
-                        .findFirst()
-                        .orElse(null);
-                
-                if (ensambleId != null) {
-                    // Si es un movimiento de SALIDA con ensambleId (insumo simple usado en ensamble)
-                    // NO se puede eliminar directamente (debe eliminarse desde el movimiento de entrada del ensamble)
-                    if (movimiento.getTipoMovimiento() == TipoMovimiento.SALIDA) {
-                        detallesValidacion.add("Este movimiento es parte de un ensamble. " +
-                                "Para eliminarlo, debes eliminar el movimiento de ensamble del insumo compuesto relacionado.");
-                    } 
-                    // Si es un movimiento de ENTRADA con ensambleId (insumo compuesto ensamblado)
-                    // ✅ CORREGIDO: Permitir eliminar por defecto, solo bloquear si realmente se usó en producción
-                    // No bloquear solo por tener salidas posteriores (podrían ser ajustes, roturas, etc.)
-                    else if (movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA) {
-                        // Verificar si el insumo compuesto se usó REALMENTE en producción de productos
-                        // (no solo si tiene salidas posteriores, que podrían ser por otras razones)
-                        for (DetalleMovimientoInsumo detalle : movimiento.getDetalles()) {
-                            Insumo insumoCompuesto = detalle.getInsumo();
-                            
-                            // Verificar si es un insumo compuesto
-                            if (insumoCompuesto != null && insumoCompuesto.esCompuesto()) {
-                                // ✅ Verificar si se usó en recetas de productos (más preciso que solo salidas)
-                                // Para insumos compuestos, verificar si están en alguna receta de producto
-                                boolean seUsoEnReceta = productoRepository.findAll().stream()
-                                        .anyMatch(producto -> producto.getReceta() != null && 
-                                                producto.getReceta().getDetalles().stream()
-                                                        .anyMatch(d -> d.getInsumo().getId().equals(insumoCompuesto.getId())));
-                                
-                                if (seUsoEnReceta) {
-                                    // ✅ CORREGIDO: Verificar si hay producción en CUALQUIER fecha (no solo posterior)
-                                    // Si el insumo compuesto está en una receta y hay producción, no se puede eliminar
-                                    boolean hayProduccion = verificarSiHayProduccionConInsumo(insumoCompuesto);
-                                    
-                                    if (hayProduccion) {
-                                        detallesValidacion.add("Este insumo compuesto ya se ha usado para crear productos. " +
-                                                "No se puede eliminar porque afectaría el historial de producción.");
-                                    }
-                                }
-                                // Si NO está en ninguna receta, puede eliminarse sin problemas
-                            }
-                        }
+            if (ensamble != null) {
+                // Si es la SALIDA de componentes del ensamble
+                // NO se puede eliminar directamente (debe eliminarse desde el movimiento de entrada del ensamble)
+                if (!esMovimientoEnsambleEntrada) {
+                    detallesValidacion.add("Este movimiento es parte de un ensamble. " +
+                            "Para eliminarlo, debes eliminar el movimiento de ensamble del insumo compuesto relacionado.");
+                }
+                // Si es la ENTRADA del insumo compuesto ensamblado
+                // ✅ CORREGIDO: Permitir eliminar por defecto, solo bloquear si realmente se usó en producción
+                // No bloquear solo por tener salidas posteriores (podrían ser ajustes, roturas, etc.)
+                else {
+                    Insumo insumoCompuesto = ensamble.getInsumoCompuesto();
+                    // ✅ Verificar si se usó en recetas de productos (más preciso que solo salidas)
+                    // Si el insumo compuesto está en una receta y hay producción, no se puede eliminar
+                    if (insumoRecetaRepository.existsByInsumoId(insumoCompuesto.getId())
+                            && verificarSiHayProduccionConInsumo(insumoCompuesto)) {
+                        detallesValidacion.add("Este insumo compuesto ya se ha usado para crear productos. " +
+                                "No se puede eliminar porque afectaría el historial de producción.");
                     }
+                    // Si NO está en ninguna receta, puede eliminarse sin problemas
                 }
             }
 
@@ -702,7 +599,7 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                 System.out.println("🔍 Validación especial para SALIDA de insumo...");
                 
                 // Si NO es parte de un ensamble, verificar si hay producción que dependa de esta salida
-                if (!esMovimientoDeEnsamble(movimientoId)) {
+                if (ensamble == null) {
                     for (DetalleMovimientoInsumo detalle : movimiento.getDetalles()) {
                         Insumo insumo = detalle.getInsumo();
                         
@@ -724,9 +621,6 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             // Validación 1: Verificar stock suficiente para revertir (solo para ENTRADA)
             // ⚠️ EXCEPCIÓN: Si es un movimiento de ENTRADA de ensamble, NO verificar stock del insumo compuesto
             // porque ese stock fue creado por este mismo movimiento
-            boolean esMovimientoEnsambleEntrada = esMovimientoDeEnsamble(movimientoId) && 
-                                                 movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA;
-            
             System.out.println("🔍 Validación 1: Verificando stock suficiente para revertir...");
             
             if (movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA) {
@@ -814,29 +708,13 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                     
                     System.out.println("  📦 Verificando insumo: " + insumo.getNombre() + " (ID: " + insumo.getId() + ")");
                     
-                    // Buscar movimientos de SALIDA con ensambleId (parte de un ensamble) que usaron este insumo
-                    // DESPUÉS de la fecha del movimiento de entrada (o en la misma fecha)
-                    List<DetalleMovimientoInsumo> salidasEnsamble = insumo.getMovimientos().stream()
-                            .filter(m -> {
-                                boolean fechaPosterior = m.getMovimiento().getFecha().isAfter(movimiento.getFecha()) ||
-                                                        m.getMovimiento().getFecha().isEqual(movimiento.getFecha());
-                                boolean esSalida = m.getMovimiento().getTipoMovimiento() == TipoMovimiento.SALIDA;
-                                boolean tieneEnsambleId = m.getEnsambleId() != null && !m.getEnsambleId().trim().isEmpty();
-                                
-                                if (fechaPosterior && esSalida && tieneEnsambleId) {
-                                    System.out.println("    ⚠️ Encontrado movimiento de SALIDA de ensamble:");
-                                    System.out.println("      - Fecha: " + m.getMovimiento().getFecha());
-                                    System.out.println("      - Cantidad: " + m.getCantidad());
-                                    System.out.println("      - EnsambleId: " + m.getEnsambleId());
-                                }
-                                
-                                return fechaPosterior && esSalida && tieneEnsambleId;
-                            })
-                            .collect(Collectors.toList());
+                    // Buscar ensambles que consumieron este insumo DESPUÉS de la fecha del movimiento de entrada
+                    // (o en la misma fecha), por índice en vez de recorrer todos los movimientos del insumo
+                    boolean usadoEnEnsamble = ensambleRepository.existsConsumoDeInsumoDesde(insumo.getId(), movimiento.getFecha());
                     
-                    if (!salidasEnsamble.isEmpty()) {
+                    if (usadoEnEnsamble) {
                         System.out.println("    ❌ BLOQUEADO: El insumo '" + insumo.getNombre() + 
-                            "' fue usado en " + salidasEnsamble.size() + " ensamble(s) después de este movimiento");
+                            "' fue usado en un ensamble después de este movimiento");
                         detallesValidacion.add("El insumo '" + insumo.getNombre() + 
                             "' fue usado en un ensamble después de este movimiento. " +
                             "No se puede eliminar porque afectaría el historial de ensambles.");
@@ -938,49 +816,44 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                 System.out.println("✅ Validación de fecha nueva completada exitosamente");
             }
 
-            // ✅ NUEVO: Si es un movimiento de ENTRADA con ensambleId, guardar el ensambleId y la cantidad original
-            String ensambleId = null;
+            // ✅ NUEVO: Si es la ENTRADA de un ensamble, guardar el ensamble y la cantidad original
+            Ensamble ensamble = ensambleRepository.findByMovimientoId(dto.id())
+                    .filter(e -> e.esEntrada(dto.id()))
+                    .orElse(null);
+            boolean esMovimientoEnsamble = ensamble != null;
+            String ensambleId = esMovimientoEnsamble ? ensamble.getCodigo() : null;
             double cantidadOriginal = 0.0;
-            boolean esMovimientoEnsamble = esMovimientoDeEnsamble(dto.id()) && 
-                                         movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA;
             
-            if (esMovimientoEnsamble) {
-                ensambleId = movimiento.getDetalles().stream()
-                        .filter(d -> d.getEnsambleId() != null && !d.getEnsambleId().trim().isEmpty())
-                        .map(DetalleMovimientoInsumo::getEnsambleId)
-                        .findFirst()
-                        .orElse(null);
-                
-                if (movimiento.getDetalles().size() > 0) {
-                    cantidadOriginal = movimiento.getDetalles().get(0).getCantidad();
-                }
+            if (esMovimientoEnsamble && movimiento.getDetalles().size() > 0) {
+                cantidadOriginal = movimiento.getDetalles().get(0).getCantidad();
             }
+            List<MovimientoInsumoLote> movimientosSalidaEnsamble = esMovimientoEnsamble ? ensamble.getMovimientosSalida() : List.of();
 
             // Revertir stock del movimiento original
+            // Insumos a los que se les quitó una compra: su última compra se recalcula al final
+            Set<Long> insumosConComprasRevertidas = new HashSet<>();
             for (DetalleMovimientoInsumo detalle : movimiento.getDetalles()) {
                 Insumo insumo = detalle.getInsumo();
                 if (movimiento.getTipoMovimiento() == TipoMovimiento.ENTRADA) {
-                    insumo.setStockActual(insumo.getStockActual() - detalle.getCantidad());
+                    stockService.ajustarInsumo(insumo, -detalle.getCantidad());
+                    comprasInsumoService.revertirCompra(insumo, detalle.getCantidad(), detalle.getPrecioTotal());
+                    insumosConComprasRevertidas.add(insumo.getId());
                 } else {
-                    insumo.setStockActual(insumo.getStockActual() + detalle.getCantidad());
+                    stockService.ajustarInsumo(insumo, detalle.getCantidad());
                 }
-                insumoRepository.save(insumo);
+                stockLedgerService.revertirMovimiento(insumo.getId(), fechaOriginal, movimiento.getTipoMovimiento(), detalle.getCantidad());
             }
 
-            // ✅ NUEVO: Si es un movimiento de ensamble, revertir también los movimientos de salida relacionados
-            if (esMovimientoEnsamble && ensambleId != null) {
-                System.out.println("🔄 Revertiendo movimientos de salida relacionados con ensambleId: " + ensambleId);
-                List<DetalleMovimientoInsumo> movimientosRelacionados = detalleMovimientoInsumoRepository.findByEnsambleId(ensambleId);
-                
-                for (DetalleMovimientoInsumo detalleRelacionado : movimientosRelacionados) {
-                    // Solo revertir los movimientos de SALIDA (insumos simples usados en el ensamble)
-                    if (detalleRelacionado.getMovimiento().getTipoMovimiento() == TipoMovimiento.SALIDA) {
-                        Insumo insumoSimple = detalleRelacionado.getInsumo();
-                        // Revertir el stock (devolver lo que se había quitado)
-                        insumoSimple.setStockActual(insumoSimple.getStockActual() + detalleRelacionado.getCantidad());
-                        insumoRepository.save(insumoSimple);
-                        System.out.println("  ✅ Revertido stock de " + insumoSimple.getNombre() + ": +" + detalleRelacionado.getCantidad());
-                    }
+            // ✅ NUEVO: Si es un movimiento de ensamble, revertir también la salida de componentes
+            for (MovimientoInsumoLote movimientoSalidaEnsamble : movimientosSalidaEnsamble) {
+                System.out.println("🔄 Revirtiendo salida de componentes del ensamble: " + ensambleId);
+                for (DetalleMovimientoInsumo detalleRelacionado : movimientoSalidaEnsamble.getDetalles()) {
+                    Insumo insumoSimple = detalleRelacionado.getInsumo();
+                    // Revertir el stock (devolver lo que se había quitado)
+                    stockService.ajustarInsumo(insumoSimple, detalleRelacionado.getCantidad());
+                    stockLedgerService.revertirMovimiento(insumoSimple.getId(), movimientoSalidaEnsamble.getFecha(),
+                            TipoMovimiento.SALIDA, detalleRelacionado.getCantidad());
+                    System.out.println("  ✅ Revertido stock de " + insumoSimple.getNombre() + ": +" + detalleRelacionado.getCantidad());
                 }
             }
 
@@ -1003,7 +876,7 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             
             // ✅ PASO 2: Crear y agregar los nuevos detalles
             System.out.println("➕ Agregando " + dto.detalles().size() + " detalles nuevos...");
-            List<Long> insumosParaRecalcular = new ArrayList<>();
+            Set<Long> insumosParaRecalcular = new HashSet<>();
             
             for (DetalleMovimientoInsumoDTO detalleDto : dto.detalles()) {
                 Insumo insumo = insumoRepository.findById(detalleDto.insumoId())
@@ -1018,7 +891,8 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
 
                 // Aplicar nuevo stock
                 if (dto.tipoMovimiento() == TipoMovimiento.ENTRADA) {
-                    insumo.setStockActual(insumo.getStockActual() + detalleDto.cantidad());
+                    stockService.ajustarInsumo(insumo, detalleDto.cantidad());
+                    comprasInsumoService.registrarCompra(insumo, fechaNueva, detalleDto.cantidad(), detalleDto.precio());
                     
                     // ✅ NUEVO: Si es un insumo compuesto editando un ensamble, recalcular precio basado en componentes
                     if (esMovimientoEnsamble && insumo.esCompuesto()) {
@@ -1032,9 +906,10 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                     
                     insumosParaRecalcular.add(insumo.getId());
                 } else {
-                    insumo.setStockActual(insumo.getStockActual() - detalleDto.cantidad());
+                    stockService.descontarInsumo(insumo, detalleDto.cantidad());
                 }
                 insumoRepository.save(insumo);
+                stockLedgerService.registrarMovimiento(insumo.getId(), fechaNueva, dto.tipoMovimiento(), detalleDto.cantidad());
 
                 // Crear nuevo detalle
                 DetalleMovimientoInsumo nuevoDetalle = new DetalleMovimientoInsumo(detalleDto.cantidad());
@@ -1056,6 +931,11 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
             // ✅ PASO 3: Guardar movimiento con nuevos detalles
             MovimientoInsumoLote movimientoActualizado = movimientoRepository.saveAndFlush(movimiento);
             System.out.println("✅ Movimiento actualizado con " + movimientoActualizado.getDetalles().size() + " detalles");
+
+            // La compra editada pudo ser la última de algún insumo: recalcularla con los detalles ya persistidos
+            if (!insumosConComprasRevertidas.isEmpty()) {
+                comprasInsumoService.actualizarUltimaCompra(insumosConComprasRevertidas);
+            }
             
             // ✅ NUEVO: Si es un movimiento de ensamble, actualizar proporcionalmente los movimientos de salida relacionados
             if (esMovimientoEnsamble && ensambleId != null && dto.detalles().size() > 0) {
@@ -1073,39 +953,36 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
                 System.out.println("  📊 Cantidad nueva: " + cantidadNueva);
                 System.out.println("  📊 Factor de proporción: " + factorProporcion);
                 
-                List<DetalleMovimientoInsumo> movimientosRelacionados = detalleMovimientoInsumoRepository.findByEnsambleId(ensambleId);
-                
-                for (DetalleMovimientoInsumo detalleRelacionado : movimientosRelacionados) {
-                    // Solo actualizar los movimientos de SALIDA (insumos simples usados en el ensamble)
-                    if (detalleRelacionado.getMovimiento().getTipoMovimiento() == TipoMovimiento.SALIDA) {
+                for (MovimientoInsumoLote movimientoSalidaEnsamble : movimientosSalidaEnsamble) {
+                    for (DetalleMovimientoInsumo detalleRelacionado : movimientoSalidaEnsamble.getDetalles()) {
                         Insumo insumoSimple = detalleRelacionado.getInsumo();
                         double cantidadOriginalSalida = detalleRelacionado.getCantidad();
                         double cantidadNuevaSalida = cantidadOriginalSalida * factorProporcion;
-                        
+
                         // ✅ CORREGIDO: El stock ya fue revertido completamente en el paso anterior (+cantidadOriginalSalida)
                         // Ahora solo necesitamos aplicar la nueva cantidad (-cantidadNuevaSalida)
-                        // El efecto neto es: +cantidadOriginalSalida - cantidadNuevaSalida
-                        // Pero como ya sumamos cantidadOriginalSalida, solo restamos cantidadNuevaSalida
-                        insumoSimple.setStockActual(insumoSimple.getStockActual() - cantidadNuevaSalida);
-                        
-                        // Actualizar la cantidad del detalle
+                        stockService.descontarInsumo(insumoSimple, cantidadNuevaSalida);
+
+                        // Actualizar la cantidad del detalle (se persiste al hacer flush con la transacción)
                         detalleRelacionado.setCantidad(cantidadNuevaSalida);
-                        
-                        detalleMovimientoInsumoRepository.save(detalleRelacionado);
-                        insumoRepository.save(insumoSimple);
-                        
-                        System.out.println("  ✅ Actualizado movimiento de salida de " + insumoSimple.getNombre() + 
-                                         ": " + cantidadOriginalSalida + " → " + cantidadNuevaSalida + 
+                        stockLedgerService.registrarMovimiento(insumoSimple.getId(), movimientoSalidaEnsamble.getFecha(),
+                                TipoMovimiento.SALIDA, cantidadNuevaSalida);
+
+                        System.out.println("  ✅ Actualizado componente " + insumoSimple.getNombre() +
+                                         ": " + cantidadOriginalSalida + " → " + cantidadNuevaSalida +
                                          " (stock ajustado: -" + cantidadNuevaSalida + ")");
                     }
                 }
-            }
 
-            // Recalcular precios de inversión de productos
-            for (Long insumoId : insumosParaRecalcular) {
-                recalcularPrecioInversionProductos(insumoId);
+                // Totales del ensamble
+                ensamble.setFecha(fechaNueva);
+                ensamble.setCantidad(cantidadNueva);
+                ensamble.setCostoTotal(dto.detalles().get(0).precio());
             }
 
+            // Encolar el recálculo de precios de inversión de productos
+            propagacionCostosService.registrarCambiosPrecio(insumosParaRecalcular);
+
             return movimientoActualizado;
 
         } catch (IllegalArgumentException e) {
@@ -1138,8 +1015,9 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
         detalle.setPrecioTotal(precioTotal);
         movimiento.addDetalle(detalle);
 
-        // Actualizar stock y precio del insumo
-        insumo.setStockActual(insumo.getStockActual() + cantidad);
+        // Actualizar stock, compras y precio del insumo
+        stockService.ajustarInsumo(insumo, cantidad);
+        comprasInsumoService.registrarCompra(insumo, fecha, cantidad, precioTotal);
         
         // Calcular precio por unidad
         double precioPorUnidad = precioTotal / cantidad;
@@ -1147,11 +1025,13 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
         // Solo actualizar precio si es mayor (peor) que el actual
         if (insumo.getPrecioDeCompra() == 0 || precioPorUnidad > insumo.getPrecioDeCompra()) {
             insumo.setPrecioDeCompra(precioPorUnidad);
+            propagacionCostosService.registrarCambiosPrecio(List.of(insumoId));
         }
 
         // Guardar todo
         insumoRepository.save(insumo);
         movimientoRepository.save(movimiento);
+        stockLedgerService.registrarMovimiento(insumoId, fecha, TipoMovimiento.ENTRADA, cantidad);
     }
 
     @Override
@@ -1177,183 +1057,81 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
         movimiento.addDetalle(detalle);
 
         // Actualizar stock del insumo
-        insumo.setStockActual(insumo.getStockActual() - cantidad);
-
-        // Guardar todo
-        insumoRepository.save(insumo);
-        movimientoRepository.save(movimiento);
-    }
-
-    // ✅ NUEVO: Método para crear movimiento de entrada con ensambleId
-    @Override
-    @Transactional
-    public void crearMovimientoEntradaConEnsamble(Long insumoId, double cantidad, double precioTotal, LocalDate fecha, String descripcion, String ensambleId) {
-        Insumo insumo = insumoRepository.findById(insumoId)
-                .orElseThrow(() -> new IllegalArgumentException("Insumo no encontrado: " + insumoId));
-
-        // Crear el movimiento
-        MovimientoInsumoLote movimiento = new MovimientoInsumoLote(fecha, descripcion, TipoMovimiento.ENTRADA);
-        
-        // Crear el detalle con ensambleId
-        DetalleMovimientoInsumo detalle = new DetalleMovimientoInsumo(cantidad);
-        detalle.setInsumo(insumo);
-        detalle.setPrecioTotal(precioTotal);
-        detalle.setEnsambleId(ensambleId); // ✅ Marcar como parte de un ensamble
-        movimiento.addDetalle(detalle);
-
-        // Actualizar stock y precio del insumo
-        insumo.setStockActual(insumo.getStockActual() + cantidad);
-        
-        // Calcular precio por unidad
-        double precioPorUnidad = precioTotal / cantidad;
-        
-        // Solo actualizar precio si es mayor (peor) que el actual
-        if (insumo.getPrecioDeCompra() == 0 || precioPorUnidad > insumo.getPrecioDeCompra()) {
-            insumo.setPrecioDeCompra(precioPorUnidad);
-        }
+        stockService.descontarInsumo(insumo, cantidad);
 
         // Guardar todo
-        insumoRepository.save(insumo);
         movimientoRepository.save(movimiento);
+        stockLedgerService.registrarMovimiento(insumoId, fecha, TipoMovimiento.SALIDA, cantidad);
     }
 
-    // ✅ NUEVO: Método para crear movimiento de salida con ensambleId
+    /**
+     * ✅ NUEVO: Registra un ensamble completo. Los componentes ya vienen validados y cargados por el
+     * llamador, así que no se vuelven a consultar: se arma una sola SALIDA con un detalle por componente
+     * y la ENTRADA del compuesto, y ambas cabeceras se insertan juntas con sus detalles.
+     * El stock y el libro de saldos de los componentes se actualizan con sentencias de varias filas que
+     * leen los detalles de la salida: la cantidad de sentencias no depende de la cantidad de componentes.
+     * El descuento sigue siendo condicional para no dejar stock negativo si otro movimiento lo consumió
+     * entre la validación y la escritura.
+     */
     @Override
     @Transactional
-    public void crearMovimientoSalidaConEnsamble(Long insumoId, double cantidad, LocalDate fecha, String descripcion, String ensambleId) {
-        Insumo insumo = insumoRepository.findById(insumoId)
-                .orElseThrow(() -> new IllegalArgumentException("Insumo no encontrado: " + insumoId));
-
-        // Validar stock suficiente
-        if (insumo.getStockActual() < cantidad) {
-            throw new IllegalArgumentException(
-                    String.format("Stock insuficiente para el insumo '%s'. Stock actual: %.2f, Cantidad solicitada: %.2f",
-                            insumo.getNombre(), insumo.getStockActual(), cantidad)
-            );
-        }
-
-        // Crear el movimiento
-        MovimientoInsumoLote movimiento = new MovimientoInsumoLote(fecha, descripcion, TipoMovimiento.SALIDA);
-        
-        // Crear el detalle con ensambleId
-        DetalleMovimientoInsumo detalle = new DetalleMovimientoInsumo(cantidad);
-        detalle.setInsumo(insumo);
-        detalle.setEnsambleId(ensambleId); // ✅ Marcar como parte de un ensamble
-        movimiento.addDetalle(detalle);
-
-        // Actualizar stock del insumo
-        insumo.setStockActual(insumo.getStockActual() - cantidad);
-
-        // Guardar todo
-        insumoRepository.save(insumo);
-        movimientoRepository.save(movimiento);
+    public void crearMovimientosEnsamble(Insumo insumoCompuesto, Map<Insumo, Double> consumos, double cantidad, double precioTotal,
+                                         LocalDate fecha, String descripcion, String ensambleId) {
+        MovimientoInsumoLote salida = new MovimientoInsumoLote(fecha, descripcion + " (componentes)", TipoMovimiento.SALIDA);
+        consumos.forEach((componente, cantidadComponente) -> {
+            DetalleMovimientoInsumo detalle = new DetalleMovimientoInsumo(cantidadComponente);
+            detalle.setInsumo(componente);
+            detalle.setEnsambleId(ensambleId); // ✅ Marcar como parte de un ensamble
+            salida.addDetalle(detalle);
+        });
+
+        MovimientoInsumoLote entrada = new MovimientoInsumoLote(fecha, descripcion, TipoMovimiento.ENTRADA);
+        DetalleMovimientoInsumo detalleEntrada = new DetalleMovimientoInsumo(cantidad);
+        detalleEntrada.setInsumo(insumoCompuesto);
+        detalleEntrada.setPrecioTotal(precioTotal);
+        detalleEntrada.setEnsambleId(ensambleId);
+        entrada.addDetalle(detalleEntrada);
+
+        movimientoRepository.saveAll(List.of(salida, entrada));
+        // Las sentencias de varias filas leen los detalles de la salida desde la base
+        movimientoRepository.flush();
+
+        stockService.descontarInsumosDeMovimiento(salida);
+        stockLedgerService.registrarSalidasDeMovimiento(salida.getId(), fecha);
+
+        // El precio del compuesto lo fija el llamador con el costo por unidad de la receta
+        stockService.ajustarInsumo(insumoCompuesto, cantidad);
+        comprasInsumoService.registrarCompra(insumoCompuesto, fecha, cantidad, precioTotal);
+        stockLedgerService.registrarMovimiento(insumoCompuesto.getId(), fecha, TipoMovimiento.ENTRADA, cantidad);
+
+        ensambleRepository.save(new Ensamble(ensambleId, insumoCompuesto, entrada, List.of(salida), fecha, cantidad,
+                consumos.size(), precioTotal));
+        System.out.println("🔧 Ensamble " + ensambleId + " registrado: " + consumos.size() + " componente(s) en un solo movimiento de salida");
     }
 
     // ✅ NUEVO: Método para validar si un movimiento es parte de un ensamble
     @Override
     public boolean esMovimientoDeEnsamble(Long movimientoId) {
-        MovimientoInsumoLote movimiento = movimientoRepository.findById(movimientoId)
-                .orElseThrow(() -> new IllegalArgumentException("Movimiento no encontrado"));
-
-        // Un movimiento es parte de un ensamble si alguno de sus detalles tiene ensambleId
-        return movimiento.getDetalles().stream()
-                .anyMatch(detalle -> detalle.getEnsambleId() != null && !detalle.getEnsambleId().trim().isEmpty());
+        if (!movimientoRepository.existsById(movimientoId)) {
+            throw new IllegalArgumentException("Movimiento no encontrado");
+        }
+        return ensambleRepository.existsByMovimientoId(movimientoId);
     }
 
-    /**
-     * Verifica si un insumo ha sido usado en producción de productos después de una fecha específica
-     * Funciona tanto para insumos simples (usados en recetas) como para insumos compuestos (usados directamente)
-     */
     /**
      * ✅ NUEVO: Verifica si hay producción de productos que usan este insumo (en cualquier fecha)
      * Útil para bloquear eliminación/edición de movimientos cuando el insumo ya fue usado en producción
      */
     private boolean verificarSiHayProduccionConInsumo(Insumo insumo) {
-        // Verificar si el insumo está en alguna receta de producto
-        List<Producto> productosQueUsanInsumo = productoRepository.findAll().stream()
-                .filter(producto -> producto.getReceta() != null && 
-                        producto.getReceta().getDetalles().stream()
-                                .anyMatch(d -> d.getInsumo().getId().equals(insumo.getId())))
-                .toList();
-
-        if (productosQueUsanInsumo.isEmpty()) {
-            return false; // No está en ninguna receta, no se puede usar para crear productos
-        }
-
-        // Verificar si hay al menos una producción de algún producto que use este insumo
-        for (Producto producto : productosQueUsanInsumo) {
-            boolean tieneProduccion = producto.getMovimientos().stream()
-                    .anyMatch(detalleMovimiento -> {
-                        MovimientoProductoLote movimientoProducto = detalleMovimiento.getMovimiento();
-                        return movimientoProducto.getTipoMovimiento() == TipoMovimiento.ENTRADA;
-                    });
-            
-            if (tieneProduccion) {
-                return true; // Hay producción de este producto que usa el insumo
-            }
-        }
-        
-        return false; // Está en una receta pero no hay producción
+        return insumoRecetaRepository.existsProduccionConInsumo(insumo.getId());
     }
 
+    /**
+     * Verifica si un insumo ha sido usado en producción de productos en la fecha indicada o después
+     * Funciona tanto para insumos simples como compuestos (ambos se usan directamente en recetas)
+     */
     private boolean verificarUsoEnProduccionPosterior(Insumo insumo, LocalDate fechaMovimiento) {
-        // Si es un insumo compuesto, verificar si está en una receta de producto Y hay producción posterior
-        if (insumo.esCompuesto()) {
-            // ✅ CORREGIDO: Verificar si el insumo compuesto está en alguna receta de producto
-            List<Producto> productosQueUsanInsumo = productoRepository.findAll().stream()
-                    .filter(producto -> producto.getReceta() != null && 
-                            producto.getReceta().getDetalles().stream()
-                                    .anyMatch(d -> d.getInsumo().getId().equals(insumo.getId())))
-                    .toList();
-
-            // Si el insumo compuesto NO está en ninguna receta, no se puede usar para crear productos
-            if (productosQueUsanInsumo.isEmpty()) {
-                return false; // No se puede usar para crear productos porque no está en ninguna receta
-            }
-
-            // Si está en una receta, verificar si hay producción posterior O EN LA MISMA FECHA
-            // ✅ CRÍTICO: Incluir isEqual() para detectar producción en la misma fecha
-            for (Producto producto : productosQueUsanInsumo) {
-                boolean tieneProduccionPosterior = producto.getMovimientos().stream()
-                        .anyMatch(detalleMovimiento -> {
-                            MovimientoProductoLote movimientoProducto = detalleMovimiento.getMovimiento();
-                            return movimientoProducto.getTipoMovimiento() == TipoMovimiento.ENTRADA &&
-                                   (movimientoProducto.getFecha().isAfter(fechaMovimiento) ||
-                                    movimientoProducto.getFecha().isEqual(fechaMovimiento));
-                        });
-                
-                if (tieneProduccionPosterior) {
-                    return true; // El insumo compuesto se usó en producción después o en la misma fecha del movimiento
-                }
-            }
-            
-            return false; // Está en una receta pero no hay producción posterior
-        }
-        
-        // Para insumos simples, verificar si se usaron en recetas de productos
-        List<Producto> productosQueUsanInsumo = productoRepository.findAll().stream()
-                .filter(producto -> producto.getReceta() != null && 
-                        producto.getReceta().getDetalles().stream()
-                                .anyMatch(d -> d.getInsumo().getId().equals(insumo.getId())))
-                .toList();
-
-        // Para cada producto, verificar si tiene movimientos de entrada después O EN LA MISMA FECHA del movimiento de insumo
-        // ✅ CRÍTICO: Incluir isEqual() para detectar producción en la misma fecha
-        for (Producto producto : productosQueUsanInsumo) {
-            boolean tieneProduccionPosterior = producto.getMovimientos().stream()
-                    .anyMatch(detalleMovimiento -> {
-                        MovimientoProductoLote movimientoProducto = detalleMovimiento.getMovimiento();
-                        return movimientoProducto.getTipoMovimiento() == TipoMovimiento.ENTRADA &&
-                               (movimientoProducto.getFecha().isAfter(fechaMovimiento) ||
-                                movimientoProducto.getFecha().isEqual(fechaMovimiento));
-                    });
-            
-            if (tieneProduccionPosterior) {
-                return true; // El insumo se usó en producción después o en la misma fecha del movimiento
-            }
-        }
-        
-        return false; // No se usó en producción después o en la misma fecha del movimiento
+        return insumoRecetaRepository.existsProduccionConInsumoDesde(insumo.getId(), fechaMovimiento);
     }
 
     /**
@@ -1361,32 +1139,7 @@ public class MovimientoInsumoLoteServiceImplements implements MovimientoInsumoLo
      * Detecta inconsistencias históricas donde la producción ocurrió antes de que el insumo estuviera disponible
      */
     private boolean verificarProduccionAnterior(Insumo insumo, LocalDate fechaMovimiento) {
-        // Verificar si el insumo está en alguna receta de producto
-        List<Producto> productosQueUsanInsumo = productoRepository.findAll().stream()
-                .filter(producto -> producto.getReceta() != null && 
-                        producto.getReceta().getDetalles().stream()
-                                .anyMatch(d -> d.getInsumo().getId().equals(insumo.getId())))
-                .toList();
-
-        if (productosQueUsanInsumo.isEmpty()) {
-            return false; // No está en ninguna receta, no puede haber producción
-        }
-
-        // Verificar si hay producción ANTES de la fecha del movimiento
-        for (Producto producto : productosQueUsanInsumo) {
-            boolean tieneProduccionAnterior = producto.getMovimientos().stream()
-                    .anyMatch(detalleMovimiento -> {
-                        MovimientoProductoLote movimientoProducto = detalleMovimiento.getMovimiento();
-                        return movimientoProducto.getTipoMovimiento() == TipoMovimiento.ENTRADA &&
-                               movimientoProducto.getFecha().isBefore(fechaMovimiento);
-                    });
-            
-            if (tieneProduccionAnterior) {
-                return true; // Hay producción antes del movimiento - INCONSISTENCIA HISTÓRICA
-            }
-        }
-        
-        return false; // No hay producción antes del movimiento
+        return insumoRecetaRepository.existsProduccionConInsumoAntesDe(insumo.getId(), fechaMovimiento);
     }
 
     /**
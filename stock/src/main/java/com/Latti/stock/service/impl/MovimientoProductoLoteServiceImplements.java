@@ -2,32 +2,42 @@ package com.Latti.stock.service.impl;
 
 import com.Latti.stock.dtos.CrearMovimientoProductoDTO;
 import com.Latti.stock.dtos.DetalleMovimientoProductoDTO;
+import com.Latti.stock.dtos.FilaMovimientoProductoDTO;
+import com.Latti.stock.dtos.PaginaDTO;
 import com.Latti.stock.dtos.ResponseDetalleMovimientoProductoDTO;
 import com.Latti.stock.dtos.ResponseMovimientosProductoLoteDTO;
 import com.Latti.stock.dtos.StockPorLoteDTO;
 import com.Latti.stock.dtos.CrearVentaPorLotesDTO;
 import com.Latti.stock.dtos.VentaPorLoteDTO;
 import com.Latti.stock.modules.DetalleMovimientoProducto;
+import com.Latti.stock.modules.LoteProducto;
 import com.Latti.stock.modules.MovimientoProductoLote;
 import com.Latti.stock.modules.Producto;
 import com.Latti.stock.modules.TipoMovimiento;
 import com.Latti.stock.modules.InsumoReceta;
 import com.Latti.stock.modules.Insumo;
-import com.Latti.stock.modules.DetalleMovimientoInsumo;
 import com.Latti.stock.repositories.MovimientoProductoLoteRepository;
 import com.Latti.stock.repositories.ProductoRepository;
 import com.Latti.stock.repositories.InsumoRepository;
 import com.Latti.stock.repositories.DetalleMovimientoProductoRepository;
+import com.Latti.stock.service.ListaMaterialesService;
+import com.Latti.stock.service.LoteProductoService;
 import com.Latti.stock.service.MovimientoProductoLoteService;
+import com.Latti.stock.service.StockLedgerService;
+import com.Latti.stock.service.StockService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Set;
+import java.util.Arrays;
+import java.util.function.Function;
 import java.util.HashSet;
 import java.util.stream.Collectors;
 
@@ -46,6 +56,18 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
     @Autowired
     private DetalleMovimientoProductoRepository detalleMovimientoProductoRepository;
 
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private LoteProductoService loteProductoService;
+
+    @Autowired
+    private ListaMaterialesService listaMaterialesService;
+
     @Override
     @Transactional
     public MovimientoProductoLote crearMovimientoProducto(CrearMovimientoProductoDTO dto) {
@@ -56,9 +78,14 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             MovimientoProductoLote movimiento = new MovimientoProductoLote(
                     dto.fecha(),
                     dto.descripcion(),
-                    dto.tipoMovimiento()
+                    dto.tipoMovimiento(),
+                    Boolean.TRUE.equals(dto.descarte())
             );
 
+            // ✅ NUEVO: Con ids por secuencia, persistir asigna el id sin ejecutar el INSERT,
+            // así el lote se conoce antes de insertar los detalles (que van en batch al final)
+            MovimientoProductoLote movimientoGuardado = movimientoRepository.save(movimiento);
+
             for (DetalleMovimientoProductoDTO d : dto.detalles()) {
                 // Validar que el producto existe
                 Producto producto = productoRepository.findById(d.id())
@@ -72,11 +99,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                 // Validaciones específicas para SALIDA
                 if (dto.tipoMovimiento() == TipoMovimiento.SALIDA) {
                     // Verificar que el producto haya sido producido antes o en la misma fecha
-                    LocalDate fechaPrimeraProduccion = producto.getMovimientos().stream()
-                            .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA)
-                            .map(detalle -> detalle.getMovimiento().getFecha())
-                            .min(LocalDate::compareTo)
-                            .orElse(null);
+                    LocalDate fechaPrimeraProduccion = detalleMovimientoProductoRepository.findFechaPrimeraProduccion(producto.getId());
 
                     if (fechaPrimeraProduccion == null || dto.fecha().isBefore(fechaPrimeraProduccion)) {
                         String fechaReferencia = fechaPrimeraProduccion != null
@@ -102,12 +125,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                         }
                         
                         // Validar fecha de creación del lote vs fecha de venta
-                        LocalDate fechaCreacionLote = producto.getMovimientos().stream()
-                                .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA)
-                                .filter(detalle -> d.lote().equals(detalle.getLote()))
-                                .map(detalle -> detalle.getMovimiento().getFecha())
-                                .min(LocalDate::compareTo)
-                                .orElse(null);
+                        LocalDate fechaCreacionLote = obtenerFechaProduccionLote(producto, d.lote());
                         
                         if (fechaCreacionLote == null) {
                             throw new IllegalArgumentException(
@@ -149,14 +167,10 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                     }
                     
                     // Validar precio de venta no negativo
-                    // Si el precio es 0, debe ser un descarte (verificado por descripción "DESCARTO")
+                    // Un precio 0 suele ser un descarte, pero se permite también en ventas con precio especial
                     if (d.precioVenta() < 0) {
                         throw new IllegalArgumentException("El precio de venta no puede ser negativo para el producto: " + producto.getNombre());
                     }
-                    // Si el precio es 0 y no es un descarte, advertir (pero permitir para flexibilidad)
-                    if (d.precioVenta() == 0 && (dto.descripcion() == null || !dto.descripcion().toUpperCase().contains("DESCARTO"))) {
-                        // Solo advertir, no bloquear (puede ser una venta con precio especial)
-                    }
                 }
 
                 // Validaciones específicas para ENTRADA
@@ -174,14 +188,14 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                         validarStockHistoricoInsumosParaProduccion(producto, d.cantidad(), dto.fecha());
                     }
                     
-                    producto.setStockActual(producto.getStockActual() + d.cantidad());
+                    stockService.ajustarProducto(producto, d.cantidad());
                     
                     // Para ENTRADA (producción): restar insumos de la receta
                     if (producto.getReceta() != null) {
                         restarInsumosDeReceta(producto, d.cantidad(), dto.fecha());
                     }
                 } else {
-                    producto.setStockActual(producto.getStockActual() - d.cantidad());
+                    stockService.descontarProducto(producto, d.cantidad());
                 }
 
                 // Actualizar precio de venta solo para SALIDA
@@ -207,32 +221,22 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                 
                 // ✅ CRÍTICO: Asignar lote si se especifica (para SALIDA) o generar automáticamente (para ENTRADA)
                 if (dto.tipoMovimiento() == TipoMovimiento.ENTRADA) {
-                    // El lote se generará automáticamente cuando se guarde el movimiento
-                    // y se tenga acceso al ID del movimiento
+                    // Generar lote basado en el ID del movimiento
+                    String lote = "LOTE-" + movimientoGuardado.getId();
+                    detalle.setLote(lote);
+                    loteProductoService.registrarProduccion(producto, lote, d.cantidad(),
+                            movimientoGuardado.getFecha(), d.fechaVencimiento());
                 } else if (dto.tipoMovimiento() == TipoMovimiento.SALIDA && d.lote() != null && !d.lote().trim().isEmpty()) {
                     // Para SALIDA, usar el lote especificado en el DTO
                     detalle.setLote(d.lote());
+                    loteProductoService.registrarVenta(producto.getId(), d.lote(), d.cantidad());
                 }
                 // Si es SALIDA sin lote especificado, el lote queda null (venta genérica)
 
-                // Establecer relaciones
-                movimiento.addDetalle(detalle);
+                // Establecer relaciones (los detalles se insertan en cascada al hacer flush)
+                movimientoGuardado.addDetalle(detalle);
             }
 
-            // Guardar el movimiento primero para obtener el ID
-            MovimientoProductoLote movimientoGuardado = movimientoRepository.save(movimiento);
-            
-            // Generar lotes automáticamente para movimientos de ENTRADA
-            if (dto.tipoMovimiento() == TipoMovimiento.ENTRADA) {
-                for (DetalleMovimientoProducto detalle : movimientoGuardado.getDetalles()) {
-                    // Generar lote basado en el ID del movimiento
-                    String lote = "LOTE-" + movimientoGuardado.getId();
-                    detalle.setLote(lote);
-                }
-                // Guardar nuevamente para persistir los lotes
-                return movimientoRepository.save(movimientoGuardado);
-            }
-            
             return movimientoGuardado;
         } catch (Exception e) {
             System.err.println("Error en crearMovimientoProducto: " + e.getMessage());
@@ -242,28 +246,66 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ResponseMovimientosProductoLoteDTO> obtenerMovimientosDTO() {
-        return movimientoRepository.findAll().stream().map(mov ->
-                new ResponseMovimientosProductoLoteDTO(
-                        mov.getId(),
-                        mov.getFecha(),
-                        mov.getDescripcion(),
-                        mov.getTipoMovimiento(),
-                        mov.getDetalles().stream().map(det ->
-                                new ResponseDetalleMovimientoProductoDTO(
-                                        det.getProducto().getId(),
-                                        det.getProducto().getNombre(),
-                                        det.getCantidad(),
-                                        det.getProducto().getPrecioInversion(),
-                                        // ✅ CORREGIDO: Usar precio del detalle si existe (historial preservado),
-                                        // sino usar precio del producto (para movimientos antiguos o ENTRADA)
-                                        det.getPrecioVenta() != null ? det.getPrecioVenta() : det.getProducto().getPrecioVenta(),
-                                        det.getFechaVencimiento(),
-                                        det.getLote()
-                                )
-                        ).toList()
-                )
-        ).toList();
+        return agruparFilas(movimientoRepository.findFilasMovimientos());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PaginaDTO<ResponseMovimientosProductoLoteDTO> obtenerPaginaMovimientos(LocalDate desde, LocalDate hasta,
+                                                                         TipoMovimiento tipo, Long productoId,
+                                                                         String lote, String cursor, Integer limite) {
+        CursorMovimiento posicion = CursorMovimiento.decodificar(cursor);
+        int tamanio = CursorMovimiento.normalizarLimite(limite);
+        String loteFiltro = lote == null || lote.isBlank() ? null : lote.trim();
+
+        // Se pide un elemento extra solo para saber si existe una página siguiente
+        List<Long> ids = movimientoRepository.findIdsPagina(desde, hasta, tipo, productoId, loteFiltro,
+                posicion == null ? null : posicion.fecha(),
+                posicion == null ? null : posicion.id(),
+                tamanio + 1);
+
+        boolean hayMas = ids.size() > tamanio;
+        if (hayMas) {
+            ids = ids.subList(0, tamanio);
+        }
+        if (ids.isEmpty()) {
+            return new PaginaDTO<>(List.of(), null);
+        }
+
+        List<ResponseMovimientosProductoLoteDTO> items = agruparFilas(movimientoRepository.findFilasMovimientosPorIds(ids));
+        String siguienteCursor = null;
+        if (hayMas) {
+            ResponseMovimientosProductoLoteDTO ultimo = items.get(items.size() - 1);
+            siguienteCursor = new CursorMovimiento(ultimo.fecha(), ultimo.id()).codificar();
+        }
+        return new PaginaDTO<>(items, siguienteCursor);
+    }
+
+    /**
+     * Agrupa las filas planas (ordenadas por movimiento) en un DTO por movimiento con sus detalles
+     */
+    private List<ResponseMovimientosProductoLoteDTO> agruparFilas(List<FilaMovimientoProductoDTO> filas) {
+        Map<Long, ResponseMovimientosProductoLoteDTO> movimientos = new LinkedHashMap<>();
+        for (FilaMovimientoProductoDTO fila : filas) {
+            ResponseMovimientosProductoLoteDTO mov = movimientos.computeIfAbsent(fila.movimientoId(), id ->
+                    new ResponseMovimientosProductoLoteDTO(id, fila.fecha(), fila.descripcion(),
+                            fila.tipoMovimiento(), new ArrayList<>()));
+            if (fila.productoId() != null) {
+                mov.detalles().add(new ResponseDetalleMovimientoProductoDTO(
+                        fila.productoId(),
+                        fila.nombre(),
+                        fila.cantidad(),
+                        fila.precioInversion(),
+                        // ✅ CORREGIDO: El precio del detalle (historial preservado) ya tiene prioridad en la consulta
+                        fila.precioVenta(),
+                        fila.fechaVencimiento(),
+                        fila.lote()
+                ));
+            }
+        }
+        return new ArrayList<>(movimientos.values());
     }
 
     @Override
@@ -295,13 +337,10 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             
             if (loteOriginal != null && !loteOriginal.trim().isEmpty()) {
                 // Verificar si hay movimientos de salida que usen este lote
-                boolean haySalidasConEsteLote = producto.getMovimientos().stream()
-                        .anyMatch(detalle -> {
-                            MovimientoProductoLote mov = detalle.getMovimiento();
-                            return mov.getTipoMovimiento() == TipoMovimiento.SALIDA &&
-                                   mov.getFecha().isAfter(movimientoOriginal.getFecha()) &&
-                                   loteOriginal.equals(detalle.getLote());
-                        });
+                // (una venta nunca puede ser anterior a la producción del lote, así que basta con el saldo del lote)
+                boolean haySalidasConEsteLote = loteProductoService.obtenerLote(producto.getId(), loteOriginal)
+                        .map(lote -> lote.getCantidadVendida() > 0)
+                        .orElse(false);
                 
                 if (haySalidasConEsteLote) {
                     throw new IllegalArgumentException(
@@ -310,23 +349,6 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                         "Elimine primero los movimientos de salida asociados a este lote."
                     );
                 }
-                
-                // También verificar salidas en la misma fecha (más estricto)
-                boolean haySalidasMismaFecha = producto.getMovimientos().stream()
-                        .anyMatch(detalle -> {
-                            MovimientoProductoLote mov = detalle.getMovimiento();
-                            return mov.getTipoMovimiento() == TipoMovimiento.SALIDA &&
-                                   mov.getFecha().isEqual(movimientoOriginal.getFecha()) &&
-                                   loteOriginal.equals(detalle.getLote());
-                        });
-                
-                if (haySalidasMismaFecha) {
-                    throw new IllegalArgumentException(
-                        "No se puede editar el movimiento de entrada porque hay movimientos de salida en la misma fecha " +
-                        "que usan el lote '" + loteOriginal + "' del producto '" + producto.getNombre() + "'. " +
-                        "Elimine primero los movimientos de salida asociados a este lote."
-                    );
-                }
             }
         }
         
@@ -343,7 +365,10 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             if (producto.getStockActual() < detalleOriginal.getCantidad()) {
                 throw new IllegalArgumentException("No se puede editar el movimiento. Stock insuficiente para revertir: " + producto.getNombre());
             }
-            producto.setStockActual(producto.getStockActual() - detalleOriginal.getCantidad());
+            stockService.ajustarProducto(producto, -detalleOriginal.getCantidad());
+            if (detalleOriginal.getLote() != null) {
+                loteProductoService.revertirProduccion(producto.getId(), detalleOriginal.getLote(), detalleOriginal.getCantidad());
+            }
             
             // Guardar información para restaurar insumos
             if (producto.getReceta() != null) {
@@ -364,8 +389,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             
             Insumo insumo = insumoRepository.findById(insumoId).orElse(null);
             if (insumo != null) {
-                insumo.setStockActual(insumo.getStockActual() + cantidadARestaurar);
-                insumoRepository.save(insumo);
+                stockService.ajustarInsumo(insumo, cantidadARestaurar);
                 System.out.println("  ✅ Restaurado insumo ID " + insumoId + ": +" + cantidadARestaurar);
             }
         }
@@ -411,6 +435,10 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
         
         movimientoOriginal.setFecha(dto.fecha());
         movimientoOriginal.setDescripcion(dto.descripcion());
+        // La descripción ya no define el descarte: solo cambia si se indica explícitamente
+        if (dto.descarte() != null) {
+            movimientoOriginal.setDescarte(dto.descarte());
+        }
         
         for (DetalleMovimientoProductoDTO d : dto.detalles()) {
             Producto producto = productoRepository.findById(d.id())
@@ -426,7 +454,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             }
 
             // Actualizar stock del producto
-            producto.setStockActual(producto.getStockActual() + d.cantidad());
+            stockService.ajustarProducto(producto, d.cantidad());
             
             // Restar insumos de la receta
             if (producto.getReceta() != null) {
@@ -435,22 +463,18 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
 
             productoRepository.save(producto);
 
-            // Crear nuevo detalle
+            // Crear nuevo detalle con el lote del movimiento (el id ya existe)
+            String lote = "LOTE-" + movimientoOriginal.getId();
             DetalleMovimientoProducto nuevoDetalle = new DetalleMovimientoProducto(d.cantidad(), producto);
             nuevoDetalle.setFechaVencimiento(d.fechaVencimiento());
+            nuevoDetalle.setLote(lote);
             movimientoOriginal.addDetalle(nuevoDetalle);
+            loteProductoService.registrarProduccion(producto, lote, d.cantidad(),
+                    movimientoOriginal.getFecha(), d.fechaVencimiento());
         }
 
-        // Guardar el movimiento actualizado
-        MovimientoProductoLote movimientoActualizado = movimientoRepository.save(movimientoOriginal);
-        
-        // Generar lotes automáticamente para movimientos de ENTRADA
-        for (DetalleMovimientoProducto detalle : movimientoActualizado.getDetalles()) {
-            String lote = "LOTE-" + movimientoActualizado.getId();
-            detalle.setLote(lote);
-        }
-        
-        return movimientoRepository.save(movimientoActualizado);
+        // Guardar el movimiento actualizado (los detalles nuevos se insertan en cascada)
+        return movimientoRepository.save(movimientoOriginal);
     }
 
     @Override
@@ -475,14 +499,9 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                 
                 if (lote != null && !lote.trim().isEmpty()) {
                     // Verificar si hay movimientos de salida que usen este lote
-                    boolean haySalidasConEsteLote = producto.getMovimientos().stream()
-                            .anyMatch(detalleSalida -> {
-                                MovimientoProductoLote mov = detalleSalida.getMovimiento();
-                                return mov.getTipoMovimiento() == TipoMovimiento.SALIDA &&
-                                       (mov.getFecha().isAfter(movimiento.getFecha()) ||
-                                        mov.getFecha().isEqual(movimiento.getFecha())) &&
-                                       lote.equals(detalleSalida.getLote());
-                            });
+                    boolean haySalidasConEsteLote = loteProductoService.obtenerLote(producto.getId(), lote)
+                            .map(loteProducto -> loteProducto.getCantidadVendida() > 0)
+                            .orElse(false);
                     
                     if (haySalidasConEsteLote) {
                         throw new IllegalArgumentException(
@@ -548,7 +567,10 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                 if (producto.getStockActual() < detalle.getCantidad()) {
                     throw new IllegalArgumentException("No se puede eliminar el movimiento. Stock insuficiente para revertir: " + producto.getNombre());
                 }
-                producto.setStockActual(producto.getStockActual() - detalle.getCantidad());
+                stockService.ajustarProducto(producto, -detalle.getCantidad());
+                if (detalle.getLote() != null) {
+                    loteProductoService.revertirProduccion(productoId, detalle.getLote(), detalle.getCantidad());
+                }
                 
                 // Guardar información para restaurar insumos después de eliminar el movimiento
                 if (producto.getReceta() != null) {
@@ -563,7 +585,10 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                 
             } else if (movimiento.getTipoMovimiento() == TipoMovimiento.SALIDA) {
                 // Para salida: sumar cantidad al stock
-                producto.setStockActual(producto.getStockActual() + detalle.getCantidad());
+                stockService.ajustarProducto(producto, detalle.getCantidad());
+                if (detalle.getLote() != null && !detalle.getLote().trim().isEmpty()) {
+                    loteProductoService.revertirVenta(productoId, detalle.getLote(), detalle.getCantidad());
+                }
                 
                 // Nota: No restauramos el precio de venta anterior porque no lo guardamos
                 // El precio de venta se mantiene como el último establecido
@@ -582,8 +607,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             
             Insumo insumo = insumoRepository.findById(insumoId).orElse(null);
             if (insumo != null) {
-                insumo.setStockActual(insumo.getStockActual() + cantidadARestaurar);
-                insumoRepository.save(insumo);
+                stockService.ajustarInsumo(insumo, cantidadARestaurar);
             }
         }
 
@@ -615,7 +639,8 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             MovimientoProductoLote movimiento = new MovimientoProductoLote(
                     dto.fecha(),
                     dto.descripcion(),
-                    TipoMovimiento.SALIDA
+                    TipoMovimiento.SALIDA,
+                    Boolean.TRUE.equals(dto.descarte())
             );
 
             for (VentaPorLoteDTO venta : dto.ventasPorLotes()) {
@@ -628,18 +653,13 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                 }
 
                 // Validar precio de venta no negativo
-                // Si el precio es 0, debe ser un descarte (verificado por descripción "DESCARTO")
+                // Un precio 0 suele ser un descarte (dto.descarte()), pero no se exige
                 if (venta.precioVenta() < 0) {
                     throw new IllegalArgumentException("El precio de venta no puede ser negativo para el producto: " + producto.getNombre());
                 }
-                // Si el precio es 0 y no es un descarte, permitir pero advertir (puede ser una venta con precio especial)
 
             // Validar que exista producción previa a la fecha de venta
-            LocalDate fechaPrimeraProduccion = producto.getMovimientos().stream()
-                    .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA)
-                    .map(detalle -> detalle.getMovimiento().getFecha())
-                    .min(LocalDate::compareTo)
-                    .orElse(null);
+            LocalDate fechaPrimeraProduccion = detalleMovimientoProductoRepository.findFechaPrimeraProduccion(producto.getId());
 
             if (fechaPrimeraProduccion == null || dto.fecha().isBefore(fechaPrimeraProduccion)) {
                 String fechaReferencia = fechaPrimeraProduccion != null
@@ -663,12 +683,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                 }
 
             // Validar que el lote haya sido creado en una fecha anterior o igual a la venta
-            LocalDate fechaCreacionLote = producto.getMovimientos().stream()
-                    .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA)
-                    .filter(detalle -> venta.lote().equals(detalle.getLote()))
-                    .map(detalle -> detalle.getMovimiento().getFecha())
-                    .min(LocalDate::compareTo)
-                    .orElse(null);
+            LocalDate fechaCreacionLote = obtenerFechaProduccionLote(producto, venta.lote());
 
             if (fechaCreacionLote == null) {
                 throw new IllegalArgumentException(
@@ -698,7 +713,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             }
 
                 // Actualizar stock del producto
-                producto.setStockActual(producto.getStockActual() - venta.cantidad());
+                stockService.descontarProducto(producto, venta.cantidad());
                 producto.setPrecioVenta(venta.precioVenta());
                 productoRepository.save(producto);
 
@@ -709,6 +724,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
                 );
                 detalle.setLote(venta.lote()); // Usar el lote específico
                 detalle.setFechaVencimiento(obtenerFechaVencimientoLote(producto, venta.lote()));
+                loteProductoService.registrarVenta(producto.getId(), venta.lote(), venta.cantidad());
                 // ✅ CORREGIDO: Guardar precio de venta en el detalle para preservar historial
                 detalle.setPrecioVenta(venta.precioVenta());
 
@@ -727,30 +743,24 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
      * Obtiene el stock disponible en un lote específico
      */
     private double obtenerStockDisponibleEnLote(Producto producto, String lote) {
-        double cantidadEntrada = producto.getMovimientos().stream()
-                .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA)
-                .filter(detalle -> lote.equals(detalle.getLote()))
-                .mapToDouble(DetalleMovimientoProducto::getCantidad)
-                .sum();
-
-        double cantidadVendida = producto.getMovimientos().stream()
-                .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.SALIDA)
-                .filter(detalle -> lote.equals(detalle.getLote()))
-                .mapToDouble(DetalleMovimientoProducto::getCantidad)
-                .sum();
-
-        return cantidadEntrada - cantidadVendida;
+        return loteProductoService.obtenerStockDisponible(producto.getId(), lote);
     }
 
     /**
      * Obtiene la fecha de vencimiento de un lote específico
      */
     private LocalDate obtenerFechaVencimientoLote(Producto producto, String lote) {
-        return producto.getMovimientos().stream()
-                .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA)
-                .filter(detalle -> lote.equals(detalle.getLote()))
-                .map(DetalleMovimientoProducto::getFechaVencimiento)
-                .findFirst()
+        return loteProductoService.obtenerLote(producto.getId(), lote)
+                .map(LoteProducto::getFechaVencimiento)
+                .orElse(null);
+    }
+
+    /**
+     * Obtiene la fecha de producción de un lote específico (null si el lote no existe)
+     */
+    private LocalDate obtenerFechaProduccionLote(Producto producto, String lote) {
+        return loteProductoService.obtenerLote(producto.getId(), lote)
+                .map(LoteProducto::getFechaProduccion)
                 .orElse(null);
     }
 
@@ -758,18 +768,20 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
      * ✅ NUEVO: Valida que los insumos tengan stock suficiente en la fecha del movimiento de producción
      */
     private void validarStockHistoricoInsumosParaProduccion(Producto producto, double cantidadProducto, LocalDate fechaProduccion) {
-        if (producto.getReceta() == null || producto.getReceta().getDetalles() == null) {
+        ListaMaterialesService.Requerimientos requerimientos = listaMaterialesService.directosProducto(producto.getId());
+        if (requerimientos.estaVacio()) {
             return; // No hay receta, no hay nada que validar
         }
 
         System.out.println("🕐 Validando stock histórico de insumos para producción en fecha: " + fechaProduccion);
 
-        for (InsumoReceta detalleReceta : producto.getReceta().getDetalles()) {
-            Insumo insumo = detalleReceta.getInsumo();
-            double cantidadInsumoNecesaria = detalleReceta.getCantidad() * cantidadProducto;
+        Map<Long, Insumo> insumos = cargarInsumos(requerimientos);
+        for (int i = 0; i < requerimientos.tamanio(); i++) {
+            Insumo insumo = insumos.get(requerimientos.insumoIds()[i]);
+            double cantidadInsumoNecesaria = requerimientos.cantidades()[i] * cantidadProducto;
 
             // Calcular el stock que tenía el insumo en la fecha del movimiento de producción
-            double stockEnFecha = calcularStockInsumoEnFecha(insumo, fechaProduccion);
+            double stockEnFecha = stockLedgerService.obtenerStockEnFecha(insumo.getId(), fechaProduccion);
 
             System.out.println(String.format("  📦 Insumo '%s': Stock en %s = %.2f, Necesario: %.2f",
                     insumo.getNombre(), fechaProduccion, stockEnFecha, cantidadInsumoNecesaria));
@@ -793,44 +805,21 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
         System.out.println("✅ Validación de stock histórico de insumos exitosa");
     }
 
-    /**
-     * ✅ NUEVO: Calcula el stock que tenía un insumo en una fecha específica
-     * Considera todos los movimientos hasta esa fecha (entradas y salidas)
-     */
-    private double calcularStockInsumoEnFecha(Insumo insumo, LocalDate fecha) {
-        double stock = 0.0;
-
-        // Recorrer todos los movimientos del insumo hasta la fecha indicada
-        for (DetalleMovimientoInsumo detalle : insumo.getMovimientos()) {
-            LocalDate fechaMovimiento = detalle.getMovimiento().getFecha();
-
-            // Solo considerar movimientos ANTES O EN la fecha especificada
-            if (fechaMovimiento.isBefore(fecha) || fechaMovimiento.isEqual(fecha)) {
-                TipoMovimiento tipo = detalle.getMovimiento().getTipoMovimiento();
-
-                if (tipo == TipoMovimiento.ENTRADA) {
-                    stock += detalle.getCantidad();
-                } else if (tipo == TipoMovimiento.SALIDA) {
-                    stock -= detalle.getCantidad();
-                }
-            }
-        }
-
-        return stock;
-    }
-
     /**
      * Resta los insumos necesarios de la receta del producto
      * ✅ ACTUALIZADO: Ahora recibe la fecha para validaciones adicionales
      */
     private void restarInsumosDeReceta(Producto producto, double cantidadProducto, LocalDate fechaProduccion) {
-        if (producto.getReceta() == null || producto.getReceta().getDetalles() == null) {
+        // Vector precompilado: las líneas repetidas de un mismo insumo ya vienen sumadas
+        ListaMaterialesService.Requerimientos requerimientos = listaMaterialesService.directosProducto(producto.getId());
+        if (requerimientos.estaVacio()) {
             return; // No hay receta, no hay nada que restar
         }
 
-        for (InsumoReceta detalleReceta : producto.getReceta().getDetalles()) {
-            Insumo insumo = detalleReceta.getInsumo();
-            double cantidadInsumoNecesaria = detalleReceta.getCantidad() * cantidadProducto;
+        Map<Long, Insumo> insumos = cargarInsumos(requerimientos);
+        for (int i = 0; i < requerimientos.tamanio(); i++) {
+            Insumo insumo = insumos.get(requerimientos.insumoIds()[i]);
+            double cantidadInsumoNecesaria = requerimientos.cantidades()[i] * cantidadProducto;
 
             // Validar stock suficiente del insumo (validación adicional de seguridad)
             if (insumo.getStockActual() < cantidadInsumoNecesaria) {
@@ -843,11 +832,19 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
             }
 
             // Restar la cantidad del insumo
-            insumo.setStockActual(insumo.getStockActual() - cantidadInsumoNecesaria);
-            insumoRepository.save(insumo);
+            stockService.descontarInsumo(insumo, cantidadInsumoNecesaria);
         }
     }
 
+    /**
+     * Insumos de un vector de requerimientos indexados por id, en una sola consulta
+     */
+    private Map<Long, Insumo> cargarInsumos(ListaMaterialesService.Requerimientos requerimientos) {
+        List<Long> ids = Arrays.stream(requerimientos.insumoIds()).boxed().toList();
+        return insumoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Insumo::getId, Function.identity()));
+    }
+
     /**
      * Calcula el stock disponible de un producto en una fecha específica
      * Considera todos los movimientos hasta esa fecha
@@ -878,42 +875,7 @@ public class MovimientoProductoLoteServiceImplements implements MovimientoProduc
      * Obtiene el stock disponible por lotes para un producto
      */
     public List<StockPorLoteDTO> obtenerStockPorLotes(Long productoId) {
-        Producto producto = productoRepository.findById(productoId)
-                .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado: " + productoId));
-
-        return producto.getMovimientos().stream()
-                .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA)
-                .collect(Collectors.groupingBy(
-                    DetalleMovimientoProducto::getLote,
-                    Collectors.summingDouble(DetalleMovimientoProducto::getCantidad)
-                ))
-                .entrySet().stream()
-                .map(entry -> {
-                    String lote = entry.getKey();
-                    double cantidadEntrada = entry.getValue();
-                    
-                    // Calcular cantidad vendida de este lote
-                    double cantidadVendida = producto.getMovimientos().stream()
-                            .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.SALIDA)
-                            .filter(detalle -> lote.equals(detalle.getLote()))
-                            .mapToDouble(DetalleMovimientoProducto::getCantidad)
-                            .sum();
-                    
-                    double stockDisponible = cantidadEntrada - cantidadVendida;
-                    
-                    // Obtener fecha de vencimiento del primer movimiento de entrada con este lote
-                    LocalDate fechaVencimiento = producto.getMovimientos().stream()
-                            .filter(detalle -> detalle.getMovimiento().getTipoMovimiento() == TipoMovimiento.ENTRADA)
-                            .filter(detalle -> lote.equals(detalle.getLote()))
-                            .map(DetalleMovimientoProducto::getFechaVencimiento)
-                            .findFirst()
-                            .orElse(null);
-                    
-                    return new StockPorLoteDTO(lote, stockDisponible, fechaVencimiento);
-                })
-                .filter(stock -> stock.cantidadDisponible() > 0)
-                .sorted(Comparator.comparing(StockPorLoteDTO::fechaVencimiento))
-                .collect(Collectors.toList());
+        return loteProductoService.obtenerStockPorLotes(productoId);
     }
 
     /**
@@ -0,0 +1,84 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.dtos.FilaPerdidaDTO;
+import com.Latti.stock.dtos.PerdidaDTO;
+import com.Latti.stock.dtos.ResumenPerdidaMensualDTO;
+import com.Latti.stock.dtos.ResumenPerdidaProductoDTO;
+import com.Latti.stock.repositories.MovimientoProductoLoteRepository;
+import com.Latti.stock.service.PerdidaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@Service
+public class PerdidaServiceImplements implements PerdidaService {
+
+    private static final int TAMANIO_MAXIMO = 500;
+
+    @Autowired
+    private MovimientoProductoLoteRepository movimientoProductoLoteRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PerdidaDTO> obtenerPerdidas(Integer pagina, Integer tamanio) {
+        Pageable pageable = Pageable.unpaged();
+        if (pagina != null) {
+            if (pagina < 0) {
+                throw new IllegalArgumentException("La página no puede ser negativa");
+            }
+            int tamanioPagina = tamanio == null ? 50 : tamanio;
+            if (tamanioPagina <= 0) {
+                throw new IllegalArgumentException("El tamaño de página debe ser mayor a 0");
+            }
+            pageable = PageRequest.of(pagina, Math.min(tamanioPagina, TAMANIO_MAXIMO));
+        }
+
+        return movimientoProductoLoteRepository.findFilasPerdidas(pageable).stream()
+                .map(this::convertirAPerdidaDTO)
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long contarPerdidas() {
+        return movimientoProductoLoteRepository.contarDetallesPerdidas();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ResumenPerdidaMensualDTO> resumirPorMes() {
+        return movimientoProductoLoteRepository.resumirPerdidasPorMes();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ResumenPerdidaProductoDTO> resumirPorProducto() {
+        return movimientoProductoLoteRepository.resumirPerdidasPorProducto();
+    }
+
+    private PerdidaDTO convertirAPerdidaDTO(FilaPerdidaDTO fila) {
+        // Calcular días vencidos desde la fecha de vencimiento del lote hasta la fecha del descarte
+        int diasVencidos = 0;
+        if (fila.fechaVencimiento() != null && fila.fechaVencimiento().isBefore(fila.fecha())) {
+            diasVencidos = (int) ChronoUnit.DAYS.between(fila.fechaVencimiento(), fila.fecha());
+        }
+
+        // El valor perdido es el costo de producir las unidades descartadas
+        return new PerdidaDTO(
+                fila.movimientoId(),
+                fila.fecha(),
+                fila.descripcion(),
+                fila.productoId(),
+                fila.nombreProducto(),
+                fila.lote() != null ? fila.lote() : "N/A",
+                fila.cantidad(),
+                fila.precioInversion() * fila.cantidad(),
+                diasVencidos
+        );
+    }
+}
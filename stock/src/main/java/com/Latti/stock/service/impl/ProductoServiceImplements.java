@@ -8,8 +8,13 @@ import com.Latti.stock.modules.Receta;
 import com.Latti.stock.repositories.InsumoRepository;
 import com.Latti.stock.repositories.ProductoRepository;
 import com.Latti.stock.repositories.RecetaRepository;
+import com.Latti.stock.service.CatalogoCacheService;
+import com.Latti.stock.service.ListaMaterialesService;
 import com.Latti.stock.service.ProductoService;
+import com.Latti.stock.service.StockService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -29,9 +34,16 @@ public class ProductoServiceImplements implements ProductoService {
     @Autowired
     private ProductoRepository productoRepository;
 
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ListaMaterialesService listaMaterialesService;
+
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CatalogoCacheService.PRODUCTOS, allEntries = true)
     public Producto crearProducto(CrearProductoConRecetaDTO crearProductoConRecetaDTO) {
         validar(crearProductoConRecetaDTO);
 
@@ -69,11 +81,13 @@ public class ProductoServiceImplements implements ProductoService {
         producto.setStockMinimo(crearProductoConRecetaDTO.stockMinimo());
         producto.setPrecioInversion(precioInversionTotal);
 
+        listaMaterialesService.invalidar();
         return productoRepository.save(producto);
     }
 
 
     @Override
+    @Cacheable(CatalogoCacheService.PRODUCTOS)
     public List<ProductosDTO> obtenerProductos() {
         List<Producto> productos = productoRepository.findAll();
 
@@ -126,6 +140,7 @@ public class ProductoServiceImplements implements ProductoService {
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CatalogoCacheService.PRODUCTOS, allEntries = true)
     public Producto actualizarProducto(Long id, ActualizarProductoConRecetaDTO dto) {
         Producto producto = productoRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + id));
@@ -136,7 +151,7 @@ public class ProductoServiceImplements implements ProductoService {
         }
 
         if (dto.stockActual() != null) {
-            producto.setStockActual(dto.stockActual());
+            stockService.establecerStockProducto(producto, dto.stockActual());
         }
 
         if (dto.stockMinimo() != null) {
@@ -180,6 +195,7 @@ public class ProductoServiceImplements implements ProductoService {
             }
 
             producto.setPrecioInversion(nuevoPrecioInversion);
+            listaMaterialesService.invalidar();
         } else if (dto.precioInversion() != null) {
             // Solo se actualiza si no se cambia la receta
             producto.setPrecioInversion(dto.precioInversion());
@@ -190,6 +206,7 @@ public class ProductoServiceImplements implements ProductoService {
 
     @Override
     @Transactional
+    @CacheEvict(cacheNames = CatalogoCacheService.PRODUCTOS, allEntries = true)
     public void eliminarProducto(Long id) {
         Producto producto = productoRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + id));
@@ -198,6 +215,7 @@ public class ProductoServiceImplements implements ProductoService {
             throw new IllegalArgumentException("No se puede eliminar el producto porque tiene movimientos registrados.");
         }
         productoRepository.delete(producto);
+        listaMaterialesService.invalidar();
     }
 
 }
@@ -0,0 +1,149 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.modules.CambioCostoPendiente;
+import com.Latti.stock.modules.Insumo;
+import com.Latti.stock.modules.InsumoReceta;
+import com.Latti.stock.modules.Producto;
+import com.Latti.stock.modules.RecetaInsumo;
+import com.Latti.stock.repositories.CambioCostoPendienteRepository;
+import com.Latti.stock.repositories.InsumoRecetaRepository;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.repositories.ProductoRepository;
+import com.Latti.stock.repositories.RecetaInsumoRepository;
+import com.Latti.stock.service.CatalogoCacheService;
+import com.Latti.stock.service.PropagacionCostosService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class PropagacionCostosServiceImplements implements PropagacionCostosService {
+
+    // Cantidad máxima de cambios pendientes consumidos por transacción
+    private static final int TAMANIO_LOTE = 500;
+
+    @Autowired
+    private CambioCostoPendienteRepository cambioCostoPendienteRepository;
+
+    @Autowired
+    private InsumoRepository insumoRepository;
+
+    @Autowired
+    private RecetaInsumoRepository recetaInsumoRepository;
+
+    @Autowired
+    private InsumoRecetaRepository insumoRecetaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CatalogoCacheService catalogoCacheService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong pendientes = new AtomicLong();
+    private final AtomicLong lagSegundos = new AtomicLong();
+    private Counter productosRecalculados;
+
+    @PostConstruct
+    void registrarMetricas() {
+        Gauge.builder("latti.costos.cola.pendientes", pendientes, AtomicLong::get)
+                .description("Cambios de precio de insumos pendientes de propagar")
+                .register(meterRegistry);
+        Gauge.builder("latti.costos.cola.lag", lagSegundos, AtomicLong::get)
+                .description("Antigüedad del cambio de precio pendiente más antiguo")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        productosRecalculados = Counter.builder("latti.costos.productos.recalculados")
+                .description("Productos cuyo precio de inversión fue recalculado")
+                .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional
+    public void registrarCambiosPrecio(Collection<Long> insumoIds) {
+        if (insumoIds.isEmpty()) {
+            return;
+        }
+        cambioCostoPendienteRepository.saveAll(insumoIds.stream()
+                .distinct()
+                .map(CambioCostoPendiente::new)
+                .toList());
+    }
+
+    @Override
+    @Transactional
+    public int procesarPendientes() {
+        // Con varias instancias, cada una reclama filas distintas y las bloquea hasta el commit
+        List<CambioCostoPendiente> lote = cambioCostoPendienteRepository.reclamarPendientes(PageRequest.of(0, TAMANIO_LOTE));
+        if (lote.isEmpty()) {
+            return 0;
+        }
+
+        // Varios cambios del mismo insumo se resuelven con un único recálculo
+        Set<Long> insumosAfectados = new HashSet<>();
+        for (CambioCostoPendiente cambio : lote) {
+            insumosAfectados.add(cambio.getInsumoId());
+        }
+
+        // Insumo base → insumos compuestos que lo usan: actualizar su costo por unidad
+        List<Insumo> compuestos = recetaInsumoRepository.findCompuestosQueUsanInsumos(insumosAfectados);
+        for (Insumo compuesto : compuestos) {
+            double precioPorUnidad = 0;
+            for (RecetaInsumo componente : compuesto.getReceta()) {
+                precioPorUnidad += componente.getCantidad() * componente.getInsumoBase().getPrecioDeCompra();
+            }
+            compuesto.setPrecioDeCompra(precioPorUnidad);
+            insumosAfectados.add(compuesto.getId());
+        }
+        insumoRepository.saveAll(compuestos);
+
+        // Insumos (base o compuestos) → productos: cada producto se recalcula una sola vez
+        List<Producto> productos = insumoRecetaRepository.findProductosQueUsanInsumos(insumosAfectados);
+        for (Producto producto : productos) {
+            double nuevoPrecioInversion = 0.0;
+            for (InsumoReceta detalle : producto.getReceta().getDetalles()) {
+                nuevoPrecioInversion += detalle.getInsumo().getPrecioDeCompra() * detalle.getCantidad();
+            }
+            producto.setPrecioInversion(nuevoPrecioInversion);
+        }
+        productoRepository.saveAll(productos);
+
+        // Solo se eliminan los cambios reclamados por esta transacción
+        cambioCostoPendienteRepository.eliminarPorIds(lote.stream().map(CambioCostoPendiente::getId).toList());
+        productosRecalculados.increment(productos.size());
+        if (!compuestos.isEmpty()) {
+            catalogoCacheService.invalidarInsumos();
+        }
+        if (!productos.isEmpty()) {
+            catalogoCacheService.invalidarProductos();
+        }
+
+        System.out.println("💲 Propagación de costos: " + lote.size() + " cambio(s), " +
+                compuestos.size() + " compuesto(s) y " + productos.size() + " producto(s) recalculados");
+        return lote.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void actualizarMetricas() {
+        pendientes.set(cambioCostoPendienteRepository.count());
+        LocalDateTime masAntiguo = cambioCostoPendienteRepository.findFechaMasAntigua();
+        lagSegundos.set(masAntiguo == null ? 0 : Duration.between(masAntiguo, LocalDateTime.now()).getSeconds());
+    }
+}
@@ -0,0 +1,33 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.service.PropagacionCostosService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Proceso en segundo plano que vacía la cola de propagación de costos.
+ * Cada lote se procesa en su propia transacción para no retener bloqueos.
+ * Puede correr en varias instancias: cada lote reclama sus filas con SKIP LOCKED.
+ */
+@Component
+public class PropagacionCostosWorker {
+
+    @Autowired
+    private PropagacionCostosService propagacionCostosService;
+
+    @Scheduled(fixedDelayString = "${latti.costos.intervalo-ms:2000}")
+    public void procesar() {
+        try {
+            // Se consumen lotes hasta vaciar la cola
+            while (propagacionCostosService.procesarPendientes() > 0) {
+                // siguiente lote
+            }
+        } catch (Exception e) {
+            System.err.println("Error en la propagación de costos: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            propagacionCostosService.actualizarMetricas();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.service.ReintentoService;
+import jakarta.persistence.OptimisticLockException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+@Service
+public class ReintentoServiceImplements implements ReintentoService {
+
+    /**
+     * Restricciones únicas que dos transacciones pueden violar a la vez al crear la misma fila
+     * (primer saldo del día de un insumo, primer ingreso de un lote). Reintentar encuentra la fila ya creada.
+     */
+    private static final Set<String> RESTRICCIONES_DE_CARRERA = Set.of("uk_saldo_insumo_fecha", "uk_lote_producto_codigo");
+
+    @Value("${latti.reintentos.maximo:5}")
+    private int maximoIntentos;
+
+    @Value("${latti.reintentos.espera-inicial-ms:20}")
+    private long esperaInicialMs;
+
+    @Value("${latti.reintentos.espera-maxima-ms:500}")
+    private long esperaMaximaMs;
+
+    @Override
+    public <T> T ejecutar(Supplier<T> operacion) {
+        int intento = 1;
+        while (true) {
+            try {
+                return operacion.get();
+            } catch (RuntimeException e) {
+                if (!esConflicto(e) || intento >= maximoIntentos) {
+                    throw e;
+                }
+                System.out.println("🔁 Conflicto de concurrencia (intento " + intento + " de " + maximoIntentos + "), reintentando: " + e.getMessage());
+                esperar(intento);
+                intento++;
+            }
+        }
+    }
+
+    /**
+     * Los servicios a veces envuelven la excepción original, así que se revisa toda la cadena de causas.
+     * Otras violaciones de integridad (NOT NULL, claves foráneas, CHECK) son errores reales y no se reintentan.
+     */
+    private boolean esConflicto(Throwable e) {
+        for (Throwable actual = e; actual != null; actual = actual.getCause()) {
+            // ConcurrencyFailureException cubre versiones desactualizadas, deadlocks y esperas de bloqueo agotadas
+            if (actual instanceof ConcurrencyFailureException || actual instanceof OptimisticLockException) {
+                return true;
+            }
+            // DuplicateKeyException, o la violación sin subtipo según cómo la traduzca el proveedor JPA
+            if (actual instanceof DataIntegrityViolationException) {
+                return esCarreraDeInsercion(actual);
+            }
+            if (actual.getCause() == actual) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * El nombre de la restricción solo aparece en el mensaje de la excepción del driver
+     */
+    private boolean esCarreraDeInsercion(Throwable e) {
+        for (Throwable actual = e; actual != null; actual = actual.getCause()) {
+            String mensaje = actual.getMessage() == null ? "" : actual.getMessage().toLowerCase(Locale.ROOT);
+            if (RESTRICCIONES_DE_CARRERA.stream().anyMatch(mensaje::contains)) {
+                return true;
+            }
+            if (actual.getCause() == actual) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Espera exponencial acotada con jitter para que los reintentos paralelos no vuelvan a chocar
+     */
+    private void esperar(int intento) {
+        long techo = Math.min(esperaMaximaMs, esperaInicialMs << (intento - 1));
+        long espera = ThreadLocalRandom.current().nextLong(techo / 2, techo + 1);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Reintento interrumpido", ie);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.dtos.ResultadoSimulacionDTO;
+import com.Latti.stock.dtos.SimulacionDTO;
+import com.Latti.stock.dtos.SimulacionDTO.PasoSimulacionDTO;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.repositories.LoteProductoRepository;
+import com.Latti.stock.repositories.ProductoRepository;
+import com.Latti.stock.repositories.SaldoInsumoDiarioRepository;
+import com.Latti.stock.service.ListaMaterialesService;
+import com.Latti.stock.service.ListaMaterialesService.Requerimientos;
+import com.Latti.stock.service.SimulacionService;
+import com.Latti.stock.service.StockLedgerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+@Service
+public class SimulacionServiceImplements implements SimulacionService {
+
+    @Autowired
+    private InsumoRepository insumoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private LoteProductoRepository loteProductoRepository;
+
+    @Autowired
+    private SaldoInsumoDiarioRepository saldoRepository;
+
+    @Autowired
+    private StockLedgerService stockLedgerService;
+
+    @Autowired
+    private ListaMaterialesService listaMaterialesService;
+
+    @Value("${latti.simulacion.maximo-pasos:10000}")
+    private int maximoPasos;
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResultadoSimulacionDTO simular(SimulacionDTO dto) {
+        if (dto == null || dto.pasos() == null || dto.pasos().isEmpty()) {
+            throw new IllegalArgumentException("El plan debe tener al menos un paso");
+        }
+        if (dto.pasos().size() > maximoPasos) {
+            throw new IllegalArgumentException("El plan no puede tener más de " + maximoPasos + " pasos");
+        }
+
+        // El libro diario se carga desde el primer día del plan; lo anterior se resume en un saldo por insumo
+        LocalDate hoy = LocalDate.now();
+        LocalDate desde = dto.pasos().stream()
+                .filter(Objects::nonNull)
+                .map(PasoSimulacionDTO::fecha)
+                .filter(Objects::nonNull)
+                .min(LocalDate::compareTo)
+                .orElse(hoy);
+
+        Map<Long, Requerimientos> recetasCompuestos = listaMaterialesService.recetasCompuestos();
+        Map<Long, Requerimientos> explotadosCompuestos = new HashMap<>();
+        for (Long compuestoId : recetasCompuestos.keySet()) {
+            explotadosCompuestos.put(compuestoId, listaMaterialesService.explotadoCompuesto(compuestoId));
+        }
+
+        // Unas pocas consultas planas para la foto; a partir de acá todo es en memoria
+        SimuladorProduccion simulador = new SimuladorProduccion(
+                hoy,
+                insumoRepository.findResumenesStock(),
+                stockLedgerService.obtenerStocksEnFecha(desde.minusDays(1)),
+                saldoRepository.findSaldosDesde(desde),
+                productoRepository.findResumenesStock(),
+                loteProductoRepository.findResumenesConStock(),
+                loteProductoRepository.findPrimerasProducciones(),
+                listaMaterialesService.recetasProductos(),
+                recetasCompuestos,
+                explotadosCompuestos
+        );
+
+        long inicio = System.nanoTime();
+        ResultadoSimulacionDTO resultado = simulador.simular(dto.pasos());
+        System.out.println("🧪 Simulación de " + dto.pasos().size() + " paso(s) en " +
+                (System.nanoTime() - inicio) / 1_000_000 + " ms: " + resultado.pasosAplicados() + " aplicados, " +
+                resultado.pasosRechazados() + " rechazados");
+        return resultado;
+    }
+}
@@ -0,0 +1,506 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.dtos.ResultadoSimulacionDTO;
+import com.Latti.stock.dtos.ResultadoSimulacionDTO.FaltanteDTO;
+import com.Latti.stock.dtos.ResultadoSimulacionDTO.ResultadoPasoDTO;
+import com.Latti.stock.dtos.ResultadoSimulacionDTO.StockSimuladoDTO;
+import com.Latti.stock.dtos.SimulacionDTO.PasoSimulacionDTO;
+import com.Latti.stock.service.ListaMaterialesService.Requerimientos;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Foto en memoria del stock (arreglos primitivos indexados por posición) sobre la que se aplica
+ * un plan de producciones, ensambles y ventas con las mismas reglas que los movimientos reales:
+ * stock histórico a la fecha de cada paso, stock actual, vencimiento de lotes y FEFO.
+ * No toca la base: cada instancia se usa para una sola simulación.
+ */
+final class SimuladorProduccion {
+
+    private static final double TOLERANCIA = 1e-9;
+    private static final long SIN_VENCIMIENTO = Long.MAX_VALUE;
+    private static final long SIN_PRODUCCION = Long.MAX_VALUE;
+
+    private final LocalDate hoy;
+
+    // Insumos, ordenados por id
+    private final long[] insumoIds;
+    private final String[] insumoNombres;
+    private final double[] stockInicialInsumo;
+    private final double[] stockInsumo;
+    private final double[] precioInsumo;
+
+    // Libro diario: saldo antes del primer día del plan y saldos (día, saldo) desde ese día
+    private final double[] saldoBase;
+    private final long[][] diasLedger;
+    private final double[][] saldosLedger;
+
+    // Movimientos simulados por insumo (día, delta), para el stock histórico de pasos posteriores
+    private final long[][] diasSimulados;
+    private final double[][] deltasSimulados;
+    private final int[] cantidadSimulados;
+
+    // Productos, ordenados por id
+    private final long[] productoIds;
+    private final String[] productoNombres;
+    private final double[] stockInicialProducto;
+    private final double[] stockProducto;
+    private final long[] primeraProduccion;
+    private final List<List<Lote>> lotes;
+
+    private final Map<Long, Requerimientos> recetasProductos;
+    private final Map<Long, Requerimientos> recetasCompuestos;
+    private final Map<Long, Requerimientos> explotadosCompuestos;
+    private final Map<Requerimientos, int[]> posicionesReceta = new IdentityHashMap<>();
+
+    private final List<FaltanteDTO> faltantes = new ArrayList<>();
+
+    /**
+     * Lote simulado, ordenable por FEFO (vence primero, sale primero)
+     */
+    private static final class Lote {
+        final String codigo;
+        final long produccion;
+        final long vencimiento;
+        double disponible;
+
+        Lote(String codigo, long produccion, long vencimiento, double disponible) {
+            this.codigo = codigo;
+            this.produccion = produccion;
+            this.vencimiento = vencimiento;
+            this.disponible = disponible;
+        }
+    }
+
+    /**
+     * @param insumos          filas [id, nombre, stockActual, precioDeCompra] ordenadas por id
+     * @param saldosBase       saldo de cada insumo al cierre del día anterior al primer día del plan
+     * @param saldos           filas [insumoId, fecha, saldo] desde el primer día del plan, por insumo y fecha
+     * @param productos        filas [id, nombre, stockActual]
+     * @param lotesConStock    filas [productoId, codigo, fechaProduccion, fechaVencimiento, disponible]
+     * @param primeras         filas [productoId, fecha de la primera producción]
+     */
+    SimuladorProduccion(LocalDate hoy,
+                        List<Object[]> insumos,
+                        Map<Long, Double> saldosBase,
+                        List<Object[]> saldos,
+                        List<Object[]> productos,
+                        List<Object[]> lotesConStock,
+                        List<Object[]> primeras,
+                        Map<Long, Requerimientos> recetasProductos,
+                        Map<Long, Requerimientos> recetasCompuestos,
+                        Map<Long, Requerimientos> explotadosCompuestos) {
+        this.hoy = hoy;
+        this.recetasProductos = recetasProductos;
+        this.recetasCompuestos = recetasCompuestos;
+        this.explotadosCompuestos = explotadosCompuestos;
+
+        int n = insumos.size();
+        insumoIds = new long[n];
+        insumoNombres = new String[n];
+        stockInicialInsumo = new double[n];
+        precioInsumo = new double[n];
+        saldoBase = new double[n];
+        for (int i = 0; i < n; i++) {
+            Object[] fila = insumos.get(i);
+            insumoIds[i] = (Long) fila[0];
+            insumoNombres[i] = (String) fila[1];
+            stockInicialInsumo[i] = ((Number) fila[2]).doubleValue();
+            precioInsumo[i] = ((Number) fila[3]).doubleValue();
+            saldoBase[i] = saldosBase.getOrDefault(insumoIds[i], 0.0);
+        }
+        stockInsumo = stockInicialInsumo.clone();
+
+        // Saldos del libro diario en arreglos por insumo (las filas vienen agrupadas por insumo)
+        diasLedger = new long[n][];
+        saldosLedger = new double[n][];
+        int desde = 0;
+        while (desde < saldos.size()) {
+            Long insumoId = (Long) saldos.get(desde)[0];
+            int hasta = desde;
+            while (hasta < saldos.size() && insumoId.equals(saldos.get(hasta)[0])) {
+                hasta++;
+            }
+            int posicion = Arrays.binarySearch(insumoIds, insumoId);
+            if (posicion >= 0) {
+                long[] dias = new long[hasta - desde];
+                double[] valores = new double[hasta - desde];
+                for (int k = desde; k < hasta; k++) {
+                    dias[k - desde] = ((LocalDate) saldos.get(k)[1]).toEpochDay();
+                    valores[k - desde] = ((Number) saldos.get(k)[2]).doubleValue();
+                }
+                diasLedger[posicion] = dias;
+                saldosLedger[posicion] = valores;
+            }
+            desde = hasta;
+        }
+        diasSimulados = new long[n][];
+        deltasSimulados = new double[n][];
+        cantidadSimulados = new int[n];
+
+        // Productos ordenados por id para ubicarlos por búsqueda binaria
+        List<Object[]> productosOrdenados = new ArrayList<>(productos);
+        productosOrdenados.sort((a, b) -> Long.compare((Long) a[0], (Long) b[0]));
+        int m = productosOrdenados.size();
+        productoIds = new long[m];
+        productoNombres = new String[m];
+        stockInicialProducto = new double[m];
+        primeraProduccion = new long[m];
+        lotes = new ArrayList<>(m);
+        for (int p = 0; p < m; p++) {
+            Object[] fila = productosOrdenados.get(p);
+            productoIds[p] = (Long) fila[0];
+            productoNombres[p] = (String) fila[1];
+            stockInicialProducto[p] = ((Number) fila[2]).doubleValue();
+            primeraProduccion[p] = SIN_PRODUCCION;
+            lotes.add(new ArrayList<>());
+        }
+        stockProducto = stockInicialProducto.clone();
+
+        for (Object[] fila : primeras) {
+            int p = Arrays.binarySearch(productoIds, (Long) fila[0]);
+            if (p >= 0 && fila[1] != null) {
+                primeraProduccion[p] = ((LocalDate) fila[1]).toEpochDay();
+            }
+        }
+        for (Object[] fila : lotesConStock) {
+            int p = Arrays.binarySearch(productoIds, (Long) fila[0]);
+            if (p >= 0) {
+                LocalDate produccion = (LocalDate) fila[2];
+                LocalDate vencimiento = (LocalDate) fila[3];
+                agregarLote(p, new Lote((String) fila[1],
+                        produccion == null ? Long.MIN_VALUE : produccion.toEpochDay(),
+                        vencimiento == null ? SIN_VENCIMIENTO : vencimiento.toEpochDay(),
+                        ((Number) fila[4]).doubleValue()));
+            }
+        }
+    }
+
+    ResultadoSimulacionDTO simular(List<PasoSimulacionDTO> pasos) {
+        List<ResultadoPasoDTO> resultados = new ArrayList<>(pasos.size());
+        int aplicados = 0;
+        double costoTotal = 0;
+        double ingresoTotal = 0;
+
+        for (int i = 0; i < pasos.size(); i++) {
+            PasoSimulacionDTO paso = pasos.get(i);
+            int numero = i + 1;
+            Map<String, Double> lotesPaso = new LinkedHashMap<>();
+            try {
+                if (paso == null || paso.tipo() == null) {
+                    throw new IllegalArgumentException("El tipo de paso es obligatorio");
+                }
+                validarFecha(paso.fecha());
+                if (paso.cantidad() <= 0) {
+                    throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
+                }
+
+                double costo = 0;
+                double ingreso = 0;
+                switch (paso.tipo()) {
+                    case PRODUCCION -> costo = producir(numero, paso, lotesPaso);
+                    case ENSAMBLE -> costo = ensamblar(numero, paso);
+                    case VENTA -> ingreso = vender(numero, paso, lotesPaso);
+                }
+                aplicados++;
+                costoTotal += costo;
+                ingresoTotal += ingreso;
+                resultados.add(new ResultadoPasoDTO(numero, paso.tipo(), true, costo, ingreso, lotesPaso, null));
+            } catch (IllegalArgumentException e) {
+                resultados.add(new ResultadoPasoDTO(numero, paso == null ? null : paso.tipo(), false, 0, 0, Map.of(), e.getMessage()));
+            }
+        }
+
+        return new ResultadoSimulacionDTO(
+                aplicados,
+                pasos.size() - aplicados,
+                costoTotal,
+                ingresoTotal,
+                resultados,
+                faltantes,
+                stocksModificados(insumoIds, insumoNombres, stockInicialInsumo, stockInsumo),
+                stocksModificados(productoIds, productoNombres, stockInicialProducto, stockProducto)
+        );
+    }
+
+    /**
+     * Igual que crearMovimientoProducto (ENTRADA): stock histórico y actual de la receta, luego consumo
+     */
+    private double producir(int numero, PasoSimulacionDTO paso, Map<String, Double> lotesPaso) {
+        int p = posicionProducto(paso.id());
+        if (paso.fechaVencimiento() != null && paso.fechaVencimiento().isBefore(hoy)) {
+            throw new IllegalArgumentException("La fecha de vencimiento debe ser futura para el producto: " + productoNombres[p]);
+        }
+        long dia = paso.fecha().toEpochDay();
+        Requerimientos receta = recetasProductos.getOrDefault(paso.id(), Requerimientos.VACIO);
+        int[] posiciones = posiciones(receta);
+
+        validarInsumos(numero, receta, posiciones, paso.cantidad(), dia);
+
+        double costo = consumirInsumos(receta, posiciones, paso.cantidad(), dia);
+        stockProducto[p] += paso.cantidad();
+        primeraProduccion[p] = Math.min(primeraProduccion[p], dia);
+
+        String codigo = "SIM-" + numero;
+        agregarLote(p, new Lote(codigo, dia,
+                paso.fechaVencimiento() == null ? SIN_VENCIMIENTO : paso.fechaVencimiento().toEpochDay(),
+                paso.cantidad()));
+        lotesPaso.put(codigo, paso.cantidad());
+        return costo;
+    }
+
+    /**
+     * Igual que ensamblarInsumoCompuesto: consume los componentes y el compuesto toma su costo por unidad
+     */
+    private double ensamblar(int numero, PasoSimulacionDTO paso) {
+        Requerimientos receta = recetasCompuestos.get(paso.id());
+        if (receta == null) {
+            throw new IllegalArgumentException("Insumo compuesto no encontrado: " + paso.id());
+        }
+        int c = posicionInsumo(paso.id());
+        long dia = paso.fecha().toEpochDay();
+        int[] posiciones = posiciones(receta);
+
+        validarInsumos(numero, receta, posiciones, paso.cantidad(), dia);
+
+        consumirInsumos(receta, posiciones, paso.cantidad(), dia);
+        Requerimientos bases = explotadosCompuestos.getOrDefault(paso.id(), receta);
+        int[] posicionesBase = posiciones(bases);
+        double costoUnidad = 0;
+        for (int k = 0; k < bases.tamanio(); k++) {
+            costoUnidad += bases.cantidades()[k] * precioInsumo[posicionesBase[k]];
+        }
+        stockInsumo[c] += paso.cantidad();
+        precioInsumo[c] = costoUnidad;
+        registrarDelta(c, dia, paso.cantidad());
+        return costoUnidad * paso.cantidad();
+    }
+
+    /**
+     * Igual que crearVentaPorLotes: con lote valida ese lote; sin lote asigna por FEFO
+     * entre los lotes producidos hasta la fecha. Un lote vencido solo puede descartarse
+     * (precio 0); para ventas planificadas el vencimiento se compara también con la fecha del paso.
+     */
+    private double vender(int numero, PasoSimulacionDTO paso, Map<String, Double> lotesPaso) {
+        int p = posicionProducto(paso.id());
+        double precio = paso.precioVenta() == null ? 0.0 : paso.precioVenta();
+        if (precio < 0) {
+            throw new IllegalArgumentException("El precio de venta no puede ser negativo para el producto: " + productoNombres[p]);
+        }
+        long dia = paso.fecha().toEpochDay();
+        if (primeraProduccion[p] == SIN_PRODUCCION || dia < primeraProduccion[p]) {
+            throw new IllegalArgumentException("No se puede registrar la venta del producto '" + productoNombres[p] +
+                    "' en la fecha " + paso.fecha() + " porque no hay producción registrada hasta esa fecha");
+        }
+        long limiteVencimiento = Math.max(hoy.toEpochDay(), dia);
+        double cantidad = paso.cantidad();
+
+        if (paso.lote() != null && !paso.lote().trim().isEmpty()) {
+            Lote lote = lotes.get(p).stream()
+                    .filter(l -> l.codigo.equals(paso.lote()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("No se encontró el lote '" + paso.lote() +
+                            "' con stock para el producto '" + productoNombres[p] + "'"));
+            if (lote.disponible + TOLERANCIA < cantidad) {
+                throw faltante(numero, "LOTE", productoIds[p], productoNombres[p] + " (" + lote.codigo + ")",
+                        cantidad, lote.disponible);
+            }
+            if (dia < lote.produccion) {
+                throw new IllegalArgumentException("No se puede vender unidades del lote '" + lote.codigo +
+                        "' en la fecha " + paso.fecha() + " porque el lote se produce después");
+            }
+            if (precio > 0 && lote.vencimiento < limiteVencimiento) {
+                throw new IllegalArgumentException("No se puede vender unidades del lote '" + lote.codigo +
+                        "' porque el lote vence el " + LocalDate.ofEpochDay(lote.vencimiento));
+            }
+            if (stockProducto[p] + TOLERANCIA < cantidad) {
+                throw faltante(numero, "PRODUCTO", productoIds[p], productoNombres[p], cantidad, stockProducto[p]);
+            }
+            lote.disponible -= cantidad;
+            lotesPaso.put(lote.codigo, cantidad);
+        } else {
+            // FEFO: primero se calcula cuánto alcanza y recién después se descuenta
+            double asignable = 0;
+            for (Lote lote : lotes.get(p)) {
+                if (vendible(lote, dia, precio, limiteVencimiento)) {
+                    asignable += lote.disponible;
+                }
+            }
+            double disponible = Math.min(asignable, stockProducto[p]);
+            if (disponible + TOLERANCIA < cantidad) {
+                throw faltante(numero, "PRODUCTO", productoIds[p], productoNombres[p], cantidad, disponible);
+            }
+            double pendiente = cantidad;
+            for (Lote lote : lotes.get(p)) {
+                if (pendiente <= TOLERANCIA) {
+                    break;
+                }
+                if (vendible(lote, dia, precio, limiteVencimiento)) {
+                    double tomado = Math.min(lote.disponible, pendiente);
+                    lote.disponible -= tomado;
+                    pendiente -= tomado;
+                    lotesPaso.put(lote.codigo, tomado);
+                }
+            }
+        }
+
+        stockProducto[p] -= cantidad;
+        return cantidad * precio;
+    }
+
+    private boolean vendible(Lote lote, long dia, double precio, long limiteVencimiento) {
+        return lote.disponible > TOLERANCIA
+                && lote.produccion <= dia
+                && (precio == 0 || lote.vencimiento >= limiteVencimiento);
+    }
+
+    /**
+     * Valida todos los insumos antes de tocar nada: el paso se aplica entero o no se aplica
+     */
+    private void validarInsumos(int numero, Requerimientos receta, int[] posiciones, double cantidad, long dia) {
+        for (int k = 0; k < receta.tamanio(); k++) {
+            int i = posiciones[k];
+            double necesaria = receta.cantidades()[k] * cantidad;
+            double enFecha = stockInsumoEnFecha(i, dia);
+            if (enFecha < necesaria) {
+                throw faltante(numero, "INSUMO", insumoIds[i], insumoNombres[i], necesaria, enFecha);
+            }
+            if (stockInsumo[i] < necesaria) {
+                throw faltante(numero, "INSUMO", insumoIds[i], insumoNombres[i], necesaria, stockInsumo[i]);
+            }
+        }
+    }
+
+    private double consumirInsumos(Requerimientos receta, int[] posiciones, double cantidad, long dia) {
+        double costo = 0;
+        for (int k = 0; k < receta.tamanio(); k++) {
+            int i = posiciones[k];
+            double necesaria = receta.cantidades()[k] * cantidad;
+            stockInsumo[i] -= necesaria;
+            registrarDelta(i, dia, -necesaria);
+            costo += necesaria * precioInsumo[i];
+        }
+        return costo;
+    }
+
+    /**
+     * Saldo del libro diario al cierre del día más los movimientos simulados hasta ese día
+     */
+    private double stockInsumoEnFecha(int i, long dia) {
+        double saldo = saldoBase[i];
+        long[] dias = diasLedger[i];
+        if (dias != null) {
+            int posicion = Arrays.binarySearch(dias, dia);
+            int ultimo = posicion >= 0 ? posicion : -posicion - 2;
+            if (ultimo >= 0) {
+                saldo = saldosLedger[i][ultimo];
+            }
+        }
+        for (int k = 0; k < cantidadSimulados[i]; k++) {
+            if (diasSimulados[i][k] <= dia) {
+                saldo += deltasSimulados[i][k];
+            }
+        }
+        return saldo;
+    }
+
+    private void registrarDelta(int i, long dia, double delta) {
+        int usados = cantidadSimulados[i];
+        if (diasSimulados[i] == null) {
+            diasSimulados[i] = new long[4];
+            deltasSimulados[i] = new double[4];
+        } else if (usados == diasSimulados[i].length) {
+            diasSimulados[i] = Arrays.copyOf(diasSimulados[i], usados * 2);
+            deltasSimulados[i] = Arrays.copyOf(deltasSimulados[i], usados * 2);
+        }
+        diasSimulados[i][usados] = dia;
+        deltasSimulados[i][usados] = delta;
+        cantidadSimulados[i] = usados + 1;
+    }
+
+    private IllegalArgumentException faltante(int numero, String recurso, long id, String nombre,
+                                              double necesario, double disponible) {
+        faltantes.add(new FaltanteDTO(numero, recurso, id, nombre, necesario, disponible));
+        return new IllegalArgumentException("Stock insuficiente de '" + nombre + "'. Disponible: " + disponible +
+                ", necesario: " + necesario);
+    }
+
+    /**
+     * Posición de cada insumo de la receta en los arreglos de la foto (se calcula una vez por receta)
+     */
+    private int[] posiciones(Requerimientos receta) {
+        int[] posiciones = posicionesReceta.get(receta);
+        if (posiciones == null) {
+            posiciones = new int[receta.tamanio()];
+            for (int k = 0; k < posiciones.length; k++) {
+                posiciones[k] = posicionInsumo(receta.insumoIds()[k]);
+            }
+            posicionesReceta.put(receta, posiciones);
+        }
+        return posiciones;
+    }
+
+    private int posicionInsumo(Long insumoId) {
+        int posicion = insumoId == null ? -1 : Arrays.binarySearch(insumoIds, insumoId);
+        if (posicion < 0) {
+            throw new IllegalArgumentException("Insumo no encontrado: " + insumoId);
+        }
+        return posicion;
+    }
+
+    private int posicionProducto(Long productoId) {
+        int posicion = productoId == null ? -1 : Arrays.binarySearch(productoIds, productoId);
+        if (posicion < 0) {
+            throw new IllegalArgumentException("Producto no encontrado: " + productoId);
+        }
+        return posicion;
+    }
+
+    /**
+     * Inserta el lote manteniendo el orden FEFO: vencimiento, y a igual vencimiento el más antiguo
+     */
+    private void agregarLote(int p, Lote nuevo) {
+        List<Lote> delProducto = lotes.get(p);
+        int posicion = delProducto.size();
+        while (posicion > 0 && compararFefo(delProducto.get(posicion - 1), nuevo) > 0) {
+            posicion--;
+        }
+        delProducto.add(posicion, nuevo);
+    }
+
+    private static int compararFefo(Lote a, Lote b) {
+        int porVencimiento = Long.compare(a.vencimiento, b.vencimiento);
+        return porVencimiento != 0 ? porVencimiento : Long.compare(a.produccion, b.produccion);
+    }
+
+    /**
+     * Mismos límites de fecha que los movimientos reales
+     */
+    private void validarFecha(LocalDate fecha) {
+        if (fecha == null) {
+            throw new IllegalArgumentException("La fecha es obligatoria");
+        }
+        if (fecha.isBefore(hoy.minusYears(10))) {
+            throw new IllegalArgumentException("La fecha no puede ser anterior a " + hoy.minusYears(10));
+        }
+        if (fecha.isAfter(hoy.plusMonths(1))) {
+            throw new IllegalArgumentException("La fecha no puede ser posterior a " + hoy.plusMonths(1));
+        }
+    }
+
+    private static List<StockSimuladoDTO> stocksModificados(long[] ids, String[] nombres, double[] inicial, double[] fin) {
+        List<StockSimuladoDTO> resultado = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (Math.abs(fin[i] - inicial[i]) > TOLERANCIA) {
+                resultado.add(new StockSimuladoDTO(ids[i], nombres[i], inicial[i], fin[i]));
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,107 @@
+package com.Latti.stock.service.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Foto en memoria de insumos, productos y recetas para validar una importación masiva
+ * sin consultar la base por cada fila. El stock se va reservando a medida que se aceptan
+ * filas, así una salida puede apoyarse en una entrada anterior del mismo archivo.
+ * Es solo un filtro previo: las reglas definitivas las vuelve a aplicar el servicio al persistir.
+ */
+final class SnapshotImportacion {
+
+    private static final double TOLERANCIA = 1e-9;
+
+    private final Map<Long, String> nombresInsumo = new HashMap<>();
+    private final Map<Long, Double> stockInsumo = new HashMap<>();
+    private final Map<Long, String> nombresProducto = new HashMap<>();
+    private final Map<Long, Double> stockProducto = new HashMap<>();
+    // productoId → (insumoId → cantidad por unidad producida)
+    private final Map<Long, Map<Long, Double>> recetas = new HashMap<>();
+
+    SnapshotImportacion(List<Object[]> insumos, List<Object[]> productos, List<Object[]> cantidadesReceta) {
+        for (Object[] fila : insumos) {
+            Long id = (Long) fila[0];
+            nombresInsumo.put(id, (String) fila[1]);
+            stockInsumo.put(id, ((Number) fila[2]).doubleValue());
+        }
+        for (Object[] fila : productos) {
+            Long id = (Long) fila[0];
+            nombresProducto.put(id, (String) fila[1]);
+            stockProducto.put(id, ((Number) fila[2]).doubleValue());
+        }
+        for (Object[] fila : cantidadesReceta) {
+            recetas.computeIfAbsent((Long) fila[0], k -> new HashMap<>())
+                    .merge((Long) fila[1], ((Number) fila[2]).doubleValue(), Double::sum);
+        }
+    }
+
+    String nombreInsumo(Long insumoId) {
+        String nombre = nombresInsumo.get(insumoId);
+        if (nombre == null) {
+            throw new IllegalArgumentException("Insumo no encontrado: " + insumoId);
+        }
+        return nombre;
+    }
+
+    String nombreProducto(Long productoId) {
+        String nombre = nombresProducto.get(productoId);
+        if (nombre == null) {
+            throw new IllegalArgumentException("Producto no encontrado: " + productoId);
+        }
+        return nombre;
+    }
+
+    Map<Long, Double> receta(Long productoId) {
+        return recetas.getOrDefault(productoId, Map.of());
+    }
+
+    void sumarInsumo(Long insumoId, double delta) {
+        stockInsumo.merge(insumoId, delta, Double::sum);
+    }
+
+    void sumarProducto(Long productoId, double delta) {
+        stockProducto.merge(productoId, delta, Double::sum);
+    }
+
+    void reservarInsumo(Long insumoId, double cantidad) {
+        double disponible = stockInsumo.getOrDefault(insumoId, 0.0);
+        if (disponible + TOLERANCIA < cantidad) {
+            throw new IllegalArgumentException("Stock insuficiente para el insumo '" + nombreInsumo(insumoId) +
+                    "'. Stock disponible: " + disponible + ", Cantidad solicitada: " + cantidad);
+        }
+        stockInsumo.put(insumoId, disponible - cantidad);
+    }
+
+    void reservarProducto(Long productoId, double cantidad) {
+        double disponible = stockProducto.getOrDefault(productoId, 0.0);
+        if (disponible + TOLERANCIA < cantidad) {
+            throw new IllegalArgumentException("Stock insuficiente para el producto '" + nombreProducto(productoId) +
+                    "'. Stock disponible: " + disponible + ", Cantidad solicitada: " + cantidad);
+        }
+        stockProducto.put(productoId, disponible - cantidad);
+    }
+
+    /**
+     * Reserva los insumos de la receta para producir la cantidad indicada: todos o ninguno
+     */
+    void reservarReceta(Long productoId, double cantidadProducto) {
+        Map<Long, Double> receta = receta(productoId);
+        for (Map.Entry<Long, Double> item : receta.entrySet()) {
+            double necesaria = item.getValue() * cantidadProducto;
+            double disponible = stockInsumo.getOrDefault(item.getKey(), 0.0);
+            if (disponible + TOLERANCIA < necesaria) {
+                throw new IllegalArgumentException("Stock insuficiente del insumo '" + nombreInsumo(item.getKey()) +
+                        "' para producir " + cantidadProducto + " unidades de '" + nombreProducto(productoId) +
+                        "'. Stock disponible: " + disponible + ", Cantidad necesaria: " + necesaria);
+            }
+        }
+        receta.forEach((insumoId, cantidad) -> sumarInsumo(insumoId, -cantidad * cantidadProducto));
+    }
+
+    void liberarReceta(Long productoId, double cantidadProducto) {
+        receta(productoId).forEach((insumoId, cantidad) -> sumarInsumo(insumoId, cantidad * cantidadProducto));
+    }
+}
@@ -0,0 +1,162 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.modules.Insumo;
+import com.Latti.stock.modules.SaldoInsumoDiario;
+import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.repositories.SaldoInsumoDiarioRepository;
+import com.Latti.stock.service.StockLedgerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class StockLedgerServiceImplements implements StockLedgerService {
+
+    // Tolerancia para considerar que un día quedó sin movimientos (errores de redondeo de double)
+    private static final double TOLERANCIA = 1e-9;
+
+    @Autowired
+    private SaldoInsumoDiarioRepository saldoRepository;
+
+    @Autowired
+    private InsumoRepository insumoRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public double obtenerStockEnFecha(Long insumoId, LocalDate fecha) {
+        List<Double> saldos = saldoRepository.findSaldosHastaFecha(insumoId, fecha, PageRequest.of(0, 1));
+        return saldos.isEmpty() ? 0.0 : saldos.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, Double> obtenerStocksEnFecha(LocalDate fecha) {
+        Map<Long, Double> stocks = new HashMap<>();
+        for (Object[] fila : saldoRepository.findUltimosSaldosHastaFecha(fecha)) {
+            stocks.put((Long) fila[0], ((Number) fila[1]).doubleValue());
+        }
+        return stocks;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, Double> obtenerStocksEnFecha(LocalDate fecha, Collection<Long> insumoIds) {
+        Map<Long, Double> stocks = new HashMap<>();
+        if (insumoIds.isEmpty()) {
+            return stocks;
+        }
+        for (Object[] fila : saldoRepository.findUltimosSaldosHastaFecha(fecha, insumoIds)) {
+            stocks.put((Long) fila[0], ((Number) fila[1]).doubleValue());
+        }
+        return stocks;
+    }
+
+    @Override
+    @Transactional
+    public void registrarMovimiento(Long insumoId, LocalDate fecha, TipoMovimiento tipo, double cantidad) {
+        if (tipo == TipoMovimiento.ENTRADA) {
+            aplicar(insumoId, fecha, cantidad, 0);
+        } else {
+            aplicar(insumoId, fecha, 0, cantidad);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void registrarSalidasDeMovimiento(Long movimientoId, LocalDate fecha) {
+        // Primero los días existentes; el insert solo crea los que faltan
+        saldoRepository.acumularSalidasDeMovimientoEnDia(movimientoId, fecha);
+        saldoRepository.insertarDiasDeSalidasDeMovimiento(movimientoId, fecha);
+        saldoRepository.desplazarSaldosPosterioresDeMovimiento(movimientoId, fecha);
+    }
+
+    @Override
+    @Transactional
+    public void revertirMovimiento(Long insumoId, LocalDate fecha, TipoMovimiento tipo, double cantidad) {
+        if (tipo == TipoMovimiento.ENTRADA) {
+            aplicar(insumoId, fecha, -cantidad, 0);
+        } else {
+            aplicar(insumoId, fecha, 0, -cantidad);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void eliminarSaldos(Long insumoId) {
+        saldoRepository.deleteByInsumoId(insumoId);
+    }
+
+    @Override
+    @Transactional
+    public void reconstruirSaldos() {
+        saldoRepository.eliminarTodos();
+
+        List<SaldoInsumoDiario> saldos = new ArrayList<>();
+        Long insumoActual = null;
+        double acumulado = 0;
+
+        // Las filas vienen ordenadas por insumo y fecha: basta con acumular en una sola pasada
+        for (Object[] fila : saldoRepository.sumarMovimientosPorInsumoYFecha()) {
+            Long insumoId = (Long) fila[0];
+            LocalDate fecha = (LocalDate) fila[1];
+            double entradas = ((Number) fila[2]).doubleValue();
+            double salidas = ((Number) fila[3]).doubleValue();
+
+            if (!insumoId.equals(insumoActual)) {
+                insumoActual = insumoId;
+                acumulado = 0;
+            }
+            acumulado += entradas - salidas;
+
+            SaldoInsumoDiario saldo = new SaldoInsumoDiario(insumoRepository.getReferenceById(insumoId), fecha, acumulado);
+            saldo.setEntradas(entradas);
+            saldo.setSalidas(salidas);
+            saldos.add(saldo);
+        }
+
+        saldoRepository.saveAll(saldos);
+        System.out.println("📒 Saldos diarios de insumos reconstruidos: " + saldos.size() + " registros");
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean estaVacio() {
+        return saldoRepository.count() == 0;
+    }
+
+    /**
+     * Aplica un delta de entradas/salidas al día indicado y desplaza el saldo de los días posteriores.
+     * Son a lo sumo cuatro sentencias indexadas, sin importar el tamaño del historial.
+     */
+    private void aplicar(Long insumoId, LocalDate fecha, double entradas, double salidas) {
+        double neto = entradas - salidas;
+
+        int actualizados = saldoRepository.acumularEnDia(insumoId, fecha, entradas, salidas);
+        if (actualizados == 0) {
+            // Primer movimiento del día: el saldo parte del último día anterior
+            List<Double> anteriores = saldoRepository.findSaldosAnterioresA(insumoId, fecha, PageRequest.of(0, 1));
+            double saldoAnterior = anteriores.isEmpty() ? 0.0 : anteriores.get(0);
+
+            Insumo insumo = insumoRepository.getReferenceById(insumoId);
+            SaldoInsumoDiario dia = new SaldoInsumoDiario(insumo, fecha, saldoAnterior + neto);
+            dia.setEntradas(entradas);
+            dia.setSalidas(salidas);
+            saldoRepository.save(dia);
+        } else {
+            saldoRepository.eliminarDiaSinMovimientos(insumoId, fecha, TOLERANCIA);
+        }
+
+        if (neto != 0) {
+            saldoRepository.desplazarSaldosPosteriores(insumoId, fecha, neto);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.Latti.stock.service.impl;
+
+import com.Latti.stock.modules.DetalleMovimientoInsumo;
+import com.Latti.stock.modules.Insumo;
+import com.Latti.stock.modules.MovimientoInsumoLote;
+import com.Latti.stock.modules.Producto;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.repositories.ProductoRepository;
+import com.Latti.stock.service.CatalogoCacheService;
+import com.Latti.stock.service.StockService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class StockServiceImplements implements StockService {
+
+    // Tolerancia para errores de redondeo de double al comparar contra cero
+    private static final double TOLERANCIA = 1e-9;
+
+    @Autowired
+    private InsumoRepository insumoRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    // Todo cambio de stock pasa por este servicio: es el punto único para invalidar los catálogos
+    @Autowired
+    private CatalogoCacheService catalogoCacheService;
+
+    @Override
+    @Transactional
+    public void ajustarInsumo(Insumo insumo, double delta) {
+        if (insumoRepository.sumarStock(insumo.getId(), delta) == 0) {
+            throw new IllegalArgumentException("Insumo no encontrado: " + insumo.getId());
+        }
+        insumo.setStockActual(insumo.getStockActual() + delta);
+        catalogoCacheService.invalidarInsumos();
+    }
+
+    @Override
+    @Transactional
+    public void descontarInsumo(Insumo insumo, double cantidad) {
+        // La condición de stock suficiente se evalúa en la misma sentencia que descuenta
+        if (insumoRepository.descontarStock(insumo.getId(), cantidad, -TOLERANCIA) == 0) {
+            throw new IllegalArgumentException("Stock insuficiente para el insumo '" + insumo.getNombre() +
+                    "'. Cantidad solicitada: " + cantidad);
+        }
+        insumo.setStockActual(insumo.getStockActual() - cantidad);
+        catalogoCacheService.invalidarInsumos();
+    }
+
+    @Override
+    @Transactional
+    public void descontarInsumosDeMovimiento(MovimientoInsumoLote movimiento) {
+        long insumos = movimiento.getDetalles().stream().map(d -> d.getInsumo().getId()).distinct().count();
+        if (insumos == 0) {
+            return;
+        }
+        int descontados = insumoRepository.descontarStockDeMovimiento(movimiento.getId(), -TOLERANCIA);
+        if (descontados < insumos) {
+            // La transacción se revierte: tampoco quedan descontados los insumos a los que sí les alcanzaba
+            throw new IllegalArgumentException("Stock insuficiente para " + (insumos - descontados) +
+                    " insumo(s) del movimiento: otro movimiento los consumió mientras se registraba");
+        }
+        for (DetalleMovimientoInsumo detalle : movimiento.getDetalles()) {
+            Insumo insumo = detalle.getInsumo();
+            insumo.setStockActual(insumo.getStockActual() - detalle.getCantidad());
+        }
+        catalogoCacheService.invalidarInsumos();
+    }
+
+    @Override
+    @Transactional
+    public void ajustarProducto(Producto producto, double delta) {
+        if (productoRepository.sumarStock(producto.getId(), delta) == 0) {
+            throw new IllegalArgumentException("Producto no encontrado: " + producto.getId());
+        }
+        producto.setStockActual(producto.getStockActual() + delta);
+        catalogoCacheService.invalidarProductos();
+    }
+
+    @Override
+    @Transactional
+    public void descontarProducto(Producto producto, double cantidad) {
+        if (productoRepository.descontarStock(producto.getId(), cantidad, -TOLERANCIA) == 0) {
+            throw new IllegalArgumentException("Stock insuficiente para el producto '" + producto.getNombre() +
+                    "'. Cantidad solicitada: " + cantidad);
+        }
+        producto.setStockActual(producto.getStockActual() - cantidad);
+        catalogoCacheService.invalidarProductos();
+    }
+
+    @Override
+    @Transactional
+    public void establecerStockProducto(Producto producto, double stock) {
+        if (productoRepository.establecerStock(producto.getId(), stock) == 0) {
+            throw new IllegalArgumentException("Producto no encontrado: " + producto.getId());
+        }
+        producto.setStockActual(stock);
+        catalogoCacheService.invalidarProductos();
+    }
+}
@@ -1,26 +1,73 @@
 package com.Latti.stock.serviceSecurity;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.Jwts;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-
-import javax.crypto.SecretKey;
-import javax.lang.model.element.NestingKind;
-import javax.xml.crypto.Data;
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
 @Service
 public class JwtUtilsService {
-    private static final SecretKey SECRET_KEY = Jwts.SIG.HS256.key().build();
     public static final long JWT_TOKEN_VALIDITY = 1000 * 60 * 60;
 
+    // ✅ NUEVO: llaves compartidas entre instancias, en lugar de una generada al iniciar
+    @Autowired
+    private LlaveroJwt llaveroJwt;
+
+    // Tolerancia entre relojes de distintas instancias al validar vencimiento
+    @Value("${latti.jwt.tolerancia-reloj-segundos:30}")
+    private long toleranciaRelojSegundos;
+
+    /**
+     * Datos del token ya verificados (firma y vencimiento): alcanzan para autenticar
+     * el request sin volver a consultar el usuario en la base. kid es la llave que verificó la firma.
+     */
+    public record TokenVerificado(String usuario, List<String> roles, long venceEnMillis, String kid) {
+        public boolean vencido() {
+            return venceEnMillis <= System.currentTimeMillis();
+        }
+    }
+
+    @Value("${latti.jwt.cache.capacidad:1000}")
+    private int capacidadCache;
+
+    /*
+     * Tokens ya verificados, indexados por el segmento de firma: es único por token y se obtiene
+     * sin calcular nada. Quien reutiliza una firma válida con otro header o payload solo obtiene los
+     * claims del token original, que ya tenía. Ningún token vive más que JWT_TOKEN_VALIDITY.
+     */
+    private Cache<String, TokenVerificado> verificados;
+
+    @PostConstruct
+    void crearCache() {
+        verificados = Caffeine.newBuilder()
+                .maximumSize(capacidadCache)
+                .expireAfterWrite(Duration.ofMillis(JWT_TOKEN_VALIDITY))
+                .build();
+    }
+
     public Claims extractAllClaims(String token){
-        return Jwts.parser().verifyWith(SECRET_KEY).build().parseSignedClaims(token).getPayload();
+        return parsear(token).getPayload();
+    }
+
+    private Jws<Claims> parsear(String token) {
+        return Jwts.parser()
+                .keyLocator(llaveroJwt.localizador())
+                .clockSkewSeconds(toleranciaRelojSegundos)
+                .build().parseSignedClaims(token);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver){
@@ -40,21 +87,60 @@ public class JwtUtilsService {
         return extractExpiration(token).before(new Date());
     }
 
+    /**
+     * Verifica el token con un solo parseo (firma y vencimiento) y devuelve sus claims.
+     * Un token ya verificado se toma de la caché mientras no venza y su llave siga en el llavero.
+     * Lanza JwtException si la firma es inválida o el token venció.
+     */
+    public TokenVerificado verificar(String token) {
+        String firma = token.substring(token.lastIndexOf('.') + 1);
+        TokenVerificado enCache = verificados.getIfPresent(firma);
+        if (enCache != null) {
+            if (!enCache.vencido() && llaveroJwt.contiene(enCache.kid())) {
+                return enCache;
+            }
+            verificados.invalidate(firma);
+        }
+
+        // Si venció o su llave ya no está, el parser lanza JwtException
+        Jws<Claims> jws = parsear(token);
+        Claims claims = jws.getPayload();
+        TokenVerificado verificado = new TokenVerificado(claims.getSubject(), extractRoles(claims),
+                claims.getExpiration().getTime(), jws.getHeader().getKeyId());
+        verificados.put(firma, verificado);
+        return verificado;
+    }
+
+    /**
+     * Roles del claim "roles"; los tokens emitidos antes solo traen "rol"
+     */
+    private List<String> extractRoles(Claims claims) {
+        Object roles = claims.get("roles");
+        if (roles instanceof List<?> lista) {
+            return lista.stream().map(String::valueOf).toList();
+        }
+        String rol = claims.get("rol", String.class);
+        return rol == null ? List.of() : List.of(rol);
+    }
+
     private String createToken(Map<String, Object> claims, String username) {
+        LlaveroJwt.Llave llave = llaveroJwt.activa();
         return Jwts
                 .builder()
+                .header().keyId(llave.kid()).and()
                 .claims(claims)
                 .subject(username)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY))
-                .signWith(SECRET_KEY)
+                .signWith(llave.secreto())
                 .compact();
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        String rol = userDetails.getAuthorities().iterator().next().getAuthority();
-        claims.put("rol", rol);
+        List<String> roles = userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        claims.put("rol", roles.get(0));
+        claims.put("roles", roles);
         return createToken(claims, userDetails.getUsername());
     }
 
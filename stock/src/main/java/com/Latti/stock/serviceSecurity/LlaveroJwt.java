@@ -0,0 +1,163 @@
+package com.Latti.stock.serviceSecurity;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Llaves HMAC para firmar y verificar los JWT, identificadas por kid.
+ * Se cargan de un keystore (cada alias con llave secreta es un kid) o de un archivo
+ * de propiedades kid=secreto-base64. Todas las instancias deben compartir las mismas llaves.
+ *
+ * Rotación: agregar la llave nueva, marcarla como activa y reiniciar de a una instancia;
+ * la anterior se quita cuando vencieron los tokens que firmó (JWT_TOKEN_VALIDITY).
+ */
+@Component
+public class LlaveroJwt {
+
+    public record Llave(String kid, SecretKey secreto) {}
+
+    @Value("${latti.jwt.keystore.ruta:}")
+    private String rutaKeystore;
+
+    @Value("${latti.jwt.keystore.tipo:PKCS12}")
+    private String tipoKeystore;
+
+    @Value("${latti.jwt.keystore.password:}")
+    private String passwordKeystore;
+
+    @Value("${latti.jwt.llaves.archivo:}")
+    private String archivoLlaves;
+
+    // kid con el que se firman los tokens nuevos; puede omitirse si hay una sola llave
+    @Value("${latti.jwt.llaves.activa:}")
+    private String kidActiva;
+
+    private Map<String, SecretKey> llaves;
+    private Llave activa;
+
+    @PostConstruct
+    void cargar() {
+        Map<String, SecretKey> cargadas = new TreeMap<>();
+        if (!rutaKeystore.isBlank()) {
+            cargarKeystore(cargadas);
+        } else if (!archivoLlaves.isBlank()) {
+            cargarArchivo(cargadas);
+        }
+
+        if (cargadas.isEmpty()) {
+            // Sin llaves configuradas: los tokens no sobreviven un reinicio ni valen en otra instancia
+            String kid = "efimera-" + UUID.randomUUID();
+            cargadas.put(kid, Jwts.SIG.HS256.key().build());
+            kidActiva = kid;
+            System.out.println("⚠️ JWT: no hay llaves configuradas (latti.jwt.keystore.ruta o latti.jwt.llaves.archivo), " +
+                    "se usa una llave efímera");
+        }
+
+        if (kidActiva.isBlank()) {
+            if (cargadas.size() > 1) {
+                throw new IllegalArgumentException("Hay " + cargadas.size() +
+                        " llaves JWT: indicar la activa en latti.jwt.llaves.activa");
+            }
+            kidActiva = cargadas.keySet().iterator().next();
+        }
+        SecretKey secreto = cargadas.get(kidActiva);
+        if (secreto == null) {
+            throw new IllegalArgumentException("La llave JWT activa '" + kidActiva + "' no está en el llavero " + cargadas.keySet());
+        }
+
+        llaves = Collections.unmodifiableMap(cargadas);
+        activa = new Llave(kidActiva, secreto);
+        System.out.println("🔑 JWT: " + llaves.size() + " llave(s) cargada(s), activa '" + kidActiva + "'");
+    }
+
+    private void cargarKeystore(Map<String, SecretKey> destino) {
+        char[] password = passwordKeystore.toCharArray();
+        try (InputStream entrada = Files.newInputStream(Path.of(rutaKeystore))) {
+            KeyStore keyStore = KeyStore.getInstance(tipoKeystore);
+            keyStore.load(entrada, password);
+            for (String alias : Collections.list(keyStore.aliases())) {
+                if (!keyStore.isKeyEntry(alias)) {
+                    continue;
+                }
+                Key llave = keyStore.getKey(alias, password);
+                if (llave instanceof SecretKey) {
+                    destino.put(alias, aLlaveHmac(alias, llave.getEncoded()));
+                }
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalArgumentException("No se pudo leer el keystore JWT " + rutaKeystore + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void cargarArchivo(Map<String, SecretKey> destino) {
+        Properties propiedades = new Properties();
+        try (InputStream entrada = Files.newInputStream(Path.of(archivoLlaves))) {
+            propiedades.load(entrada);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("No se pudo leer el archivo de llaves JWT " + archivoLlaves + ": " + e.getMessage(), e);
+        }
+        for (String kid : propiedades.stringPropertyNames()) {
+            destino.put(kid, aLlaveHmac(kid, Decoders.BASE64.decode(propiedades.getProperty(kid).trim())));
+        }
+    }
+
+    private static SecretKey aLlaveHmac(String kid, byte[] secreto) {
+        // HS256 exige al menos 256 bits
+        if (secreto == null || secreto.length < 32) {
+            throw new IllegalArgumentException("La llave JWT '" + kid + "' debe tener al menos 32 bytes");
+        }
+        return Keys.hmacShaKeyFor(secreto);
+    }
+
+    public Llave activa() {
+        return activa;
+    }
+
+    /**
+     * Indica si la llave sigue en el llavero: un token verificado con una llave quitada deja de valer
+     */
+    public boolean contiene(String kid) {
+        return kid != null && llaves.containsKey(kid);
+    }
+
+    /**
+     * Resuelve la llave de verificación por el kid del header del token
+     */
+    public LocatorAdapter<Key> localizador() {
+        return new LocatorAdapter<>() {
+            @Override
+            protected Key locate(JwsHeader header) {
+                String kid = header.getKeyId();
+                if (kid == null) {
+                    throw new JwtException("El token no indica la llave de firma (kid)");
+                }
+                SecretKey llave = llaves.get(kid);
+                if (llave == null) {
+                    throw new JwtException("Llave de firma desconocida: " + kid);
+                }
+                return llave;
+            }
+        };
+    }
+}
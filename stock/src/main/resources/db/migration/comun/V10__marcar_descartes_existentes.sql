@@ -0,0 +1,9 @@
+-- Marca como descarte las salidas registradas antes de que el flag se enviara explícitamente.
+-- Hasta entonces el frontend identificaba el descarte con "DESCARTO" en la descripción;
+-- la regla solo se aplica a esos datos históricos.
+
+UPDATE movimiento_producto_lote
+SET descarte = TRUE
+WHERE descarte = FALSE
+  AND tipo_movimiento = 'SALIDA'
+  AND UPPER(descripcion) LIKE '%DESCARTO%';
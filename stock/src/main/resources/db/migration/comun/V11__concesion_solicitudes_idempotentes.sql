@@ -0,0 +1,9 @@
+-- Concesión de las claves en curso: si la instancia que reclamó una clave muere antes de
+-- registrar el resultado, la clave se libera al vencer la concesión y no recién con el TTL.
+-- Las claves reclamadas antes de esta migración toman su fecha de creación (ya vencidas).
+
+ALTER TABLE solicitud_idempotente ADD COLUMN reclamada_hasta TIMESTAMP(6);
+
+UPDATE solicitud_idempotente SET reclamada_hasta = creada;
+
+ALTER TABLE solicitud_idempotente ALTER COLUMN reclamada_hasta SET NOT NULL;
@@ -0,0 +1,101 @@
+-- Esquema inicial: las tablas tal como las generaba Hibernate (ddl-auto) antes de pasar a Flyway.
+-- En una base existente esta versión no se ejecuta: Flyway la registra como línea base (baseline-on-migrate)
+-- y aplica desde V2 todos los cambios posteriores.
+-- SQL compatible con PostgreSQL y H2.
+
+CREATE TABLE client (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    username VARCHAR(255),
+    password VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE insumo (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    nombre VARCHAR(255),
+    unidad_medida VARCHAR(255) CHECK (unidad_medida IN ('GRAMOS', 'MILILITROS', 'UNIDADES')),
+    tipo VARCHAR(255) CHECK (tipo IN ('BASE', 'COMPUESTO')),
+    stock_actual DOUBLE PRECISION NOT NULL,
+    precio_de_compra DOUBLE PRECISION NOT NULL,
+    stock_minimo DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE receta (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE producto (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    nombre VARCHAR(255),
+    stock_actual DOUBLE PRECISION NOT NULL,
+    stock_minimo DOUBLE PRECISION NOT NULL,
+    precio_inversion DOUBLE PRECISION NOT NULL,
+    precio_venta DOUBLE PRECISION NOT NULL,
+    receta_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_producto_receta UNIQUE (receta_id),
+    CONSTRAINT fk_producto_receta FOREIGN KEY (receta_id) REFERENCES receta (id)
+);
+
+CREATE TABLE insumo_receta (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    cantidad DOUBLE PRECISION NOT NULL,
+    receta_id BIGINT,
+    insumo_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_insumo_receta_receta FOREIGN KEY (receta_id) REFERENCES receta (id),
+    CONSTRAINT fk_insumo_receta_insumo FOREIGN KEY (insumo_id) REFERENCES insumo (id)
+);
+
+CREATE TABLE receta_insumo (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    insumo_compuesto_id BIGINT NOT NULL,
+    insumo_base_id BIGINT NOT NULL,
+    cantidad DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_receta_insumo_compuesto FOREIGN KEY (insumo_compuesto_id) REFERENCES insumo (id),
+    CONSTRAINT fk_receta_insumo_base FOREIGN KEY (insumo_base_id) REFERENCES insumo (id)
+);
+
+CREATE TABLE movimiento_insumo_lote (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    fecha DATE,
+    descripcion VARCHAR(255),
+    tipo_movimiento VARCHAR(255) CHECK (tipo_movimiento IN ('ENTRADA', 'SALIDA')),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE detalle_movimiento_insumo (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    cantidad DOUBLE PRECISION NOT NULL,
+    precio_total DOUBLE PRECISION NOT NULL,
+    ensamble_id VARCHAR(255),
+    insumo_id BIGINT,
+    movimiento_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_det_insumo_insumo FOREIGN KEY (insumo_id) REFERENCES insumo (id),
+    CONSTRAINT fk_det_insumo_movimiento FOREIGN KEY (movimiento_id) REFERENCES movimiento_insumo_lote (id)
+);
+
+CREATE TABLE movimiento_producto_lote (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    fecha DATE,
+    descripcion VARCHAR(255),
+    tipo_movimiento VARCHAR(255) CHECK (tipo_movimiento IN ('ENTRADA', 'SALIDA')),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE detalle_movimiento_producto (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    cantidad DOUBLE PRECISION NOT NULL,
+    fecha_vencimiento DATE,
+    lote VARCHAR(255),
+    precio_venta DOUBLE PRECISION,
+    producto_id BIGINT,
+    movimiento_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_det_producto_producto FOREIGN KEY (producto_id) REFERENCES producto (id),
+    CONSTRAINT fk_det_producto_movimiento FOREIGN KEY (movimiento_id) REFERENCES movimiento_producto_lote (id)
+);
@@ -0,0 +1,69 @@
+-- Cambios de esquema posteriores a la línea base: columnas de control de concurrencia y agregados,
+-- tablas de saldos (libro diario de insumos, lotes de productos, costos pendientes), secuencias para
+-- los inserts en batch e índices de las entidades. Los datos de las tablas nuevas los reconstruye
+-- la aplicación al iniciar (StockApplication).
+
+-- Control de concurrencia optimista
+ALTER TABLE insumo ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE producto ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+
+-- Agregados de compras de insumos (ComprasInsumoService)
+ALTER TABLE insumo ADD COLUMN total_invertido DOUBLE PRECISION DEFAULT 0 NOT NULL;
+ALTER TABLE insumo ADD COLUMN cantidad_comprada DOUBLE PRECISION DEFAULT 0 NOT NULL;
+ALTER TABLE insumo ADD COLUMN ultimo_precio_compra DOUBLE PRECISION;
+ALTER TABLE insumo ADD COLUMN fecha_ultima_compra DATE;
+
+-- Marca de descarte de los movimientos de productos
+ALTER TABLE movimiento_producto_lote ADD COLUMN descarte BOOLEAN DEFAULT FALSE NOT NULL;
+
+-- Ids de movimientos y detalles por secuencia con optimizador pooled (allocationSize = 50).
+-- Las columnas siguen siendo identity "by default" y aceptan los ids que asigna Hibernate;
+-- V3 ubica cada secuencia por encima de los ids existentes.
+CREATE SEQUENCE movimiento_insumo_lote_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE detalle_movimiento_insumo_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE movimiento_producto_lote_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE detalle_movimiento_producto_seq START WITH 1 INCREMENT BY 50;
+
+CREATE INDEX idx_mov_insumo_fecha_id ON movimiento_insumo_lote (fecha, id);
+CREATE INDEX idx_det_insumo_insumo_mov ON detalle_movimiento_insumo (insumo_id, movimiento_id);
+CREATE INDEX idx_det_insumo_ensamble ON detalle_movimiento_insumo (ensamble_id);
+CREATE INDEX idx_mov_producto_fecha_id ON movimiento_producto_lote (fecha, id);
+CREATE INDEX idx_mov_producto_descarte_fecha ON movimiento_producto_lote (descarte, fecha);
+CREATE INDEX idx_det_producto_producto_mov ON detalle_movimiento_producto (producto_id, movimiento_id);
+CREATE INDEX idx_det_producto_lote ON detalle_movimiento_producto (lote);
+
+CREATE TABLE lote_producto (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    codigo VARCHAR(255) NOT NULL,
+    producto_id BIGINT NOT NULL,
+    cantidad_producida DOUBLE PRECISION NOT NULL,
+    cantidad_vendida DOUBLE PRECISION NOT NULL,
+    fecha_vencimiento DATE,
+    fecha_produccion DATE,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_lote_producto_codigo UNIQUE (producto_id, codigo),
+    CONSTRAINT fk_lote_producto_producto FOREIGN KEY (producto_id) REFERENCES producto (id)
+);
+
+CREATE INDEX idx_lote_producto_vencimiento ON lote_producto (fecha_vencimiento, producto_id);
+
+CREATE TABLE saldo_insumo_diario (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    insumo_id BIGINT NOT NULL,
+    fecha DATE NOT NULL,
+    entradas DOUBLE PRECISION NOT NULL,
+    salidas DOUBLE PRECISION NOT NULL,
+    saldo DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_saldo_insumo_fecha UNIQUE (insumo_id, fecha),
+    CONSTRAINT fk_saldo_insumo_insumo FOREIGN KEY (insumo_id) REFERENCES insumo (id)
+);
+
+CREATE INDEX idx_saldo_insumo_fecha ON saldo_insumo_diario (insumo_id, fecha);
+
+CREATE TABLE cambio_costo_pendiente (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    insumo_id BIGINT NOT NULL,
+    fecha_registro TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,25 @@
+-- Ensambles de insumos compuestos como entidad.
+-- Los ensambles anteriores se registran en V7 desde el ensamble_id de los detalles.
+
+CREATE SEQUENCE IF NOT EXISTS ensamble_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS ensamble (
+    id BIGINT NOT NULL,
+    codigo VARCHAR(36) NOT NULL,
+    insumo_compuesto_id BIGINT NOT NULL,
+    movimiento_entrada_id BIGINT NOT NULL,
+    movimiento_salida_id BIGINT,
+    fecha DATE,
+    cantidad DOUBLE PRECISION NOT NULL,
+    cantidad_componentes INTEGER NOT NULL,
+    costo_total DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_ensamble_codigo UNIQUE (codigo),
+    CONSTRAINT uk_ensamble_movimiento_entrada UNIQUE (movimiento_entrada_id),
+    CONSTRAINT uk_ensamble_movimiento_salida UNIQUE (movimiento_salida_id),
+    CONSTRAINT fk_ensamble_insumo_compuesto FOREIGN KEY (insumo_compuesto_id) REFERENCES insumo (id),
+    CONSTRAINT fk_ensamble_movimiento_entrada FOREIGN KEY (movimiento_entrada_id) REFERENCES movimiento_insumo_lote (id),
+    CONSTRAINT fk_ensamble_movimiento_salida FOREIGN KEY (movimiento_salida_id) REFERENCES movimiento_insumo_lote (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_ensamble_insumo_compuesto ON ensamble (insumo_compuesto_id);
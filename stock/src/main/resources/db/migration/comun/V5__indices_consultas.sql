@@ -0,0 +1,23 @@
+-- Índices para las consultas más frecuentes de los repositorios.
+-- IF NOT EXISTS: algunas bases ya tienen índices creados a mano o por ddl-auto.
+
+-- Historial filtrado por tipo y rango de fechas (findIdsPagina, compras, producciones)
+CREATE INDEX IF NOT EXISTS idx_mov_insumo_tipo_fecha ON movimiento_insumo_lote (tipo_movimiento, fecha, id);
+CREATE INDEX IF NOT EXISTS idx_mov_producto_tipo_fecha ON movimiento_producto_lote (tipo_movimiento, fecha, id);
+
+-- Detalles de un movimiento: joins desde la cabecera, deleteByMovimientoId y borrado en cascada
+CREATE INDEX IF NOT EXISTS idx_det_insumo_movimiento ON detalle_movimiento_insumo (movimiento_id);
+CREATE INDEX IF NOT EXISTS idx_det_producto_movimiento ON detalle_movimiento_producto (movimiento_id);
+
+-- Ventas y descartes por lote de un producto, y vencimientos de lo producido
+CREATE INDEX IF NOT EXISTS idx_det_producto_producto_lote ON detalle_movimiento_producto (producto_id, lote);
+CREATE INDEX IF NOT EXISTS idx_det_producto_vencimiento ON detalle_movimiento_producto (fecha_vencimiento);
+
+-- Lotes con stock de un producto en orden FEFO (findConStockByProductoId)
+CREATE INDEX IF NOT EXISTS idx_lote_producto_producto_venc ON lote_producto (producto_id, fecha_vencimiento);
+
+-- Recetas: uso de un insumo en productos y en insumos compuestos
+CREATE INDEX IF NOT EXISTS idx_insumo_receta_insumo ON insumo_receta (insumo_id);
+CREATE INDEX IF NOT EXISTS idx_insumo_receta_receta ON insumo_receta (receta_id);
+CREATE INDEX IF NOT EXISTS idx_receta_insumo_compuesto ON receta_insumo (insumo_compuesto_id);
+CREATE INDEX IF NOT EXISTS idx_receta_insumo_base ON receta_insumo (insumo_base_id);
@@ -0,0 +1,31 @@
+-- Salidas de componentes de cada ensamble en una tabla de unión: los ensambles nuevos tienen
+-- una sola salida, los anteriores a la entidad una por componente. Reemplaza a la columna
+-- ensamble.movimiento_salida_id. Los movimientos no se modifican.
+
+CREATE TABLE ensamble_movimiento_salida (
+    ensamble_id BIGINT NOT NULL,
+    movimiento_id BIGINT NOT NULL,
+    PRIMARY KEY (ensamble_id, movimiento_id),
+    CONSTRAINT uk_ensamble_salida_movimiento UNIQUE (movimiento_id),
+    CONSTRAINT fk_ensamble_salida_ensamble FOREIGN KEY (ensamble_id) REFERENCES ensamble (id),
+    CONSTRAINT fk_ensamble_salida_movimiento FOREIGN KEY (movimiento_id) REFERENCES movimiento_insumo_lote (id)
+);
+
+INSERT INTO ensamble_movimiento_salida (ensamble_id, movimiento_id)
+SELECT e.id, e.movimiento_salida_id
+FROM ensamble e
+WHERE e.movimiento_salida_id IS NOT NULL;
+
+-- Salidas identificadas por el ensamble_id de sus detalles (ensambles anteriores registrados en V7)
+INSERT INTO ensamble_movimiento_salida (ensamble_id, movimiento_id)
+SELECT MIN(e.id), m.id
+FROM ensamble e
+JOIN detalle_movimiento_insumo d ON d.ensamble_id = e.codigo
+JOIN movimiento_insumo_lote m ON m.id = d.movimiento_id
+WHERE m.tipo_movimiento = 'SALIDA'
+  AND NOT EXISTS (SELECT 1 FROM ensamble_movimiento_salida s WHERE s.movimiento_id = m.id)
+GROUP BY m.id;
+
+ALTER TABLE ensamble DROP CONSTRAINT IF EXISTS fk_ensamble_movimiento_salida;
+ALTER TABLE ensamble DROP CONSTRAINT IF EXISTS uk_ensamble_movimiento_salida;
+ALTER TABLE ensamble DROP COLUMN movimiento_salida_id;
@@ -0,0 +1,14 @@
+-- Claves Idempotency-Key compartidas por todas las instancias del backend.
+-- La restricción única reemplaza al mapa en memoria de cada proceso.
+
+CREATE TABLE solicitud_idempotente (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    clave VARCHAR(320) NOT NULL,
+    huella VARCHAR(64) NOT NULL,
+    resultado BIGINT,
+    creada TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_solicitud_idempotente_clave UNIQUE (clave)
+);
+
+CREATE INDEX idx_solicitud_idempotente_creada ON solicitud_idempotente (creada);
@@ -0,0 +1,8 @@
+-- Ubica cada secuencia de V2 por encima del id más alto existente para no repetir ids.
+-- Con el optimizador pooled el valor de la secuencia es el tope del bloque, de ahí el + 50.
+-- Igual que postgresql/V3 salvo por la sintaxis para mover la secuencia.
+
+ALTER SEQUENCE movimiento_insumo_lote_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM movimiento_insumo_lote);
+ALTER SEQUENCE detalle_movimiento_insumo_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM detalle_movimiento_insumo);
+ALTER SEQUENCE movimiento_producto_lote_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM movimiento_producto_lote);
+ALTER SEQUENCE detalle_movimiento_producto_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM detalle_movimiento_producto);
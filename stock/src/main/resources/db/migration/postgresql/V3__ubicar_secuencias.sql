@@ -0,0 +1,8 @@
+-- Ubica cada secuencia de V2 por encima del id más alto existente para no repetir ids.
+-- Con el optimizador pooled el valor de la secuencia es el tope del bloque, de ahí el + 50.
+-- Igual que h2/V3 salvo por la sintaxis para mover la secuencia.
+
+SELECT setval('movimiento_insumo_lote_seq', COALESCE((SELECT MAX(id) FROM movimiento_insumo_lote), 0) + 50);
+SELECT setval('detalle_movimiento_insumo_seq', COALESCE((SELECT MAX(id) FROM detalle_movimiento_insumo), 0) + 50);
+SELECT setval('movimiento_producto_lote_seq', COALESCE((SELECT MAX(id) FROM movimiento_producto_lote), 0) + 50);
+SELECT setval('detalle_movimiento_producto_seq', COALESCE((SELECT MAX(id) FROM detalle_movimiento_producto), 0) + 50);
@@ -0,0 +1,4 @@
+-- Índices funcionales para existsByNombreIgnoreCase: Spring Data compara upper(nombre) = upper(?),
+-- así que el índice tiene que ser sobre la misma expresión. H2 no admite índices sobre expresiones.
+CREATE INDEX IF NOT EXISTS idx_insumo_nombre_upper ON insumo (upper(nombre));
+CREATE INDEX IF NOT EXISTS idx_producto_nombre_upper ON producto (upper(nombre));
@@ -0,0 +1,31 @@
+-- Registra como Ensamble los ensambles anteriores a la entidad, identificados solo por el
+-- ensamble_id (UUID) de sus detalles. Solo inserta filas: los movimientos no se modifican.
+-- Sus salidas se vinculan en V8, junto con las de los ensambles nuevos.
+-- Igual que h2/V7 salvo por la obtención del id desde la secuencia.
+
+INSERT INTO ensamble (id, codigo, insumo_compuesto_id, movimiento_entrada_id, fecha, cantidad,
+                      cantidad_componentes, costo_total)
+SELECT nextval('ensamble_seq'), d.ensamble_id, d.insumo_id, m.id, m.fecha, d.cantidad,
+       (SELECT COUNT(*)
+        FROM detalle_movimiento_insumo c
+        JOIN movimiento_insumo_lote cm ON cm.id = c.movimiento_id
+        WHERE c.ensamble_id = d.ensamble_id AND cm.tipo_movimiento = 'SALIDA'),
+       d.precio_total
+FROM detalle_movimiento_insumo d
+JOIN movimiento_insumo_lote m ON m.id = d.movimiento_id
+WHERE d.id IN (
+        -- Detalle de entrada del compuesto: el primero de cada ensamble_id
+        SELECT MIN(e.id)
+        FROM detalle_movimiento_insumo e
+        JOIN movimiento_insumo_lote em ON em.id = e.movimiento_id
+        WHERE em.tipo_movimiento = 'ENTRADA' AND e.ensamble_id IS NOT NULL AND e.ensamble_id <> ''
+        GROUP BY e.ensamble_id)
+  AND d.id IN (
+        -- Un solo ensamble por movimiento de entrada (uk_ensamble_movimiento_entrada)
+        SELECT MIN(e.id)
+        FROM detalle_movimiento_insumo e
+        WHERE e.ensamble_id IS NOT NULL AND e.ensamble_id <> ''
+        GROUP BY e.movimiento_id)
+  AND LENGTH(d.ensamble_id) <= 36
+  AND d.insumo_id IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM ensamble x WHERE x.codigo = d.ensamble_id OR x.movimiento_entrada_id = m.id);
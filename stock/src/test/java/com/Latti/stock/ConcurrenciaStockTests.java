@@ -0,0 +1,141 @@
+package com.Latti.stock;
+
+import com.Latti.stock.dtos.CrearMovimientoDeInsumoDTO;
+import com.Latti.stock.dtos.DetalleMovimientoInsumoDTO;
+import com.Latti.stock.modules.Insumo;
+import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.modules.UnidadMedida;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.service.MovimientoInsumoLoteService;
+import com.Latti.stock.service.ReintentoService;
+import com.Latti.stock.service.StockLedgerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica que las modificaciones de stock concurrentes no pierdan actualizaciones
+ */
+@SpringBootTest(properties = "latti.reintentos.maximo=50")
+class ConcurrenciaStockTests {
+
+	private static final int HILOS = 8;
+	private static final int MOVIMIENTOS_POR_HILO = 5;
+
+	@Autowired
+	private InsumoRepository insumoRepository;
+
+	@Autowired
+	private MovimientoInsumoLoteService movimientoInsumoLoteService;
+
+	@Autowired
+	private ReintentoService reintentoService;
+
+	@Autowired
+	private StockLedgerService stockLedgerService;
+
+	@Test
+	void entradasConcurrentesNoPierdenActualizaciones() throws Exception {
+		Insumo insumo = insumoRepository.save(new Insumo("Harina concurrencia", UnidadMedida.GRAMOS));
+		Long insumoId = insumo.getId();
+		LocalDate hoy = LocalDate.now();
+
+		ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+		CountDownLatch largada = new CountDownLatch(1);
+		List<Future<?>> tareas = new ArrayList<>();
+		try {
+			for (int i = 0; i < HILOS; i++) {
+				tareas.add(pool.submit(() -> {
+					largada.await();
+					for (int j = 0; j < MOVIMIENTOS_POR_HILO; j++) {
+						CrearMovimientoDeInsumoDTO dto = new CrearMovimientoDeInsumoDTO(
+								hoy, "Compra concurrente", TipoMovimiento.ENTRADA,
+								List.of(new DetalleMovimientoInsumoDTO(insumoId, 1.0, 10.0)));
+						reintentoService.ejecutar(() -> movimientoInsumoLoteService.crearMovimientoInsumo(dto));
+					}
+					return null;
+				}));
+			}
+
+			// Todos los hilos arrancan a la vez para forzar conflictos sobre la misma fila
+			largada.countDown();
+			for (Future<?> tarea : tareas) {
+				tarea.get(2, TimeUnit.MINUTES);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		double esperado = HILOS * MOVIMIENTOS_POR_HILO;
+		Insumo actualizado = insumoRepository.findById(insumoId).orElseThrow();
+		assertEquals(esperado, actualizado.getStockActual(), 1e-9);
+		assertEquals(esperado, stockLedgerService.obtenerStockEnFecha(insumoId, hoy), 1e-9);
+	}
+
+	@Test
+	void salidasConcurrentesNoDejanStockNegativo() throws Exception {
+		Insumo insumo = insumoRepository.save(new Insumo("Azúcar concurrencia", UnidadMedida.GRAMOS));
+		Long insumoId = insumo.getId();
+		LocalDate hoy = LocalDate.now();
+		int stockInicial = HILOS * MOVIMIENTOS_POR_HILO / 2;
+
+		// El stock entra el día anterior: las primeras salidas de hoy compiten por crear el saldo del día
+		movimientoInsumoLoteService.crearMovimientoInsumo(new CrearMovimientoDeInsumoDTO(
+				hoy.minusDays(1), "Compra inicial", TipoMovimiento.ENTRADA,
+				List.of(new DetalleMovimientoInsumoDTO(insumoId, stockInicial, 10.0))));
+
+		AtomicInteger realizadas = new AtomicInteger();
+		AtomicInteger rechazadas = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+		CountDownLatch largada = new CountDownLatch(1);
+		List<Future<?>> tareas = new ArrayList<>();
+		try {
+			for (int i = 0; i < HILOS; i++) {
+				tareas.add(pool.submit(() -> {
+					largada.await();
+					for (int j = 0; j < MOVIMIENTOS_POR_HILO; j++) {
+						CrearMovimientoDeInsumoDTO dto = new CrearMovimientoDeInsumoDTO(
+								hoy, "Consumo concurrente", TipoMovimiento.SALIDA,
+								List.of(new DetalleMovimientoInsumoDTO(insumoId, 1.0, 0.0)));
+						try {
+							reintentoService.ejecutar(() -> movimientoInsumoLoteService.crearMovimientoInsumo(dto));
+							realizadas.incrementAndGet();
+						} catch (IllegalArgumentException e) {
+							// Stock insuficiente: lo rechaza la validación o el UPDATE condicional
+							rechazadas.incrementAndGet();
+						}
+					}
+					return null;
+				}));
+			}
+
+			// Se piden el doble de unidades de las que hay, todas a la vez sobre la misma fila
+			largada.countDown();
+			for (Future<?> tarea : tareas) {
+				tarea.get(2, TimeUnit.MINUTES);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		Insumo actualizado = insumoRepository.findById(insumoId).orElseThrow();
+		assertTrue(actualizado.getStockActual() >= -1e-9, "Stock negativo: " + actualizado.getStockActual());
+		assertEquals(stockInicial, realizadas.get());
+		assertEquals(HILOS * MOVIMIENTOS_POR_HILO - stockInicial, rechazadas.get());
+		assertEquals(0.0, actualizado.getStockActual(), 1e-9);
+		assertEquals(0.0, stockLedgerService.obtenerStockEnFecha(insumoId, hoy), 1e-9);
+	}
+}
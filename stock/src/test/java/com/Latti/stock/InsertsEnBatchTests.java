@@ -0,0 +1,85 @@
+package com.Latti.stock;
+
+import com.Latti.stock.dtos.CrearMovimientoDeInsumoDTO;
+import com.Latti.stock.dtos.DetalleMovimientoInsumoDTO;
+import com.Latti.stock.modules.DetalleMovimientoInsumo;
+import com.Latti.stock.modules.Insumo;
+import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.modules.UnidadMedida;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.service.MovimientoInsumoLoteService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica que los detalles de un movimiento grande se insertan en batches JDBC
+ */
+@SpringBootTest(properties = {
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=com.Latti.stock.InsertsEnBatchTests$ContadorInserts"
+})
+class InsertsEnBatchTests {
+
+	private static final int LINEAS = 200;
+
+	@Autowired
+	private InsumoRepository insumoRepository;
+
+	@Autowired
+	private MovimientoInsumoLoteService movimientoInsumoLoteService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void movimientoDeDoscientasLineasSeInsertaEnBatches() {
+		Insumo insumo = insumoRepository.save(new Insumo("Azúcar batch", UnidadMedida.GRAMOS));
+
+		List<DetalleMovimientoInsumoDTO> detalles = new ArrayList<>();
+		for (int i = 0; i < LINEAS; i++) {
+			detalles.add(new DetalleMovimientoInsumoDTO(insumo.getId(), 1.0, 10.0));
+		}
+		CrearMovimientoDeInsumoDTO dto = new CrearMovimientoDeInsumoDTO(
+				LocalDate.now(), "Compra grande", TipoMovimiento.ENTRADA, detalles);
+
+		Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		estadisticas.clear();
+		ContadorInserts.INSERTS_DETALLE.set(0);
+
+		movimientoInsumoLoteService.crearMovimientoInsumo(dto);
+
+		assertEquals(LINEAS, estadisticas.getEntityStatistics(DetalleMovimientoInsumo.class.getName()).getInsertCount());
+		// Con batch_size = 50 son 4 sentencias preparadas; sin batching serían 200
+		int sentencias = ContadorInserts.INSERTS_DETALLE.get();
+		assertTrue(sentencias <= LINEAS / 50 + 1, "INSERT de detalles preparados: " + sentencias);
+	}
+
+	/**
+	 * Cuenta cuántas veces se prepara el INSERT de detalles (una por batch cuando hay batching)
+	 */
+	public static class ContadorInserts implements StatementInspector {
+
+		static final AtomicInteger INSERTS_DETALLE = new AtomicInteger();
+
+		@Override
+		public String inspect(String sql) {
+			if (sql.toLowerCase().startsWith("insert into detalle_movimiento_insumo")) {
+				INSERTS_DETALLE.incrementAndGet();
+			}
+			return sql;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package com.Latti.stock;
+
+import com.Latti.stock.modules.Insumo;
+import com.Latti.stock.modules.TipoMovimiento;
+import com.Latti.stock.repositories.DetalleMovimientoInsumoRepository;
+import com.Latti.stock.repositories.DetalleMovimientoProductoRepository;
+import com.Latti.stock.repositories.InsumoRecetaRepository;
+import com.Latti.stock.repositories.InsumoRepository;
+import com.Latti.stock.repositories.LoteProductoRepository;
+import com.Latti.stock.repositories.MovimientoInsumoLoteRepository;
+import com.Latti.stock.repositories.MovimientoProductoLoteRepository;
+import com.Latti.stock.repositories.ProductoRepository;
+import com.Latti.stock.repositories.RecetaInsumoRepository;
+import com.Latti.stock.repositories.SaldoInsumoDiarioRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica con EXPLAIN que las consultas frecuentes de los repositorios usan los índices de las
+ * migraciones y no recorren la tabla completa. El SQL es el que Hibernate prepara al llamar a cada
+ * método del repositorio (capturado con un StatementInspector); H2 explica el plan sin valores para
+ * los parámetros. Usa su propia base H2 con datos de ejemplo.
+ *
+ * Los índices funcionales upper(nombre) de PostgreSQL (db/migration/postgresql) no se pueden crear
+ * en H2: de ellos solo se verifica que el SQL real de los repositorios compara por la misma expresión.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:planes;DB_CLOSE_DELAY=-1",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=com.Latti.stock.PlanesConsultasTests$CapturaSql"
+})
+class PlanesConsultasTests {
+
+	private static final int INSUMOS = 200;
+	private static final int PRODUCTOS = 50;
+	private static final int MOVIMIENTOS = 3000;
+	private static final LocalDate INICIO = LocalDate.of(2024, 1, 1);
+
+	private static final LocalDate DESDE = LocalDate.of(2024, 6, 1);
+	private static final LocalDate HASTA = LocalDate.of(2024, 6, 7);
+
+	/**
+	 * Llamada a un repositorio y tablas que ninguna de sus sentencias debe recorrer completas
+	 */
+	private record Caso(String nombre, Runnable consulta, String... tablas) {}
+
+	// Acceso a cada tabla en el plan de H2: el nombre de la tabla seguido del índice usado y su condición.
+	// Es un recorrido completo si usa tableScan o un índice sin condición (recorre el índice entero).
+	private static final Pattern ACCESO = Pattern.compile(
+			"\"PUBLIC\"\\.\"(\\w+)\"(?: \"\\w+\")?\\s*/\\* PUBLIC\\.([\\w.]+)(:)?");
+
+	// Expresión de los índices idx_insumo_nombre_upper e idx_producto_nombre_upper
+	private static final Pattern UPPER_NOMBRE = Pattern.compile("upper\\((\\w+\\.)?nombre\\)");
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private InsumoRepository insumoRepository;
+
+	@Autowired
+	private ProductoRepository productoRepository;
+
+	@Autowired
+	private MovimientoInsumoLoteRepository movimientoInsumoLoteRepository;
+
+	@Autowired
+	private MovimientoProductoLoteRepository movimientoProductoLoteRepository;
+
+	@Autowired
+	private DetalleMovimientoInsumoRepository detalleMovimientoInsumoRepository;
+
+	@Autowired
+	private DetalleMovimientoProductoRepository detalleMovimientoProductoRepository;
+
+	@Autowired
+	private LoteProductoRepository loteProductoRepository;
+
+	@Autowired
+	private SaldoInsumoDiarioRepository saldoInsumoDiarioRepository;
+
+	@Autowired
+	private InsumoRecetaRepository insumoRecetaRepository;
+
+	@Autowired
+	private RecetaInsumoRepository recetaInsumoRepository;
+
+	private List<Caso> casos() {
+		Insumo compuesto = insumoRepository.findById(5L).orElseThrow();
+		Insumo base = insumoRepository.findById(150L).orElseThrow();
+		return List.of(
+				new Caso("historial de insumos por fechas", () -> movimientoInsumoLoteRepository.findIdsPagina(
+						DESDE, HASTA, null, null, null, null, null, 21), "MOVIMIENTO_INSUMO_LOTE"),
+				new Caso("historial de insumos por tipo y fechas", () -> movimientoInsumoLoteRepository.findIdsPagina(
+						DESDE, HASTA, TipoMovimiento.SALIDA, null, null, null, null, 21), "MOVIMIENTO_INSUMO_LOTE"),
+				new Caso("historial de insumos desde un cursor", () -> movimientoInsumoLoteRepository.findIdsPagina(
+						null, null, null, null, null, HASTA, 1500L, 21), "MOVIMIENTO_INSUMO_LOTE"),
+				new Caso("historial de productos por tipo y fechas", () -> movimientoProductoLoteRepository.findIdsPagina(
+						DESDE, HASTA, TipoMovimiento.ENTRADA, null, null, null, null, 21), "MOVIMIENTO_PRODUCTO_LOTE"),
+				new Caso("filas de una página de insumos", () -> movimientoInsumoLoteRepository.findFilasMovimientosPorIds(
+						List.of(40L, 41L, 42L)), "MOVIMIENTO_INSUMO_LOTE", "DETALLE_MOVIMIENTO_INSUMO"),
+				new Caso("filas de una página de productos", () -> movimientoProductoLoteRepository.findFilasMovimientosPorIds(
+						List.of(40L, 41L, 42L)), "MOVIMIENTO_PRODUCTO_LOTE", "DETALLE_MOVIMIENTO_PRODUCTO"),
+				new Caso("últimas compras de un insumo", () -> detalleMovimientoInsumoRepository.findUltimasCompras(
+						7L, PageRequest.of(0, 1)), "DETALLE_MOVIMIENTO_INSUMO"),
+				new Caso("primera producción de un producto", () -> detalleMovimientoProductoRepository
+						.findFechaPrimeraProduccion(3L), "DETALLE_MOVIMIENTO_PRODUCTO"),
+				new Caso("lotes con stock de un producto", () -> loteProductoRepository.findConStockByProductoId(3L),
+						"LOTE_PRODUCTO"),
+				new Caso("lotes vencidos con stock", () -> loteProductoRepository.findConStockVencidosAntesDe(
+						LocalDate.of(2024, 1, 10)), "LOTE_PRODUCTO"),
+				new Caso("saldo de un insumo en una fecha", () -> saldoInsumoDiarioRepository.findSaldosHastaFecha(
+						7L, LocalDate.of(2024, 1, 15), PageRequest.of(0, 1)), "SALDO_INSUMO_DIARIO"),
+				new Caso("saldos de componentes en una fecha", () -> saldoInsumoDiarioRepository.findUltimosSaldosHastaFecha(
+						LocalDate.of(2024, 1, 15), List.of(7L, 8L, 9L)), "SALDO_INSUMO_DIARIO"),
+				new Caso("uso de un insumo en recetas", () -> insumoRecetaRepository.existsByInsumoId(7L),
+						"INSUMO_RECETA"),
+				new Caso("compuestos que usan un insumo", () -> recetaInsumoRepository.findByInsumoBase(base),
+						"RECETA_INSUMO"),
+				new Caso("receta de un compuesto", () -> recetaInsumoRepository.findByInsumoCompuesto(compuesto),
+						"RECETA_INSUMO"));
+	}
+
+	private void cargarDatos() {
+		List<Object[]> insumos = new ArrayList<>();
+		for (int i = 1; i <= INSUMOS; i++) {
+			insumos.add(new Object[]{i, "Insumo " + i, i <= 20 ? "COMPUESTO" : "BASE"});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO insumo (id, version, nombre, unidad_medida, tipo, stock_actual, " +
+				"precio_de_compra, stock_minimo) VALUES (?, 0, ?, 'GRAMOS', ?, 0, 0, 0)", insumos);
+
+		List<Object[]> recetas = new ArrayList<>();
+		List<Object[]> productos = new ArrayList<>();
+		for (int i = 1; i <= PRODUCTOS; i++) {
+			recetas.add(new Object[]{i});
+			productos.add(new Object[]{i, "Producto " + i, i});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO receta (id) VALUES (?)", recetas);
+		jdbcTemplate.batchUpdate("INSERT INTO producto (id, version, nombre, stock_actual, stock_minimo, " +
+				"precio_inversion, precio_venta, receta_id) VALUES (?, 0, ?, 0, 0, 0, 0, ?)", productos);
+
+		List<Object[]> insumosReceta = new ArrayList<>();
+		List<Object[]> componentes = new ArrayList<>();
+		for (int i = 1; i <= 1000; i++) {
+			insumosReceta.add(new Object[]{i, i % PRODUCTOS + 1, i % INSUMOS + 1});
+			componentes.add(new Object[]{i, i % 20 + 1, 21 + i % (INSUMOS - 20)});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO insumo_receta (id, cantidad, receta_id, insumo_id) VALUES (?, 1, ?, ?)",
+				insumosReceta);
+		jdbcTemplate.batchUpdate("INSERT INTO receta_insumo (id, insumo_compuesto_id, insumo_base_id, cantidad) " +
+				"VALUES (?, ?, ?, 1)", componentes);
+
+		List<Object[]> movimientos = new ArrayList<>();
+		List<Object[]> detallesInsumo = new ArrayList<>();
+		List<Object[]> detallesProducto = new ArrayList<>();
+		for (int i = 1; i <= MOVIMIENTOS; i++) {
+			String tipo = i % 2 == 0 ? "SALIDA" : "ENTRADA";
+			movimientos.add(new Object[]{i, INICIO.plusDays(i % 365), tipo});
+			for (int j = 0; j < 2; j++) {
+				int detalle = i * 2 + j;
+				detallesInsumo.add(new Object[]{detalle, detalle % 10 == 0 ? "ens-" + detalle : null,
+						detalle % INSUMOS + 1, i});
+				detallesProducto.add(new Object[]{detalle, INICIO.plusDays(detalle % 365), "L-" + detalle % 400,
+						detalle % PRODUCTOS + 1, i});
+			}
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO movimiento_insumo_lote (id, fecha, descripcion, tipo_movimiento) " +
+				"VALUES (?, ?, 'Movimiento', ?)", movimientos);
+		jdbcTemplate.batchUpdate("INSERT INTO detalle_movimiento_insumo (id, cantidad, precio_total, ensamble_id, " +
+				"insumo_id, movimiento_id) VALUES (?, 1, 10, ?, ?, ?)", detallesInsumo);
+		jdbcTemplate.batchUpdate("INSERT INTO movimiento_producto_lote (id, fecha, descripcion, tipo_movimiento, descarte) " +
+				"VALUES (?, ?, 'Movimiento', ?, FALSE)", movimientos);
+		jdbcTemplate.batchUpdate("INSERT INTO detalle_movimiento_producto (id, cantidad, fecha_vencimiento, lote, " +
+				"producto_id, movimiento_id) VALUES (?, 1, ?, ?, ?, ?)", detallesProducto);
+
+		List<Object[]> lotes = new ArrayList<>();
+		for (int i = 1; i <= 2000; i++) {
+			lotes.add(new Object[]{i, "L-" + i, i % PRODUCTOS + 1, INICIO.plusDays(i % 365)});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO lote_producto (id, codigo, producto_id, cantidad_producida, " +
+				"cantidad_vendida, fecha_vencimiento, fecha_produccion) VALUES (?, ?, ?, 10, 2, ?, DATE '2024-01-01')", lotes);
+
+		List<Object[]> saldos = new ArrayList<>();
+		int id = 1;
+		for (int insumo = 1; insumo <= INSUMOS; insumo++) {
+			for (int dia = 0; dia < 30; dia++) {
+				saldos.add(new Object[]{id++, insumo, INICIO.plusDays(dia)});
+			}
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO saldo_insumo_diario (id, insumo_id, fecha, entradas, salidas, saldo) " +
+				"VALUES (?, ?, ?, 1, 0, 1)", saldos);
+
+		// Estadísticas de selectividad para el optimizador
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	@Test
+	void consultasFrecuentesNoRecorrenTablasCompletas() {
+		cargarDatos();
+
+		List<String> recorridos = new ArrayList<>();
+		for (Caso caso : casos()) {
+			CapturaSql.SENTENCIAS.clear();
+			caso.consulta().run();
+			List<String> sentencias = new ArrayList<>(CapturaSql.SENTENCIAS);
+			assertFalse(sentencias.isEmpty(), "Sin sentencias para " + caso.nombre());
+
+			for (String sql : sentencias) {
+				String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+				Matcher acceso = ACCESO.matcher(plan);
+				while (acceso.find()) {
+					boolean recorrido = acceso.group(2).endsWith(".tableScan") || acceso.group(3) == null;
+					if (recorrido && List.of(caso.tablas()).contains(acceso.group(1))) {
+						recorridos.add(caso.nombre() + ": " + sql + "\n  → " + plan);
+					}
+				}
+			}
+		}
+		assertTrue(recorridos.isEmpty(), "Consultas con recorrido completo de tabla:\n" + String.join("\n", recorridos));
+	}
+
+	@Test
+	void busquedasPorNombreUsanLaExpresionDeLosIndicesDePostgres() throws IOException {
+		String migracion;
+		try (InputStream entrada = getClass().getResourceAsStream("/db/migration/postgresql/V6__indices_nombre.sql")) {
+			migracion = new String(entrada.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		assertTrue(migracion.contains("ON insumo (upper(nombre))"), migracion);
+		assertTrue(migracion.contains("ON producto (upper(nombre))"), migracion);
+
+		CapturaSql.SENTENCIAS.clear();
+		insumoRepository.existsByNombreIgnoreCase("Harina");
+		insumoRepository.existsByNombreIgnoreCaseAndIdNot("Harina", 1L);
+		productoRepository.existsByNombreIgnoreCase("Torta");
+
+		List<String> sentencias = CapturaSql.SENTENCIAS.stream()
+				.filter(sql -> sql.toLowerCase().contains("nombre"))
+				.toList();
+		assertEquals(3, sentencias.size(), String.join("\n", sentencias));
+		for (String sql : sentencias) {
+			assertTrue(UPPER_NOMBRE.matcher(sql.toLowerCase()).find(), "Sin upper(nombre): " + sql);
+		}
+	}
+
+	/**
+	 * Guarda las consultas que prepara Hibernate
+	 */
+	public static class CapturaSql implements StatementInspector {
+
+		static final List<String> SENTENCIAS = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			if (sql.toLowerCase().startsWith("select")) {
+				SENTENCIAS.add(sql);
+			}
+			return sql;
+		}
+	}
+}